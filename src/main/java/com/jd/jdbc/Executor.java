@@ -23,6 +23,7 @@ import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.context.VtContextConstant;
 import com.jd.jdbc.engine.Plan;
 import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.SqlTemplate;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.key.DestinationShard;
@@ -58,7 +59,7 @@ import com.jd.jdbc.srvtopo.BoundQuery;
 import com.jd.jdbc.srvtopo.ResolvedShard;
 import com.jd.jdbc.srvtopo.ScatterConn;
 import com.jd.jdbc.srvtopo.TxConn;
-import com.jd.jdbc.util.cache.lrucache.LRUCache;
+import com.jd.jdbc.util.cache.lrucache.ConcurrentLRUCache;
 import com.jd.jdbc.util.consolidator.Consolidator;
 import com.jd.jdbc.util.consolidator.ConsolidatorResult;
 import com.jd.jdbc.util.consolidator.Result;
@@ -88,31 +89,83 @@ public class Executor implements IExecute {
 
     private static final Integer LRU_CACHE_DEFAULT_CAPACITY = 300;
 
+    /**
+     * default weight budget of each plan cache per entry of capacity, in bytes.
+     */
+    private static final long PLAN_CACHE_ENTRY_WEIGHT = 16 * 1024L;
+
+    /**
+     * approximate footprint of one primitive of a plan, in bytes.
+     */
+    private static final int PRIMITIVE_WEIGHT = 512;
+
     private static Consolidator consolidator = Consolidator.getInstance();
 
     private static volatile Executor singletonInstance;
 
-    private LRUCache<Plan> plans;
+    private ConcurrentLRUCache<Plan> plans;
 
-    private Executor(Integer planCacheCapacity) {
-        this.plans = new LRUCache<>(planCacheCapacity == null ? LRU_CACHE_DEFAULT_CAPACITY : planCacheCapacity > LRU_CACHE_MAX_CAPACITY ? LRU_CACHE_MAX_CAPACITY : planCacheCapacity);
-        PlanCollector.PlanCacheSizeCollector.getInstance().setPlanCache(plans);
+    /**
+     * sqlTemplates is the first level plan cache, keyed by the raw sql text before parsing.
+     */
+    private ConcurrentLRUCache<SqlTemplate> sqlTemplates;
+
+    private Executor(Integer planCacheCapacity, Long planCacheMaxWeight) {
+        int capacity = planCacheCapacity == null ? LRU_CACHE_DEFAULT_CAPACITY : planCacheCapacity > LRU_CACHE_MAX_CAPACITY ? LRU_CACHE_MAX_CAPACITY : planCacheCapacity;
+        long maxWeight = planCacheMaxWeight == null || planCacheMaxWeight <= 0 ? capacity * PLAN_CACHE_ENTRY_WEIGHT : planCacheMaxWeight;
+        this.plans = new ConcurrentLRUCache<>(capacity, maxWeight, (key, plan) -> weigh(key, plan));
+        this.sqlTemplates = new ConcurrentLRUCache<>(capacity, maxWeight, (key, template) -> weigh(key, template.getPlan()));
+        PlanCollector.PlanCacheSizeCollector.getInstance().setPlanCache(plans, sqlTemplates);
     }
 
     /**
      * @return
      */
     public static Executor getInstance(Integer planCacheCapacity) {
+        return getInstance(planCacheCapacity, null);
+    }
+
+    /**
+     * @param planCacheCapacity  max number of entries of each plan cache
+     * @param planCacheMaxWeight max estimated bytes of each plan cache, null to derive it from the capacity
+     * @return
+     */
+    public static Executor getInstance(Integer planCacheCapacity, Long planCacheMaxWeight) {
         if (singletonInstance == null) {
             synchronized (Executor.class) {
                 if (singletonInstance == null) {
-                    singletonInstance = new Executor(planCacheCapacity);
+                    singletonInstance = new Executor(planCacheCapacity, planCacheMaxWeight);
                 }
             }
         }
         return singletonInstance;
     }
 
+    /**
+     * weigh estimates the memory held by a cached plan: the key text plus a fixed cost for every primitive.
+     *
+     * @param key
+     * @param plan
+     * @return
+     */
+    private static int weigh(String key, Plan plan) {
+        return key.length() * 2 + PRIMITIVE_WEIGHT * countPrimitives(plan.getPrimitive());
+    }
+
+    private static int countPrimitives(PrimitiveEngine primitive) {
+        if (primitive == null) {
+            return 0;
+        }
+        int count = 1;
+        List<PrimitiveEngine> inputs = primitive.inputs();
+        if (inputs != null) {
+            for (PrimitiveEngine input : inputs) {
+                count += countPrimitives(input);
+            }
+        }
+        return count;
+    }
+
     public static Executor getInstanceNoInit() {
         return singletonInstance;
     }
@@ -138,6 +191,30 @@ public class Executor implements IExecute {
         return resultSet;
     }
 
+    /**
+     * execute runs a statement planned by {@link #buildSqlTemplate} without parsing or planning it again.
+     *
+     * @param ctx
+     * @param method
+     * @param safeSession
+     * @param template
+     * @param bindVariableMap
+     * @return
+     * @throws SQLException
+     */
+    public VtRowList execute(IContext ctx, String method, SafeSession safeSession, SqlTemplate template, Map<String, BindVariable> bindVariableMap) throws SQLException {
+        if (ctx.isDone()) {
+            throw new SQLException(VtContextConstant.CONTEXT_CANCELLED + ctx.error());
+        }
+        this.startTxIfNecessary(ctx, safeSession);
+        ExecuteResponse executeResponse = this.newExecute(ctx, safeSession, template.getKeyspace(), template.getStatement(), template.getComment(), template.getPlan(),
+            this.templateBindVariables(template, bindVariableMap));
+        VtSqlStatementType stmtType = executeResponse.getSqlStatementType();
+        VtRowList resultSet = executeResponse.getResultSet();
+        this.saveSessionStats(safeSession, stmtType, resultSet, null);
+        return resultSet;
+    }
+
     /**
      * @param ctx
      * @param method
@@ -178,6 +255,14 @@ public class Executor implements IExecute {
         return this.newStreamExecute(ctx, safeSession, keyspace, stmt, bindVariableMap).getResultSet();
     }
 
+    public VtRowList streamExecute(IContext ctx, String method, SafeSession safeSession, SqlTemplate template, Map<String, BindVariable> bindVariableMap) throws SQLException {
+        if (ctx.isDone()) {
+            throw new SQLException(VtContextConstant.CONTEXT_CANCELLED + ctx.error());
+        }
+        this.startTxIfNecessary(ctx, safeSession);
+        return this.newStreamExecute(ctx, safeSession, template.getComment(), template.getPlan(), this.templateBindVariables(template, bindVariableMap)).getResultSet();
+    }
+
     @Override
     public List<VtRowList> batchExecute(IContext ctx, String method, SafeSession safeSession, String keyspace,
                                         List<SQLStatement> batchStmts,
@@ -316,6 +401,72 @@ public class Executor implements IExecute {
         return new PlanResult(plan, bindVariableMap);
     }
 
+    /**
+     * getSqlTemplate looks the raw sql up in the first level plan cache.
+     *
+     * @param defaultKeyspace
+     * @param sql
+     * @param charEncoding
+     * @param bindVariableMap
+     * @return the cached template, or null if the sql has to be parsed and planned
+     */
+    public SqlTemplate getSqlTemplate(String defaultKeyspace, String sql, String charEncoding, Map<String, BindVariable> bindVariableMap) {
+        SqlTemplate template = sqlTemplates.get(sqlTemplateKey(defaultKeyspace, sql));
+        if (template == null || !template.matches(charEncoding, bindVariableMap)) {
+            return null;
+        }
+        return template;
+    }
+
+    /**
+     * buildSqlTemplate plans a freshly parsed statement and remembers the result under the raw sql,
+     * so that later executions of the same text skip the parser and the plan key serialization.
+     * Statements whose normalization depends on the bind variable values are not templated.
+     *
+     * @param ctx
+     * @param safeSession
+     * @param defaultKeyspace
+     * @param sql             raw sql text
+     * @param keyspace        keyspace resolved while parsing
+     * @param stmt            parsed statement, it is normalized in place
+     * @param bindVariableMap
+     * @param charEncoding
+     * @return the template, or null if the statement must go through {@link #getPlan} on every execution
+     * @throws SQLException
+     */
+    public SqlTemplate buildSqlTemplate(IContext ctx, SafeSession safeSession, String defaultKeyspace, String sql, String keyspace, SQLStatement stmt,
+                                        Map<String, BindVariable> bindVariableMap, String charEncoding) throws SQLException {
+        if (!SqlParser.canNormalize(stmt) || SqlParser.needCombineRepeatBindVars(stmt)) {
+            return null;
+        }
+        StringBuffer buf = new StringBuffer();
+        stmt.output(buf);
+        Comment comment = new Comment(buf.toString());
+
+        Map<String, BindVariable> markers = SqlTemplate.markBindVariables(bindVariableMap);
+        boolean skipQueryPlanCache = this.getSkipQueryPlanCache(safeSession);
+        PlanResult planResult = this.getPlan(ctx, keyspace, stmt, markers, skipQueryPlanCache, charEncoding);
+        Plan plan = planResult.getPlan();
+        SqlTemplate template = SqlTemplate.build(keyspace, stmt, comment, plan, charEncoding, markers, planResult.getBindVariableMap());
+
+        String templateKey = sqlTemplateKey(defaultKeyspace, sql);
+        if (!skipQueryPlanCache && plan.getPrimitive() != null && templateKey.length() < MAX_PLAN_KEY_SIZE) {
+            sqlTemplates.set(templateKey, template);
+        }
+        return template;
+    }
+
+    private String sqlTemplateKey(String defaultKeyspace, String sql) {
+        return defaultKeyspace + ":" + sql;
+    }
+
+    private Map<String, BindVariable> templateBindVariables(SqlTemplate template, Map<String, BindVariable> bindVariableMap) throws SQLException {
+        checkNullVariable(bindVariableMap);
+        totalCounterInc(template.getStatement());
+        cacheCounterInc(template.getPlan().getStatementType());
+        return template.bindVariables(bindVariableMap);
+    }
+
     private SQLStatement toFullStatement(SQLStatement stmt, Map<String, BindVariable> bindVariableMap) {
         if (bindVariableMap != null && bindVariableMap.isEmpty()) {
             return stmt;
@@ -426,14 +577,18 @@ public class Executor implements IExecute {
 
         StringBuffer sql = new StringBuffer();
         stmt.output(sql);
-        Vcursor vCursor = new VcursorImpl(ctx, safeSession, new Comment(sql.toString()), this, (VSchemaManager) ctx.getContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER),
-            safeSession.getVitessConnection().getResolver());
+        Comment comment = new Comment(sql.toString());
 
         // 2: Create a plan for the query
         String charEncoding = safeSession.getCharEncoding();
         PlanResult planResult = this.getPlan(ctx, keyspace, stmt, bindVariableMap, this.getSkipQueryPlanCache(safeSession), charEncoding);
-        Plan plan = planResult.getPlan();
-        bindVariableMap = planResult.getBindVariableMap();
+        return this.newExecute(ctx, safeSession, keyspace, stmt, comment, planResult.getPlan(), planResult.getBindVariableMap());
+    }
+
+    private ExecuteResponse newExecute(IContext ctx, SafeSession safeSession, String keyspace, SQLStatement stmt, Comment comment, Plan plan, Map<String, BindVariable> bindVariableMap)
+        throws SQLException {
+        Vcursor vCursor = new VcursorImpl(ctx, safeSession, comment, this, (VSchemaManager) ctx.getContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER),
+            safeSession.getVitessConnection().getResolver());
 
         // We need to explicitly handle errors, and begin/commit/rollback, since these control transactions. Everything else
         // will fall through and be handled through planning
@@ -597,15 +752,18 @@ public class Executor implements IExecute {
 
         StringBuffer sql = new StringBuffer();
         stmt.output(sql);
-        VSchemaManager vm = (VSchemaManager) ctx.getContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER);
-        VcursorImpl vCursor = new VcursorImpl(ctx, safeSession, new Comment(sql.toString()), this, vm, safeSession.getVitessConnection().getResolver());
-        vCursor.setIgnoreMaxMemoryRows(Boolean.FALSE);
+        Comment comment = new Comment(sql.toString());
 
         // 2: Create a plan for the query
         String charEncoding = safeSession.getCharEncoding();
         PlanResult planResult = this.getPlan(ctx, keyspace, stmt, bindVariableMap, this.getSkipQueryPlanCache(safeSession), charEncoding);
-        Plan plan = planResult.getPlan();
-        bindVariableMap = planResult.getBindVariableMap();
+        return this.newStreamExecute(ctx, safeSession, comment, planResult.getPlan(), planResult.getBindVariableMap());
+    }
+
+    private ExecuteResponse newStreamExecute(IContext ctx, SafeSession safeSession, Comment comment, Plan plan, Map<String, BindVariable> bindVariableMap) throws SQLException {
+        VSchemaManager vm = (VSchemaManager) ctx.getContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER);
+        VcursorImpl vCursor = new VcursorImpl(ctx, safeSession, comment, this, vm, safeSession.getVitessConnection().getResolver());
+        vCursor.setIgnoreMaxMemoryRows(Boolean.FALSE);
 
         // 3: Prepare for execution
         return this.streamExecutePlan(ctx, plan, vCursor, bindVariableMap).exec(safeSession);
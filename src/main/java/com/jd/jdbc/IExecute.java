@@ -103,8 +103,19 @@ public interface IExecute {
     class ExecuteMultiShardResponse {
         private final VtRowList vtRowList;
 
+        /**
+         * the result of every shard in shard order, null if the response was not scattered.
+         * Ordered routes merge them instead of sorting vtRowList.
+         */
+        private final VtResultSet[] shardResults;
+
         public ExecuteMultiShardResponse(VtRowList vtRowList) {
+            this(vtRowList, null);
+        }
+
+        public ExecuteMultiShardResponse(VtRowList vtRowList, VtResultSet[] shardResults) {
             this.vtRowList = vtRowList;
+            this.shardResults = shardResults;
         }
 
         public ExecuteMultiShardResponse setUpdate() {
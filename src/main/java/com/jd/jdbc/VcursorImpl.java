@@ -20,6 +20,7 @@ package com.jd.jdbc;
 
 import com.jd.jdbc.IExecute.ExecuteMultiShardResponse;
 import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.context.VtContext;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.queryservice.StreamIterator;
@@ -159,6 +160,23 @@ public class VcursorImpl implements Vcursor {
         return null;
     }
 
+    @Override
+    public VtRowList executeStandaloneDetached(String sql, Map<String, BindVariable> bindVars, ResolvedShard resolvedShard) throws SQLException {
+        List<ResolvedShard> rss = new ArrayList<>();
+        rss.add(resolvedShard);
+
+        final String querySql = comment.getLeading() + sql + comment.getTrailing();
+        BoundQuery boundQuery = new BoundQuery(querySql, bindVars);
+        try (IContext detachedCtx = VtContext.withCancel(safeSession.getVitessConnection().getCtx())) {
+            ExecuteMultiShardResponse response =
+                this.executor.executeMultiShard(detachedCtx, rss, Collections.singletonList(boundQuery), SafeSession.newAutoCommitSession(safeSession.getVitessConnection()), false, true);
+            if (null != response) {
+                return response.getVtRowList();
+            }
+            return null;
+        }
+    }
+
     @Override
     public String getCharEncoding() {
         if (this.safeSession == null) {
@@ -174,4 +192,28 @@ public class VcursorImpl implements Vcursor {
         }
         return this.safeSession.getMaxParallelNum();
     }
+
+    @Override
+    public boolean getServerPrepareStatement() {
+        if (this.safeSession == null) {
+            return false;
+        }
+        return this.safeSession.getServerPrepareStatement();
+    }
+
+    @Override
+    public int getJoinBatchSize() {
+        if (this.safeSession == null) {
+            return 0;
+        }
+        return this.safeSession.getJoinBatchSize();
+    }
+
+    @Override
+    public int getStreamPrefetchRows() {
+        if (this.safeSession == null) {
+            return 0;
+        }
+        return this.safeSession.getStreamPrefetchRows();
+    }
 }
@@ -68,6 +68,7 @@ public class VtVschemaRefreshHandler extends VtHttpHandler {
             }
             if (Executor.getInstanceNoInit() != null && refreshFlag) {
                 Executor.getInstanceNoInit().getPlans().clear();
+                Executor.getInstanceNoInit().getSqlTemplates().clear();
             }
             super.success(httpExchange, resMessage.toString());
         } catch (TopoException e) {
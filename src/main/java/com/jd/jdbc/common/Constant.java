@@ -41,6 +41,16 @@ public class Constant {
 
     public static final String DRIVER_PROPERTY_QUERY_CONSOLIDATOR = "queryConsolidator";
 
+    public static final String DRIVER_PROPERTY_SERVER_PREPARE_STATEMENT = "vtServerPrepareStatement";
+
+    public static final String DRIVER_PROPERTY_JOIN_BATCH_SIZE = "vtJoinBatchSize";
+
+    public static final String DRIVER_PROPERTY_STREAM_PREFETCH_ROWS = "vtStreamPrefetchRows";
+
+    public static final String DRIVER_PROPERTY_COLUMNAR_RESULT = "vtColumnarResult";
+
+    public static final String DRIVER_PROPERTY_SHARD_COMMIT_MODE = "vtShardCommitMode";
+
     public static final String MYSQL_PROTOCOL_DRIVER_CLASS = "com.mysql.cj.jdbc.Driver";
 
     public static final String DEFAULT_SPLIT_TABLE_CONFIG_PATH = "vtdriver-split-table.yml";
@@ -53,9 +53,30 @@ public interface IContext extends AutoCloseable {
      */
     Date getDeadline();
 
+    /**
+     * cancel all derived contexts with reason, the context itself is not canceled.
+     */
+    void cancelDerived(String reason);
+
+    /**
+     * register an action to run asynchronously once the context is done, it runs at once if the context is already done.
+     * the action is used to stop work the context no longer waits for, e.g. a query running on a tablet.
+     *
+     * @return the registration, close it when the work is finished and the action must not run any more
+     */
+    CancelRegistration onCancel(Runnable action);
+
     /**
      * invoke cancel.
      */
     @Override
     void close();
+
+    interface CancelRegistration extends AutoCloseable {
+        /**
+         * remove the action, waits for the action if it is running.
+         */
+        @Override
+        void close();
+    }
 }
@@ -58,6 +58,19 @@ public class VtBackgroundContext extends VtContext {
 
     }
 
+    @Override
+    public void cancelDerived(String reason) {
+
+    }
+
+    /**
+     * the background context is never done, the action never runs.
+     */
+    @Override
+    public CancelRegistration onCancel(Runnable action) {
+        return VtCancelListener.NOOP;
+    }
+
     @Override
     public Object getContextValue(Object key) {
         return null;
@@ -18,41 +18,89 @@ limitations under the License.
 
 package com.jd.jdbc.context;
 
+import com.jd.jdbc.vitess.VitessConnection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+/**
+ * VtCancelContext takes no lock: the done state is a CAS on the error, the deadline is a
+ * System.nanoTime() value, and children, listeners, the deadline timer and context values are
+ * only allocated when they are first used. The fixed {@link VitessConnection.ContextKey} values live in a
+ * small array indexed by the key ordinal instead of a map.
+ */
 public class VtCancelContext extends VtContext {
-    protected VtContext parent;
+    private static final String NULL_REASON = new String();
 
-    protected Set<VtContext> children;
+    private static final VitessConnection.ContextKey[] SLOT_KEYS = VitessConnection.ContextKey.values();
 
-    protected Map<Object, Object> contextValues;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<VtCancelContext, Set> CHILDREN_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(VtCancelContext.class, Set.class, "children");
 
-    protected volatile Date deadline;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<VtCancelContext, Set> LISTENERS_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(VtCancelContext.class, Set.class, "listeners");
 
-    protected boolean isDone;
+    private static final AtomicReferenceFieldUpdater<VtCancelContext, String> ERROR_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(VtCancelContext.class, String.class, "error");
 
-    protected volatile String error;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<VtCancelContext, ScheduledFuture> TIMER_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(VtCancelContext.class, ScheduledFuture.class, "deadlineTimer");
 
-    protected Lock lock = new ReentrantLock();
+    protected final VtContext parent;
+
+    protected final boolean hasDeadline;
+
+    protected final long deadlineNanos;
+
+    private volatile Set<VtContext> children;
+
+    private volatile Set<VtCancelListener> listeners;
+
+    /**
+     * cancels the context at its deadline, armed by the first cancel listener: without listeners
+     * nobody waits for the cancel and {@link #isDone()} notices the deadline by itself.
+     */
+    private volatile ScheduledFuture<?> deadlineTimer;
+
+    private Map<Object, Object> contextValues;
+
+    private Object[] slots;
+
+    /**
+     * null until the context is done, {@link #NULL_REASON} if it was canceled without a reason.
+     */
+    private volatile String error;
 
     public VtCancelContext(IContext parent, Map<Object, Object> contextValues) {
+        this(parent, contextValues, false, 0L);
+    }
+
+    protected VtCancelContext(IContext parent, Map<Object, Object> contextValues, boolean hasDeadline, long deadlineNanos) {
         this.parent = (VtContext) parent;
-        /**
-         Note: this is the only way of creating thread-safe Set in Java.
-         https://javatutorial.net/java-concurrenthashset-example
-         **/
-        ConcurrentHashMap<VtContext, Integer> concurrentHashMap = new ConcurrentHashMap();
-        this.children = ConcurrentHashMap.newKeySet();
+        if (this.parent.hasDeadline() && (!hasDeadline || this.parent.getDeadlineNanos() - deadlineNanos < 0)) {
+            this.hasDeadline = true;
+            this.deadlineNanos = this.parent.getDeadlineNanos();
+        } else {
+            this.hasDeadline = hasDeadline;
+            this.deadlineNanos = deadlineNanos;
+        }
         this.contextValues = contextValues;
-        this.deadline = parent.getDeadline();
+        if (contextValues != null) {
+            for (Map.Entry<Object, Object> entry : contextValues.entrySet()) {
+                if (entry.getKey() instanceof VitessConnection.ContextKey) {
+                    setSlot((VitessConnection.ContextKey) entry.getKey(), entry.getValue());
+                }
+            }
+        }
         this.parent.addChild(this);
-        this.isDone = parent.isDone();
-        this.error = parent.error();
     }
 
     /**
@@ -61,16 +109,8 @@ public class VtCancelContext extends VtContext {
      */
     @Override
     public void cancel(String reason) {
-        lock.lock();
-        try {
-            if (this.isDone) {
-                return;
-            }
-            propagate(false, reason);
-            this.error = reason;
-            this.isDone = true;
-        } finally {
-            lock.unlock();
+        if (markDone(reason)) {
+            this.parent.removeChild(this);
         }
     }
 
@@ -80,21 +120,14 @@ public class VtCancelContext extends VtContext {
      */
     @Override
     public boolean isDone() {
-        lock.lock();
-        try {
-            if (this.isDone) {
-                return true;
-            }
-            if (deadline != null && !deadline.after(new Date())) {
-                String reason = "dead line";
-                propagate(false, reason);
-                this.error = reason;
-                this.isDone = true;
-            }
-            return this.isDone;
-        } finally {
-            lock.unlock();
+        if (this.error != null) {
+            return true;
         }
+        if (hasDeadline && System.nanoTime() - deadlineNanos >= 0) {
+            cancel(VtContextConstant.DEADLINE_EXCEEDED);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -102,16 +135,28 @@ public class VtCancelContext extends VtContext {
      */
     @Override
     public String error() {
-        return this.error;
+        String reason = this.error;
+        return reason == NULL_REASON ? null : reason;
     }
 
-
     /**
      * get context value by key. if the key is not found in current context, search it up to root context.
      */
     @Override
     public Object getContextValue(Object key) {
-        Object contextValue = contextValues.get(key);
+        if (key instanceof VitessConnection.ContextKey) {
+            int slot = ((VitessConnection.ContextKey) key).ordinal();
+            VtContext context = this;
+            while (context instanceof VtCancelContext) {
+                Object[] contextSlots = ((VtCancelContext) context).slots;
+                if (contextSlots != null && contextSlots[slot] != null) {
+                    return contextSlots[slot];
+                }
+                context = ((VtCancelContext) context).parent;
+            }
+            return context.getContextValue(key);
+        }
+        Object contextValue = contextValues == null ? null : contextValues.get(key);
         if (contextValue == null) {
             contextValue = parent.getContextValue(key);
         }
@@ -123,56 +168,170 @@ public class VtCancelContext extends VtContext {
      */
     @Override
     public void setContextValue(Object key, Object value) {
+        if (key instanceof VitessConnection.ContextKey) {
+            setSlot((VitessConnection.ContextKey) key, value);
+            return;
+        }
+        if (contextValues == null) {
+            contextValues = new HashMap<>(4);
+        }
         contextValues.put(key, value);
     }
 
+    private void setSlot(VitessConnection.ContextKey key, Object value) {
+        if (slots == null) {
+            slots = new Object[SLOT_KEYS.length];
+        }
+        slots[key.ordinal()] = value;
+    }
+
     /**
      * get the deadline. return null if not applicable.
      */
     @Override
     public Date getDeadline() {
-        return this.deadline;
+        if (!hasDeadline) {
+            return null;
+        }
+        return new Date(System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
     }
 
     @Override
+    protected boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    @Override
+    protected long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * a child added while the context is being canceled is either seen by the cancel or sees the error itself.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
     protected void addChild(IContext child) {
-        lock.lock();
-        try {
-            if (!this.isDone()) {
-                this.children.add((VtContext) child);
+        String reason = this.error;
+        if (reason == null) {
+            Set<VtContext> set = this.children;
+            if (set == null) {
+                CHILDREN_UPDATER.compareAndSet(this, null, ConcurrentHashMap.newKeySet());
+                set = this.children;
             }
-        } finally {
-            lock.unlock();
+            set.add((VtContext) child);
+            reason = this.error;
+            if (reason == null) {
+                return;
+            }
+            set.remove(child);
         }
+        ((VtContext) child).cancelFromParent(reason == NULL_REASON ? null : reason);
     }
 
     @Override
     protected void removeChild(IContext child) {
-        this.children.remove(child);
+        Set<VtContext> set = this.children;
+        if (set != null) {
+            set.remove(child);
+        }
     }
 
     @Override
     protected void cancelFromParent(String reason) {
-        lock.lock();
-        try {
-            if (this.isDone) {
-                return;
-            }
-            propagate(true, reason);
-            this.error = reason;
-            this.isDone = true;
-        } finally {
-            lock.unlock();
-        }
+        markDone(reason);
     }
 
-    protected void propagate(boolean fromParent, String reason) {
-        if (!fromParent) {
-            this.parent.removeChild(this);
+    @Override
+    public void cancelDerived(String reason) {
+        Set<VtContext> set = this.children;
+        if (set == null) {
+            return;
         }
-        for (VtContext child : this.children) {
+        for (VtContext child : set) {
+            set.remove(child);
             child.cancelFromParent(reason);
         }
-        this.children.clear();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CancelRegistration onCancel(Runnable action) {
+        VtCancelListener listener = new VtCancelListener(this, action);
+        if (this.isDone()) {
+            VtContextScheduler.runListener(listener);
+            return listener;
+        }
+        Set<VtCancelListener> set = this.listeners;
+        if (set == null) {
+            LISTENERS_UPDATER.compareAndSet(this, null, ConcurrentHashMap.newKeySet());
+            set = this.listeners;
+        }
+        set.add(listener);
+        if (hasDeadline && this.deadlineTimer == null) {
+            armDeadlineTimer();
+        }
+        // the cancel may have walked the listeners before the add, whoever removes the listener runs it
+        if (this.error != null && set.remove(listener)) {
+            VtContextScheduler.runListener(listener);
+        }
+        return listener;
+    }
+
+    private void armDeadlineTimer() {
+        ScheduledFuture<?> timer = VtContextScheduler.scheduleDeadline(this, deadlineNanos);
+        if (!TIMER_UPDATER.compareAndSet(this, null, timer)) {
+            timer.cancel(false);
+            return;
+        }
+        // done before the timer was published, the done thread may have missed it
+        if (this.error != null) {
+            cancelDeadlineTimer();
+        }
+    }
+
+    private void cancelDeadlineTimer() {
+        ScheduledFuture<?> timer = TIMER_UPDATER.getAndSet(this, null);
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    protected void removeListener(VtCancelListener listener) {
+        Set<VtCancelListener> set = this.listeners;
+        if (set != null) {
+            set.remove(listener);
+        }
+    }
+
+    /**
+     * mark the context done, cancel the derived contexts and hand the cancel listeners to the scheduler.
+     *
+     * @param reason
+     * @return true if this call marked the context done
+     */
+    protected boolean markDone(String reason) {
+        if (!ERROR_UPDATER.compareAndSet(this, null, reason == null ? NULL_REASON : reason)) {
+            return false;
+        }
+        Set<VtContext> childSet = this.children;
+        if (childSet != null) {
+            for (VtContext child : childSet) {
+                childSet.remove(child);
+                child.cancelFromParent(reason);
+            }
+        }
+        Set<VtCancelListener> listenerSet = this.listeners;
+        if (listenerSet != null) {
+            for (VtCancelListener listener : listenerSet) {
+                if (listenerSet.remove(listener)) {
+                    VtContextScheduler.runListener(listener);
+                }
+            }
+        }
+        if (this.deadlineTimer != null) {
+            cancelDeadlineTimer();
+        }
+        return true;
     }
 }
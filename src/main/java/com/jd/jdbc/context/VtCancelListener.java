@@ -0,0 +1,56 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.context;
+
+/**
+ * VtCancelListener runs its action at most once and never after it is closed, so the resource
+ * the action stops (e.g. a pooled connection) can be reused as soon as close returns.
+ */
+class VtCancelListener implements IContext.CancelRegistration, Runnable {
+    static final IContext.CancelRegistration NOOP = () -> {
+    };
+
+    private final VtCancelContext context;
+
+    private final Runnable action;
+
+    private boolean closed;
+
+    VtCancelListener(final VtCancelContext context, final Runnable action) {
+        this.context = context;
+        this.action = action;
+    }
+
+    @Override
+    public synchronized void run() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        action.run();
+    }
+
+    @Override
+    public void close() {
+        if (context != null) {
+            context.removeListener(this);
+        }
+        synchronized (this) {
+            closed = true;
+        }
+    }
+}
@@ -19,7 +19,6 @@ limitations under the License.
 package com.jd.jdbc.context;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -32,7 +31,7 @@ public abstract class VtContext implements IContext {
     }
 
     public static IContext withCancel(IContext parent) {
-        return new VtCancelContext(parent, new HashMap<>());
+        return new VtCancelContext(parent, null);
     }
 
     public static IContext withCancel(IContext parent, Map<Object, Object> values) {
@@ -40,7 +39,7 @@ public abstract class VtContext implements IContext {
     }
 
     public static IContext withDeadline(IContext parent, Date deadline) {
-        return new VtDeadlineContext(parent, deadline, new HashMap<>(16));
+        return new VtDeadlineContext(parent, deadline, null);
     }
 
     public static IContext withDeadline(IContext parent, Date deadline, Map<Object, Object> values) {
@@ -48,13 +47,22 @@ public abstract class VtContext implements IContext {
     }
 
     public static IContext withDeadline(IContext parent, long later, TimeUnit unit) {
-        Date deadline = new Date(System.currentTimeMillis() + unit.toMillis(later));
-        return new VtDeadlineContext(parent, deadline, new HashMap<>(16));
+        return new VtDeadlineContext(parent, System.nanoTime() + unit.toNanos(later), null);
     }
 
     public static IContext withDeadline(IContext parent, long later, TimeUnit unit, Map<Object, Object> values) {
-        Date deadline = new Date(System.currentTimeMillis() + unit.toMillis(later));
-        return new VtDeadlineContext(parent, deadline, values);
+        return new VtDeadlineContext(parent, System.nanoTime() + unit.toNanos(later), values);
+    }
+
+    protected boolean hasDeadline() {
+        return false;
+    }
+
+    /**
+     * @return the deadline in {@link System#nanoTime()} units, only meaningful if {@link #hasDeadline()}
+     */
+    protected long getDeadlineNanos() {
+        return 0L;
     }
 
     protected void addChild(IContext child) {
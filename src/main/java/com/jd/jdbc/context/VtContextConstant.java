@@ -26,4 +26,8 @@ public class VtContextConstant {
     public static final String STREAM_EXECUTION_CANCELLED = "stream execution is cancelled. ";
 
     public static final String CONTEXT_CANCELLED = "context is canceled. ";
+
+    public static final String DEADLINE_EXCEEDED = "dead line";
+
+    public static final String STATEMENT_CANCELLED = "statement is cancelled by client";
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.context;
+
+import com.jd.jdbc.util.ScheduledManager;
+import com.jd.jdbc.util.threadpool.VtThreadFactoryBuilder;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VtContextScheduler enforces deadlines and runs cancel listeners for all contexts.
+ * <p>
+ * A single timer thread cancels a context with cancel listeners when its deadline passes, so the
+ * listeners run even if nobody polls {@link IContext#isDone()}. Cancel listeners may block on
+ * the network (e.g. KILL QUERY), they run on a small pool and never on the timer thread or
+ * the thread that canceled the context, and the listeners of one context run in parallel.
+ */
+final class VtContextScheduler {
+
+    private static final int CANCEL_POOL_SIZE = 16;
+
+    private static final ScheduledManager SCHEDULED_MANAGER = new ScheduledManager("context-deadline", 1, TimeUnit.MILLISECONDS);
+
+    private static final ThreadPoolExecutor CANCEL_EXECUTOR = new ThreadPoolExecutor(CANCEL_POOL_SIZE, CANCEL_POOL_SIZE, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), VtThreadFactoryBuilder.build("context-cancel-"));
+
+    static {
+        CANCEL_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private VtContextScheduler() {
+    }
+
+    /**
+     * @param context
+     * @param deadlineNanos deadline in {@link System#nanoTime()} units
+     * @return the timer task, cancel it once the context is done so the timer no longer references the context
+     */
+    static ScheduledFuture<?> scheduleDeadline(final IContext context, final long deadlineNanos) {
+        long delay = deadlineNanos - System.nanoTime();
+        return SCHEDULED_MANAGER.getScheduledExecutor().schedule(() -> context.cancel(VtContextConstant.DEADLINE_EXCEEDED), delay, TimeUnit.NANOSECONDS);
+    }
+
+    static void runListener(final Runnable listener) {
+        CANCEL_EXECUTOR.execute(listener);
+    }
+}
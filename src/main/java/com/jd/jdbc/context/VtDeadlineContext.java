@@ -20,15 +20,15 @@ package com.jd.jdbc.context;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class VtDeadlineContext extends VtCancelContext {
 
     public VtDeadlineContext(IContext parent, Date deadline, Map<Object, Object> contextValues) {
-        super(parent, contextValues);
-        this.deadline = deadline;
-        Date parentDeadline = parent.getDeadline();
-        if (parentDeadline != null && parentDeadline.before(deadline)) {
-            this.deadline = parentDeadline;
-        }
+        this(parent, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline.getTime() - System.currentTimeMillis()), contextValues);
+    }
+
+    VtDeadlineContext(IContext parent, long deadlineNanos, Map<Object, Object> contextValues) {
+        super(parent, contextValues, true, deadlineNanos);
     }
 }
@@ -25,6 +25,7 @@ import com.jd.jdbc.monitor.HealthCheckCollector;
 import com.jd.jdbc.pool.StatefulConnectionPool;
 import com.jd.jdbc.queryservice.IQueryService;
 import com.jd.jdbc.queryservice.RoleType;
+import com.jd.jdbc.queryservice.RetryTabletQueryService;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import com.jd.jdbc.sqlparser.utils.StringUtils;
@@ -35,6 +36,8 @@ import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -70,9 +73,16 @@ public enum HealthCheck {
 
     private static final Log log = LogFactory.getLog(HealthCheck.class);
 
+    private static final Map<String, Topodata.TabletType> TABLET_TYPE_BY_LSTRING = new HashMap<>();
+
     private static int secondsBehindsMaster = 7200;
 
     static {
+        for (Topodata.TabletType tabletType : Topodata.TabletType.values()) {
+            if (tabletType != Topodata.TabletType.UNRECOGNIZED) {
+                TABLET_TYPE_BY_LSTRING.putIfAbsent(TopoProto.tabletTypeLstring(tabletType), tabletType);
+            }
+        }
         String sysProp = System.getProperty("vtdriver.secondsBehindMaster");
         if (sysProp != null) {
             try {
@@ -99,6 +109,10 @@ public enum HealthCheck {
     // another map keyed by keyspace.shard.tabletType, this one containing a sorted list of TabletHealth
     private final Map<String, List<TabletHealthCheck>> healthy = new ConcurrentHashMap<>(16);
 
+    // immutable copy of healthy by keyspace, shard and tablet type ordinal, replaced under the lock
+    // whenever healthy changes, so routing a query never locks nor allocates
+    private volatile Map<String, Map<String, HealthySnapshot[]>> healthySnapshots = Collections.emptyMap();
+
     private final AtomicInteger tabletCounter = new AtomicInteger(0);
 
     private final Timer streamWatcherTimer = new Timer(true);
@@ -114,6 +128,7 @@ public enum HealthCheck {
         INSTANCE.healthByAlias.clear();
         INSTANCE.healthData.clear();
         INSTANCE.healthy.clear();
+        INSTANCE.healthySnapshots = Collections.emptyMap();
         INSTANCE.tabletCounter.set(0);
     }
 
@@ -187,37 +202,40 @@ public enum HealthCheck {
         return tablets;
     }
 
+    /**
+     * @param target
+     * @return null if the target has no healthy tablet, the returned list must not be modified
+     */
     public List<TabletHealthCheck> getHealthyTabletStats(Query.Target target) {
-        this.lock.lock();
-        try {
-            List<TabletHealthCheck> list = this.healthy.get(keyFromTarget(target));
-            if (null == list || list.isEmpty()) {
-                return null;
-            }
-            if (target.getTabletType() == Topodata.TabletType.MASTER) {
-                return list;
-            }
-
-            List<TabletHealthCheck> servlist = new ArrayList<>(list.size());
-            list.forEach(entry -> {
-                if (entry.getServing().get()) {
-                    servlist.add(entry);
-                }
-            });
-            return servlist;
-        } finally {
-            this.lock.unlock();
+        Map<String, HealthySnapshot[]> shardSnapshots = this.healthySnapshots.get(target.getKeyspace());
+        if (shardSnapshots == null) {
+            return null;
         }
+        HealthySnapshot[] typeSnapshots = shardSnapshots.get(target.getShard());
+        if (typeSnapshots == null) {
+            return null;
+        }
+        HealthySnapshot snapshot = typeSnapshots[target.getTabletType().ordinal()];
+        if (snapshot == null) {
+            return null;
+        }
+        if (target.getTabletType() == Topodata.TabletType.MASTER) {
+            return snapshot.tablets;
+        }
+        return snapshot.getServingTablets();
     }
 
     public Topodata.Tablet getHealthyTablets(final String keyspace, final Topodata.TabletType tabletType) {
-        this.lock.lock();
-        try {
-            for (List<TabletHealthCheck> tabletHealthCheckList : healthy.values()) {
-                if (tabletHealthCheckList == null || tabletHealthCheckList.isEmpty()) {
+        for (Map.Entry<String, Map<String, HealthySnapshot[]>> entry : this.healthySnapshots.entrySet()) {
+            if (!entry.getKey().equalsIgnoreCase(keyspace)) {
+                continue;
+            }
+            for (HealthySnapshot[] typeSnapshots : entry.getValue().values()) {
+                HealthySnapshot snapshot = typeSnapshots[tabletType.ordinal()];
+                if (snapshot == null) {
                     continue;
                 }
-                for (TabletHealthCheck tabletHealthCheck : tabletHealthCheckList) {
+                for (TabletHealthCheck tabletHealthCheck : snapshot.tablets) {
                     Topodata.Tablet tablet = tabletHealthCheck.getTablet();
                     if (tablet == null || !tablet.getKeyspace().equalsIgnoreCase(keyspace) || !tabletHealthCheck.getServing().get()) {
                         continue;
@@ -228,27 +246,20 @@ public enum HealthCheck {
                     return tablet;
                 }
             }
-            return null;
-        } finally {
-            this.lock.unlock();
         }
+        return null;
     }
 
     public List<Topodata.Tablet> getHealthyTablets(String keyspace) {
         List<Topodata.Tablet> tablets = new ArrayList<>();
-        this.lock.lock();
-        try {
-            for (Map.Entry<String, TabletHealthCheck> entry : healthByAlias.entrySet()) {
-                Topodata.Tablet tablet = entry.getValue().getTablet();
-                if (tablet == null || !tablet.getKeyspace().equalsIgnoreCase(keyspace) || !entry.getValue().getServing().get()) {
-                    continue;
-                }
-                tablets.add(tablet);
+        for (Map.Entry<String, TabletHealthCheck> entry : healthByAlias.entrySet()) {
+            Topodata.Tablet tablet = entry.getValue().getTablet();
+            if (tablet == null || !tablet.getKeyspace().equalsIgnoreCase(keyspace) || !entry.getValue().getServing().get()) {
+                continue;
             }
-            return tablets;
-        } finally {
-            this.lock.unlock();
+            tablets.add(tablet);
         }
+        return tablets;
     }
 
     public void addTablet(Topodata.Tablet tablet) {
@@ -299,6 +310,7 @@ public enum HealthCheck {
                     tablist.get(i).getServing().set(serving);
                 }
             }
+            this.publishHealthyLocked(key);
         } finally {
             this.lock.unlock();
         }
@@ -322,9 +334,56 @@ public enum HealthCheck {
         List<TabletHealthCheck> list = filterStatsByReplicationLag(new CopyOnWriteArrayList<>(targetHealthData.values()));
         if (list == null || list.isEmpty()) {
             this.healthy.remove(key);
+        } else {
+            this.healthy.put(key, list);
+        }
+        this.publishHealthyLocked(key);
+    }
+
+    /**
+     * replaces the snapshot of key with the current healthy list, must be called with the lock held
+     * after every change of healthy or of the serving state of a tablet in it.
+     *
+     * @param key keyspace.shard.tabletType
+     */
+    private void publishHealthyLocked(final String key) {
+        int keyspaceEnd = key.indexOf('.');
+        int shardEnd = key.lastIndexOf('.');
+        String keyspace = key.substring(0, keyspaceEnd);
+        String shard = key.substring(keyspaceEnd + 1, shardEnd);
+        Topodata.TabletType tabletType = TABLET_TYPE_BY_LSTRING.get(key.substring(shardEnd + 1));
+        if (tabletType == null) {
             return;
         }
-        this.healthy.put(key, list);
+        List<TabletHealthCheck> list = this.healthy.get(key);
+        HealthySnapshot snapshot = list == null || list.isEmpty() ? null : new HealthySnapshot(list);
+
+        Map<String, Map<String, HealthySnapshot[]>> snapshots = new HashMap<>(this.healthySnapshots);
+        Map<String, HealthySnapshot[]> shardSnapshots = new HashMap<>(snapshots.getOrDefault(keyspace, Collections.emptyMap()));
+        HealthySnapshot[] oldTypeSnapshots = shardSnapshots.get(shard);
+        HealthySnapshot[] typeSnapshots = oldTypeSnapshots == null ? new HealthySnapshot[Topodata.TabletType.values().length] : oldTypeSnapshots.clone();
+        typeSnapshots[tabletType.ordinal()] = snapshot;
+
+        if (Arrays.stream(typeSnapshots).allMatch(Objects::isNull)) {
+            shardSnapshots.remove(shard);
+        } else {
+            shardSnapshots.put(shard, typeSnapshots);
+        }
+        if (shardSnapshots.isEmpty()) {
+            snapshots.remove(keyspace);
+        } else {
+            snapshots.put(keyspace, shardSnapshots);
+        }
+        this.healthySnapshots = snapshots;
+    }
+
+    private void servingChanged(final TabletHealthCheck thc) {
+        this.lock.lock();
+        try {
+            this.publishHealthyLocked(keyFromTarget(thc.getTarget()));
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     public int tabletCounterIncAndGet() {
@@ -352,6 +411,7 @@ public enum HealthCheck {
             tabletCounterDecAndGet();
 
             this.healthByAlias.remove(tabletAlias);
+            RetryTabletQueryService.getTabletBalancer().onRemove(tablet);
             log.info("remove tablet: " + TopoProto.tabletToHumanString(tablet));
             Map<String, TabletHealthCheck> tabletHealthCheckMap = this.healthData.get(key);
             if (tabletHealthCheckMap == null) {
@@ -427,6 +487,7 @@ public enum HealthCheck {
                         }
                     }
                 }
+                this.publishHealthyLocked(targetKey);
             }
             if (!trivialUpdate) {
                 if (th.getTarget().getTabletType() != Topodata.TabletType.MASTER) {
@@ -491,6 +552,7 @@ public enum HealthCheck {
                 thc.getServing().set(false);
                 thc.getRetrying().set(true);
                 thc.getLastError().set("health check timed out latest " + thc.getLastResponseTimestamp());
+                servingChanged(thc);
                 thc.startHealthCheckStream();
                 return;
             }
@@ -508,6 +570,7 @@ public enum HealthCheck {
                 thc.getServing().set(false);
                 thc.getRetrying().set(true);
                 thc.getLastError().set("health check error :" + tabletStreamHealthDetailStatus.getMessage());
+                servingChanged(thc);
                 thc.startHealthCheckStream();
                 return;
             }
@@ -580,4 +643,44 @@ public enum HealthCheck {
             || tablet.getMysqlPort() == 0 || Objects.equals(Topodata.TabletAlias.getDefaultInstance(), tablet.getAlias())
             || tablet.getPortMapMap().get("grpc") == null || tablet.getPortMapMap().get("grpc") == 0;
     }
+
+    /**
+     * HealthySnapshot is the immutable healthy list of one target, with its serving tablets
+     * filtered when it is published.
+     */
+    private static final class HealthySnapshot {
+        private final List<TabletHealthCheck> tablets;
+
+        private final List<TabletHealthCheck> servingTablets;
+
+        HealthySnapshot(final List<TabletHealthCheck> list) {
+            this.tablets = Collections.unmodifiableList(new ArrayList<>(list));
+            this.servingTablets = filterServing(list);
+        }
+
+        /**
+         * a tablet may stop serving between two publications, e.g. when its health stream fails
+         * while it is retrying, then the list is filtered again until the next publication.
+         *
+         * @return
+         */
+        List<TabletHealthCheck> getServingTablets() {
+            for (int i = 0; i < servingTablets.size(); i++) {
+                if (!servingTablets.get(i).getServing().get()) {
+                    return filterServing(servingTablets);
+                }
+            }
+            return servingTablets;
+        }
+
+        private static List<TabletHealthCheck> filterServing(final List<TabletHealthCheck> list) {
+            List<TabletHealthCheck> servlist = new ArrayList<>(list.size());
+            for (TabletHealthCheck entry : list) {
+                if (entry.getServing().get()) {
+                    servlist.add(entry);
+                }
+            }
+            return Collections.unmodifiableList(servlist);
+        }
+    }
 }
@@ -25,9 +25,11 @@ import com.jd.jdbc.monitor.TopologyCollector;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import com.jd.jdbc.sqlparser.utils.StringUtils;
+import com.jd.jdbc.topo.Resource;
 import com.jd.jdbc.topo.TopoException;
 import com.jd.jdbc.topo.TopoExceptionCode;
 import com.jd.jdbc.topo.TopoServer;
+import com.jd.jdbc.topo.TopoTablet;
 import com.jd.jdbc.topo.topoproto.TopoProto;
 import com.jd.jdbc.util.threadpool.impl.VtHealthCheckExecutorService;
 import io.vitess.proto.Topodata;
@@ -47,10 +49,23 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
+/**
+ * TopologyWatcher keeps the tablets of a cell in the HealthCheck.
+ * <p>
+ * When the topo of the cell can watch, the tablets are read once and then updated from the
+ * watch events, and the watch is restarted from a new snapshot every consistency check interval
+ * or as soon as it breaks. Otherwise the tablets are polled every 30 seconds.
+ */
 public class TopologyWatcher {
 
     private static final Log log = LogFactory.getLog(TopologyWatcher.class);
 
+    private static final long POLL_INTERVAL_MILLIS = 30000;
+
+    private static final long RESYNC_DELAY_MILLIS = 1000;
+
+    static long consistencyCheckIntervalMillis = 300000;
+
     private final ReentrantLock lock = new ReentrantLock();
 
     private final TopoServer ts;
@@ -69,6 +84,32 @@ public class TopologyWatcher {
 
     private Map<String, Topodata.Tablet> currentTablets = new ConcurrentHashMap<>(16);
 
+    private boolean watchEnabled = true;
+
+    private volatile TabletWatcher tabletWatcher;
+
+    private long lastSnapshotNanos;
+
+    private volatile boolean closed;
+
+    private volatile IContext ctx;
+
+    static {
+        String sysProp = System.getProperty("vtdriver.topoConsistencyCheckInterval");
+        if (sysProp != null) {
+            try {
+                long parsedValue = Long.parseLong(sysProp);
+                if (parsedValue > 0) {
+                    consistencyCheckIntervalMillis = parsedValue;
+                } else {
+                    log.error("the value of the JVM option parameter vtdriver.topoConsistencyCheckInterval should be positive");
+                }
+            } catch (NumberFormatException e) {
+                log.error("the value of the JVM option parameter vtdriver.topoConsistencyCheckInterval is invalid");
+            }
+        }
+    }
+
     public TopologyWatcher(TopoServer ts, String cell, String tabletKeyspace) {
         this.ts = ts;
         this.hc = HealthCheck.INSTANCE;
@@ -87,6 +128,54 @@ public class TopologyWatcher {
         log.info("start topo watcher for cell: " + cell);
     }
 
+    void refresh(IContext ctx) {
+        if (watchEnabled) {
+            if (tabletWatcher != null && System.nanoTime() - lastSnapshotNanos < TimeUnit.MILLISECONDS.toNanos(consistencyCheckIntervalMillis)) {
+                return;
+            }
+            if (startTabletWatch(ctx)) {
+                return;
+            }
+        }
+        loadTablets(ctx);
+    }
+
+    /**
+     * Replaces the current tablet watch with a new one, the snapshot of the new watch is applied
+     * before this returns.
+     *
+     * @param ctx
+     * @return false if the tablets cannot be watched and have to be polled this time
+     */
+    private boolean startTabletWatch(IContext ctx) {
+        stopTabletWatch();
+        TabletWatcher watcher = new TabletWatcher();
+        this.tabletWatcher = watcher;
+        try {
+            watcher.watch = ts.watchTablets(ctx, cell, watcher);
+            TopologyCollector.getCounter().labels(cell).inc();
+            return true;
+        } catch (Throwable t) {
+            this.tabletWatcher = null;
+            if (t instanceof TopoException && TopoException.isErrType((TopoException) t, TopoExceptionCode.NO_IMPLEMENTATION)) {
+                log.info("topo of cell " + cell + " cannot watch tablets, poll them every " + POLL_INTERVAL_MILLIS + "ms");
+                watchEnabled = false;
+            } else {
+                TopologyCollector.getErrorCounter().labels(cell).inc();
+                log.error("failed to watch tablets of cell " + cell + ", cause: " + t.getMessage(), t);
+            }
+            return false;
+        }
+    }
+
+    private void stopTabletWatch() {
+        TabletWatcher watcher = this.tabletWatcher;
+        this.tabletWatcher = null;
+        if (watcher != null && watcher.watch != null) {
+            watcher.watch.close();
+        }
+    }
+
     private void loadTablets(IContext ctx) {
         try {
             Map<String, Topodata.Tablet> newTablets = getTopoTabletInfoMap(ctx);
@@ -210,12 +299,13 @@ public class TopologyWatcher {
     }
 
     public void start(final IContext ctx) {
+        this.ctx = ctx;
         timer.schedule(new TimerTask() {
             @Override
             public void run() {
-                loadTablets(ctx);
+                refresh(ctx);
             }
-        }, 0, 30000);
+        }, 0, POLL_INTERVAL_MILLIS);
     }
 
     public void watchKeyspace(IContext ctx, String tabletKeyspace) {
@@ -253,7 +343,9 @@ public class TopologyWatcher {
     }
 
     public void close() {
+        closed = true;
         timer.cancel();
+        stopTabletWatch();
         if (currentTablets == null) {
             return;
         }
@@ -277,6 +369,133 @@ public class TopologyWatcher {
         return sb.toString();
     }
 
+    /**
+     * TabletWatcher applies the events of one tablet watch, events of a replaced watch are dropped.
+     */
+    private class TabletWatcher implements TopoTablet.TabletWatchListener {
+        private volatile Resource watch;
+
+        @Override
+        public void onSnapshot(List<Topodata.Tablet> tablets) {
+            lock.lock();
+            try {
+                if (tabletWatcher != this) {
+                    return;
+                }
+                Map<String, Topodata.Tablet> newTablets = new HashMap<>(16);
+                Set<String> tabletAliasSet = new HashSet<>(tablets.size());
+                for (Topodata.Tablet tablet : tablets) {
+                    String tabletAlias = TopoProto.tabletAliasString(tablet.getAlias());
+                    tabletAliasSet.add(tabletAlias);
+                    if (StringUtils.isEmpty(tablet.getKeyspace())) {
+                        continue;
+                    }
+                    if (!ksSet.contains(tablet.getKeyspace())) {
+                        if (ignoreTopo.isIgnored(tabletAlias)) {
+                            ignoreTopo.expire(tabletAlias);
+                        }
+                        ignoreTopo.ignore(tablet.getKeyspace(), tablet);
+                        continue;
+                    }
+                    newTablets.put(tabletAlias, tablet);
+                }
+                for (String ignoreTabletAlias : ignoreTopo.getIgnoreTabletAlias()) {
+                    if (!tabletAliasSet.contains(ignoreTabletAlias) || newTablets.containsKey(ignoreTabletAlias)) {
+                        ignoreTopo.expire(ignoreTabletAlias);
+                    }
+                }
+                connectTablets(newTablets);
+                firstLoadTabletsFlag = false;
+                lastSnapshotNanos = System.nanoTime();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onPut(Topodata.Tablet tablet) {
+            lock.lock();
+            try {
+                if (tabletWatcher != this) {
+                    return;
+                }
+                TopologyCollector.getEventCounter().labels(cell, "put").inc();
+                String tabletAlias = TopoProto.tabletAliasString(tablet.getAlias());
+                if (ignoreTopo.isIgnored(tabletAlias)) {
+                    ignoreTopo.expire(tabletAlias);
+                }
+                if (StringUtils.isEmpty(tablet.getKeyspace()) || !ksSet.contains(tablet.getKeyspace())) {
+                    Topodata.Tablet oldTablet = currentTablets.remove(tabletAlias);
+                    if (oldTablet != null) {
+                        hc.removeTablet(oldTablet);
+                    }
+                    if (!StringUtils.isEmpty(tablet.getKeyspace())) {
+                        ignoreTopo.ignore(tablet.getKeyspace(), tablet);
+                    }
+                    return;
+                }
+                Topodata.Tablet oldTablet = currentTablets.put(tabletAlias, tablet);
+                if (oldTablet == null) {
+                    hc.addTablet(tablet);
+                } else if (!tabletToMapKey(oldTablet).equals(tabletToMapKey(tablet))) {
+                    hc.replaceTablet(oldTablet, tablet);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onDelete(String tabletAlias) {
+            lock.lock();
+            try {
+                if (tabletWatcher != this) {
+                    return;
+                }
+                TopologyCollector.getEventCounter().labels(cell, "delete").inc();
+                if (ignoreTopo.isIgnored(tabletAlias)) {
+                    ignoreTopo.expire(tabletAlias);
+                }
+                Topodata.Tablet oldTablet = currentTablets.remove(tabletAlias);
+                if (oldTablet != null) {
+                    hc.removeTablet(oldTablet);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            lock.lock();
+            try {
+                if (tabletWatcher != this || closed) {
+                    return;
+                }
+                tabletWatcher = null;
+            } finally {
+                lock.unlock();
+            }
+            TopologyCollector.getErrorCounter().labels(cell).inc();
+            log.error("tablet watch of cell " + cell + " is broken, resync in " + RESYNC_DELAY_MILLIS + "ms, cause: " + throwable.getMessage(), throwable);
+            if (watch != null) {
+                watch.close();
+            }
+            try {
+                timer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        if (tabletWatcher == null) {
+                            refresh(ctx);
+                        }
+                    }
+                }, RESYNC_DELAY_MILLIS);
+            } catch (IllegalStateException e) {
+                // closed
+            }
+        }
+    }
+
     public static class IgnoreTopo {
         /**
          * Note: this is the only way of creating thread-safe Set in Java.
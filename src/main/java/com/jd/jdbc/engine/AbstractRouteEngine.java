@@ -27,8 +27,12 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
 public abstract class AbstractRouteEngine implements PrimitiveEngine {
@@ -39,6 +43,12 @@ public abstract class AbstractRouteEngine implements PrimitiveEngine {
 
     protected SQLSelectQuery selectQuery;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile ShardQueryTemplate selectQueryTemplate;
+
     /**
      * TruncateColumnCount specifies the number of columns to return
      * in the final result. Rest of the columns are truncated
@@ -53,11 +63,31 @@ public abstract class AbstractRouteEngine implements PrimitiveEngine {
      */
     protected List<OrderByParams> orderBy = new ArrayList<>();
 
+    /**
+     * LimitMerge is set when a limit reads the rows of the route directly. Only then the merge of
+     * the shard rows stops at the LIMIT of the route, under an aggregate every shard row is needed.
+     */
+    protected boolean limitMerge;
+
     /**
      * Values specifies the vindex values to use for routing.
      */
     protected List<VtPlanValue> vtPlanValueList = new ArrayList<>();
 
+    /**
+     * the template is compiled on first use, after planning has finished rewriting selectQuery.
+     *
+     * @return
+     */
+    protected ShardQueryTemplate getSelectQueryTemplate() {
+        ShardQueryTemplate template = this.selectQueryTemplate;
+        if (template == null || !template.isCompiledFrom(this.selectQuery)) {
+            template = ShardQueryTemplate.compile(this.selectQuery);
+            this.selectQueryTemplate = template;
+        }
+        return template;
+    }
+
     @Override
     public String getKeyspaceName() {
         return this.keyspace.getName();
@@ -100,9 +100,9 @@ public class ConcatenateEngine implements PrimitiveEngine {
             this.compareFields(resultSet.getFields(), partResult.getFields());
 
             VtResultSet partResultSet = (VtResultSet) partResult;
-            if (partResultSet.getRows().size() > 0) {
-                resultSet.getRows().addAll(partResultSet.getRows());
-                if (resultSet.getRows().get(0).size() != partResultSet.getRows().get(0).size()) {
+            if (partResultSet.getResultSetSize() > 0) {
+                resultSet.appendRows(partResultSet);
+                if (resultSet.getRowColumnCount() != partResultSet.getRowColumnCount()) {
                     throw new SQLException("The used SELECT statements have a different number of columns");
                 }
                 resultSet.setRowsAffected(resultSet.getRowsAffected() + partResultSet.getRowsAffected());
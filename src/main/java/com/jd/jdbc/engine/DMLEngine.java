@@ -39,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import vschema.Vschema;
@@ -58,6 +59,10 @@ public abstract class DMLEngine {
     // Query specifies the query to be executed.
     protected SQLStatement query;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile ShardQueryTemplate queryTemplate;
+
     // Vindex specifies the vindex to be used.
     protected SingleColumn vindex;
 
@@ -81,6 +86,15 @@ public abstract class DMLEngine {
     // QueryTimeout contains the optional timeout (in milliseconds) to apply to this query
     protected int queryTimeout;
 
+    protected ShardQueryTemplate getQueryTemplate() {
+        ShardQueryTemplate template = this.queryTemplate;
+        if (template == null || !template.isCompiledFrom(this.query)) {
+            template = ShardQueryTemplate.compile(this.query);
+            this.queryTemplate = template;
+        }
+        return template;
+    }
+
     public IExecute.ExecuteMultiShardResponse execMultiShard(Vcursor vcursor, List<ResolvedShard> rss, List<BoundQuery> queries, Boolean multiShardAutocommit) throws SQLException {
         boolean autocommit = (rss.size() == 1 || multiShardAutocommit) && vcursor.autocommitApproval();
         return vcursor.executeMultiShard(rss, queries, true, autocommit).setUpdate();
@@ -137,21 +151,21 @@ public abstract class DMLEngine {
     protected IExecute.ResolvedShardQuery resolveShardQueryUnsharded(Vcursor vcursor, Map<String, BindVariable> bindValue, Map<String, String> switchTableMap) throws SQLException {
         List<ResolvedShard> rsList = getResolvedShardsUnsharded(vcursor);
         String charEncoding = vcursor.getCharEncoding();
-        List<BoundQuery> queries = Engine.getQueries(this.query, Lists.newArrayList(bindValue), switchTableMap, charEncoding);
+        List<BoundQuery> queries = Engine.getQueries(getQueryTemplate(), Lists.newArrayList(bindValue), switchTableMap, charEncoding);
         return new IExecute.ResolvedShardQuery(rsList, queries);
     }
 
     protected IExecute.ResolvedShardQuery resolveShardQueryEqual(Vcursor vcursor, Map<String, BindVariable> bindValue) throws SQLException {
         List<ResolvedShard> rsList = getResolvedShardsEqual(vcursor, bindValue);
         String charEncoding = vcursor.getCharEncoding();
-        List<BoundQuery> queries = Engine.getQueries(this.query, Lists.newArrayList(bindValue), charEncoding);
+        List<BoundQuery> queries = Engine.getQueries(getQueryTemplate(), Lists.newArrayList(bindValue), null, charEncoding);
         return new IExecute.ResolvedShardQuery(rsList, queries);
     }
 
     protected IExecute.ResolvedShardQuery resolveShardQueryEqual(Vcursor vcursor, Map<String, BindVariable> bindValue, Map<String, String> switchTables) throws SQLException {
         String charEncoding = vcursor.getCharEncoding();
         List<ResolvedShard> rsList = getResolvedShardsEqual(vcursor, bindValue);
-        List<BoundQuery> queries = Engine.getQueries(this.query, Lists.newArrayList(bindValue), switchTables, charEncoding);
+        List<BoundQuery> queries = Engine.getQueries(getQueryTemplate(), Lists.newArrayList(bindValue), switchTables, charEncoding);
         return new IExecute.ResolvedShardQuery(rsList, queries);
     }
 
@@ -159,7 +173,7 @@ public abstract class DMLEngine {
         String charEncoding = vcursor.getCharEncoding();
         List<ResolvedShard> rsList = getResolvedShardsIn(vcursor, bindValue);
         List<Map<String, BindVariable>> bindVariableMapList = IntStream.range(0, rsList.size()).mapToObj(i -> bindValue).collect(Collectors.toList());
-        List<BoundQuery> queries = Engine.getQueries(this.query, bindVariableMapList, switchTables, charEncoding);
+        List<BoundQuery> queries = Engine.getQueries(getQueryTemplate(), bindVariableMapList, switchTables, charEncoding);
         return new IExecute.ResolvedShardQuery(rsList, queries);
     }
 
@@ -168,7 +182,7 @@ public abstract class DMLEngine {
         String charEncoding = vcursor.getCharEncoding();
         List<ResolvedShard> rsList = getResolvedShardsByDestination(vcursor, destination);
         List<Map<String, BindVariable>> bindVariableMapList = IntStream.range(0, rsList.size()).mapToObj(i -> bindValue).collect(Collectors.toList());
-        List<BoundQuery> queries = Engine.getQueries(query, bindVariableMapList, switchTables, charEncoding);
+        List<BoundQuery> queries = Engine.getQueries(getQueryTemplate(), bindVariableMapList, switchTables, charEncoding);
         return new IExecute.ResolvedShardQuery(rsList, queries);
     }
 
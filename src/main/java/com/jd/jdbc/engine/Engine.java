@@ -161,6 +161,27 @@ public class Engine {
             autocommit);
     }
 
+    /**
+     * @param vcursor
+     * @param template
+     * @param bindVariableMap
+     * @param rs
+     * @param rollbackOnError
+     * @param canAutocommit
+     * @return
+     */
+    public static IExecute.ExecuteMultiShardResponse execShard(Vcursor vcursor, ShardQueryTemplate template, Map<String, BindVariable> bindVariableMap, ResolvedShard rs,
+                                                               boolean rollbackOnError, boolean canAutocommit) throws SQLException {
+        boolean autocommit = canAutocommit && vcursor.autocommitApproval();
+        String charEncoding = vcursor.getCharEncoding();
+        List<BoundQuery> queries = Lists.newArrayList(new BoundQuery(template.render(bindVariableMap, null, charEncoding)));
+        return vcursor.executeMultiShard(
+            Lists.newArrayList(rs),
+            queries,
+            rollbackOnError,
+            autocommit);
+    }
+
     /**
      * @param query
      * @param bindVariableMapList
@@ -216,6 +237,46 @@ public class Engine {
         return queries;
     }
 
+    /**
+     * @param template
+     * @param bindVariableMapList
+     * @param switchTables
+     * @param charEncoding
+     * @return
+     */
+    public static List<BoundQuery> getQueries(ShardQueryTemplate template, List<Map<String, BindVariable>> bindVariableMapList, Map<String, String> switchTables, String charEncoding)
+        throws SQLException {
+        List<BoundQuery> queries = new ArrayList<>(bindVariableMapList.size());
+        for (Map<String, BindVariable> bindVariableMap : bindVariableMapList) {
+            queries.add(new BoundQuery(template.render(bindVariableMap, switchTables, charEncoding)));
+        }
+        return queries;
+    }
+
+    public static List<BoundQuery> getQueriesGen4(ShardQueryTemplate template, List<Map<String, BindVariable>> bindVariableMapList, String charEncoding) throws SQLException {
+        List<BoundQuery> queries = new ArrayList<>(bindVariableMapList.size());
+        for (Map<String, BindVariable> bindVariableMap : bindVariableMapList) {
+            queries.add(new BoundQuery(template.render(bindVariableMap, null, charEncoding), bindVariableMap));
+        }
+        return queries;
+    }
+
+    /**
+     * @param template
+     * @param bindVariableMapList
+     * @param switchTables
+     * @param charEncoding
+     * @return queries to be executed as server-side prepared statements, see {@link ShardQueryTemplate#renderPrepared}
+     */
+    public static List<BoundQuery> getPreparedQueries(ShardQueryTemplate template, List<Map<String, BindVariable>> bindVariableMapList, Map<String, String> switchTables, String charEncoding)
+        throws SQLException {
+        List<BoundQuery> queries = new ArrayList<>(bindVariableMapList.size());
+        for (Map<String, BindVariable> bindVariableMap : bindVariableMapList) {
+            queries.add(template.renderPrepared(bindVariableMap, switchTables, charEncoding));
+        }
+        return queries;
+    }
+
     /**
      * @param bindVariableMap
      * @param mapVals
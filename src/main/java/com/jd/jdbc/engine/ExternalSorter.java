@@ -0,0 +1,409 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.monitor.SpillCollector;
+import com.jd.jdbc.sqlparser.support.logging.Log;
+import com.jd.jdbc.sqlparser.support.logging.LogFactory;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.vitess.VitessConnection;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExternalSorter sorts rows within a memory budget.
+ * <p>
+ * Rows are buffered until their estimated size exceeds the budget, then the buffer is sorted and
+ * written to a temp file as a sorted run in the {@link SpillRowCodec} format. Reading merges the
+ * runs and the rows still buffered with a {@link LoserTree}, keeping one read buffer per run in
+ * memory. Equal rows keep the order they were added in. Rows are never spilled if they fit the budget.
+ * <p>
+ * Runs are merged in levels: every {@link #MAX_MERGE_RUNS} runs of one level are merged into one run
+ * of the next level, so a row is rewritten once per level and a big run is not merged again with the
+ * small runs spilled after it.
+ * <p>
+ * Only the streaming memory sort spills. A non streaming query returns its whole result in memory,
+ * so its shard results, sorts and aggregations stay bounded by {@link VitessConnection#MAX_MEMORY_ROWS}.
+ * <p>
+ * The sorter is used by one thread and has to be closed, closing deletes its spill files.
+ */
+public final class ExternalSorter implements Closeable {
+
+    private static final Log log = LogFactory.getLog(ExternalSorter.class);
+
+    private static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * fan-in of a merge, a merge never keeps more than MAX_MERGE_RUNS read buffers.
+     */
+    private static final int MAX_MERGE_RUNS = 64;
+
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+
+    private static final long ROW_OVERHEAD_BYTES = 56;
+
+    private static final long VALUE_OVERHEAD_BYTES = 24;
+
+    private static long memoryBytes = DEFAULT_MEMORY_BYTES;
+
+    private static Path spillDirectory = null;
+
+    static {
+        String sysProp = System.getProperty("vtdriver.spillMemoryBytes");
+        if (sysProp != null) {
+            try {
+                memoryBytes = Long.parseLong(sysProp);
+            } catch (NumberFormatException e) {
+                log.error("the value of the JVM option parameter vtdriver.spillMemoryBytes is invalid");
+            }
+        }
+        sysProp = System.getProperty("vtdriver.spillDirectory");
+        if (sysProp != null) {
+            Path path = Paths.get(sysProp);
+            if (Files.isDirectory(path) && Files.isWritable(path)) {
+                spillDirectory = path;
+            } else {
+                log.error("the value of the JVM option parameter vtdriver.spillDirectory is not a writable directory");
+            }
+        }
+    }
+
+    private final RowComparator comparator;
+
+    private final String operator;
+
+    private final long memoryBudget;
+
+    private final List<Run> runs = new ArrayList<>();
+
+    private List<List<VtResultValue>> buffer = new ArrayList<>();
+
+    private long bufferBytes;
+
+    private int bufferIndex;
+
+    private boolean sorted;
+
+    private LoserTree merger;
+
+    private long mergeNanos;
+
+    private boolean closed;
+
+    /**
+     * @param orderBy
+     * @param operator label of the spill metrics
+     */
+    public ExternalSorter(final List<OrderByParams> orderBy, final String operator) {
+        this(orderBy, operator, memoryBytes);
+    }
+
+    /**
+     * @param orderBy
+     * @param operator     label of the spill metrics
+     * @param memoryBudget estimated bytes of rows kept in memory, 0 or less never spills
+     */
+    ExternalSorter(final List<OrderByParams> orderBy, final String operator, final long memoryBudget) {
+        this.comparator = new RowComparator(orderBy);
+        this.operator = operator;
+        this.memoryBudget = memoryBudget;
+    }
+
+    public void add(final List<VtResultValue> row) throws SQLException {
+        if (sorted) {
+            throw new SQLException("rows can not be added once the sorted rows are read");
+        }
+        buffer.add(row);
+        bufferBytes += estimateBytes(row);
+        if (memoryBudget > 0 && bufferBytes > memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * moves the next rows of the sorted sequence to rows.
+     *
+     * @param rows
+     * @param maxRows
+     * @return the number of rows moved, 0 once all rows are read
+     * @throws SQLException if rows are not comparable or a spill file could not be read
+     */
+    public int read(final List<List<VtResultValue>> rows, final int maxRows) throws SQLException {
+        if (closed) {
+            return 0;
+        }
+        if (!sorted) {
+            sortBuffer();
+            sorted = true;
+            if (!runs.isEmpty()) {
+                // leave a read buffer for the rows still buffered
+                while (runs.size() >= MAX_MERGE_RUNS) {
+                    mergeRuns(runs.size() - Math.min(MAX_MERGE_RUNS, runs.size() - MAX_MERGE_RUNS + 2));
+                }
+                long start = System.nanoTime();
+                for (Run run : runs) {
+                    run.open();
+                }
+                int runCount = runs.size();
+                merger = new LoserTree(comparator, runCount + 1, run -> run < runCount ? runs.get(run).next() : nextBufferRow());
+                mergeNanos += System.nanoTime() - start;
+            }
+        }
+        int count = 0;
+        if (merger == null) {
+            List<VtResultValue> row;
+            while (count < maxRows && (row = nextBufferRow()) != null) {
+                rows.add(row);
+                count++;
+            }
+            return count;
+        }
+        long start = System.nanoTime();
+        while (count < maxRows && merger.hasNext()) {
+            rows.add(merger.next());
+            count++;
+        }
+        mergeNanos += System.nanoTime() - start;
+        return count;
+    }
+
+    /**
+     * @return the number of sorted runs currently on disk
+     */
+    public int spilledRuns() {
+        return runs.size();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer = null;
+        merger = null;
+        for (Run run : runs) {
+            run.delete();
+        }
+        if (mergeNanos > 0) {
+            SpillCollector.getMergeHistogram().labels(operator).observe(mergeNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private List<VtResultValue> nextBufferRow() {
+        if (bufferIndex >= buffer.size()) {
+            return null;
+        }
+        List<VtResultValue> row = buffer.get(bufferIndex);
+        buffer.set(bufferIndex++, null);
+        return row;
+    }
+
+    private void spill() throws SQLException {
+        sortBuffer();
+        List<List<VtResultValue>> rows = buffer;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+        int[] index = {0};
+        runs.add(writeRun(() -> index[0] < rows.size() ? rows.set(index[0]++, null) : null, 0));
+        // the runs are ordered by level from the highest, so the runs of the last level are the last runs
+        int from;
+        while ((from = runs.size() - MAX_MERGE_RUNS) >= 0 && runs.get(from).level == runs.get(runs.size() - 1).level) {
+            mergeRuns(from);
+        }
+    }
+
+    /**
+     * merges the runs from index from to the end into one run of the next level. The merged runs are
+     * the latest ones, so the merged run keeps the order the rows were added in.
+     *
+     * @param from
+     * @throws SQLException
+     */
+    private void mergeRuns(final int from) throws SQLException {
+        long start = System.nanoTime();
+        List<Run> tail = runs.subList(from, runs.size());
+        List<Run> inputs = new ArrayList<>(tail);
+        tail.clear();
+        try {
+            for (Run run : inputs) {
+                run.open();
+            }
+            LoserTree tree = new LoserTree(comparator, inputs.size(), run -> inputs.get(run).next());
+            runs.add(writeRun(() -> tree.hasNext() ? tree.next() : null, inputs.get(0).level + 1));
+        } finally {
+            for (Run run : inputs) {
+                run.delete();
+            }
+        }
+        mergeNanos += System.nanoTime() - start;
+    }
+
+    private Run writeRun(final RowSupplier rows, final int level) throws SQLException {
+        Path path = null;
+        long rowCount = 0;
+        long bytes = 0;
+        try {
+            path = spillDirectory == null ? Files.createTempFile("vtdriver-spill-", ".run") : Files.createTempFile(spillDirectory, "vtdriver-spill-", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER_BYTES))) {
+                List<VtResultValue> row;
+                while ((row = rows.next()) != null) {
+                    bytes += SpillRowCodec.writeRow(out, row);
+                    rowCount++;
+                }
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            deleteQuietly(path);
+            if (e instanceof SQLException) {
+                throw (SQLException) e;
+            }
+            throw new SQLException("failed to write spill file: " + e.getMessage(), e);
+        }
+        SpillCollector.getSpillBytesCounter().labels(operator).inc(bytes);
+        SpillCollector.getSpillRunsCounter().labels(operator).inc();
+        return new Run(path, rowCount, level);
+    }
+
+    private void sortBuffer() throws SQLException {
+        SQLException[] exception = new SQLException[1];
+        try {
+            buffer.sort((r1, r2) -> {
+                if (exception[0] != null) {
+                    return 0;
+                }
+                try {
+                    return comparator.compare(r1, r2);
+                } catch (SQLException e) {
+                    exception[0] = e;
+                    return 0;
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            // the sort may detect the inconsistent results after a failed comparison
+            if (exception[0] == null) {
+                throw e;
+            }
+        }
+        if (exception[0] != null) {
+            throw exception[0];
+        }
+    }
+
+    static long estimateBytes(final List<VtResultValue> row) {
+        long bytes = ROW_OVERHEAD_BYTES + 8L * row.size();
+        for (VtResultValue value : row) {
+            bytes += VALUE_OVERHEAD_BYTES;
+            Object object = value.getValue();
+            if (object instanceof byte[]) {
+                bytes += 16 + ((byte[]) object).length;
+            } else if (object instanceof String) {
+                bytes += 40 + 2L * ((String) object).length();
+            } else if (object instanceof BigDecimal || object instanceof BigInteger) {
+                bytes += 64;
+            } else if (object != null) {
+                bytes += 16;
+            }
+        }
+        return bytes;
+    }
+
+    private static void deleteQuietly(final Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("failed to delete spill file " + path + ": " + e.getMessage());
+        }
+    }
+
+    private interface RowSupplier {
+        /**
+         * @return the next row, null at the end
+         * @throws SQLException
+         */
+        List<VtResultValue> next() throws SQLException;
+    }
+
+    private static final class Run {
+        private final Path path;
+
+        private final int level;
+
+        private long remaining;
+
+        private DataInputStream in;
+
+        Run(final Path path, final long rows, final int level) {
+            this.path = path;
+            this.remaining = rows;
+            this.level = level;
+        }
+
+        void open() throws SQLException {
+            try {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_BYTES));
+            } catch (IOException e) {
+                throw new SQLException("failed to read spill file: " + e.getMessage(), e);
+            }
+        }
+
+        List<VtResultValue> next() throws SQLException {
+            if (remaining == 0) {
+                closeInput();
+                return null;
+            }
+            remaining--;
+            try {
+                return SpillRowCodec.readRow(in);
+            } catch (IOException e) {
+                throw new SQLException("failed to read spill file: " + e.getMessage(), e);
+            }
+        }
+
+        void delete() {
+            closeInput();
+            deleteQuietly(path);
+        }
+
+        private void closeInput() {
+            if (in == null) {
+                return;
+            }
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.warn("failed to close spill file " + path + ": " + e.getMessage());
+            }
+            in = null;
+        }
+    }
+}
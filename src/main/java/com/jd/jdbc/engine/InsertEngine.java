@@ -52,6 +52,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
@@ -87,6 +88,10 @@ public class InsertEngine implements PrimitiveEngine {
 
     private MySqlInsertReplaceStatement insertReplaceStmt;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile ShardQueryTemplate insertReplaceTemplate;
+
     /**
      * VindexValues specifies values for all the vindex columns.
      * This is a three-dimensional data structure:
@@ -251,7 +256,7 @@ public class InsertEngine implements PrimitiveEngine {
         if (Engine.InsertOpcode.InsertUnsharded.equals(this.insertOpcode)) {
             List<ResolvedShard> rsList = getResolvedUnsharded(vcursor);
             Engine.allowOnlyMaster(rsList);
-            List<BoundQuery> queries = Engine.getQueries(this.insertReplaceStmt, Lists.newArrayList(bindValues), charEncoding);
+            List<BoundQuery> queries = Engine.getQueries(getInsertReplaceTemplate(), Lists.newArrayList(bindValues), null, charEncoding);
             return new IExecute.ResolvedShardQuery(rsList, queries);
         }
         if (Engine.InsertOpcode.InsertSharded.equals(this.insertOpcode) || Engine.InsertOpcode.InsertShardedIgnore.equals(this.insertOpcode)) {
@@ -263,7 +268,7 @@ public class InsertEngine implements PrimitiveEngine {
         }
         if (Engine.InsertOpcode.InsertByDestination.equals(this.insertOpcode)) {
             List<ResolvedShard> rsList = getResolvedDestinationShard(vcursor, this.targetDestination);
-            List<BoundQuery> queries = Engine.getQueries(this.insertReplaceStmt, Lists.newArrayList(bindValues), charEncoding);
+            List<BoundQuery> queries = Engine.getQueries(getInsertReplaceTemplate(), Lists.newArrayList(bindValues), null, charEncoding);
             return new IExecute.ResolvedShardQuery(rsList, queries);
         }
         throw new SQLException("unsupported query route: " + this.insertOpcode);
@@ -274,6 +279,15 @@ public class InsertEngine implements PrimitiveEngine {
         return true;
     }
 
+    private ShardQueryTemplate getInsertReplaceTemplate() {
+        ShardQueryTemplate template = this.insertReplaceTemplate;
+        if (template == null || !template.isCompiledFrom(this.insertReplaceStmt)) {
+            template = ShardQueryTemplate.compile(this.insertReplaceStmt);
+            this.insertReplaceTemplate = template;
+        }
+        return template;
+    }
+
     /**
      * @param vcursor
      * @param bindVariableMap
@@ -284,7 +298,7 @@ public class InsertEngine implements PrimitiveEngine {
         long insertId = Generate.processGenerate(vcursor, this.generate, bindVariableMap);
         List<ResolvedShard> rsList = getResolvedUnsharded(vcursor);
         Engine.allowOnlyMaster(rsList);
-        IExecute.ExecuteMultiShardResponse executeMultiShardResponse = Engine.execShard(vcursor, this.insertReplaceStmt, bindVariableMap, rsList.get(0), true, true).setUpdate();
+        IExecute.ExecuteMultiShardResponse executeMultiShardResponse = Engine.execShard(vcursor, getInsertReplaceTemplate(), bindVariableMap, rsList.get(0), true, true).setUpdate();
         VtResultSet vtResultSet = (VtResultSet) executeMultiShardResponse.getVtRowList();
 
         // If processGenerate generated new values, it supercedes
@@ -317,7 +331,7 @@ public class InsertEngine implements PrimitiveEngine {
     private IExecute.ExecuteMultiShardResponse execInsertByDestination(Vcursor vcursor, Map<String, BindVariable> bindVariableMap, Destination destination) throws SQLException {
         long insertId = Generate.processGenerate(vcursor, this.generate, bindVariableMap);
         List<ResolvedShard> rsList = getResolvedDestinationShard(vcursor, destination);
-        IExecute.ExecuteMultiShardResponse executeMultiShardResponse = Engine.execShard(vcursor, this.insertReplaceStmt, bindVariableMap, rsList.get(0), true, true).setUpdate();
+        IExecute.ExecuteMultiShardResponse executeMultiShardResponse = Engine.execShard(vcursor, getInsertReplaceTemplate(), bindVariableMap, rsList.get(0), true, true).setUpdate();
         VtResultSet vtResultSet = (VtResultSet) executeMultiShardResponse.getVtRowList();
 
         // If processGenerate generated new values, it supercedes
@@ -0,0 +1,138 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.google.protobuf.ByteString;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtType;
+import com.jd.jdbc.srvtopo.BindVariable;
+import io.vitess.proto.Query;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * JoinBatch is the batched form of a join's right side. Every join var is bound as a TUPLE of the
+ * values of a batch of left rows, and the right side returns the column each join var is compared
+ * with, so its rows can be matched back to the left rows they belong to.
+ * <p>
+ * Only integer join values are batched: an integer compares the same in an IN list whatever the
+ * type of the column it is compared with, and has a single text form to match the rows by.
+ */
+@Getter
+@AllArgsConstructor
+public class JoinBatch {
+    /**
+     * Right is the RHS primitive with every join var compared by IN instead of =.
+     */
+    private final PrimitiveEngine right;
+
+    /**
+     * Vars are the join vars bound as tuples, column keyOffset + i of a right row holds the value
+     * vars[i] is compared with.
+     */
+    private final List<String> vars;
+
+    private final int keyOffset;
+
+    /**
+     * @param leftRows
+     * @param leftOffsets join var name to its offset in a left row
+     * @return the distinct non-null values of every join var as a TUPLE, empty if every left row has a null join value,
+     * null if a join value is not an integer
+     */
+    public Map<String, BindVariable> bindVariables(List<List<VtResultValue>> leftRows, Map<String, Integer> leftOffsets) {
+        List<Map<String, Query.Value>> distinctValues = new ArrayList<>(this.vars.size());
+        for (int i = 0; i < this.vars.size(); i++) {
+            distinctValues.add(new LinkedHashMap<>());
+        }
+        boolean anyKey = false;
+        for (List<VtResultValue> leftRow : leftRows) {
+            boolean hasNull = false;
+            for (int i = 0; i < this.vars.size(); i++) {
+                VtResultValue value = leftRow.get(leftOffsets.get(this.vars.get(i)));
+                if (value.isNull()) {
+                    hasNull = true;
+                    continue;
+                }
+                if (!VtType.isIntegral(value.getVtType())) {
+                    return null;
+                }
+                String text = value.toString();
+                if (!distinctValues.get(i).containsKey(text)) {
+                    Query.Type type = VtType.isUnsigned(value.getVtType()) ? Query.Type.UINT64 : Query.Type.INT64;
+                    distinctValues.get(i).put(text, Query.Value.newBuilder().setType(type).setValue(ByteString.copyFromUtf8(text)).build());
+                }
+            }
+            anyKey |= !hasNull;
+        }
+        Map<String, BindVariable> bindVariableMap = new LinkedHashMap<>();
+        if (!anyKey) {
+            return bindVariableMap;
+        }
+        for (int i = 0; i < this.vars.size(); i++) {
+            bindVariableMap.put(this.vars.get(i), new BindVariable(new ArrayList<>(distinctValues.get(i).values()), Query.Type.TUPLE));
+        }
+        return bindVariableMap;
+    }
+
+    /**
+     * @param rightRows
+     * @param rightRowsByKey filled with the right rows by their join values, rows with a null join value match nothing
+     * @return false if a join value of a right row is not an integer, and the rows can not be matched by text
+     */
+    public boolean groupByKey(List<List<VtResultValue>> rightRows, Map<List<String>, List<List<VtResultValue>>> rightRowsByKey) {
+        for (List<VtResultValue> rightRow : rightRows) {
+            List<String> key = new ArrayList<>(this.vars.size());
+            for (int i = 0; i < this.vars.size(); i++) {
+                VtResultValue value = rightRow.get(this.keyOffset + i);
+                if (value.isNull()) {
+                    key = null;
+                    break;
+                }
+                if (!VtType.isIntegral(value.getVtType())) {
+                    return false;
+                }
+                key.add(value.toString());
+            }
+            if (key != null) {
+                rightRowsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(rightRow);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param leftRow
+     * @param leftOffsets join var name to its offset in a left row
+     * @return the join values of leftRow, null if one of them is null
+     */
+    public List<String> leftKey(List<VtResultValue> leftRow, Map<String, Integer> leftOffsets) {
+        List<String> key = new ArrayList<>(this.vars.size());
+        for (String var : this.vars) {
+            VtResultValue value = leftRow.get(leftOffsets.get(var));
+            if (value.isNull()) {
+                return null;
+            }
+            key.add(value.toString());
+        }
+        return key;
+    }
+}
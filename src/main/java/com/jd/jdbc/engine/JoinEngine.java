@@ -68,6 +68,12 @@ public class JoinEngine implements PrimitiveEngine {
      */
     private Map<String, Integer> vars;
 
+    /**
+     * Batch is the batched form of Right, set by the planner when Right can be batched.
+     * It is used by execute when the connection sets a join batch size, streamExecute still executes Right once per left row.
+     */
+    private JoinBatch batch;
+
     public JoinEngine(Engine.JoinOpcode opcode, Map<String, Integer> vars) {
         this.opcode = opcode;
         this.vars = vars;
@@ -111,36 +117,21 @@ public class JoinEngine implements PrimitiveEngine {
         }
 
         if (leftResult.getRows() != null) {
-            for (List<VtResultValue> leftRow : leftResult.getRows()) {
-                for (Map.Entry<String, Integer> entry : this.vars.entrySet()) {
-                    joinVars.put(entry.getKey(), SqlTypes.valueBindVariable(leftRow.get(entry.getValue())));
-                }
-
-                IExecute.ExecuteMultiShardResponse rightResultResponse = this.right.execute(ctx, vcursor, combineVars(bindVariableMap, joinVars), wantFields);
-
-                VtRowList rightRowList = rightResultResponse.getVtRowList();
-                if (rightRowList == null) {
-                    throw new SQLException("VtRowList is null");
-                }
-
-                VtResultSet rightResult = (VtResultSet) rightRowList;
-
-                if (wantFields) {
-                    wantFields = false;
-                    resultSet.setFields(joinFields(leftResult.getFields(), rightResult.getFields(), this.cols));
-                }
-
-                for (List<VtResultValue> rightRow : rightResult.getRows()) {
-                    resultSet.getRows().add(joinRows(leftRow, rightRow, this.cols));
-                }
-                if (this.opcode == Engine.JoinOpcode.LeftJoin && CollectionUtils.isEmpty(rightResult.getRows())) {
-                    resultSet.getRows().add(joinRows(leftRow, null, this.cols));
-                }
-                if (vcursor.exceedsMaxMemoryRows(resultSet.getRows().size())) {
-                    throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
-                }
+            int batchSize = this.batch == null ? 0 : vcursor.getJoinBatchSize();
+            if (batchSize > 1) {
+                wantFields = this.executeBatches(ctx, vcursor, bindVariableMap, leftResult, resultSet, batchSize, wantFields);
+            } else {
+                wantFields = this.executeRows(ctx, vcursor, bindVariableMap, leftResult.getFields(), leftResult.getRows(), resultSet, wantFields);
             }
         }
+        if (wantFields) {
+            // every batch matched nothing without executing the right side
+            for (Map.Entry<String, Integer> entry : this.vars.entrySet()) {
+                joinVars.put(entry.getKey(), BindVariable.NULL_BIND_VARIABLE);
+            }
+            VtResultSet rightResult = this.right.getFields(vcursor, combineVars(bindVariableMap, joinVars));
+            resultSet.setFields(joinFields(leftResult.getFields(), rightResult.getFields(), this.cols));
+        }
         return new IExecute.ExecuteMultiShardResponse(resultSet);
     }
 
@@ -249,6 +240,102 @@ public class JoinEngine implements PrimitiveEngine {
         }};
     }
 
+    /**
+     * executeRows executes the right side once per left row.
+     *
+     * @return wantFields, false once the fields of the result are set
+     */
+    private boolean executeRows(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, Query.Field[] leftFields, List<List<VtResultValue>> leftRows,
+                                VtResultSet resultSet, boolean wantFields) throws SQLException {
+        Map<String, BindVariable> joinVars = new LinkedHashMap<>();
+        for (List<VtResultValue> leftRow : leftRows) {
+            for (Map.Entry<String, Integer> entry : this.vars.entrySet()) {
+                joinVars.put(entry.getKey(), SqlTypes.valueBindVariable(leftRow.get(entry.getValue())));
+            }
+
+            IExecute.ExecuteMultiShardResponse rightResultResponse = this.right.execute(ctx, vcursor, combineVars(bindVariableMap, joinVars), wantFields);
+
+            VtRowList rightRowList = rightResultResponse.getVtRowList();
+            if (rightRowList == null) {
+                throw new SQLException("VtRowList is null");
+            }
+
+            VtResultSet rightResult = (VtResultSet) rightRowList;
+
+            if (wantFields) {
+                wantFields = false;
+                resultSet.setFields(joinFields(leftFields, rightResult.getFields(), this.cols));
+            }
+
+            for (List<VtResultValue> rightRow : rightResult.getRows()) {
+                resultSet.getRows().add(joinRows(leftRow, rightRow, this.cols));
+            }
+            if (this.opcode == Engine.JoinOpcode.LeftJoin && CollectionUtils.isEmpty(rightResult.getRows())) {
+                resultSet.getRows().add(joinRows(leftRow, null, this.cols));
+            }
+            if (vcursor.exceedsMaxMemoryRows(resultSet.getRows().size())) {
+                throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
+            }
+        }
+        return wantFields;
+    }
+
+    /**
+     * executeBatches executes the batched right side once per batchSize left rows, and matches the
+     * right rows back to the left rows by their join values. A batch falls back to executeRows when
+     * its join values are not integers, because only integers compare the same in an IN list on any
+     * column type as they do in the hash probe.
+     *
+     * @return wantFields, false once the fields of the result are set
+     */
+    private boolean executeBatches(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, VtResultSet leftResult, VtResultSet resultSet,
+                                   int batchSize, boolean wantFields) throws SQLException {
+        List<List<VtResultValue>> leftRows = leftResult.getRows();
+        for (int from = 0; from < leftRows.size(); from += batchSize) {
+            List<List<VtResultValue>> leftBatch = leftRows.subList(from, Math.min(from + batchSize, leftRows.size()));
+            Map<String, BindVariable> joinVars = this.batch.bindVariables(leftBatch, this.vars);
+            if (joinVars == null) {
+                wantFields = this.executeRows(ctx, vcursor, bindVariableMap, leftResult.getFields(), leftBatch, resultSet, wantFields);
+                continue;
+            }
+
+            Map<List<String>, List<List<VtResultValue>>> rightRowsByKey = new HashMap<>();
+            // no join var is bound if every left row has a null join value, nothing can match them
+            if (!joinVars.isEmpty()) {
+                IExecute.ExecuteMultiShardResponse rightResultResponse = this.batch.getRight().execute(ctx, vcursor, combineVars(bindVariableMap, joinVars), wantFields);
+                VtRowList rightRowList = rightResultResponse.getVtRowList();
+                if (rightRowList == null) {
+                    throw new SQLException("VtRowList is null");
+                }
+                VtResultSet rightResult = (VtResultSet) rightRowList;
+                if (!this.batch.groupByKey(rightResult.getRows(), rightRowsByKey)) {
+                    wantFields = this.executeRows(ctx, vcursor, bindVariableMap, leftResult.getFields(), leftBatch, resultSet, wantFields);
+                    continue;
+                }
+                if (wantFields) {
+                    wantFields = false;
+                    resultSet.setFields(joinFields(leftResult.getFields(), rightResult.getFields(), this.cols));
+                }
+            }
+
+            for (List<VtResultValue> leftRow : leftBatch) {
+                List<String> key = this.batch.leftKey(leftRow, this.vars);
+                List<List<VtResultValue>> rightRows = key == null ? null : rightRowsByKey.get(key);
+                if (rightRows != null) {
+                    for (List<VtResultValue> rightRow : rightRows) {
+                        resultSet.getRows().add(joinRows(leftRow, rightRow, this.cols));
+                    }
+                } else if (this.opcode == Engine.JoinOpcode.LeftJoin) {
+                    resultSet.getRows().add(joinRows(leftRow, null, this.cols));
+                }
+                if (vcursor.exceedsMaxMemoryRows(resultSet.getRows().size())) {
+                    throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
+                }
+            }
+        }
+        return wantFields;
+    }
+
     private Map<String, BindVariable> combineVars(Map<String, BindVariable> bindVariableMap1, Map<String, BindVariable> bindVariableMap2) {
         Map<String, BindVariable> newBindVar = new HashMap<>(16, 1);
         if (bindVariableMap1 == null) {
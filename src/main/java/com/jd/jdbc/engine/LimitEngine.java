@@ -127,15 +127,15 @@ public class LimitEngine implements PrimitiveEngine {
 
     private IExecute.ExecuteMultiShardResponse getExecuteMultiShardResponse(VtResultSet result, Integer count, Integer offset) {
         // There are more rows in the response than limit + offset
-        if (count + offset <= result.getRows().size()) {
-            result.setRows(result.getRows().subList(offset, count + offset));
+        if (count + offset <= result.getResultSetSize()) {
+            result.sliceRows(offset, count + offset);
             result.setRowsAffected(count);
             return new IExecute.ExecuteMultiShardResponse(result);
         }
         // Remove extra rows from response
-        if (offset <= result.getRows().size()) {
-            result.setRows(result.getRows().subList(offset, result.getRows().size()));
-            result.setRowsAffected(result.getRows().size());
+        if (offset <= result.getResultSetSize()) {
+            result.sliceRows(offset, result.getResultSetSize());
+            result.setRowsAffected(result.getResultSetSize());
             return new IExecute.ExecuteMultiShardResponse(result);
         }
         // offset is beyond the result set
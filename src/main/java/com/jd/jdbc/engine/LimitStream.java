@@ -60,7 +60,7 @@ public class LimitStream implements IExecute.VtStream {
 
         while (offset < queryOffset) {
             VtResultSet fetched = internalFetch(wantFields);
-            long fetchedRows = fetched.getRowsAffected();
+            long fetchedRows = fetched.getRows().size();
 
             //no result
             if (fetchedRows == 0) {
@@ -96,12 +96,13 @@ public class LimitStream implements IExecute.VtStream {
             vtResultSet.appendResult(tmp);
             count += tmp.getRowsAffected();
             offset = queryOffset;
+            closeIfLimitReached();
 
             return vtResultSet;
         }
 
         VtResultSet fetched = internalFetch(wantFields);
-        long fetchedRows = fetched.getRowsAffected();
+        long fetchedRows = fetched.getRows().size();
 
         //no result
         if (fetchedRows == 0) {
@@ -128,9 +129,22 @@ public class LimitStream implements IExecute.VtStream {
         vtResultSet.appendResult(tmp);
 
         count += tmp.getRowsAffected();
+        closeIfLimitReached();
         return vtResultSet;
     }
 
+    /**
+     * no other row of the input can be returned once the limit is reached, so the input is closed
+     * right away instead of when the caller closes the result set.
+     *
+     * @throws SQLException
+     */
+    private void closeIfLimitReached() throws SQLException {
+        if (count >= queryCount) {
+            close();
+        }
+    }
+
     @Override
     public void close() throws SQLException {
         if (stream != null) {
@@ -0,0 +1,128 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.sqltypes.VtResultValue;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * LoserTree merges k sorted runs of rows into one sorted sequence.
+ * <p>
+ * Every internal node keeps the run that lost the match played there and tree[0] keeps the
+ * overall winner, so replacing the winner by the next row of its run replays only the matches
+ * on the path from its leaf to the root: log2(k) comparisons per row, where a binary heap needs
+ * up to two per level. Equal rows are returned in run order, so merging runs that are each in
+ * order gives the same result as a stable sort of the runs appended in run order.
+ */
+public final class LoserTree {
+
+    private final RowComparator comparator;
+
+    private final RowSource source;
+
+    private final int k;
+
+    /**
+     * the current row of every run, null once the run is exhausted.
+     */
+    private final List<VtResultValue>[] heads;
+
+    /**
+     * tree[0] is the winner, tree[1..k-1] are the losers of the internal nodes, the leaf of run i is node k + i.
+     */
+    private final int[] tree;
+
+    @SuppressWarnings("unchecked")
+    public LoserTree(final RowComparator comparator, final int k, final RowSource source) throws SQLException {
+        this.comparator = comparator;
+        this.source = source;
+        this.k = k;
+        this.heads = new List[k];
+        this.tree = new int[Math.max(k, 1)];
+        for (int i = 0; i < k; i++) {
+            heads[i] = source.nextRow(i);
+            tree[i] = -1;
+        }
+        if (k == 0) {
+            tree[0] = -1;
+        }
+        for (int i = k - 1; i >= 0; i--) {
+            adjust(i);
+        }
+    }
+
+    public boolean hasNext() {
+        return tree[0] >= 0 && heads[tree[0]] != null;
+    }
+
+    /**
+     * @return the smallest row of all runs, the caller checks {@link #hasNext()} first
+     * @throws SQLException if the next row of the run could not be read or rows are not comparable
+     */
+    public List<VtResultValue> next() throws SQLException {
+        int winner = tree[0];
+        List<VtResultValue> row = heads[winner];
+        heads[winner] = source.nextRow(winner);
+        adjust(winner);
+        return row;
+    }
+
+    /**
+     * replays the matches from the leaf of run to the root, -1 marks a node no run has reached
+     * yet while the tree is built and wins against every run.
+     *
+     * @param run
+     * @throws SQLException
+     */
+    private void adjust(int run) throws SQLException {
+        for (int node = (run + k) >> 1; node > 0; node >>= 1) {
+            int other = tree[node];
+            if (other == -1 || (run != -1 && beats(other, run))) {
+                tree[node] = run;
+                run = other;
+            }
+        }
+        tree[0] = run;
+    }
+
+    private boolean beats(final int a, final int b) throws SQLException {
+        List<VtResultValue> rowA = heads[a];
+        List<VtResultValue> rowB = heads[b];
+        if (rowA == null) {
+            return false;
+        }
+        if (rowB == null) {
+            return true;
+        }
+        int cmp = comparator.compare(rowA, rowB);
+        if (cmp != 0) {
+            return cmp < 0;
+        }
+        return a < b;
+    }
+
+    public interface RowSource {
+        /**
+         * @param run
+         * @return the next row of run, null if the run is exhausted
+         * @throws SQLException
+         */
+        List<VtResultValue> nextRow(int run) throws SQLException;
+    }
+}
@@ -24,6 +24,7 @@ import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
 import com.jd.jdbc.sqltypes.VtRowList;
+import com.jd.jdbc.vitess.VitessConnection;
 import io.vitess.proto.Query;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -31,7 +32,14 @@ import java.util.Comparator;
 import java.util.List;
 import lombok.Getter;
 
+/**
+ * MemorySortStream sorts all rows of its input. A limit up to {@link VitessConnection#MAX_MEMORY_ROWS}
+ * keeps the top rows in a bounded heap, larger or no limits sort with an {@link ExternalSorter}
+ * that spills to disk over its memory budget and return the sorted rows in batches.
+ */
 public class MemorySortStream implements IExecute.VtStream {
+    private static final String OPERATOR = "MemorySort";
+
     private IExecute.VtStream stream = null;
 
     private int truncate = 0;
@@ -46,6 +54,10 @@ public class MemorySortStream implements IExecute.VtStream {
 
     private List<List<VtResultValue>> sortedRows = null;
 
+    private ExternalSorter sorter = null;
+
+    private int returnedRows = 0;
+
     public MemorySortStream(IExecute.VtStream stream, List<OrderByParams> orderBy, int truncate, int expectCount) {
         this.stream = stream;
         this.orderBy = orderBy;
@@ -92,6 +104,9 @@ public class MemorySortStream implements IExecute.VtStream {
             // fake stream
             return vtResultSet;
         }
+        if (expectCount > VitessConnection.MAX_MEMORY_ROWS) {
+            return fetchExternalSorted(wantFields);
+        }
 
         fetchAndSort(wantFields);
 
@@ -104,8 +119,44 @@ public class MemorySortStream implements IExecute.VtStream {
         return vtResultSet.truncate(truncate);
     }
 
+    private VtRowList fetchExternalSorted(boolean wantFields) throws SQLException {
+        if (sorter == null) {
+            sorter = new ExternalSorter(orderBy, OPERATOR);
+            while (true) {
+                VtResultSet fetched = (VtResultSet) stream.fetch(wantFields);
+                if (fields == null) {
+                    fields = fetched.getFields();
+                }
+                if (!fetched.hasNext()) {
+                    break;
+                }
+                while (fetched.hasNext()) {
+                    sorter.add(fetched.next());
+                }
+            }
+        }
+
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        if (returnedRows < expectCount) {
+            returnedRows += sorter.read(rows, Math.min(StreamShardReader.FETCH_ROWS, expectCount - returnedRows));
+        }
+        if (rows.isEmpty()) {
+            sorter.close();
+        }
+        VtResultSet vtResultSet = new VtResultSet();
+        if (wantFields) {
+            vtResultSet.setFields(fields);
+        }
+        vtResultSet.setRows(rows);
+        vtResultSet.setRowsAffected(rows.size());
+        return vtResultSet.truncate(truncate);
+    }
+
     @Override
     public void close() throws SQLException {
+        if (sorter != null) {
+            sorter.close();
+        }
         if (stream != null) {
             stream.close();
             stream = null;
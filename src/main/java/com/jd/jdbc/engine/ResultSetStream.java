@@ -0,0 +1,59 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.IExecute;
+import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
+import io.vitess.proto.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ResultSetStream streams a result that is already in memory, at most {@link StreamShardReader#FETCH_ROWS}
+ * rows per fetch. Streams of engines that see their whole input before they return the first row,
+ * e.g. a hash aggregation, return their result through it.
+ */
+public class ResultSetStream implements IExecute.VtStream {
+    private final Query.Field[] fields;
+
+    private List<List<VtResultValue>> rows;
+
+    private int position = 0;
+
+    public ResultSetStream(VtResultSet resultSet) {
+        this.fields = resultSet.getFields();
+        this.rows = resultSet.getRows() == null ? Collections.emptyList() : resultSet.getRows();
+    }
+
+    @Override
+    public VtRowList fetch(boolean wantFields) {
+        int end = Math.min(position + StreamShardReader.FETCH_ROWS, rows.size());
+        VtResultSet vtResultSet = new VtResultSet(wantFields || end > position ? fields : null, new ArrayList<>(rows.subList(position, end)));
+        vtResultSet.setRowsAffected(end - position);
+        position = end;
+        return vtResultSet;
+    }
+
+    @Override
+    public void close() {
+        rows = Collections.emptyList();
+        position = 0;
+    }
+}
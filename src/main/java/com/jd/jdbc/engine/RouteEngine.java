@@ -27,10 +27,14 @@ import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.key.DestinationAllShard;
 import com.jd.jdbc.key.DestinationAnyShard;
 import com.jd.jdbc.queryservice.StreamIterator;
+import com.jd.jdbc.sqlparser.SqlParser;
+import com.jd.jdbc.sqlparser.ast.SQLLimit;
 import com.jd.jdbc.sqlparser.ast.statement.SQLSelectQuery;
 import com.jd.jdbc.sqlparser.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
 import com.jd.jdbc.sqltypes.SqlTypes;
+import com.jd.jdbc.sqltypes.VtPlanValue;
 import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
 import com.jd.jdbc.sqltypes.VtValue;
 import com.jd.jdbc.srvtopo.BindVariable;
 import com.jd.jdbc.srvtopo.BoundQuery;
@@ -41,6 +45,7 @@ import com.jd.jdbc.vindexes.VKeyspace;
 import io.netty.util.internal.StringUtil;
 import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
+import java.math.BigInteger;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
@@ -145,7 +150,7 @@ public class RouteEngine extends AbstractRouteEngine {
             return getFieldResolvedShardQuery(vcursor);
         }
         String charEncoding = vcursor.getCharEncoding();
-        List<BoundQuery> queries = Engine.getQueries(this.selectQuery, paramsResponse.getShardVarList(), charEncoding);
+        List<BoundQuery> queries = Engine.getQueries(getSelectQueryTemplate(), paramsResponse.getShardVarList(), null, charEncoding);
         return new IExecute.ResolvedShardQuery(paramsResponse.getResolvedShardList(), queries);
     }
 
@@ -156,7 +161,7 @@ public class RouteEngine extends AbstractRouteEngine {
             return getFieldResolvedShardQuery(vcursor);
         }
         String charEncoding = vcursor.getCharEncoding();
-        List<BoundQuery> queries = Engine.getQueries(this.selectQuery, paramsResponse.getShardVarList(), switchTableMap, charEncoding);
+        List<BoundQuery> queries = Engine.getQueries(getSelectQueryTemplate(), paramsResponse.getShardVarList(), switchTableMap, charEncoding);
         return new IExecute.ResolvedShardQuery(paramsResponse.getResolvedShardList(), queries);
     }
 
@@ -210,6 +215,30 @@ public class RouteEngine extends AbstractRouteEngine {
         return false;
     }
 
+    /**
+     * @param routeOpcode
+     * @param vtPlanValueList routing values for routeOpcode
+     * @param selectQuery     rewritten query, it must return the same rows as this route's query for the same routing values
+     * @return a copy of this route that executes selectQuery, its result is not truncated
+     */
+    public RouteEngine withSelectQuery(Engine.RouteOpcode routeOpcode, List<VtPlanValue> vtPlanValueList, SQLSelectQuery selectQuery) {
+        RouteEngine route = new RouteEngine(routeOpcode, this.keyspace, this.isQueryPinnedTable, this.pinned);
+        route.targetDestination = this.targetDestination;
+        route.targetTabletType = this.targetTabletType;
+        route.query = this.query;
+        route.fieldQuery = this.fieldQuery;
+        route.selectFieldQuery = this.selectFieldQuery;
+        route.vindex = this.vindex;
+        route.queryTimeout = this.queryTimeout;
+        route.scatterErrorsAsWarnings = this.scatterErrorsAsWarnings;
+        route.sysTableKeyspaceExpr = this.sysTableKeyspaceExpr;
+        route.tableName = this.tableName;
+        route.selectQuery = selectQuery;
+        route.orderBy.addAll(this.orderBy);
+        route.vtPlanValueList = vtPlanValueList;
+        return route;
+    }
+
     private IExecute.ResolvedShardQuery getFieldResolvedShardQuery(Vcursor vcursor) throws SQLException {
         Resolver.ResolveDestinationResult resolveDestinationResult = vcursor.resolveDestinations(this.keyspace.getName(), null, Collections.singletonList(new DestinationAnyShard()));
         if (resolveDestinationResult == null
@@ -232,7 +261,7 @@ public class RouteEngine extends AbstractRouteEngine {
             }
             return new VtResultSet();
         }
-        List<BoundQuery> queries = Engine.getQueries(this.selectQuery, paramsResponse.getShardVarList(), charEncoding);
+        List<BoundQuery> queries = getQueries(vcursor, paramsResponse.getShardVarList(), charEncoding);
         ExecuteMultiShardResponse executeMultiShardResponse = vcursor.executeMultiShard(paramsResponse.getResolvedShardList(), queries, false, false);
 
         VtResultSet vtResultSet = (VtResultSet) executeMultiShardResponse.getVtRowList();
@@ -240,7 +269,10 @@ public class RouteEngine extends AbstractRouteEngine {
         if (this.orderBy == null || this.orderBy.isEmpty()) {
             return vtResultSet;
         }
-        return this.sort(vtResultSet);
+        if (executeMultiShardResponse.getShardResults() == null) {
+            return this.sort(vtResultSet);
+        }
+        return this.merge(vtResultSet, executeMultiShardResponse.getShardResults(), this.limitRowCount(bindVariableMap));
     }
 
     /**
@@ -268,7 +300,7 @@ public class RouteEngine extends AbstractRouteEngine {
             queries = shardQuery.getQueries();
             shards = shardQuery.getRss();
         } else {
-            queries = Engine.getQueries(this.selectQuery, paramsResponse.getShardVarList(), charEncoding);
+            queries = getQueries(vcursor, paramsResponse.getShardVarList(), charEncoding);
             shards = paramsResponse.getResolvedShardList();
         }
 
@@ -276,6 +308,13 @@ public class RouteEngine extends AbstractRouteEngine {
         return new RouteStream(iteratorList, orderBy, truncateColumnCount, this, vcursor, bindVariableMap);
     }
 
+    private List<BoundQuery> getQueries(Vcursor vcursor, List<Map<String, BindVariable>> shardVarList, String charEncoding) throws SQLException {
+        if (vcursor.getServerPrepareStatement()) {
+            return Engine.getPreparedQueries(getSelectQueryTemplate(), shardVarList, null, charEncoding);
+        }
+        return Engine.getQueries(getSelectQueryTemplate(), shardVarList, null, charEncoding);
+    }
+
     /**
      * @param vcursor
      * @param bindVariableMap
@@ -420,6 +459,79 @@ public class RouteEngine extends AbstractRouteEngine {
         return new ParamsResponse(rss, Engine.shardVars(bindVariableMap, values));
     }
 
+    /**
+     * maxRows caps the rows the route query may return to the caller, e.g. the :__upper_limit
+     * pushed down by a LimitEngine. Only a row count without offset caps the merged result,
+     * every shard applies an offset on its own rows.
+     *
+     * @param bindVariableMap
+     * @return
+     */
+    int limitRowCount(Map<String, BindVariable> bindVariableMap) {
+        if (!this.limitMerge) {
+            return Integer.MAX_VALUE;
+        }
+        return limitRowCount(this.selectQuery, bindVariableMap);
+    }
+
+    /**
+     * @param selectQuery     the query sent to every shard
+     * @param bindVariableMap
+     * @return the rows the merged result of selectQuery may be capped to, Integer.MAX_VALUE if it is not capped
+     */
+    public static int limitRowCount(SQLSelectQuery selectQuery, Map<String, BindVariable> bindVariableMap) {
+        if (!(selectQuery instanceof MySqlSelectQueryBlock)) {
+            return Integer.MAX_VALUE;
+        }
+        SQLLimit limit = ((MySqlSelectQueryBlock) selectQuery).getLimit();
+        if (limit == null || limit.getRowCount() == null || limit.getOffset() != null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            VtPlanValue rowCount = SqlParser.newPlanValue(limit.getRowCount());
+            BigInteger count = EvalEngine.toUint64(rowCount.resolveValue(bindVariableMap));
+            return count.bitLength() > 31 ? Integer.MAX_VALUE : count.intValue();
+        } catch (SQLException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * merges the shard results, each in the order of the pushed down ORDER BY, with a loser tree
+     * instead of sorting their concatenation, and stops after maxRows rows.
+     *
+     * @param in           the shard results appended in shard order
+     * @param shardResults
+     * @param maxRows
+     * @return
+     * @throws SQLException
+     */
+    private VtResultSet merge(VtResultSet in, VtResultSet[] shardResults, int maxRows) throws SQLException {
+        VtResultSet out = new VtResultSet();
+        out.setFields(in.getFields());
+        out.setRowsAffected(in.getRowsAffected());
+        out.setInsertID(in.getInsertID());
+
+        int[] positions = new int[shardResults.length];
+        LoserTree loserTree = new LoserTree(new RowComparator(this.orderBy), shardResults.length, run -> {
+            VtResultSet shardResult = shardResults[run];
+            if (shardResult == null || shardResult.getRows() == null || positions[run] >= shardResult.getRows().size()) {
+                return null;
+            }
+            return shardResult.getRows().get(positions[run]++);
+        });
+        int total = in.getRows().size();
+        List<List<VtResultValue>> rows = new ArrayList<>(Math.min(total, maxRows));
+        while (rows.size() < maxRows && loserTree.hasNext()) {
+            rows.add(loserTree.next());
+        }
+        out.setRows(rows);
+        if (rows.size() < total) {
+            out.setRowsAffected(rows.size());
+        }
+        return out;
+    }
+
     /**
      * @param in
      * @return
@@ -19,31 +19,25 @@ limitations under the License.
 package com.jd.jdbc.engine;
 
 import com.jd.jdbc.IExecute;
-import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.queryservice.StreamIterator;
-import com.jd.jdbc.queryservice.VtIterator;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
 import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.BindVariable;
 import io.vitess.proto.Query;
 import java.sql.SQLException;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 
 public class RouteStream implements IExecute.VtStream {
-    private final List<StreamIterator> iterators;
+    private final StreamShardReader reader;
 
     private final List<OrderByParams> orderBy;
 
-    private final StreamRowComparator comparator;
-
-    private final RouteEngine routeEngine;
+    /**
+     * the route whose query is streamed, it fetches the fields when no shard returned them.
+     */
+    private final PrimitiveEngine routeEngine;
 
     private final Map<String, BindVariable> bindVariableMap;
 
@@ -53,40 +47,62 @@ public class RouteStream implements IExecute.VtStream {
 
     private Query.Field[] fields = null;
 
+    /**
+     * the route query returns at most maxRows rows, the streams of the shards are closed as soon as they are returned.
+     */
+    private final int maxRows;
+
+    private int returnedRows = 0;
+
+    private boolean readerClosed = false;
+
     //for sort fetch
-    private int nextFetchShardIndex = -1;
+    private LoserTree loserTree = null;
 
-    private PriorityQueue<RowWithShard> sortedValues = null;
+    public RouteStream(List<StreamIterator> iterators, List<OrderByParams> orderBy, int truncate, RouteEngine routeEngine, Vcursor vcursor, Map<String, BindVariable> bindVariableMap)
+        throws SQLException {
+        this(iterators, orderBy, truncate, routeEngine, vcursor, bindVariableMap, routeEngine.limitRowCount(bindVariableMap));
+    }
 
-    public RouteStream(List<StreamIterator> iterators, List<OrderByParams> orderBy, int truncate, RouteEngine routeEngine, Vcursor vcursor, Map<String, BindVariable> bindVariableMap) {
-        this.iterators = iterators;
+    /**
+     * @param iterators       the streams of the shards, null if the route has no shard to query
+     * @param orderBy         the order of the rows of every shard, the streams are merged in this order
+     * @param truncate
+     * @param routeEngine
+     * @param vcursor
+     * @param bindVariableMap
+     * @param maxRows         the rows the merged streams are capped to
+     * @throws SQLException
+     */
+    public RouteStream(List<StreamIterator> iterators, List<OrderByParams> orderBy, int truncate, PrimitiveEngine routeEngine, Vcursor vcursor,
+                       Map<String, BindVariable> bindVariableMap, int maxRows) throws SQLException {
+        this.reader = iterators == null ? null : new StreamShardReader(iterators, vcursor.getStreamPrefetchRows());
         this.orderBy = orderBy;
-        this.comparator = new StreamRowComparator(orderBy);
         this.truncate = truncate;
         this.routeEngine = routeEngine;
         this.vcursor = vcursor;
         this.bindVariableMap = bindVariableMap;
+        this.maxRows = maxRows;
     }
 
     @Override
     public VtRowList fetch(boolean wantFields) throws SQLException {
         VtResultSet vtResultSet = new VtResultSet();
-        if (iterators == null) {
+        if (reader == null) {
             return vtResultSet;
         }
 
         if (this.orderBy == null || this.orderBy.isEmpty()) {
-            for (VtIterator<VtResultSet> it : iterators) {
-                if (it.hasNext()) {
-                    VtResultSet next = it.next();
-                    vtResultSet.appendResult(next);
-                    if (fields == null) {
-                        fields = vtResultSet.getFields();
-                    }
-                }
+            int count = readerClosed || returnedRows >= maxRows ? 0 : reader.read(vtResultSet.getRows(), Math.min(StreamShardReader.FETCH_ROWS, maxRows - returnedRows));
+            if (fields == null) {
+                fields = reader.getFields();
             }
-
-            vtResultSet.setRowsAffected(vtResultSet.getRows() == null ? 0 : vtResultSet.getRows().size());
+            if (count > 0) {
+                vtResultSet.setFields(fields);
+            }
+            vtResultSet.setRowsAffected(count);
+            returnedRows += count;
+            closeReaderIfLimitReached();
 
             if (wantFields && vtResultSet.getFields() == null) {
                 vtResultSet.appendResult(this.routeEngine.getFields(vcursor, bindVariableMap));
@@ -100,46 +116,31 @@ public class RouteStream implements IExecute.VtStream {
 
     @Override
     public void close() throws SQLException {
-        if (iterators == null || iterators.isEmpty()) {
+        if (reader == null || readerClosed) {
             return;
         }
-        for (VtIterator<VtResultSet> it : iterators) {
-            StreamIterator streamIterator = (StreamIterator) it;
-            streamIterator.close();
+        readerClosed = true;
+        reader.close();
+    }
+
+    /**
+     * once the limit is reached no other row of the shards can be returned, so their streams are released
+     * right away instead of when the caller closes the result set.
+     *
+     * @throws SQLException
+     */
+    private void closeReaderIfLimitReached() throws SQLException {
+        if (returnedRows >= maxRows && !readerClosed) {
+            close();
         }
-        iterators.clear();
     }
 
-    //rewrite if necessary. Time complexity = O(logN), N: shard count;
+    //Time complexity = O(logN) per row, N: shard count;
     private VtRowList fetchOrdered(boolean wantFields) throws SQLException {
         //first fetch
-        if (nextFetchShardIndex == -1) {
-            sortedValues = new PriorityQueue<>(comparator);
-            VtIterator<VtResultSet> it;
-            for (int idx = 0; idx < iterators.size(); idx++) {
-                it = iterators.get(idx);
-                if (it.hasNext()) {
-                    VtResultSet tmpResultSet = it.next();
-                    if (fields == null) {
-                        fields = tmpResultSet.getFields();
-                    }
-                    while (tmpResultSet.hasNext()) {
-                        sortedValues.offer(new RowWithShard(idx, tmpResultSet.next()));
-                    }
-                }
-            }
-        } else {
-            VtIterator<VtResultSet> it = iterators.get(nextFetchShardIndex);
-            if (it.hasNext()) {
-                VtResultSet tmpResultSet = it.next();
-                while (tmpResultSet.hasNext()) {
-                    sortedValues.offer(new RowWithShard(nextFetchShardIndex, tmpResultSet.next()));
-                }
-            }
-        }
-
-        if (comparator.getException() != null) {
-            throw comparator.getException();
+        if (loserTree == null) {
+            loserTree = new LoserTree(new RowComparator(orderBy), reader.getShardCount(), reader::nextRow);
+            fields = reader.getFields();
         }
 
         VtResultSet vtResultSet = new VtResultSet();
@@ -150,63 +151,15 @@ public class RouteStream implements IExecute.VtStream {
             vtResultSet.setFields(fields);
         }
 
-        if (sortedValues.isEmpty()) {
-            return vtResultSet;
+        List<List<VtResultValue>> rows = vtResultSet.getRows();
+        closeReaderIfLimitReached();
+        while (!readerClosed && returnedRows < maxRows && rows.size() < StreamShardReader.FETCH_ROWS && loserTree.hasNext()) {
+            rows.add(loserTree.next());
+            returnedRows++;
+            closeReaderIfLimitReached();
         }
-
-        RowWithShard poll = sortedValues.poll();
-        vtResultSet.setRows(Arrays.asList(poll.getRow()));
-        vtResultSet.setRowsAffected(vtResultSet.getRows() == null ? 0 : vtResultSet.getRows().size());
-        nextFetchShardIndex = poll.getShardIndex();
+        vtResultSet.setRowsAffected(rows.size());
 
         return vtResultSet.truncate(this.truncate);
     }
-
-    @AllArgsConstructor
-    @Getter
-    public class RowWithShard {
-        private final int shardIndex;
-
-        private final List<VtResultValue> row;
-    }
-
-    class StreamRowComparator implements Comparator<RowWithShard> {
-        @Getter
-        private SQLException exception;
-
-        private List<OrderByParams> orderBy = null;
-
-        public StreamRowComparator(List<OrderByParams> orderBy) {
-            this.orderBy = orderBy;
-        }
-
-        @Override
-        public int compare(RowWithShard o1, RowWithShard o2) {
-            // If there are any errors below, the function sets
-            // the external err and returns true. Once err is set,
-            // all subsequent calls return true. This will make
-            // Slice think that all elements are in the correct
-            // order and return more quickly.
-            for (OrderByParams order : orderBy) {
-                if (exception != null) {
-                    return -1;
-                }
-                Integer cmp;
-                try {
-                    cmp = EvalEngine.nullSafeCompare(o1.getRow().get(order.col), o2.getRow().get(order.col));
-                } catch (SQLException e) {
-                    this.exception = e;
-                    return -1;
-                }
-                if (cmp == 0) {
-                    continue;
-                }
-                if (order.desc) {
-                    cmp = -cmp;
-                }
-                return cmp;
-            }
-            return 0;
-        }
-    }
 }
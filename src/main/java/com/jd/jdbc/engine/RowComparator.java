@@ -0,0 +1,179 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.evalengine.EvalEngine;
+import com.jd.jdbc.key.Bytes;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import io.vitess.proto.Query;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * RowComparator compares rows by the ORDER BY columns with the same result as
+ * {@link EvalEngine#nullSafeCompare}, without boxing the result or dispatching on the value classes
+ * for every comparison.
+ * <p>
+ * Every column gets a comparator for its type on the first comparison of two non null values,
+ * later comparisons of values of the expected classes take the fast path, anything else falls
+ * back to {@link EvalEngine#nullSafeCompare}. A comparator is used by one thread at a time.
+ * <p>
+ * Text is compared by {@link String#compareTo}, not by the collation of the column. The shards sort
+ * a case insensitive column by its collation, so for values that differ only in case the shard
+ * rows are not in the order of this comparator and the merged order of those rows is not defined.
+ */
+public final class RowComparator {
+
+    private static final ColumnComparator GENERIC = EvalEngine::nullSafeCompare;
+
+    private static final ColumnComparator INTEGRAL = (v1, v2) -> {
+        Object o1 = v1.getValue();
+        Object o2 = v2.getValue();
+        if ((o1 instanceof Long || o1 instanceof Integer) && (o2 instanceof Long || o2 instanceof Integer)) {
+            return Long.compare(((Number) o1).longValue(), ((Number) o2).longValue());
+        }
+        return EvalEngine.nullSafeCompare(v1, v2);
+    };
+
+    private static final ColumnComparator STRING = (v1, v2) -> {
+        Object o1 = v1.getValue();
+        Object o2 = v2.getValue();
+        if (o1 instanceof String && o2 instanceof String) {
+            return ((String) o1).compareTo((String) o2);
+        }
+        return EvalEngine.nullSafeCompare(v1, v2);
+    };
+
+    private static final ColumnComparator DECIMAL = (v1, v2) -> {
+        Object o1 = v1.getValue();
+        Object o2 = v2.getValue();
+        if (o1 instanceof BigDecimal && o2 instanceof BigDecimal) {
+            return ((BigDecimal) o1).compareTo((BigDecimal) o2);
+        }
+        return EvalEngine.nullSafeCompare(v1, v2);
+    };
+
+    private final int[] cols;
+
+    private final boolean[] desc;
+
+    private final ColumnComparator[] comparators;
+
+    public RowComparator(final List<OrderByParams> orderBy) {
+        int size = orderBy.size();
+        this.cols = new int[size];
+        this.desc = new boolean[size];
+        this.comparators = new ColumnComparator[size];
+        for (int i = 0; i < size; i++) {
+            OrderByParams order = orderBy.get(i);
+            this.cols[i] = order.getCol();
+            this.desc[i] = order.getDesc();
+        }
+    }
+
+    /**
+     * @param r1
+     * @param r2
+     * @return a negative integer, zero, or a positive integer as r1 sorts before, together with, or after r2
+     * @throws SQLException if the values of an ORDER BY column are not comparable
+     */
+    public int compare(final List<VtResultValue> r1, final List<VtResultValue> r2) throws SQLException {
+        for (int i = 0; i < cols.length; i++) {
+            VtResultValue v1 = r1.get(cols[i]);
+            VtResultValue v2 = r2.get(cols[i]);
+            int cmp;
+            if (v1.isNull()) {
+                cmp = v2.isNull() ? 0 : -1;
+            } else if (v2.isNull()) {
+                cmp = 1;
+            } else {
+                ColumnComparator comparator = comparators[i];
+                if (comparator == null) {
+                    comparator = forType(v1.getVtType());
+                    comparators[i] = comparator;
+                }
+                cmp = comparator.compare(v1, v2);
+            }
+            if (cmp != 0) {
+                return desc[i] ? -cmp : cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static ColumnComparator forType(final Query.Type type) {
+        switch (type) {
+            case INT8:
+            case UINT8:
+            case INT16:
+            case UINT16:
+            case INT24:
+            case UINT24:
+            case INT32:
+            case UINT32:
+            case INT64:
+                return INTEGRAL;
+            case CHAR:
+            case VARCHAR:
+            case TEXT:
+                return STRING;
+            case DECIMAL:
+                return DECIMAL;
+            case BLOB:
+            case VARBINARY:
+            case BINARY:
+            case TIMESTAMP:
+            case DATE:
+            case TIME:
+            case DATETIME:
+            case YEAR:
+                return bytes(type);
+            default:
+                return GENERIC;
+        }
+    }
+
+    /**
+     * byte arrays are compared by bytes only for the types {@link EvalEngine#nullSafeCompare} compares by bytes,
+     * the values are checked to have the type of the column.
+     *
+     * @param type
+     * @return
+     */
+    private static ColumnComparator bytes(final Query.Type type) {
+        return (v1, v2) -> {
+            Object o1 = v1.getValue();
+            Object o2 = v2.getValue();
+            if (o1 instanceof byte[] && o2 instanceof byte[] && v1.getVtType() == type && v2.getVtType() == type) {
+                return Bytes.compare((byte[]) o1, (byte[]) o2);
+            }
+            return EvalEngine.nullSafeCompare(v1, v2);
+        };
+    }
+
+    private interface ColumnComparator {
+        /**
+         * @param v1 not null
+         * @param v2 not null
+         * @return
+         * @throws SQLException
+         */
+        int compare(VtResultValue v1, VtResultValue v2) throws SQLException;
+    }
+}
@@ -22,7 +22,6 @@ import com.jd.jdbc.IExecute;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.queryservice.StreamIterator;
-import com.jd.jdbc.queryservice.VtIterator;
 import com.jd.jdbc.queryservice.util.RoleUtils;
 import com.jd.jdbc.sqlparser.ast.SQLStatement;
 import com.jd.jdbc.sqltypes.SqlTypes;
@@ -178,7 +177,7 @@ public class SendEngine implements PrimitiveEngine {
 
     class SendStream implements IExecute.VtStream {
 
-        private final List<StreamIterator> iterators;
+        private final StreamShardReader reader;
 
         private final SendEngine sendEngine;
 
@@ -188,8 +187,8 @@ public class SendEngine implements PrimitiveEngine {
 
         private Query.Field[] fields = null;
 
-        public SendStream(List<StreamIterator> iterators, SendEngine sendEngine, Vcursor vcursor, Map<String, BindVariable> bindVariableMap) {
-            this.iterators = iterators;
+        public SendStream(List<StreamIterator> iterators, SendEngine sendEngine, Vcursor vcursor, Map<String, BindVariable> bindVariableMap) throws SQLException {
+            this.reader = iterators == null ? null : new StreamShardReader(iterators, vcursor.getStreamPrefetchRows());
             this.sendEngine = sendEngine;
             this.vcursor = vcursor;
             this.bindVariableMap = bindVariableMap;
@@ -198,19 +197,17 @@ public class SendEngine implements PrimitiveEngine {
         @Override
         public VtRowList fetch(boolean wantFields) throws SQLException {
             VtResultSet vtResultSet = new VtResultSet();
-            if (iterators == null) {
+            if (reader == null) {
                 return vtResultSet;
             }
-            for (VtIterator<VtResultSet> it : iterators) {
-                if (it.hasNext()) {
-                    VtResultSet next = it.next();
-                    vtResultSet.appendResult(next);
-                    if (fields == null) {
-                        fields = vtResultSet.getFields();
-                    }
-                }
+            int count = reader.read(vtResultSet.getRows(), StreamShardReader.FETCH_ROWS);
+            if (fields == null) {
+                fields = reader.getFields();
             }
-            vtResultSet.setRowsAffected(vtResultSet.getRows() == null ? 0 : vtResultSet.getRows().size());
+            if (count > 0) {
+                vtResultSet.setFields(fields);
+            }
+            vtResultSet.setRowsAffected(count);
 
             if (wantFields && vtResultSet.getFields() == null) {
                 vtResultSet.appendResult(this.sendEngine.getFields(vcursor, bindVariableMap));
@@ -221,13 +218,10 @@ public class SendEngine implements PrimitiveEngine {
 
         @Override
         public void close() throws SQLException {
-            if (iterators == null || iterators.isEmpty()) {
+            if (reader == null) {
                 return;
             }
-            for (StreamIterator streamIterator : iterators) {
-                streamIterator.close();
-            }
-            iterators.clear();
+            reader.close();
         }
     }
 }
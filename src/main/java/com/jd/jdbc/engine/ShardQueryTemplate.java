@@ -0,0 +1,280 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.sqlparser.ast.SQLObject;
+import com.jd.jdbc.sqlparser.ast.expr.SQLVariantRefExpr;
+import com.jd.jdbc.sqlparser.ast.statement.SQLExprTableSource;
+import com.jd.jdbc.sqlparser.dialect.mysql.visitor.VtRestoreVisitor;
+import com.jd.jdbc.sqlparser.utils.StringUtils;
+import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.srvtopo.BoundQuery;
+import com.jd.jdbc.srvtopo.PositionalBindVariables;
+import io.vitess.proto.Query;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ShardQueryTemplate is the compiled form of a routed query: the constant sql text between
+ * bind variables and switchable table names, and the slots that fill them.
+ * <p>
+ * A template is compiled once per plan and rendered once per shard, so the AST is no longer
+ * walked for every shard of every execution. Each slot is rendered by the same code as
+ * {@link VtRestoreVisitor}, so the rendered sql is identical to restoring the whole AST.
+ * <p>
+ * {@link #renderPrepared} renders bind variables as '?' instead, so every execution of the
+ * template sends the same sql text and the tablet can reuse its prepared statement.
+ */
+public final class ShardQueryTemplate {
+
+    private static final int SLOT_LENGTH_HINT = 16;
+
+    private final SQLObject query;
+
+    /**
+     * fragments[i] is the text before slots[i], the last fragment is the text after all slots.
+     */
+    private final String[] fragments;
+
+    private final Slot[] slots;
+
+    private final int textLength;
+
+    private ShardQueryTemplate(final SQLObject query, final String[] fragments, final Slot[] slots) {
+        this.query = query;
+        this.fragments = fragments;
+        this.slots = slots;
+        int length = 0;
+        for (String fragment : fragments) {
+            length += fragment.length();
+        }
+        this.textLength = length;
+    }
+
+    /**
+     * @param query
+     * @return
+     */
+    public static ShardQueryTemplate compile(final SQLObject query) {
+        CompileVisitor compileVisitor = new CompileVisitor();
+        query.accept(compileVisitor);
+        compileVisitor.flush();
+        return new ShardQueryTemplate(query, compileVisitor.fragments.toArray(new String[0]), compileVisitor.slots.toArray(new Slot[0]));
+    }
+
+    /**
+     * @param query
+     * @return true if this template was compiled from query, engines recompile when their query is replaced
+     */
+    public boolean isCompiledFrom(final SQLObject query) {
+        return this.query == query;
+    }
+
+    /**
+     * @param bindVariableMap
+     * @param switchTables    logic table name (lower case) to physical table name, may be null
+     * @param charEncoding
+     * @return
+     * @throws SQLException
+     */
+    public String render(final Map<String, BindVariable> bindVariableMap, final Map<String, String> switchTables, final String charEncoding) throws SQLException {
+        if (slots.length == 0) {
+            return fragments[0];
+        }
+        StringBuilder output = new StringBuilder(textLength + slots.length * SLOT_LENGTH_HINT);
+        VtRestoreVisitor vtRestoreVisitor = new VtRestoreVisitor(output, bindVariableMap, switchTables, charEncoding);
+        for (int i = 0; i < slots.length; i++) {
+            output.append(fragments[i]);
+            slots[i].render(vtRestoreVisitor, output, switchTables);
+        }
+        output.append(fragments[slots.length]);
+        if (vtRestoreVisitor.getException() != null) {
+            throw vtRestoreVisitor.getException();
+        }
+        return output.toString();
+    }
+
+    /**
+     * @param bindVariableMap
+     * @param switchTables    logic table name (lower case) to physical table name, may be null
+     * @param charEncoding
+     * @return the query with bind variables rendered as '?' and their values as {@link PositionalBindVariables}
+     * @throws SQLException
+     */
+    public BoundQuery renderPrepared(final Map<String, BindVariable> bindVariableMap, final Map<String, String> switchTables, final String charEncoding) throws SQLException {
+        PositionalBindVariables parameters = new PositionalBindVariables(charEncoding);
+        StringBuilder output = new StringBuilder(textLength + slots.length * 2);
+        VtRestoreVisitor vtRestoreVisitor = new VtRestoreVisitor(output, bindVariableMap, switchTables, charEncoding);
+        for (int i = 0; i < slots.length; i++) {
+            output.append(fragments[i]);
+            slots[i].renderPrepared(vtRestoreVisitor, output, switchTables, bindVariableMap, parameters);
+        }
+        output.append(fragments[slots.length]);
+        if (vtRestoreVisitor.getException() != null) {
+            throw vtRestoreVisitor.getException();
+        }
+        return new BoundQuery(output.toString(), parameters);
+    }
+
+    private interface Slot {
+        void render(VtRestoreVisitor vtRestoreVisitor, StringBuilder output, Map<String, String> switchTables);
+
+        default void renderPrepared(VtRestoreVisitor vtRestoreVisitor, StringBuilder output, Map<String, String> switchTables, Map<String, BindVariable> bindVariableMap,
+                                    PositionalBindVariables parameters) throws SQLException {
+            render(vtRestoreVisitor, output, switchTables);
+        }
+    }
+
+    private static final class BindVariableSlot implements Slot {
+        private final SQLVariantRefExpr expr;
+
+        BindVariableSlot(final SQLVariantRefExpr expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public void render(final VtRestoreVisitor vtRestoreVisitor, final StringBuilder output, final Map<String, String> switchTables) {
+            vtRestoreVisitor.visit(expr);
+        }
+
+        @Override
+        public void renderPrepared(final VtRestoreVisitor vtRestoreVisitor, final StringBuilder output, final Map<String, String> switchTables,
+                                   final Map<String, BindVariable> bindVariableMap, final PositionalBindVariables parameters) throws SQLException {
+            String name = StringUtils.replaceEach(expr.getName(), new String[] {":"}, new String[] {""});
+            BindVariable bindVariable = bindVariableMap.get(name);
+            if (bindVariable == null) {
+                bindVariable = bindVariableMap.get(String.valueOf(expr.getIndex()));
+            }
+            if (bindVariable == null) {
+                throw new SQLException("missing bind var " + name);
+            }
+            if (!Query.Type.TUPLE.equals(bindVariable.getType())) {
+                output.append('?');
+                parameters.add(bindVariable);
+                return;
+            }
+            List<Query.Value> valuesList = bindVariable.getValuesList();
+            for (int i = 0; i < valuesList.size(); i++) {
+                if (i > 0) {
+                    output.append(',');
+                }
+                output.append('?');
+                Query.Value value = valuesList.get(i);
+                parameters.add(new BindVariable(value.getValue().toByteArray(), value.getType()));
+            }
+        }
+    }
+
+    private static final class OwnerNameSlot implements Slot {
+        private final String ownerName;
+
+        OwnerNameSlot(final String ownerName) {
+            this.ownerName = ownerName;
+        }
+
+        @Override
+        public void render(final VtRestoreVisitor vtRestoreVisitor, final StringBuilder output, final Map<String, String> switchTables) {
+            output.append(VtRestoreVisitor.switchOwnerName(switchTables, ownerName));
+        }
+    }
+
+    private static final class TableSourceSlot implements Slot {
+        private final SQLExprTableSource tableSource;
+
+        private final String tableNameLower;
+
+        /**
+         * text of the table source when it is not switched, null if it has to be restored every time.
+         */
+        private final String text;
+
+        TableSourceSlot(final SQLExprTableSource tableSource, final String text) {
+            this.tableSource = tableSource;
+            this.tableNameLower = tableSource.getName().getSimpleName().toLowerCase();
+            this.text = text;
+        }
+
+        @Override
+        public void render(final VtRestoreVisitor vtRestoreVisitor, final StringBuilder output, final Map<String, String> switchTables) {
+            if (text != null && (switchTables == null || !switchTables.containsKey(tableNameLower))) {
+                output.append(text);
+            } else {
+                vtRestoreVisitor.visit(tableSource);
+            }
+        }
+    }
+
+    private static final class CompileVisitor extends VtRestoreVisitor {
+        private final StringBuilder output;
+
+        private final List<String> fragments = new ArrayList<>();
+
+        private final List<Slot> slots = new ArrayList<>();
+
+        CompileVisitor() {
+            this(new StringBuilder());
+        }
+
+        private CompileVisitor(final StringBuilder output) {
+            super(output, null, (String) null);
+            this.output = output;
+        }
+
+        @Override
+        public boolean visit(final SQLVariantRefExpr x) {
+            addSlot(new BindVariableSlot(x));
+            return false;
+        }
+
+        @Override
+        protected void printOwnerName(final String ownerName) {
+            addSlot(new OwnerNameSlot(ownerName));
+        }
+
+        @Override
+        public boolean visit(final SQLExprTableSource x) {
+            flush();
+            int fragmentCount = fragments.size();
+            int slotCount = slots.size();
+            super.visit(x);
+            if (slots.size() == slotCount) {
+                String text = output.toString();
+                output.setLength(0);
+                slots.add(new TableSourceSlot(x, text));
+                return false;
+            }
+            // the table source itself holds slots, restore it as a whole on every render
+            fragments.subList(fragmentCount, fragments.size()).clear();
+            slots.subList(slotCount, slots.size()).clear();
+            output.setLength(0);
+            slots.add(new TableSourceSlot(x, null));
+            return false;
+        }
+
+        private void addSlot(final Slot slot) {
+            flush();
+            slots.add(slot);
+        }
+
+        private void flush() {
+            fragments.add(output.toString());
+            output.setLength(0);
+        }
+    }
+}
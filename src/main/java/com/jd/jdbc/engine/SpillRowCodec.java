@@ -0,0 +1,252 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.sqltypes.VtResultValue;
+import io.vitess.proto.Query;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpillRowCodec is the binary row format of spill files.
+ * <p>
+ * A row is its column count followed by its values, a value is the number of its {@link Query.Type},
+ * a tag for the java class of the value and the value itself. Counts, lengths and integral values are
+ * varints, so small values take one or two bytes. Values of classes without a tag are written with
+ * java serialization.
+ */
+final class SpillRowCodec {
+
+    private static final int TAG_NULL = 0;
+
+    private static final int TAG_INTEGER = 1;
+
+    private static final int TAG_LONG = 2;
+
+    private static final int TAG_SHORT = 3;
+
+    private static final int TAG_BYTE = 4;
+
+    private static final int TAG_BOOLEAN = 5;
+
+    private static final int TAG_FLOAT = 6;
+
+    private static final int TAG_DOUBLE = 7;
+
+    private static final int TAG_BIG_DECIMAL = 8;
+
+    private static final int TAG_BIG_INTEGER = 9;
+
+    private static final int TAG_STRING = 10;
+
+    private static final int TAG_BYTES = 11;
+
+    private static final int TAG_SERIALIZED = 12;
+
+    private SpillRowCodec() {
+    }
+
+    /**
+     * @param out
+     * @param row
+     * @return the number of bytes written
+     * @throws IOException
+     */
+    static int writeRow(final DataOutputStream out, final List<VtResultValue> row) throws IOException {
+        int start = out.size();
+        writeVarint(out, row.size());
+        for (VtResultValue value : row) {
+            writeValue(out, value);
+        }
+        return out.size() - start;
+    }
+
+    static List<VtResultValue> readRow(final DataInputStream in) throws IOException {
+        int size = readVarint(in);
+        List<VtResultValue> row = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            row.add(readValue(in));
+        }
+        return row;
+    }
+
+    private static void writeValue(final DataOutputStream out, final VtResultValue value) throws IOException {
+        Query.Type type = value.getVtType() == null ? Query.Type.NULL_TYPE : value.getVtType();
+        writeVarint(out, type.getNumber());
+        Object object = value.getValue();
+        if (object == null) {
+            out.writeByte(TAG_NULL);
+        } else if (object instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            writeVarlong(out, zigzag((Integer) object));
+        } else if (object instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarlong(out, zigzag((Long) object));
+        } else if (object instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            writeVarlong(out, zigzag((Short) object));
+        } else if (object instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) object);
+        } else if (object instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) object);
+        } else if (object instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) object);
+        } else if (object instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) object);
+        } else if (object instanceof BigDecimal) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            BigDecimal decimal = (BigDecimal) object;
+            writeVarlong(out, zigzag(decimal.scale()));
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (object instanceof BigInteger) {
+            out.writeByte(TAG_BIG_INTEGER);
+            writeBytes(out, ((BigInteger) object).toByteArray());
+        } else if (object instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeBytes(out, ((String) object).getBytes(StandardCharsets.UTF_8));
+        } else if (object instanceof byte[]) {
+            out.writeByte(TAG_BYTES);
+            writeBytes(out, (byte[]) object);
+        } else {
+            out.writeByte(TAG_SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                objectOut.writeObject(object);
+            }
+            writeBytes(out, bytes.toByteArray());
+        }
+    }
+
+    private static VtResultValue readValue(final DataInputStream in) throws IOException {
+        int typeNumber = readVarint(in);
+        Query.Type type = Query.Type.forNumber(typeNumber);
+        if (type == null) {
+            throw new IOException("unknown type " + typeNumber + " in spill file");
+        }
+        int tag = in.readUnsignedByte();
+        Object object;
+        switch (tag) {
+            case TAG_NULL:
+                return type == Query.Type.NULL_TYPE ? VtResultValue.NULL : new VtResultValue(null, type);
+            case TAG_INTEGER:
+                object = (int) unzigzag(readVarlong(in));
+                break;
+            case TAG_LONG:
+                object = unzigzag(readVarlong(in));
+                break;
+            case TAG_SHORT:
+                object = (short) unzigzag(readVarlong(in));
+                break;
+            case TAG_BYTE:
+                object = in.readByte();
+                break;
+            case TAG_BOOLEAN:
+                object = in.readBoolean();
+                break;
+            case TAG_FLOAT:
+                object = in.readFloat();
+                break;
+            case TAG_DOUBLE:
+                object = in.readDouble();
+                break;
+            case TAG_BIG_DECIMAL:
+                int scale = (int) unzigzag(readVarlong(in));
+                object = new BigDecimal(new BigInteger(readBytes(in)), scale);
+                break;
+            case TAG_BIG_INTEGER:
+                object = new BigInteger(readBytes(in));
+                break;
+            case TAG_STRING:
+                object = new String(readBytes(in), StandardCharsets.UTF_8);
+                break;
+            case TAG_BYTES:
+                object = readBytes(in);
+                break;
+            case TAG_SERIALIZED:
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                    object = objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+                break;
+            default:
+                throw new IOException("unknown value tag " + tag + " in spill file");
+        }
+        return new VtResultValue(object, type);
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(final DataOutputStream out, final int value) throws IOException {
+        writeVarlong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static int readVarint(final DataInputStream in) throws IOException {
+        return (int) readVarlong(in);
+    }
+
+    private static void writeVarlong(final DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarlong(final DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in spill file");
+    }
+}
@@ -0,0 +1,172 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.sqlparser.Comment;
+import com.jd.jdbc.sqlparser.ast.SQLStatement;
+import com.jd.jdbc.srvtopo.BindVariable;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * SqlTemplate is the planned form of a raw sql text: the normalized statement, the plan and
+ * the recipe that rebuilds the normalized bind variables from the bind variables of the caller.
+ * The statement is shared by every execution of the template and must be treated as read-only.
+ */
+@Getter
+public class SqlTemplate {
+    private final String keyspace;
+
+    private final SQLStatement statement;
+
+    private final Comment comment;
+
+    private final Plan plan;
+
+    private final String charEncoding;
+
+    private final int paramCount;
+
+    private final String[] bindVarNames;
+
+    /**
+     * paramNames[i] is the name of the caller bind variable that fills bindVarNames[i],
+     * or null if bindVarNames[i] is a literal extracted from the sql text.
+     */
+    private final String[] paramNames;
+
+    private final BindVariable[] literals;
+
+    private SqlTemplate(String keyspace, SQLStatement statement, Comment comment, Plan plan, String charEncoding, int paramCount,
+                        String[] bindVarNames, String[] paramNames, BindVariable[] literals) {
+        this.keyspace = keyspace;
+        this.statement = statement;
+        this.comment = comment;
+        this.plan = plan;
+        this.charEncoding = charEncoding;
+        this.paramCount = paramCount;
+        this.bindVarNames = bindVarNames;
+        this.paramNames = paramNames;
+        this.literals = literals;
+    }
+
+    /**
+     * markBindVariables copies the caller bind variables, so that every normalized bind variable
+     * coming from the caller can be told apart from the literals by identity.
+     *
+     * @param bindVariableMap
+     * @return
+     */
+    public static Map<String, BindVariable> markBindVariables(final Map<String, BindVariable> bindVariableMap) {
+        if (bindVariableMap == null) {
+            return null;
+        }
+        Map<String, BindVariable> markers = new LinkedHashMap<>(bindVariableMap.size());
+        for (Map.Entry<String, BindVariable> entry : bindVariableMap.entrySet()) {
+            BindVariable bindVariable = entry.getValue();
+            if (bindVariable == null) {
+                markers.put(entry.getKey(), null);
+            } else if (bindVariable.getValuesList() != null) {
+                markers.put(entry.getKey(), new BindVariable(bindVariable.getValuesList(), bindVariable.getType()));
+            } else {
+                markers.put(entry.getKey(), new BindVariable(bindVariable.getValue(), bindVariable.getType()));
+            }
+        }
+        return markers;
+    }
+
+    /**
+     * @param keyspace        keyspace the statement is routed to
+     * @param statement       statement after normalization
+     * @param comment         leading and trailing comments of the raw sql
+     * @param plan            plan of the normalized statement
+     * @param charEncoding    encoding used to extract the string literals
+     * @param markers         bind variables returned by {@link #markBindVariables(Map)}
+     * @param bindVariableMap normalized bind variables computed from the markers
+     * @return
+     */
+    public static SqlTemplate build(String keyspace, SQLStatement statement, Comment comment, Plan plan, String charEncoding,
+                                    Map<String, BindVariable> markers, Map<String, BindVariable> bindVariableMap) {
+        int size = bindVariableMap == null ? 0 : bindVariableMap.size();
+        String[] bindVarNames = new String[size];
+        String[] paramNames = new String[size];
+        BindVariable[] literals = new BindVariable[size];
+        if (bindVariableMap != null) {
+            int idx = 0;
+            for (Map.Entry<String, BindVariable> entry : bindVariableMap.entrySet()) {
+                bindVarNames[idx] = entry.getKey();
+                String paramName = findMarker(markers, entry.getValue());
+                if (paramName == null) {
+                    literals[idx] = entry.getValue();
+                } else {
+                    paramNames[idx] = paramName;
+                }
+                idx++;
+            }
+        }
+        int paramCount = markers == null ? 0 : markers.size();
+        return new SqlTemplate(keyspace, statement, comment, plan, charEncoding, paramCount, bindVarNames, paramNames, literals);
+    }
+
+    private static String findMarker(final Map<String, BindVariable> markers, final BindVariable bindVariable) {
+        if (markers == null || bindVariable == null) {
+            return null;
+        }
+        for (Map.Entry<String, BindVariable> entry : markers.entrySet()) {
+            if (entry.getValue() == bindVariable) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param charEncoding
+     * @param bindVariableMap
+     * @return true if the template was built for the same encoding and the same number of bind variables
+     */
+    public boolean matches(final String charEncoding, final Map<String, BindVariable> bindVariableMap) {
+        int size = bindVariableMap == null ? 0 : bindVariableMap.size();
+        return size == this.paramCount && Objects.equals(charEncoding, this.charEncoding);
+    }
+
+    /**
+     * bindVariables rebuilds the normalized bind variables without touching the statement.
+     *
+     * @param bindVariableMap bind variables of the caller
+     * @return
+     * @throws SQLException
+     */
+    public Map<String, BindVariable> bindVariables(final Map<String, BindVariable> bindVariableMap) throws SQLException {
+        Map<String, BindVariable> normalized = new LinkedHashMap<>(bindVarNames.length);
+        for (int i = 0; i < bindVarNames.length; i++) {
+            if (paramNames[i] == null) {
+                normalized.put(bindVarNames[i], literals[i]);
+                continue;
+            }
+            BindVariable bindVariable = bindVariableMap == null ? null : bindVariableMap.get(paramNames[i]);
+            if (bindVariable == null) {
+                throw new SQLException(String.format("Missing bind variable, missing key %s", paramNames[i]));
+            }
+            normalized.put(bindVarNames[i], bindVariable);
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.jdbc.queryservice.StreamIterator;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import io.vitess.proto.Query;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamShardReader reads the rows of a multi-shard stream query, it is shared by the stream
+ * primitives so they fetch rows in batches instead of one result set per row.
+ * <p>
+ * Without prefetch the shards are read in turn on the caller thread. With prefetch every shard
+ * is read by its own task on the query thread pool into a bounded queue, so the shards are read
+ * concurrently, a slow shard does not stall the others, and a slow consumer stops the readers
+ * once their queues are full.
+ */
+public class StreamShardReader {
+
+    public static final int FETCH_ROWS = 256;
+
+    private static final long OFFER_TIMEOUT_MILLIS = 10;
+
+    /**
+     * END is compared by identity, it marks the end of a shard in its prefetch queue.
+     */
+    private static final List<VtResultValue> END = new ArrayList<>(0);
+
+    private final List<StreamIterator> iterators;
+
+    private final boolean[] finished;
+
+    private int liveShards;
+
+    private int cursor = 0;
+
+    private Query.Field[] fields = null;
+
+    private BlockingQueue<List<VtResultValue>>[] queues = null;
+
+    private SQLException[] errors = null;
+
+    /**
+     * one permit for every row or END put into the queues, the consumer takes one permit
+     * for every element it polls.
+     */
+    private Semaphore ready = null;
+
+    private CompletableFuture<?>[] readers = null;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param iterators    one stream per shard
+     * @param prefetchRows the capacity of every shard queue, 0 reads the shards on the caller thread
+     * @throws SQLException
+     */
+    public StreamShardReader(final List<StreamIterator> iterators, final int prefetchRows) throws SQLException {
+        this.iterators = iterators;
+        this.finished = new boolean[iterators.size()];
+        this.liveShards = iterators.size();
+        if (prefetchRows > 0 && !iterators.isEmpty()) {
+            startReaders(prefetchRows);
+        }
+    }
+
+    public int getShardCount() {
+        return finished.length;
+    }
+
+    /**
+     * @return the fields of the first shard that returned a row, null if no shard returned a row yet
+     */
+    public Query.Field[] getFields() {
+        return fields;
+    }
+
+    /**
+     * read appends up to maxRows rows of any shards to rows, it blocks only until the first row is available.
+     *
+     * @param rows
+     * @param maxRows
+     * @return the number of rows appended, 0 at the end of all shards
+     * @throws SQLException
+     */
+    public int read(final List<List<VtResultValue>> rows, final int maxRows) throws SQLException {
+        if (queues == null) {
+            return readInTurn(rows, maxRows);
+        }
+        int count = 0;
+        while (count == 0 && liveShards > 0) {
+            acquire();
+            int polled = 0;
+            SQLException exception = null;
+            int shardCount = iterators.size();
+            for (int i = 0; i < shardCount && count < maxRows; i++) {
+                int shard = (cursor + i) % shardCount;
+                List<VtResultValue> row;
+                while (!finished[shard] && count < maxRows && (row = queues[shard].poll()) != null) {
+                    polled++;
+                    if (row == END) {
+                        exception = finish(shard, exception);
+                    } else {
+                        count = add(shard, row, rows, count);
+                    }
+                }
+            }
+            cursor = (cursor + 1) % shardCount;
+            if (polled > 1) {
+                // the permits of the other polled elements are released right after they are queued
+                ready.acquireUninterruptibly(polled - 1);
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param shard
+     * @return the next row of the shard, null at the end of the shard
+     * @throws SQLException
+     */
+    public List<VtResultValue> nextRow(final int shard) throws SQLException {
+        if (finished[shard]) {
+            return null;
+        }
+        if (queues == null) {
+            List<VtResultValue> row = iterators.get(shard).nextRow();
+            if (row == null) {
+                finished[shard] = true;
+                liveShards--;
+                return null;
+            }
+            if (fields == null) {
+                fields = iterators.get(shard).getFields();
+            }
+            return row;
+        }
+        List<VtResultValue> row;
+        try {
+            row = queues[shard].take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while reading stream", e);
+        }
+        ready.acquireUninterruptibly();
+        if (row == END) {
+            SQLException exception = finish(shard, null);
+            if (exception != null) {
+                throw exception;
+            }
+            return null;
+        }
+        if (fields == null) {
+            fields = iterators.get(shard).getFields();
+        }
+        return row;
+    }
+
+    /**
+     * close stops the prefetch readers and closes the streams of all shards.
+     *
+     * @throws SQLException
+     */
+    public void close() throws SQLException {
+        closed = true;
+        if (readers != null) {
+            for (CompletableFuture<?> reader : readers) {
+                if (reader != null) {
+                    reader.join();
+                }
+            }
+        }
+        SQLException exception = null;
+        for (StreamIterator iterator : iterators) {
+            try {
+                iterator.close();
+            } catch (SQLException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        iterators.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private int readInTurn(final List<List<VtResultValue>> rows, final int maxRows) throws SQLException {
+        int count = 0;
+        int shardCount = iterators.size();
+        while (count < maxRows && liveShards > 0) {
+            for (int i = 0; i < shardCount && count < maxRows; i++) {
+                int shard = (cursor + i) % shardCount;
+                if (finished[shard]) {
+                    continue;
+                }
+                List<VtResultValue> row = iterators.get(shard).nextRow();
+                if (row == null) {
+                    finished[shard] = true;
+                    liveShards--;
+                    continue;
+                }
+                count = add(shard, row, rows, count);
+            }
+            cursor = (cursor + 1) % shardCount;
+        }
+        return count;
+    }
+
+    private int add(final int shard, final List<VtResultValue> row, final List<List<VtResultValue>> rows, final int count) {
+        if (fields == null) {
+            fields = iterators.get(shard).getFields();
+        }
+        rows.add(row);
+        return count + 1;
+    }
+
+    private SQLException finish(final int shard, final SQLException exception) {
+        finished[shard] = true;
+        liveShards--;
+        if (exception == null && errors[shard] != null) {
+            return errors[shard];
+        }
+        return exception;
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            ready.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while reading stream", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void startReaders(final int prefetchRows) throws SQLException {
+        int shardCount = iterators.size();
+        queues = new BlockingQueue[shardCount];
+        errors = new SQLException[shardCount];
+        ready = new Semaphore(0);
+        readers = new CompletableFuture<?>[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            queues[shard] = new ArrayBlockingQueue<>(prefetchRows);
+        }
+        try {
+            for (int shard = 0; shard < shardCount; shard++) {
+                final int readShard = shard;
+                readers[shard] = CompletableFuture.runAsync(() -> readShard(readShard), VtQueryExecutorService.getExecutor());
+            }
+        } catch (RejectedExecutionException e) {
+            close();
+            throw new SQLException("stream prefetch rejected by the query thread pool", e);
+        }
+    }
+
+    private void readShard(final int shard) {
+        StreamIterator iterator = iterators.get(shard);
+        try {
+            List<VtResultValue> row;
+            while (!closed && (row = iterator.nextRow()) != null) {
+                if (!put(shard, row)) {
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            errors[shard] = e;
+        } catch (RuntimeException e) {
+            errors[shard] = new SQLException(e);
+        }
+        put(shard, END);
+    }
+
+    /**
+     * @return false if the reader was closed while waiting for room in the queue
+     */
+    private boolean put(final int shard, final List<VtResultValue> row) {
+        try {
+            while (!queues[shard].offer(row, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        ready.release();
+        return true;
+    }
+}
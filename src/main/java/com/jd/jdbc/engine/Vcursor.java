@@ -84,9 +84,36 @@ public interface Vcursor {
 
     VtRowList executeStandalone(String sql, Map<String, BindVariable> bindVars, ResolvedShard resolvedShard, boolean canAutocommit) throws SQLException;
 
+    /**
+     * executeStandalone on the context of the connection instead of the statement, so the query is not
+     * cancelled when the statement completes, e.g. to prefetch the next sequence block in the background.
+     *
+     * @param sql
+     * @param bindVars
+     * @param resolvedShard
+     * @return
+     * @throws SQLException
+     */
+    VtRowList executeStandaloneDetached(String sql, Map<String, BindVariable> bindVars, ResolvedShard resolvedShard) throws SQLException;
+
     Boolean getRollbackOnPartialExec();
 
     String getCharEncoding();
 
     int getMaxParallelNum();
+
+    /**
+     * @return true if routed selects are executed as server-side prepared statements on the tablets
+     */
+    boolean getServerPrepareStatement();
+
+    /**
+     * @return the number of left rows a join binds into one execution of its right side, 0 or 1 executes it once per left row
+     */
+    int getJoinBatchSize();
+
+    /**
+     * @return the number of rows each shard of a stream query reads ahead on its own thread, 0 reads the shards on the caller thread
+     */
+    int getStreamPrefetchRows();
 }
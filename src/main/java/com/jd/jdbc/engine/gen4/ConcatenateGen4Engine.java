@@ -23,7 +23,7 @@ import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.sqltypes.VtResultSet;
-import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.BindVariable;
 import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
 import io.vitess.proto.Query;
@@ -95,22 +95,77 @@ public class ConcatenateGen4Engine implements PrimitiveEngine {
         }
         Query.Field[] fields = getFields(res);
         long rowsAffected = 0;
-        List<List<VtResultValue>> rows = new ArrayList<>();
+        VtResultSet resultSet = new VtResultSet();
         for (VtResultSet r : res) {
             rowsAffected += r.getRowsAffected();
-            if (!rows.isEmpty() && !r.getRows().isEmpty()
-                && rows.get(0).size() != r.getRows().get(0).size()) {
+            if (resultSet.getResultSetSize() > 0 && r.getResultSetSize() > 0
+                && resultSet.getRowColumnCount() != r.getRowColumnCount()) {
                 throw new SQLException("The used SELECT statements have a different number of columns");
             }
-            rows.addAll(r.getRows());
+            resultSet.appendRows(r);
         }
-        VtResultSet resultSet = new VtResultSet();
         resultSet.setFields(fields);
-        resultSet.setRows(rows);
         resultSet.setRowsAffected(rowsAffected);
         return new IExecute.ExecuteMultiShardResponse(resultSet);
     }
 
+    /**
+     * streamExecute streams the sources one after another, a source is executed once the stream of the previous one is exhausted.
+     * Like execute, the fields the sources return are checked against the fields of the first one.
+     */
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindValue, boolean wantFields) throws SQLException {
+        return new IExecute.VtStream() {
+            private int index = 0;
+
+            private IExecute.VtStream stream;
+
+            private Query.Field[] fields;
+
+            @Override
+            public VtRowList fetch(boolean wantFieldsOnFetch) throws SQLException {
+                while (index < sourceList.size()) {
+                    boolean firstFetch = stream == null;
+                    if (firstFetch) {
+                        Map<String, BindVariable> vars = bindValue == null ? null : new HashMap<>(bindValue);
+                        stream = sourceList.get(index).streamExecute(ctx, vcursor, vars, wantFields);
+                    }
+                    VtResultSet fetched = (VtResultSet) stream.fetch(firstFetch && wantFields);
+                    if (fetched.getFields() != null) {
+                        if (fields == null) {
+                            fields = fetched.getFields();
+                        } else if (firstFetch) {
+                            compareFields(fields, fetched.getFields());
+                        }
+                    }
+                    if (fetched.getRows() == null || fetched.getRows().isEmpty()) {
+                        stream.close();
+                        stream = null;
+                        index++;
+                        continue;
+                    }
+                    VtResultSet resultSet = new VtResultSet(fields, fetched.getRows());
+                    resultSet.setRowsAffected(fetched.getRows().size());
+                    return resultSet;
+                }
+                VtResultSet resultSet = new VtResultSet();
+                if (wantFieldsOnFetch) {
+                    resultSet.setFields(fields);
+                }
+                return resultSet;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                index = sourceList.size();
+                if (stream != null) {
+                    stream.close();
+                    stream = null;
+                }
+            }
+        };
+    }
+
     public List<VtResultSet> execSources(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVars, boolean wantfields) throws SQLException, InterruptedException {
         int size = sourceList.size();
         VtResultSet[] results = new VtResultSet[size];
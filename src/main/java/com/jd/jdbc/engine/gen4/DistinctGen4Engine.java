@@ -24,10 +24,10 @@ import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.BindVariable;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.Getter;
@@ -80,9 +80,56 @@ public class DistinctGen4Engine implements PrimitiveEngine {
         return new IExecute.ExecuteMultiShardResponse(result);
     }
 
+    /**
+     * streamExecute returns the rows of every batch that were not returned before, the probe table
+     * of the returned rows is kept for the whole stream.
+     */
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVars, boolean wantFields) throws SQLException {
+        IExecute.VtStream sourceStream = this.source.streamExecute(ctx, vcursor, bindVars, wantFields);
+        ProbeTable pt = newProbeTable(this.checkCols);
+        return new IExecute.VtStream() {
+            private IExecute.VtStream stream = sourceStream;
+
+            @Override
+            public VtRowList fetch(boolean wantFields) throws SQLException {
+                VtResultSet result = new VtResultSet();
+                // an empty batch ends the stream, so batches without a new row are skipped
+                while (stream != null) {
+                    VtResultSet fetched = (VtResultSet) stream.fetch(wantFields && result.getFields() == null);
+                    if (result.getFields() == null) {
+                        result.setFields(fetched.getFields());
+                    }
+                    if (fetched.getRows() == null || fetched.getRows().isEmpty()) {
+                        close();
+                        break;
+                    }
+                    for (List<VtResultValue> row : fetched.getRows()) {
+                        if (!pt.exists(row)) {
+                            result.getRows().add(row);
+                        }
+                    }
+                    if (!result.getRows().isEmpty()) {
+                        break;
+                    }
+                }
+                result.setRowsAffected(result.getRows().size());
+                return truncate ? result.truncate(checkCols.size()) : result;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                if (stream != null) {
+                    stream.close();
+                    stream = null;
+                }
+            }
+        };
+    }
+
     private ProbeTable newProbeTable(List<CheckCol> checkCols) {
         List<CheckCol> cols = new ArrayList<>(checkCols);
-        return new ProbeTable(new HashMap<>(), cols);
+        return new ProbeTable(cols);
     }
 
     @Override
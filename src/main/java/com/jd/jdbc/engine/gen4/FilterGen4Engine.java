@@ -27,6 +27,7 @@ import com.jd.jdbc.evalengine.EvalResult;
 import com.jd.jdbc.sqlparser.ast.SQLExpr;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.BindVariable;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -87,6 +88,53 @@ public class FilterGen4Engine implements PrimitiveEngine {
         return result;
     }
 
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        IExecute.VtStream inputStream = this.getInput().streamExecute(ctx, vcursor, bindVariableMap, wantFields);
+        if (this.predicate == null) {
+            return inputStream;
+        }
+        EvalEngine.ExpressionEnv env = new EvalEngine.ExpressionEnv(bindVariableMap);
+        return new IExecute.VtStream() {
+            private IExecute.VtStream stream = inputStream;
+
+            @Override
+            public VtRowList fetch(boolean wantFields) throws SQLException {
+                VtResultSet resultSet = new VtResultSet();
+                // an empty batch ends the stream, so batches without a matching row are skipped
+                while (stream != null) {
+                    VtResultSet fetched = (VtResultSet) stream.fetch(wantFields && resultSet.getFields() == null);
+                    if (resultSet.getFields() == null) {
+                        resultSet.setFields(fetched.getFields());
+                    }
+                    if (fetched.getRows() == null || fetched.getRows().isEmpty()) {
+                        close();
+                        break;
+                    }
+                    for (List<VtResultValue> rv : fetched.getRows()) {
+                        env.setRow(rv);
+                        if (predicate.evaluate(env).value().toInt() == EvalEngine.TRUE_FLAG) {
+                            resultSet.getRows().add(rv);
+                        }
+                    }
+                    if (!resultSet.getRows().isEmpty()) {
+                        break;
+                    }
+                }
+                resultSet.setRowsAffected(resultSet.getRows().size());
+                return resultSet;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                if (stream != null) {
+                    stream.close();
+                    stream = null;
+                }
+            }
+        };
+    }
+
     @Override
     public List<PrimitiveEngine> inputs() {
         return Collections.singletonList(this.input);
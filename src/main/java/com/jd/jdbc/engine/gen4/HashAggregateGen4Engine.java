@@ -0,0 +1,163 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.engine.gen4;
+
+import com.jd.jdbc.IExecute;
+import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.ResultSetStream;
+import com.jd.jdbc.engine.Vcursor;
+import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.srvtopo.BindVariable;
+import io.vitess.proto.Query;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HashAggregateGen4Engine aggregates the rows of its input by the grouping keys in a hash table,
+ * so unlike {@link OrderedAggregateGen4Engine} the input does not have to be sorted on the keys
+ * and the planner does not push an ORDER BY to the shards for it.
+ * <p>
+ * Groups are returned in the order their first row was read, which is the order of an
+ * ordered aggregation whenever the input happens to be sorted on the keys. Keys are compared
+ * like the ordered aggregation compares them. Distinct aggregates need their input sorted on
+ * the distinct column, so they are not supported.
+ */
+public class HashAggregateGen4Engine extends OrderedAggregateGen4Engine {
+
+    public HashAggregateGen4Engine(boolean preProcess, List<AggregateParams> aggregates, boolean aggrOnEngine, int truncateColumnCount, List<GroupByParams> groupByKeys,
+                                   Map<Integer, Integer> collations, PrimitiveEngine input) {
+        super(preProcess, aggregates, aggrOnEngine, truncateColumnCount, groupByKeys, collations, input);
+    }
+
+    @Override
+    public IExecute.ExecuteMultiShardResponse execute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        this.checkDistinct();
+        IExecute.ExecuteMultiShardResponse resultResponse = this.input.execute(ctx, vcursor, bindVariableMap, wantFields);
+        VtResultSet result = (VtResultSet) resultResponse.getVtRowList();
+
+        VtResultSet out = new VtResultSet(convertFields(result.getFields(), super.preProcess, super.aggregates, super.aggrOnEngine), new ArrayList<>());
+        this.aggregateRows(vcursor, result.getFields(), result.getRows(), new GroupTable(this.getGroupByKeys()), out.getRows());
+        return new IExecute.ExecuteMultiShardResponse(out.truncate(super.truncateColumnCount));
+    }
+
+    /**
+     * streamExecute reads the whole input stream before it returns the first group, only the
+     * groups are held in memory, not the rows of the input.
+     */
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        this.checkDistinct();
+        VtResultSet out = new VtResultSet();
+        GroupTable groupTable = new GroupTable(this.getGroupByKeys());
+        // merging rows needs the fields of the input, whether the caller wants them or not
+        try (IExecute.VtStream stream = this.input.streamExecute(ctx, vcursor, bindVariableMap, true)) {
+            while (true) {
+                VtResultSet fetched = (VtResultSet) stream.fetch(out.getFields() == null);
+                if (out.getFields() == null && fetched.getFields() != null) {
+                    out.setFields(convertFields(fetched.getFields().clone(), super.preProcess, super.aggregates, super.aggrOnEngine));
+                }
+                if (fetched.getRows() == null || fetched.getRows().isEmpty()) {
+                    break;
+                }
+                this.aggregateRows(vcursor, out.getFields(), fetched.getRows(), groupTable, out.getRows());
+            }
+        }
+        return new ResultSetStream(out.truncate(super.truncateColumnCount));
+    }
+
+    private void checkDistinct() throws SQLException {
+        for (AggregateParams aggr : super.aggregates) {
+            if (aggr.isDistinct()) {
+                throw new SQLException("BUG: distinct aggregate cannot be hash aggregated: " + printOpcode(aggr.getOpcode()));
+            }
+        }
+    }
+
+    /**
+     * @param fields  the fields of the rows, converted by convertFields
+     * @param current current.get(i) is the aggregate of the group of groupTable.getRow(i)
+     */
+    private void aggregateRows(Vcursor vcursor, Query.Field[] fields, List<List<VtResultValue>> rows, GroupTable groupTable, List<List<VtResultValue>> current) throws SQLException {
+        for (List<VtResultValue> row : rows) {
+            int index = groupTable.findOrInsert(row);
+            if (index < 0) {
+                if (vcursor.exceedsMaxMemoryRows(groupTable.size())) {
+                    throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
+                }
+                current.add(convertRow(row, super.preProcess, super.aggregates, super.aggrOnEngine).getLeft());
+                continue;
+            }
+            current.set(index, merge(fields, current.get(index), row, null, super.collations, super.aggregates).getLeft());
+        }
+    }
+
+    /**
+     * GroupTable hashes the key values themselves, so text keys can be grouped
+     * as they are by the ordered aggregation, whatever their collation.
+     */
+    private static final class GroupTable extends ProbeTable {
+        private final int[] keyCols;
+
+        GroupTable(List<GroupByParams> groupByKeys) {
+            super(checkCols(groupByKeys));
+            this.keyCols = new int[groupByKeys.size()];
+            for (int i = 0; i < this.keyCols.length; i++) {
+                this.keyCols[i] = groupByKeys.get(i).getKeyCol();
+            }
+        }
+
+        private static List<CheckCol> checkCols(List<GroupByParams> groupByKeys) {
+            List<CheckCol> checkCols = new ArrayList<>(groupByKeys.size());
+            for (GroupByParams key : groupByKeys) {
+                checkCols.add(new CheckCol(key.getKeyCol(), key.getCollationID()));
+            }
+            return checkCols;
+        }
+
+        @Override
+        protected long hashCodeForRow(List<VtResultValue> inputRow) {
+            long code = 17;
+            for (int keyCol : this.keyCols) {
+                code = code * 31 + hashCode(inputRow.get(keyCol));
+            }
+            return code;
+        }
+
+        /**
+         * numbers of different classes are compared by their long values, so they are hashed by them too.
+         */
+        private static long hashCode(VtResultValue value) {
+            if (value.isNull()) {
+                return Long.MAX_VALUE;
+            }
+            Object v = value.getValue();
+            if (v instanceof Number) {
+                return ((Number) v).longValue();
+            }
+            if (v instanceof byte[]) {
+                return Arrays.hashCode((byte[]) v);
+            }
+            return v.hashCode();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.engine.gen4;
+
+import com.jd.jdbc.IExecute;
+import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.Vcursor;
+import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
+import com.jd.jdbc.sqltypes.VtType;
+import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import lombok.Getter;
+
+/**
+ * HashJoinGen4Engine executes an equi-join of two sides that do not depend on each other's rows:
+ * the left side and the right side without its join predicates run once and in parallel, the rows
+ * of the smaller result are put in a hash table by their join values and the other result probes it.
+ * <p>
+ * Only integer join values are hashed, as a long: an integer is equal to a column value exactly when
+ * the numbers are equal, whatever the column type, while the equality of strings depends on the
+ * collation. If a join value is not an integer, the rows of the left side are joined by the nested
+ * loop of {@link JoinGen4Engine} instead. The rows are returned in the order of the nested loop join.
+ */
+@Getter
+public class HashJoinGen4Engine extends JoinGen4Engine {
+
+    private static final String INTERRUPTED = "interrupted while joining";
+
+    /**
+     * HashRight is the RHS primitive without the join predicates, column keyOffset + i of its rows
+     * holds the value keyVars[i] is compared with.
+     */
+    private final PrimitiveEngine hashRight;
+
+    private final List<String> keyVars;
+
+    private final int keyOffset;
+
+    public HashJoinGen4Engine(Engine.JoinOpcode opcode, Map<String, Integer> vars, PrimitiveEngine hashRight, List<String> keyVars, int keyOffset) {
+        super(opcode, vars);
+        this.hashRight = hashRight;
+        this.keyVars = keyVars;
+        this.keyOffset = keyOffset;
+    }
+
+    @Override
+    public IExecute.ExecuteMultiShardResponse execute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        IContext rightCtx = VtContext.withCancel(ctx);
+        Map<String, BindVariable> rightVars = bindVariableMap == null ? new HashMap<>() : new HashMap<>(bindVariableMap);
+        CompletableFuture<VtResultSet> rightFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return resultOf(this.hashRight.execute(rightCtx, vcursor, rightVars, wantFields));
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, VtQueryExecutorService.getExecutor());
+        try {
+            VtResultSet leftResult;
+            try {
+                leftResult = resultOf(this.getLeft().execute(ctx, vcursor, bindVariableMap, wantFields));
+            } catch (SQLException | RuntimeException e) {
+                rightCtx.cancel(e.getMessage());
+                awaitQuietly(rightFuture);
+                throw e;
+            }
+
+            int[] leftOffsets = new int[this.keyVars.size()];
+            for (int i = 0; i < leftOffsets.length; i++) {
+                leftOffsets[i] = this.getVars().get(this.keyVars.get(i));
+            }
+            long[][] leftKeys = keysOf(leftResult.getRows(), leftOffsets);
+            if (leftKeys == null || leftResult.getRows().isEmpty() && this.getOpcode() != Engine.JoinOpcode.LeftJoin) {
+                // the right rows are not needed to join the left rows
+                rightCtx.cancel(leftKeys == null ? "join values are not integers" : "no left rows to join");
+                awaitQuietly(rightFuture);
+                return this.executeRight(ctx, vcursor, bindVariableMap, leftResult, wantFields);
+            }
+
+            VtResultSet rightResult = await(rightFuture);
+            int[] rightOffsets = new int[this.keyVars.size()];
+            for (int i = 0; i < rightOffsets.length; i++) {
+                rightOffsets[i] = this.keyOffset + i;
+            }
+            long[][] rightKeys = keysOf(rightResult.getRows(), rightOffsets);
+            if (rightKeys == null) {
+                return this.executeRight(ctx, vcursor, bindVariableMap, leftResult, wantFields);
+            }
+
+            VtResultSet resultSet = new VtResultSet();
+            if (wantFields) {
+                resultSet.setFields(this.joinFields(leftResult.getFields(), rightResult.getFields(), this.getCols()));
+            }
+            this.join(vcursor, leftResult.getRows(), leftKeys, rightResult.getRows(), rightKeys, resultSet.getRows());
+            return new IExecute.ExecuteMultiShardResponse(resultSet);
+        } finally {
+            rightCtx.close();
+        }
+    }
+
+    @Override
+    public List<PrimitiveEngine> inputs() {
+        List<PrimitiveEngine> inputs = new ArrayList<>(2);
+        inputs.add(this.getLeft());
+        inputs.add(this.hashRight);
+        return inputs;
+    }
+
+    /**
+     * join puts the smaller side in the hash table. The right rows of every left row are returned
+     * after the left row in their own order, the same as the nested loop join returns them.
+     */
+    private void join(Vcursor vcursor, List<List<VtResultValue>> leftRows, long[][] leftKeys, List<List<VtResultValue>> rightRows, long[][] rightKeys,
+                      List<List<VtResultValue>> rows) throws SQLException {
+        boolean leftJoin = this.getOpcode() == Engine.JoinOpcode.LeftJoin;
+        if (rightRows.size() <= leftRows.size()) {
+            checkMemoryRows(vcursor, rightRows.size());
+            LongKeyIndex index = new LongKeyIndex(rightKeys, rightRows.size());
+            for (int l = 0; l < leftRows.size(); l++) {
+                boolean matched = false;
+                for (int r = index.first(leftKeys, l); r >= 0; r = index.next(r, leftKeys, l)) {
+                    rows.add(this.joinRows(leftRows.get(l), rightRows.get(r), this.getCols()));
+                    matched = true;
+                }
+                if (!matched && leftJoin) {
+                    rows.add(this.joinRows(leftRows.get(l), null, this.getCols()));
+                }
+                checkMemoryRows(vcursor, rows.size());
+            }
+            return;
+        }
+
+        checkMemoryRows(vcursor, leftRows.size());
+        LongKeyIndex index = new LongKeyIndex(leftKeys, leftRows.size());
+        // the right rows of left row l are chained from firstMatch[l] through nextMatch in right row order
+        int[] firstMatch = new int[leftRows.size()];
+        int[] lastMatch = new int[leftRows.size()];
+        Arrays.fill(firstMatch, -1);
+        int[] matchRight = new int[Math.max(16, rightRows.size())];
+        int[] nextMatch = new int[matchRight.length];
+        int matches = 0;
+        for (int r = 0; r < rightRows.size(); r++) {
+            for (int l = index.first(rightKeys, r); l >= 0; l = index.next(l, rightKeys, r)) {
+                if (matches == matchRight.length) {
+                    checkMemoryRows(vcursor, matches);
+                    matchRight = Arrays.copyOf(matchRight, matches * 2);
+                    nextMatch = Arrays.copyOf(nextMatch, matches * 2);
+                }
+                matchRight[matches] = r;
+                nextMatch[matches] = -1;
+                if (firstMatch[l] < 0) {
+                    firstMatch[l] = matches;
+                } else {
+                    nextMatch[lastMatch[l]] = matches;
+                }
+                lastMatch[l] = matches;
+                matches++;
+            }
+        }
+        checkMemoryRows(vcursor, matches);
+        for (int l = 0; l < leftRows.size(); l++) {
+            if (firstMatch[l] < 0) {
+                if (leftJoin) {
+                    rows.add(this.joinRows(leftRows.get(l), null, this.getCols()));
+                }
+                continue;
+            }
+            for (int m = firstMatch[l]; m >= 0; m = nextMatch[m]) {
+                rows.add(this.joinRows(leftRows.get(l), rightRows.get(matchRight[m]), this.getCols()));
+            }
+        }
+        checkMemoryRows(vcursor, rows.size());
+    }
+
+    private static void checkMemoryRows(Vcursor vcursor, int rows) throws SQLException {
+        if (vcursor.exceedsMaxMemoryRows(rows)) {
+            throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
+        }
+    }
+
+    /**
+     * @param rows
+     * @param offsets the offsets of the join values in a row
+     * @return keys[i][row] is the join value at offsets[i] of the row, null if a join value is neither null nor an integer a long can hold.
+     * A row with a null join value matches no row, its keys are marked in keys[offsets.length]
+     */
+    static long[][] keysOf(List<List<VtResultValue>> rows, int[] offsets) {
+        long[][] keys = new long[offsets.length + 1][rows.size()];
+        long[] nulls = keys[offsets.length];
+        for (int row = 0; row < rows.size(); row++) {
+            List<VtResultValue> values = rows.get(row);
+            for (int i = 0; i < offsets.length; i++) {
+                VtResultValue value = values.get(offsets[i]);
+                if (value.isNull()) {
+                    nulls[row] = 1;
+                    continue;
+                }
+                Object object = value.getValue();
+                if (!VtType.isIntegral(value.getVtType()) || !(object instanceof Number)) {
+                    return null;
+                }
+                if (object instanceof BigInteger) {
+                    if (((BigInteger) object).bitLength() > 63) {
+                        return null;
+                    }
+                } else if (!(object instanceof Long || object instanceof Integer || object instanceof Short || object instanceof Byte)) {
+                    return null;
+                }
+                keys[i][row] = ((Number) object).longValue();
+            }
+        }
+        return keys;
+    }
+
+    private static VtResultSet resultOf(IExecute.ExecuteMultiShardResponse response) throws SQLException {
+        VtRowList rowList = response.getVtRowList();
+        if (rowList == null) {
+            throw new SQLException("VtRowList is null");
+        }
+        return (VtResultSet) rowList;
+    }
+
+    private static VtResultSet await(CompletableFuture<VtResultSet> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(INTERRUPTED, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    /**
+     * waits for the right side the join does not use any more, so it does not run on the connection after the join returned.
+     */
+    private static void awaitQuietly(CompletableFuture<VtResultSet> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // the result is not used
+        }
+    }
+
+    /**
+     * LongKeyIndex is a hash table of row numbers by their long join values. The rows of a bucket are
+     * chained in row order through next, rows with a null join value are not indexed.
+     */
+    static final class LongKeyIndex {
+        private final long[][] keys;
+
+        private final int[] buckets;
+
+        private final int[] next;
+
+        private final int mask;
+
+        LongKeyIndex(long[][] keys, int rows) {
+            this.keys = keys;
+            int capacity = Integer.highestOneBit(Math.max(rows, 1) * 2 - 1) << 1;
+            this.buckets = new int[capacity];
+            this.next = new int[rows];
+            this.mask = capacity - 1;
+            Arrays.fill(this.buckets, -1);
+            long[] nulls = keys[keys.length - 1];
+            // the rows are chained in reverse, so every chain is in row order
+            for (int row = rows - 1; row >= 0; row--) {
+                if (nulls[row] != 0) {
+                    continue;
+                }
+                int bucket = hash(keys, row) & mask;
+                this.next[row] = this.buckets[bucket];
+                this.buckets[bucket] = row;
+            }
+        }
+
+        /**
+         * @return the first row with the join values of probe row, -1 if there is none
+         */
+        int first(long[][] probeKeys, int probeRow) {
+            if (probeKeys[probeKeys.length - 1][probeRow] != 0) {
+                return -1;
+            }
+            return this.match(this.buckets[hash(probeKeys, probeRow) & mask], probeKeys, probeRow);
+        }
+
+        /**
+         * @return the row after row with the join values of probe row, -1 if there is none
+         */
+        int next(int row, long[][] probeKeys, int probeRow) {
+            return this.match(this.next[row], probeKeys, probeRow);
+        }
+
+        private int match(int row, long[][] probeKeys, int probeRow) {
+            for (; row >= 0; row = this.next[row]) {
+                if (this.equal(row, probeKeys, probeRow)) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+
+        private boolean equal(int row, long[][] probeKeys, int probeRow) {
+            for (int i = 0; i < this.keys.length - 1; i++) {
+                if (this.keys[i][row] != probeKeys[i][probeRow]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(long[][] keys, int row) {
+            long h = 0;
+            for (int i = 0; i < keys.length - 1; i++) {
+                h = (h + keys[i][row]) * 0x9E3779B97F4A7C15L;
+            }
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -22,6 +22,7 @@ import com.jd.jdbc.IExecute;
 import com.jd.jdbc.common.util.CollectionUtils;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.engine.JoinBatch;
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.sqltypes.SqlTypes;
@@ -70,6 +71,12 @@ public class JoinGen4Engine implements PrimitiveEngine {
      */
     private Map<String, Integer> vars;
 
+    /**
+     * Batch is the batched form of Right, set by the planner when Right can be batched.
+     * It is used when the connection sets a join batch size.
+     */
+    private JoinBatch batch;
+
     public JoinGen4Engine(Engine.JoinOpcode opcode, Map<String, Integer> vars) {
         this.opcode = opcode;
         this.vars = vars;
@@ -91,18 +98,74 @@ public class JoinGen4Engine implements PrimitiveEngine {
 
     @Override
     public IExecute.ExecuteMultiShardResponse execute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
-        Map<String, BindVariable> joinVars = new LinkedHashMap<>();
-
         IExecute.ExecuteMultiShardResponse leftResultResponse = this.left.execute(ctx, vcursor, bindVariableMap, wantFields);
 
         VtRowList leftRowList = leftResultResponse.getVtRowList();
         if (leftRowList == null) {
             throw new SQLException("VtRowList is null");
         }
+        return this.executeRight(ctx, vcursor, bindVariableMap, (VtResultSet) leftRowList, wantFields);
+    }
 
-        VtResultSet resultSet = new VtResultSet();
+    /**
+     * streamExecute streams the left side and executes the right side for one fetched batch of left rows
+     * at a time, so only the joined rows of a single left batch are held in memory.
+     */
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        IExecute.VtStream leftStream = this.left.streamExecute(ctx, vcursor, bindVariableMap, wantFields);
+        return new IExecute.VtStream() {
+            private IExecute.VtStream stream = leftStream;
+
+            @Override
+            public VtRowList fetch(boolean wantFields) throws SQLException {
+                // an empty batch ends the stream, so batches of left rows without a match are skipped
+                Query.Field[] fields = null;
+                while (stream != null) {
+                    boolean needFields = wantFields && fields == null;
+                    VtResultSet leftResult = (VtResultSet) stream.fetch(needFields);
+                    boolean leftDone = leftResult.getRows() == null || leftResult.getRows().isEmpty();
+                    if (leftDone) {
+                        close();
+                        if (!needFields) {
+                            break;
+                        }
+                    }
+                    VtResultSet resultSet = (VtResultSet) executeRight(ctx, vcursor, bindVariableMap, leftResult, needFields).getVtRowList();
+                    if (needFields) {
+                        fields = resultSet.getFields();
+                    }
+                    if (leftDone || !resultSet.getRows().isEmpty()) {
+                        resultSet.setFields(fields);
+                        return resultSet;
+                    }
+                }
+                VtResultSet resultSet = new VtResultSet();
+                resultSet.setFields(fields);
+                return resultSet;
+            }
 
-        VtResultSet leftResult = (VtResultSet) leftRowList;
+            @Override
+            public void close() throws SQLException {
+                if (stream != null) {
+                    stream.close();
+                    stream = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * executeRight executes the right side for the rows of an executed left side.
+     *
+     * @param leftResult the result of the left side
+     * @return
+     * @throws SQLException
+     */
+    protected IExecute.ExecuteMultiShardResponse executeRight(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, VtResultSet leftResult, boolean wantFields)
+        throws SQLException {
+        Map<String, BindVariable> joinVars = new LinkedHashMap<>();
+        VtResultSet resultSet = new VtResultSet();
         if ((leftResult.getRows() == null || leftResult.getRows().isEmpty()) && wantFields) {
             for (Map.Entry<String, Integer> entry : this.vars.entrySet()) {
                 joinVars.put(entry.getKey(), BindVariable.NULL_BIND_VARIABLE);
@@ -113,35 +176,20 @@ public class JoinGen4Engine implements PrimitiveEngine {
         }
 
         if (leftResult.getRows() != null) {
-            for (List<VtResultValue> leftRow : leftResult.getRows()) {
-                for (Map.Entry<String, Integer> entry : this.vars.entrySet()) {
-                    joinVars.put(entry.getKey(), SqlTypes.valueBindVariable(leftRow.get(entry.getValue())));
-                }
-
-                IExecute.ExecuteMultiShardResponse rightResultResponse = this.right.execute(ctx, vcursor, combineVars(bindVariableMap, joinVars), wantFields);
-
-                VtRowList rightRowList = rightResultResponse.getVtRowList();
-                if (rightRowList == null) {
-                    throw new SQLException("VtRowList is null");
-                }
-
-                VtResultSet rightResult = (VtResultSet) rightRowList;
-
-                if (wantFields) {
-                    wantFields = false;
-                    resultSet.setFields(joinFields(leftResult.getFields(), rightResult.getFields(), this.cols));
-                }
-
-                for (List<VtResultValue> rightRow : rightResult.getRows()) {
-                    resultSet.getRows().add(joinRows(leftRow, rightRow, this.cols));
-                }
-                if (this.opcode == Engine.JoinOpcode.LeftJoin && CollectionUtils.isEmpty(rightResult.getRows())) {
-                    resultSet.getRows().add(joinRows(leftRow, null, this.cols));
-                }
-                if (vcursor.exceedsMaxMemoryRows(resultSet.getRows().size())) {
-                    throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
-                }
+            int batchSize = this.batch == null ? 0 : vcursor.getJoinBatchSize();
+            if (batchSize > 1) {
+                wantFields = this.executeBatches(ctx, vcursor, bindVariableMap, leftResult, resultSet, batchSize, wantFields);
+            } else {
+                wantFields = this.executeRows(ctx, vcursor, bindVariableMap, leftResult.getFields(), leftResult.getRows(), resultSet, wantFields);
+            }
+        }
+        if (wantFields) {
+            // every batch matched nothing without executing the right side
+            for (Map.Entry<String, Integer> entry : this.vars.entrySet()) {
+                joinVars.put(entry.getKey(), BindVariable.NULL_BIND_VARIABLE);
             }
+            VtResultSet rightResult = this.right.getFields(vcursor, combineVars(bindVariableMap, joinVars));
+            resultSet.setFields(joinFields(leftResult.getFields(), rightResult.getFields(), this.cols));
         }
         return new IExecute.ExecuteMultiShardResponse(resultSet);
     }
@@ -177,7 +225,103 @@ public class JoinGen4Engine implements PrimitiveEngine {
         }};
     }
 
-    private Map<String, BindVariable> combineVars(Map<String, BindVariable> bindVariableMap1, Map<String, BindVariable> bindVariableMap2) {
+    /**
+     * executeRows executes the right side once per left row.
+     *
+     * @return wantFields, false once the fields of the result are set
+     */
+    private boolean executeRows(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, Query.Field[] leftFields, List<List<VtResultValue>> leftRows,
+                                VtResultSet resultSet, boolean wantFields) throws SQLException {
+        Map<String, BindVariable> joinVars = new LinkedHashMap<>();
+        for (List<VtResultValue> leftRow : leftRows) {
+            for (Map.Entry<String, Integer> entry : this.vars.entrySet()) {
+                joinVars.put(entry.getKey(), SqlTypes.valueBindVariable(leftRow.get(entry.getValue())));
+            }
+
+            IExecute.ExecuteMultiShardResponse rightResultResponse = this.right.execute(ctx, vcursor, combineVars(bindVariableMap, joinVars), wantFields);
+
+            VtRowList rightRowList = rightResultResponse.getVtRowList();
+            if (rightRowList == null) {
+                throw new SQLException("VtRowList is null");
+            }
+
+            VtResultSet rightResult = (VtResultSet) rightRowList;
+
+            if (wantFields) {
+                wantFields = false;
+                resultSet.setFields(joinFields(leftFields, rightResult.getFields(), this.cols));
+            }
+
+            for (List<VtResultValue> rightRow : rightResult.getRows()) {
+                resultSet.getRows().add(joinRows(leftRow, rightRow, this.cols));
+            }
+            if (this.opcode == Engine.JoinOpcode.LeftJoin && CollectionUtils.isEmpty(rightResult.getRows())) {
+                resultSet.getRows().add(joinRows(leftRow, null, this.cols));
+            }
+            if (vcursor.exceedsMaxMemoryRows(resultSet.getRows().size())) {
+                throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
+            }
+        }
+        return wantFields;
+    }
+
+    /**
+     * executeBatches executes the batched right side once per batchSize left rows, and matches the
+     * right rows back to the left rows by their join values. A batch falls back to executeRows when
+     * its join values are not integers, because only integers compare the same in an IN list on any
+     * column type as they do in the hash probe.
+     *
+     * @return wantFields, false once the fields of the result are set
+     */
+    private boolean executeBatches(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, VtResultSet leftResult, VtResultSet resultSet,
+                                   int batchSize, boolean wantFields) throws SQLException {
+        List<List<VtResultValue>> leftRows = leftResult.getRows();
+        for (int from = 0; from < leftRows.size(); from += batchSize) {
+            List<List<VtResultValue>> leftBatch = leftRows.subList(from, Math.min(from + batchSize, leftRows.size()));
+            Map<String, BindVariable> joinVars = this.batch.bindVariables(leftBatch, this.vars);
+            if (joinVars == null) {
+                wantFields = this.executeRows(ctx, vcursor, bindVariableMap, leftResult.getFields(), leftBatch, resultSet, wantFields);
+                continue;
+            }
+
+            Map<List<String>, List<List<VtResultValue>>> rightRowsByKey = new HashMap<>();
+            // no join var is bound if every left row has a null join value, nothing can match them
+            if (!joinVars.isEmpty()) {
+                IExecute.ExecuteMultiShardResponse rightResultResponse = this.batch.getRight().execute(ctx, vcursor, combineVars(bindVariableMap, joinVars), wantFields);
+                VtRowList rightRowList = rightResultResponse.getVtRowList();
+                if (rightRowList == null) {
+                    throw new SQLException("VtRowList is null");
+                }
+                VtResultSet rightResult = (VtResultSet) rightRowList;
+                if (!this.batch.groupByKey(rightResult.getRows(), rightRowsByKey)) {
+                    wantFields = this.executeRows(ctx, vcursor, bindVariableMap, leftResult.getFields(), leftBatch, resultSet, wantFields);
+                    continue;
+                }
+                if (wantFields) {
+                    wantFields = false;
+                    resultSet.setFields(joinFields(leftResult.getFields(), rightResult.getFields(), this.cols));
+                }
+            }
+
+            for (List<VtResultValue> leftRow : leftBatch) {
+                List<String> key = this.batch.leftKey(leftRow, this.vars);
+                List<List<VtResultValue>> rightRows = key == null ? null : rightRowsByKey.get(key);
+                if (rightRows != null) {
+                    for (List<VtResultValue> rightRow : rightRows) {
+                        resultSet.getRows().add(joinRows(leftRow, rightRow, this.cols));
+                    }
+                } else if (this.opcode == Engine.JoinOpcode.LeftJoin) {
+                    resultSet.getRows().add(joinRows(leftRow, null, this.cols));
+                }
+                if (vcursor.exceedsMaxMemoryRows(resultSet.getRows().size())) {
+                    throw new SQLException("in-memory row count exceeded allowed limit of " + vcursor.maxMemoryRows());
+                }
+            }
+        }
+        return wantFields;
+    }
+
+    protected Map<String, BindVariable> combineVars(Map<String, BindVariable> bindVariableMap1, Map<String, BindVariable> bindVariableMap2) {
         Map<String, BindVariable> newBindVar = new HashMap<>(16, 1);
         if (bindVariableMap1 == null) {
             bindVariableMap1 = new LinkedHashMap<>();
@@ -190,7 +334,7 @@ public class JoinGen4Engine implements PrimitiveEngine {
         return newBindVar;
     }
 
-    private Query.Field[] joinFields(Query.Field[] leftFields, Query.Field[] rightFields, List<Integer> cols) {
+    protected Query.Field[] joinFields(Query.Field[] leftFields, Query.Field[] rightFields, List<Integer> cols) {
         Query.Field[] fields = new Query.Field[cols.size()];
         for (int i = 0; i < cols.size(); i++) {
             Integer index = cols.get(i);
@@ -203,7 +347,7 @@ public class JoinGen4Engine implements PrimitiveEngine {
         return fields;
     }
 
-    private List<VtResultValue> joinRows(List<VtResultValue> leftRow, List<VtResultValue> rightRow, List<Integer> cols) {
+    protected List<VtResultValue> joinRows(List<VtResultValue> leftRow, List<VtResultValue> rightRow, List<Integer> cols) {
         List<VtResultValue> row = new ArrayList<>();
         for (Integer index : cols) {
             if (index < 0) {
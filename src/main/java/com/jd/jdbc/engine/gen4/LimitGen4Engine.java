@@ -20,6 +20,7 @@ package com.jd.jdbc.engine.gen4;
 
 import com.jd.jdbc.IExecute;
 import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.engine.LimitStream;
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.evalengine.EvalEngine;
@@ -88,17 +89,30 @@ public class LimitGen4Engine implements PrimitiveEngine {
         return getExecuteMultiShardResponse(result, count, offset);
     }
 
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        Integer count = getCount(vcursor, bindVariableMap);
+        Integer offset = getOffset(vcursor, bindVariableMap);
+
+        // When offset is present, we hijack the limit value so we can calculate
+        // the offset in memory from the result of the scatter query with count + offset.
+        bindVariableMap.put("__upper_limit", SqlTypes.int64BindVariable((long) (count + offset)));
+
+        IExecute.VtStream vtStream = this.input.streamExecute(ctx, vcursor, bindVariableMap, wantFields);
+        return new LimitStream(count, offset, vtStream);
+    }
+
     private IExecute.ExecuteMultiShardResponse getExecuteMultiShardResponse(VtResultSet result, Integer count, Integer offset) {
         // There are more rows in the response than limit + offset
-        if (count + offset <= result.getRows().size()) {
-            result.setRows(result.getRows().subList(offset, count + offset));
+        if (count + offset <= result.getResultSetSize()) {
+            result.sliceRows(offset, count + offset);
             result.setRowsAffected(count);
             return new IExecute.ExecuteMultiShardResponse(result);
         }
         // Remove extra rows from response
-        if (offset <= result.getRows().size()) {
-            result.setRows(result.getRows().subList(offset, result.getRows().size()));
-            result.setRowsAffected(result.getRows().size());
+        if (offset <= result.getResultSetSize()) {
+            result.sliceRows(offset, result.getResultSetSize());
+            result.setRowsAffected(result.getResultSetSize());
             return new IExecute.ExecuteMultiShardResponse(result);
         }
         // offset is beyond the result set
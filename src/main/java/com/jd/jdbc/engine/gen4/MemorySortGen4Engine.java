@@ -20,6 +20,7 @@ package com.jd.jdbc.engine.gen4;
 
 import com.jd.jdbc.IExecute;
 import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.engine.MemorySortStream;
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.evalengine.EvalEngine;
@@ -86,6 +87,13 @@ public class MemorySortGen4Engine implements PrimitiveEngine, Truncater {
         return getExecuteMultiShardResponse(count, resultSet);
     }
 
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        int count = this.fetchCount(bindVariableMap);
+        IExecute.VtStream vtStream = this.input.streamExecute(ctx, vcursor, bindVariableMap, wantFields);
+        return new MemorySortStream(vtStream, OrderByParamsGen4.toOrderByParams(this.orderByParams), this.truncateColumnCount, count);
+    }
+
     @Override
     public Boolean canResolveShardQuery() {
         return this.input.canResolveShardQuery();
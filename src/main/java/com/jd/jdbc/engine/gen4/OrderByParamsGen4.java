@@ -18,6 +18,9 @@ limitations under the License.
 
 package com.jd.jdbc.engine.gen4;
 
+import com.jd.jdbc.engine.OrderByParams;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -54,4 +57,21 @@ public class OrderByParamsGen4 {
         this.weightStrCol = weightStrCol;
         this.collationID = collationID;
     }
+
+    /**
+     * toOrderByParams converts the order for the streaming merge, which compares rows by
+     * {@link com.jd.jdbc.engine.RowComparator}. Like {@link VitessCompare} it orders by the
+     * weight_string column when the query added one.
+     *
+     * @param orderBy
+     * @return
+     */
+    public static List<OrderByParams> toOrderByParams(List<OrderByParamsGen4> orderBy) {
+        List<OrderByParams> params = new ArrayList<>(orderBy.size());
+        for (OrderByParamsGen4 order : orderBy) {
+            int col = order.getWeightStrCol() != -1 ? order.getWeightStrCol() : order.getCol();
+            params.add(new OrderByParams(col, order.isDesc()));
+        }
+        return params;
+    }
 }
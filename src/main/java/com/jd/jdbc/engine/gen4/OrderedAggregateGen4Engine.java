@@ -22,11 +22,14 @@ import com.jd.jdbc.IExecute;
 import com.jd.jdbc.common.tuple.Pair;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.StreamShardReader;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.BindVariable;
+import io.vitess.proto.Query;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -66,33 +69,89 @@ public class OrderedAggregateGen4Engine extends AbstractAggregateGen4 {
 
         VtResultSet out = new VtResultSet(convertFields(result.getFields(), super.preProcess, super.aggregates, super.aggrOnEngine), new ArrayList<>());
 
-        // This code is similar to the one in StreamExecute.
-        List<VtResultValue> current = null;
-        List<VtResultValue> curDistincts = null;
-        for (List<VtResultValue> row : result.getRows()) {
-            if (current == null) {
+        Group group = new Group();
+        this.aggregateRows(result.getFields(), result.getRows(), group, out.getRows());
+        if (group.current != null) {
+            List<VtResultValue> finalValues = convertFinal(group.current, super.aggregates);
+            out.getRows().add(finalValues);
+        }
+        return new IExecute.ExecuteMultiShardResponse(out.truncate(super.truncateColumnCount));
+    }
+
+    /**
+     * streamExecute aggregates the input stream incrementally, a group is returned once the first row
+     * of the next group is read, so only the current group is held in memory.
+     */
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        // merging rows needs the fields of the input, whether the caller wants them or not
+        IExecute.VtStream inputStream = this.input.streamExecute(ctx, vcursor, bindVariableMap, true);
+        return new IExecute.VtStream() {
+            private IExecute.VtStream stream = inputStream;
+
+            private Query.Field[] fields;
+
+            private final Group group = new Group();
+
+            @Override
+            public VtRowList fetch(boolean wantFields) throws SQLException {
+                List<List<VtResultValue>> rows = new ArrayList<>();
+                while (stream != null && rows.size() < StreamShardReader.FETCH_ROWS) {
+                    VtResultSet fetched = (VtResultSet) stream.fetch(fields == null);
+                    if (fields == null && fetched.getFields() != null) {
+                        fields = convertFields(fetched.getFields().clone(), preProcess, aggregates, aggrOnEngine);
+                    }
+                    if (fetched.getRows() == null || fetched.getRows().isEmpty()) {
+                        close();
+                        if (group.current != null) {
+                            rows.add(convertFinal(group.current, aggregates));
+                            group.current = null;
+                        }
+                        break;
+                    }
+                    aggregateRows(fields, fetched.getRows(), group, rows);
+                }
+                VtResultSet out = new VtResultSet(wantFields || !rows.isEmpty() ? fields : null, rows);
+                out.setRowsAffected(rows.size());
+                return out.truncate(truncateColumnCount);
+            }
+
+            @Override
+            public void close() throws SQLException {
+                if (stream != null) {
+                    stream.close();
+                    stream = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * aggregateRows merges rows sorted by the keys into the current group, and adds every group
+     * that is complete to out.
+     *
+     * @param fields the fields of the rows, converted by convertFields
+     */
+    private void aggregateRows(Query.Field[] fields, List<List<VtResultValue>> rows, Group group, List<List<VtResultValue>> out) throws SQLException {
+        for (List<VtResultValue> row : rows) {
+            if (group.current == null) {
                 Pair<List<VtResultValue>, List<VtResultValue>> pair = convertRow(row, super.preProcess, super.aggregates, super.aggrOnEngine);
-                current = pair.getLeft();
-                curDistincts = pair.getRight();
+                group.current = pair.getLeft();
+                group.curDistincts = pair.getRight();
                 continue;
             }
-            boolean equal = this.keysEqual(current, row);
+            boolean equal = this.keysEqual(group.current, row);
             if (equal) {
-                Pair<List<VtResultValue>, List<VtResultValue>> pair = merge(result.getFields(), current, row, curDistincts, super.collations, super.aggregates);
-                current = pair.getLeft();
-                curDistincts = pair.getRight();
+                Pair<List<VtResultValue>, List<VtResultValue>> pair = merge(fields, group.current, row, group.curDistincts, super.collations, super.aggregates);
+                group.current = pair.getLeft();
+                group.curDistincts = pair.getRight();
                 continue;
             }
-            out.getRows().add(current);
+            out.add(group.current);
             Pair<List<VtResultValue>, List<VtResultValue>> pair = convertRow(row, super.preProcess, super.aggregates, super.aggrOnEngine);
-            current = pair.getLeft();
-            curDistincts = pair.getRight();
-        }
-        if (current != null) {
-            List<VtResultValue> finalValues = convertFinal(current, super.aggregates);
-            out.getRows().add(finalValues);
+            group.current = pair.getLeft();
+            group.curDistincts = pair.getRight();
         }
-        return new IExecute.ExecuteMultiShardResponse(out.truncate(super.truncateColumnCount));
     }
 
     private boolean keysEqual(List<VtResultValue> row1, List<VtResultValue> row2) throws SQLException {
@@ -104,4 +163,13 @@ public class OrderedAggregateGen4Engine extends AbstractAggregateGen4 {
         }
         return true;
     }
+
+    /**
+     * Group is the aggregate of the group whose rows are being read.
+     */
+    private static final class Group {
+        private List<VtResultValue> current;
+
+        private List<VtResultValue> curDistincts;
+    }
 }
@@ -22,48 +22,95 @@ import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.sqltypes.VtResultValue;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * ProbeTable is an open addressing hash table of rows, keyed on the values of the check columns.
+ * <p>
+ * The hash code of every row is computed once and kept in a long array next to the slots,
+ * so neither a lookup nor a resize boxes a key or hashes a row again, and the values of two
+ * rows are only compared when their hash codes are equal.
+ */
 public class ProbeTable {
-    Map<Long, List<List<VtResultValue>>> seenRows;
+    private static final int INITIAL_CAPACITY = 16;
 
-    List<CheckCol> checkCols;
+    private final List<CheckCol> checkCols;
 
-    public ProbeTable(Map<Long, List<List<VtResultValue>>> seenRows, List<CheckCol> checkCols) {
-        this.seenRows = seenRows;
+    private final List<List<VtResultValue>> rows = new ArrayList<>();
+
+    /**
+     * slots hold the index + 1 of a row in rows, 0 if the slot is empty.
+     */
+    private int[] slots = new int[INITIAL_CAPACITY];
+
+    private long[] hashCodes = new long[INITIAL_CAPACITY / 2];
+
+    public ProbeTable(List<CheckCol> checkCols) {
         this.checkCols = checkCols;
     }
 
     public boolean exists(List<VtResultValue> inputRow) throws SQLException {
-        // the two prime numbers used here (17 and 31) are used to
-        // calculate hashcode from all column values in the input sqltypes.Row
+        return findOrInsert(inputRow) >= 0;
+    }
+
+    /**
+     * @param inputRow
+     * @return the index of the row with the same check column values as inputRow,
+     * or -1 if there is none and inputRow was added as the row at index size() - 1
+     * @throws SQLException
+     */
+    public int findOrInsert(List<VtResultValue> inputRow) throws SQLException {
         long code = hashCodeForRow(inputRow);
-        List<List<VtResultValue>> existingRows = seenRows.get(code);
-        if (existingRows == null) {
-            // nothing with this hash code found, we can be sure it's a not seen sqltypes.Row
-            List<List<VtResultValue>> lists = new ArrayList<>();
-            lists.add(inputRow);
-            seenRows.put(code, lists);
-            return false;
+        int mask = slots.length - 1;
+        for (int slot = mix(code) & mask; ; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (index < 0) {
+                slots[slot] = insert(code, inputRow) + 1;
+                if (rows.size() * 2 > slots.length) {
+                    resize();
+                }
+                return -1;
+            }
+            // we found something with this hash code - still need to check all individual values
+            // so we don't just fall for a hash collision
+            if (hashCodes[index] == code && equal(rows.get(index), inputRow)) {
+                return index;
+            }
         }
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public List<VtResultValue> getRow(int index) {
+        return rows.get(index);
+    }
 
-        // we found something in the map - still need to check all individual values
-        // so we don't just fall for a hash collision
-        for (List<VtResultValue> existingRow : existingRows) {
-            boolean exists = equal(existingRow, inputRow);
-            if (exists) {
-                return true;
+    /**
+     * @param inputRow
+     * @return the hash code of the check column values, equal values must have equal hash codes
+     * @throws SQLException
+     */
+    protected long hashCodeForRow(List<VtResultValue> inputRow) throws SQLException {
+        // the two prime numbers used here (17 and 31) are used to
+        // calculate hashcode from all column values in the input sqltypes.Row
+        long code = 17;
+        for (CheckCol checkCol : checkCols) {
+            if (checkCol.getCol() >= inputRow.size()) {
+                throw new RuntimeException("Distinct check cols is larger than its input row.");
             }
+            VtResultValue col = inputRow.get(checkCol.getCol());
+            long hashcode = EvalEngine.nullsafeHashcode(col, checkCol.getCollation(), col.getVtType());
+            code = code * 31 + hashcode;
         }
-        existingRows.add(inputRow);
-        return false;
+        return code;
     }
 
     private boolean equal(List<VtResultValue> a, List<VtResultValue> b) throws SQLException {
-        for (int i = 0; i < this.checkCols.size(); i++) {
-            CheckCol checkCol = this.checkCols.get(i);
-            int cmp = EvalEngine.nullSafeCompare(a.get(i), b.get(i));
+        for (CheckCol checkCol : checkCols) {
+            int cmp = EvalEngine.nullSafeCompare(a.get(checkCol.getCol()), b.get(checkCol.getCol()));
             if (cmp != 0) {
                 return false;
             }
@@ -71,17 +118,34 @@ public class ProbeTable {
         return true;
     }
 
-    private long hashCodeForRow(List<VtResultValue> inputRow) throws SQLException {
-        long code = 17;
-        for (int i = 0; i < checkCols.size(); i++) {
-            CheckCol checkCol = checkCols.get(i);
-            if (i >= inputRow.size()) {
-                throw new RuntimeException("Distinct check cols is larger than its input row.");
+    private int insert(long code, List<VtResultValue> inputRow) {
+        int index = rows.size();
+        if (index == hashCodes.length) {
+            hashCodes = Arrays.copyOf(hashCodes, index * 2);
+        }
+        hashCodes[index] = code;
+        rows.add(inputRow);
+        return index;
+    }
+
+    private void resize() {
+        int[] newSlots = new int[slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int index = 0; index < rows.size(); index++) {
+            int slot = mix(hashCodes[index]) & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
             }
-            VtResultValue col = inputRow.get(checkCol.getCol());
-            long hashcode = EvalEngine.nullsafeHashcode(col, checkCol.getCollation(), col.getVtType());
-            code = code * 31 + hashcode;
+            newSlots[slot] = index + 1;
         }
-        return code;
+        slots = newSlots;
+    }
+
+    /**
+     * spreads the hash code over the low bits, which pick the slot.
+     */
+    private static int mix(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
     }
 }
@@ -25,11 +25,18 @@ import com.jd.jdbc.common.util.CollectionUtils;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.engine.Engine;
 import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.ResultSetStream;
+import com.jd.jdbc.engine.RouteEngine;
+import com.jd.jdbc.engine.RouteStream;
+import com.jd.jdbc.engine.ShardQueryTemplate;
 import com.jd.jdbc.engine.Vcursor;
+import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.key.DestinationAnyShard;
 import com.jd.jdbc.planbuilder.Truncater;
+import com.jd.jdbc.queryservice.StreamIterator;
 import com.jd.jdbc.sqlparser.ast.statement.SQLSelectQuery;
+import com.jd.jdbc.sqlparser.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
 import com.jd.jdbc.sqltypes.SqlTypes;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
@@ -41,6 +48,7 @@ import com.jd.jdbc.srvtopo.Resolver;
 import com.jd.jdbc.vindexes.VKeyspace;
 import io.vitess.proto.Query;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -75,8 +83,11 @@ public class RouteGen4Engine implements PrimitiveEngine, Truncater {
     private String tableName = "";
 
     @Setter
+    @Getter
     private SQLSelectQuery selectQuery;
 
+    private volatile ShardQueryTemplate selectQueryTemplate;
+
     /**
      * TruncateColumnCount specifies the number of columns to return
      * in the final result. Rest of the columns are truncated
@@ -105,6 +116,14 @@ public class RouteGen4Engine implements PrimitiveEngine, Truncater {
     @Getter
     private final RoutingParameters routingParameters = new RoutingParameters();
 
+    /**
+     * LimitMerge is set when a limit reads the rows of the route directly. Only then the merge of
+     * the shard streams stops at the LIMIT of the route, under an aggregate every shard row is needed.
+     */
+    @Getter
+    @Setter
+    private boolean limitMerge;
+
     public RouteGen4Engine(Engine.RouteOpcode routeOpcode, VKeyspace keyspace) {
         this.routingParameters.routeOpcode = routeOpcode;
         this.routingParameters.keyspace = keyspace;
@@ -169,25 +188,32 @@ public class RouteGen4Engine implements PrimitiveEngine, Truncater {
         return false;
     }
 
-    private VtResultSet exec(Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
-        Pair<List<ResolvedShard>, List<Map<String, BindVariable>>> pair = this.routingParameters.findRoute(vcursor, bindVariableMap);
-        List<ResolvedShard> rss = pair.getLeft();
-        List<Map<String, BindVariable>> bvs = pair.getRight();
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        if (this.selectQuery instanceof MySqlSelectQueryBlock && ((MySqlSelectQueryBlock) this.selectQuery).isForUpdate()) {
+            throw new SQLFeatureNotSupportedException("Select with lock not allowed for streaming");
+        }
+        Pair<List<ResolvedShard>, List<Map<String, BindVariable>>> pair = this.resolveRoute(vcursor, bindVariableMap);
+        // No route
+        if (pair == null) {
+            return new ResultSetStream(wantFields ? this.getFields(vcursor, new HashMap<>(16, 1)) : new VtResultSet());
+        }
+        List<StreamIterator> iterators = vcursor.streamExecuteMultiShard(pair.getLeft(), this.getQueries(vcursor, pair.getRight()));
+        // the shards return their rows in the pushed down order, so an ordered route merges the streams instead of sorting them
+        return new RouteStream(iterators, OrderByParamsGen4.toOrderByParams(this.orderBy), this.truncateColumnCount, this, vcursor, bindVariableMap,
+            this.limitMerge ? RouteEngine.limitRowCount(this.selectQuery, bindVariableMap) : Integer.MAX_VALUE);
+    }
 
+    private VtResultSet exec(Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        Pair<List<ResolvedShard>, List<Map<String, BindVariable>>> pair = this.resolveRoute(vcursor, bindVariableMap);
         // No route
-        if (CollectionUtils.isEmpty(rss)) {
-            if (!this.noRoutesSpecialHandling) {
-                if (wantFields) {
-                    return this.getFields(vcursor, new HashMap<>(16, 1));
-                }
-                return new VtResultSet();
+        if (pair == null) {
+            if (wantFields) {
+                return this.getFields(vcursor, new HashMap<>(16, 1));
             }
-            pair = this.routingParameters.paramsAnyShard(vcursor, bindVariableMap);
-            rss = pair.getLeft();
-            bvs = pair.getRight();
+            return new VtResultSet();
         }
-        List<BoundQuery> queries = Engine.getQueriesGen4(this.selectQuery, bvs, null);
-        ExecuteMultiShardResponse executeMultiShardResponse = vcursor.executeMultiShard(rss, queries, false, false);
+        ExecuteMultiShardResponse executeMultiShardResponse = vcursor.executeMultiShard(pair.getLeft(), this.getQueries(vcursor, pair.getRight()), false, false);
 
         VtResultSet vtResultSet = (VtResultSet) executeMultiShardResponse.getVtRowList();
 
@@ -197,6 +223,38 @@ public class RouteGen4Engine implements PrimitiveEngine, Truncater {
         return this.sort(vtResultSet);
     }
 
+    /**
+     * @param vcursor
+     * @param bindVariableMap
+     * @return the shards to query and their bind variables, null if there is no route and the query is not sent to any shard
+     * @throws SQLException
+     */
+    private Pair<List<ResolvedShard>, List<Map<String, BindVariable>>> resolveRoute(Vcursor vcursor, Map<String, BindVariable> bindVariableMap) throws SQLException {
+        Pair<List<ResolvedShard>, List<Map<String, BindVariable>>> pair = this.routingParameters.findRoute(vcursor, bindVariableMap);
+        if (CollectionUtils.isEmpty(pair.getLeft())) {
+            if (!this.noRoutesSpecialHandling) {
+                return null;
+            }
+            pair = this.routingParameters.paramsAnyShard(vcursor, bindVariableMap);
+        }
+        return pair;
+    }
+
+    private List<BoundQuery> getQueries(Vcursor vcursor, List<Map<String, BindVariable>> bvs) throws SQLException {
+        return vcursor.getServerPrepareStatement()
+            ? Engine.getPreparedQueries(getSelectQueryTemplate(), bvs, null, vcursor.getCharEncoding())
+            : Engine.getQueriesGen4(getSelectQueryTemplate(), bvs, null);
+    }
+
+    private ShardQueryTemplate getSelectQueryTemplate() {
+        ShardQueryTemplate template = this.selectQueryTemplate;
+        if (template == null || !template.isCompiledFrom(this.selectQuery)) {
+            template = ShardQueryTemplate.compile(this.selectQuery);
+            this.selectQueryTemplate = template;
+        }
+        return template;
+    }
+
     /**
      * @param in
      * @return
@@ -260,7 +318,9 @@ public class RouteGen4Engine implements PrimitiveEngine, Truncater {
         }
         //  getQuery()
         String charEncoding = vcursor.getCharEncoding();
-        List<BoundQuery> queries = Engine.getQueriesGen4(this.selectQuery, bvs, charEncoding);
+        List<BoundQuery> queries = vcursor.getServerPrepareStatement()
+            ? Engine.getPreparedQueries(getSelectQueryTemplate(), bvs, null, charEncoding)
+            : Engine.getQueriesGen4(getSelectQueryTemplate(), bvs, charEncoding);
         IExecute.ExecuteMultiShardResponse results = vcursor.executeMultiShard(rss, queries, false, false);
 
         // TODO error process
@@ -273,6 +333,27 @@ public class RouteGen4Engine implements PrimitiveEngine, Truncater {
 
     }
 
+    /**
+     * @param routeOpcode
+     * @param values      routing values for routeOpcode
+     * @param selectQuery rewritten query, it must return the same rows as this route's query for the same routing values
+     * @return a copy of this route that executes selectQuery, its result is not truncated
+     */
+    public RouteGen4Engine withSelectQuery(Engine.RouteOpcode routeOpcode, List<EvalEngine.Expr> values, SQLSelectQuery selectQuery) {
+        RouteGen4Engine route = new RouteGen4Engine(routeOpcode, this.routingParameters.keyspace, this.query, this.fieldQuery, selectQuery);
+        route.routingParameters.setVindex(this.routingParameters.getVindex());
+        route.routingParameters.setValues(values);
+        route.routingParameters.setTargetDestination(this.routingParameters.getTargetDestination());
+        route.routingParameters.setSystableTableSchema(this.routingParameters.getSystableTableSchema());
+        route.routingParameters.setSystableTableName(this.routingParameters.getSystableTableName());
+        route.routingParameters.setQueryPinnedTable(this.routingParameters.isQueryPinnedTable());
+        route.selectFieldQuery = this.selectFieldQuery;
+        route.tableName = this.tableName;
+        route.noRoutesSpecialHandling = this.noRoutesSpecialHandling;
+        route.orderBy.addAll(this.orderBy);
+        return route;
+    }
+
     @Override
     public void setTruncateColumnCount(Integer count) {
         this.truncateColumnCount = count;
@@ -21,10 +21,12 @@ import com.jd.jdbc.common.tuple.Pair;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.engine.Engine.AggregateOpcodeG4;
 import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.ResultSetStream;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
 import com.jd.jdbc.srvtopo.BindVariable;
+import io.vitess.proto.Query;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -58,30 +60,69 @@ public class ScalarAggregateGen4Engine extends AbstractAggregateGen4 {
         return new IExecute.ExecuteMultiShardResponse(queryResult.truncate(this.truncateColumnCount));
     }
 
+    /**
+     * streamExecute merges the batches of the input stream as they are read, only the aggregated row is held in memory.
+     */
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        Query.Field[] fields = null;
+        Pair<List<VtResultValue>, List<VtResultValue>> aggregated = Pair.of(null, null);
+        // merging rows needs the fields of the input, whether the caller wants them or not
+        try (IExecute.VtStream stream = this.input.streamExecute(ctx, vcursor, bindVariableMap, true)) {
+            while (true) {
+                VtResultSet fetched = (VtResultSet) stream.fetch(fields == null);
+                if (fields == null && fetched.getFields() != null) {
+                    fields = convertFields(fetched.getFields().clone(), this.preProcess, this.aggregates, this.aggrOnEngine);
+                }
+                if (fetched.getRows() == null || fetched.getRows().isEmpty()) {
+                    break;
+                }
+                aggregated = this.aggregateRows(fields, fetched.getRows(), aggregated);
+            }
+        }
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        rows.add(this.resultRow(aggregated.getLeft()));
+        return new ResultSetStream(new VtResultSet(fields, rows).truncate(this.truncateColumnCount));
+    }
+
     private VtResultSet getExecuteMultiShardResponse(VtResultSet result) throws SQLException {
         VtResultSet out = new VtResultSet(convertFields(result.getFields(), this.preProcess, this.aggregates, this.aggrOnEngine), new ArrayList<>());
-        List<VtResultValue> resultRow = null;
-        List<VtResultValue> curDistinct = null;
-        for (List<VtResultValue> row : result.getRows()) {
+        Pair<List<VtResultValue>, List<VtResultValue>> aggregated = this.aggregateRows(result.getFields(), result.getRows(), Pair.of(null, null));
+        out.getRows().add(this.resultRow(aggregated.getLeft()));
+        return out;
+    }
+
+    /**
+     * @param fields     the fields of the rows, converted by convertFields
+     * @param aggregated the aggregated row and its current distinct values, both null before the first row
+     * @return
+     * @throws SQLException
+     */
+    private Pair<List<VtResultValue>, List<VtResultValue>> aggregateRows(Query.Field[] fields, List<List<VtResultValue>> rows, Pair<List<VtResultValue>, List<VtResultValue>> aggregated)
+        throws SQLException {
+        List<VtResultValue> resultRow = aggregated.getLeft();
+        List<VtResultValue> curDistinct = aggregated.getRight();
+        for (List<VtResultValue> row : rows) {
             if (resultRow == null) {
                 Pair<List<VtResultValue>, List<VtResultValue>> listListPair = convertRow(row, this.preProcess, this.aggregates, this.aggrOnEngine);
                 resultRow = listListPair.getLeft();
                 curDistinct = listListPair.getRight();
                 continue;
             }
-            Pair<List<VtResultValue>, List<VtResultValue>> merge = merge(result.getFields(), resultRow, row, curDistinct, collations, aggregates);
+            Pair<List<VtResultValue>, List<VtResultValue>> merge = merge(fields, resultRow, row, curDistinct, collations, aggregates);
             resultRow = merge.getLeft();
             curDistinct = merge.getRight();
         }
-        if (resultRow == null) {
+        return Pair.of(resultRow, curDistinct);
+    }
+
+    private List<VtResultValue> resultRow(List<VtResultValue> aggregated) throws SQLException {
+        if (aggregated == null) {
             // When doing aggregation without grouping keys, we need to produce a single row containing zero-value for the
             // different aggregation functions
-            resultRow = createEmptyRow();
-        } else {
-            resultRow = convertFinal(resultRow, this.aggregates);
+            return createEmptyRow();
         }
-        out.getRows().add(resultRow);
-        return out;
+        return convertFinal(aggregated, this.aggregates);
     }
 
     /**
@@ -24,6 +24,7 @@ import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.Vcursor;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.BindVariable;
 import io.vitess.proto.Query;
 import java.sql.SQLException;
@@ -61,6 +62,30 @@ public class SimpleProjectionGen4Engine implements PrimitiveEngine {
         return new IExecute.ExecuteMultiShardResponse(this.buildResult((VtResultSet) inner.getVtRowList()));
     }
 
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        IExecute.VtStream inputStream = this.getInput().streamExecute(ctx, vcursor, bindVariableMap, wantFields);
+        return new IExecute.VtStream() {
+            private IExecute.VtStream stream = inputStream;
+
+            @Override
+            public VtRowList fetch(boolean wantFields) throws SQLException {
+                if (stream == null) {
+                    return new VtResultSet();
+                }
+                return buildResult((VtResultSet) stream.fetch(wantFields));
+            }
+
+            @Override
+            public void close() throws SQLException {
+                if (stream != null) {
+                    stream.close();
+                    stream = null;
+                }
+            }
+        };
+    }
+
     @Override
     public Boolean needsTransaction() {
         return this.getInput().needsTransaction();
@@ -82,7 +107,10 @@ public class SimpleProjectionGen4Engine implements PrimitiveEngine {
 
     private VtResultSet buildResult(VtResultSet inner) {
         VtResultSet newInner = new VtResultSet();
-        newInner.setFields(this.buildFields(inner).toArray(new Query.Field[0]));
+        List<Query.Field> fields = this.buildFields(inner);
+        if (fields != null) {
+            newInner.setFields(fields.toArray(new Query.Field[0]));
+        }
 
         List<List<VtResultValue>> rows = new ArrayList<>(inner.getRows().size());
 
@@ -99,7 +127,8 @@ public class SimpleProjectionGen4Engine implements PrimitiveEngine {
     }
 
     private List<Query.Field> buildFields(VtResultSet inner) {
-        if (inner.getFields().length == 0) {
+        // the batches of a stream after the first one may come without fields
+        if (inner.getFields() == null || inner.getFields().length == 0) {
             return null;
         }
         List<Query.Field> fields = new ArrayList<>(inner.getFields().length);
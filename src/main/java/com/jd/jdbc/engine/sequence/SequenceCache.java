@@ -25,18 +25,32 @@ import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
 import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.ResolvedShard;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * insert sequence cache.
+ * <p>
+ * Each sequence table is served from a segment reserved in the table by a compare-and-set update of
+ * next_id. Ids are handed out by a single atomic add on the segment, so a multi-row insert takes a
+ * contiguous range at once. When the consumed share of a segment reaches the watermark, the next
+ * segment is reserved in the background, and callers only block on the refill when it is not ready
+ * yet. A segment is a multiple of the cache column of the table: the multiple is doubled while
+ * segments last less than SEGMENT_DURATION and halved when they last more than twice as long.
  */
 public final class SequenceCache {
 
@@ -44,11 +58,31 @@ public final class SequenceCache {
 
     private static final int DEFAULT_RETRY_TIMES = 100;
 
-    private static final Map<String, Cache> CACHE_MAP = new ConcurrentHashMap<>();
+    private static final double DEFAULT_PREFETCH_WATERMARK = 0.5;
 
-    private static final Map<String, ReentrantLock> LOCK_MAP = new ConcurrentHashMap<>();
+    private static final long SEGMENT_DURATION_NANOS = TimeUnit.MINUTES.toNanos(1);
 
-    private final ReentrantLock lock = new ReentrantLock();
+    private static final int MAX_CACHE_MULTIPLE = 64;
+
+    private static final Map<String, Allocator> ALLOCATOR_MAP = new ConcurrentHashMap<>();
+
+    private static double prefetchWatermark = DEFAULT_PREFETCH_WATERMARK;
+
+    static {
+        String sysProp = System.getProperty("vtdriver.sequencePrefetchWatermark");
+        if (sysProp != null) {
+            try {
+                double parsedValue = Double.parseDouble(sysProp);
+                if (parsedValue > 0 && parsedValue < 1) {
+                    prefetchWatermark = parsedValue;
+                } else {
+                    log.error("the value of the JVM option parameter vtdriver.sequencePrefetchWatermark should be between 0 and 1");
+                }
+            } catch (NumberFormatException e) {
+                log.error("the value of the JVM option parameter vtdriver.sequencePrefetchWatermark is invalid");
+            }
+        }
+    }
 
     public static long[] getVtResultValue(VtResultSet vtResultSet) throws SQLException {
         if (vtResultSet == null) {
@@ -75,20 +109,22 @@ public final class SequenceCache {
         return sequenceInfo;
     }
 
-    private Cache getCache(Vcursor vCursor, ResolvedShard resolvedShard, String sequenceTableName) throws SQLException, InterruptedException {
-        long[] sequenceInfo = querySequenceValue(vCursor, resolvedShard, sequenceTableName);
-        if (log.isDebugEnabled()) {
-            log.debug("sequence cache info, next:" + sequenceInfo[0] + ", cache:" + sequenceInfo[1]);
-        }
-        return new Cache(sequenceInfo[0], sequenceInfo[1]);
-    }
-
-    public long[] querySequenceValue(Vcursor vCursor, ResolvedShard resolvedShard, String sequenceTableName) throws SQLException, InterruptedException {
+    /**
+     * reserves cache * cacheMultiple ids in the sequence table.
+     *
+     * @param executor      runs a standalone query on the shard of the sequence table
+     * @param sequenceTableName
+     * @param cacheMultiple
+     * @return next id and the number of ids reserved from it
+     * @throws SQLException
+     * @throws InterruptedException
+     */
+    static long[] querySequenceValue(StandaloneExecutor executor, String sequenceTableName, int cacheMultiple) throws SQLException, InterruptedException {
 
         int retryTimes = DEFAULT_RETRY_TIMES;
         while (retryTimes > 0) {
             String querySql = "select next_id, cache from " + sequenceTableName + " where id = 0";
-            VtResultSet vtResultSet = (VtResultSet) vCursor.executeStandalone(querySql, new HashMap<>(), resolvedShard, false);
+            VtResultSet vtResultSet = (VtResultSet) executor.execute(querySql);
             long[] sequenceInfo = getVtResultValue(vtResultSet);
 
             long next = sequenceInfo[0];
@@ -99,11 +135,13 @@ public final class SequenceCache {
             if (cache <= 0) {
                 throw new SQLException("cache value in " + sequenceTableName + " is invalid! it should be greater than 0");
             }
+            long reserved = cache * cacheMultiple;
 
-            String updateSql = "update " + sequenceTableName + " set next_id = " + (next + cache) + " where next_id =" + sequenceInfo[0];
-            VtRowList vtRowList = vCursor.executeStandalone(updateSql, new HashMap<>(), resolvedShard, false);
+            String updateSql = "update " + sequenceTableName + " set next_id = " + (next + reserved) + " where next_id =" + sequenceInfo[0];
+            VtRowList vtRowList = executor.execute(updateSql);
             if (vtRowList.getRowsAffected() == 1) {
                 sequenceInfo[0] = next;
+                sequenceInfo[1] = reserved;
                 return sequenceInfo;
             }
             retryTimes--;
@@ -113,83 +151,195 @@ public final class SequenceCache {
     }
 
     public long nextValue(Vcursor vCursor, ResolvedShard resolvedShard, String keyspace, String sequenceTableName) throws SQLException, InterruptedException {
+        long[] values = new long[1];
+        getAllocator(keyspace, sequenceTableName).allocate(vCursor, resolvedShard, values);
+        return values[0];
+    }
+
+    public List<Long> getSequences(Vcursor vCursor, ResolvedShard resolvedShard, String keyspace, String sequenceTableName, int count) throws SQLException {
+        long[] values = new long[count];
+        try {
+            getAllocator(keyspace, sequenceTableName).allocate(vCursor, resolvedShard, values);
+        } catch (SQLException | InterruptedException e) {
+            throw new SQLException(
+                "failed to get sequences for keyspace:" + keyspace + ", tableName:" + sequenceTableName.substring(0, sequenceTableName.length() - 4) + ", errorMessage:" + e.getMessage());
+        }
+        List<Long> sequences = new ArrayList<>(count);
+        for (long value : values) {
+            sequences.add(value);
+        }
+        return sequences;
+    }
+
+    static void clear() {
+        ALLOCATOR_MAP.clear();
+    }
+
+    private static Allocator getAllocator(String keyspace, String sequenceTableName) {
         String cacheKey = keyspace + " " + sequenceTableName;
-        if (!CACHE_MAP.containsKey(cacheKey)) {
+        Allocator allocator = ALLOCATOR_MAP.get(cacheKey);
+        if (allocator == null) {
+            allocator = ALLOCATOR_MAP.computeIfAbsent(cacheKey, key -> new Allocator(sequenceTableName, prefetchWatermark));
+        }
+        return allocator;
+    }
+
+    interface StandaloneExecutor {
+        VtRowList execute(String sql) throws SQLException;
+    }
+
+    static final class Allocator {
+        private final String sequenceTableName;
+
+        private final double prefetchWatermark;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile Segment current;
+
+        /**
+         * the segment reserved in the background, guarded by lock.
+         */
+        private CompletableFuture<Segment> prefetched;
+
+        /**
+         * guarded by lock.
+         */
+        private int cacheMultiple = 1;
+
+        /**
+         * guarded by lock.
+         */
+        private long lastReserveNanos;
+
+        Allocator(final String sequenceTableName, final double prefetchWatermark) {
+            this.sequenceTableName = sequenceTableName;
+            this.prefetchWatermark = prefetchWatermark;
+        }
+
+        /**
+         * fills values with ids, contiguous unless the current segment runs out in between.
+         *
+         * @param vCursor
+         * @param resolvedShard
+         * @param values
+         * @throws SQLException
+         * @throws InterruptedException
+         */
+        void allocate(final Vcursor vCursor, final ResolvedShard resolvedShard, final long[] values) throws SQLException, InterruptedException {
+            int filled = 0;
+            while (filled < values.length) {
+                Segment segment = current;
+                if (segment != null) {
+                    int wanted = values.length - filled;
+                    long first = segment.next.getAndAdd(wanted);
+                    if (first < segment.end) {
+                        long last = Math.min(segment.end, first + wanted);
+                        for (long value = first; value < last; value++) {
+                            values[filled++] = value;
+                        }
+                        if (last >= segment.prefetchAt && segment.prefetching.compareAndSet(false, true)) {
+                            prefetch(vCursor, resolvedShard);
+                        }
+                        continue;
+                    }
+                }
+                nextSegment(segment, vCursor, resolvedShard);
+            }
+            if (filled > 0 && values[filled - 1] < 0) {
+                throw new SQLException("Sequence value overflow, value = " + values[values.length - 1]);
+            }
+        }
+
+        private void prefetch(final Vcursor vCursor, final ResolvedShard resolvedShard) {
             lock.lock();
             try {
-                if (!CACHE_MAP.containsKey(cacheKey)) {
-                    CACHE_MAP.put(cacheKey, getCache(vCursor, resolvedShard, sequenceTableName));
-                    LOCK_MAP.put(cacheKey, new ReentrantLock());
+                if (prefetched != null) {
+                    return;
                 }
+                int multiple = nextCacheMultiple();
+                StandaloneExecutor executor = sql -> vCursor.executeStandaloneDetached(sql, new HashMap<>(), resolvedShard);
+                prefetched = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return reserve(executor, multiple);
+                    } catch (SQLException | InterruptedException e) {
+                        throw new CompletionException(e);
+                    }
+                }, VtQueryExecutorService.getExecutor());
+            } catch (RejectedExecutionException e) {
+                log.warn("prefetch sequence segment of " + sequenceTableName + " is rejected, it will be reserved when the current one runs out");
             } finally {
                 lock.unlock();
             }
         }
 
-        long value = CACHE_MAP.get(cacheKey).getAndIncrement();
-        if (value == -1) {
-            LOCK_MAP.get(cacheKey).lock();
+        private void nextSegment(final Segment exhausted, final Vcursor vCursor, final ResolvedShard resolvedShard) throws SQLException, InterruptedException {
+            lock.lock();
             try {
-                for (; ; ) {
-                    if (CACHE_MAP.get(cacheKey).isOver()) {
-                        CACHE_MAP.put(cacheKey, getCache(vCursor, resolvedShard, sequenceTableName));
-                    }
-                    value = CACHE_MAP.get(cacheKey).getAndIncrement();
-                    if (value == -1) {
-                        continue;
+                if (current != exhausted) {
+                    return;
+                }
+                Segment segment = null;
+                if (prefetched != null) {
+                    try {
+                        segment = prefetched.get();
+                    } catch (ExecutionException e) {
+                        log.warn("prefetch sequence segment of " + sequenceTableName + " failed, reserve it again, cause: " + e.getCause().getMessage());
+                    } finally {
+                        prefetched = null;
                     }
-                    break;
                 }
+                if (segment == null) {
+                    StandaloneExecutor executor = sql -> vCursor.executeStandalone(sql, new HashMap<>(), resolvedShard, false);
+                    segment = reserve(executor, nextCacheMultiple());
+                }
+                current = segment;
             } finally {
-                LOCK_MAP.get(cacheKey).unlock();
+                lock.unlock();
             }
         }
 
-        if (value < 0) {
-            throw new SQLException("Sequence value overflow, value = " + value);
+        /**
+         * must be called with the lock held.
+         *
+         * @return the cache multiple of the next segment
+         */
+        private int nextCacheMultiple() {
+            long now = System.nanoTime();
+            if (lastReserveNanos != 0) {
+                long duration = now - lastReserveNanos;
+                if (duration < SEGMENT_DURATION_NANOS) {
+                    cacheMultiple = Math.min(cacheMultiple * 2, MAX_CACHE_MULTIPLE);
+                } else if (duration >= SEGMENT_DURATION_NANOS * 2) {
+                    cacheMultiple = Math.max(cacheMultiple / 2, 1);
+                }
+            }
+            lastReserveNanos = now;
+            return cacheMultiple;
         }
 
-        return value;
-    }
-
-    public List<Long> getSequences(Vcursor vCursor, ResolvedShard resolvedShard, String keyspace, String sequenceTableName, int count) throws SQLException {
-        List<Long> sequences = new ArrayList<>(count);
-        for (int i = 0; i < count; i++) {
-            try {
-                sequences.add(nextValue(vCursor, resolvedShard, keyspace, sequenceTableName));
-            } catch (SQLException | InterruptedException e) {
-                throw new SQLException(
-                    "failed to get sequences for keyspace:" + keyspace + ", tableName:" + sequenceTableName.substring(0, sequenceTableName.length() - 4) + ", errorMessage:" + e.getMessage());
+        private Segment reserve(final StandaloneExecutor executor, final int multiple) throws SQLException, InterruptedException {
+            long[] sequenceInfo = querySequenceValue(executor, sequenceTableName, multiple);
+            if (log.isDebugEnabled()) {
+                log.debug("sequence cache info, next:" + sequenceInfo[0] + ", cache:" + sequenceInfo[1]);
             }
+            return new Segment(sequenceInfo[0], sequenceInfo[1], prefetchWatermark);
         }
-        return sequences;
     }
 
-    class Cache {
-        private final AtomicLong value;
+    static final class Segment {
+        private final AtomicLong next;
 
-        private final long max;
+        private final long end;
 
-        private volatile boolean isOver;
+        private final long prefetchAt;
 
-        Cache(final long start, final long limit) {
-            this.value = new AtomicLong(start);
-            this.max = start + limit;
-            this.isOver = false;
-        }
+        private final AtomicBoolean prefetching = new AtomicBoolean(false);
 
-        public long getAndIncrement() throws SQLException {
-            long next = value.getAndIncrement();
-            if (next >= max) {
-                isOver = true;
-                return -1;
-            }
-            return next;
-        }
-
-        public boolean isOver() {
-            return isOver;
+        Segment(final long start, final long size, final double prefetchWatermark) {
+            this.next = new AtomicLong(start);
+            this.end = start + size;
+            this.prefetchAt = start + (long) Math.ceil(size * prefetchWatermark);
         }
     }
 }
-
@@ -110,8 +110,18 @@ public class TableQueryEngine extends AbstractMultiQueryEngine {
             return new IExecute.ExecuteMultiShardResponse(resultSet).setUpdate();
         }
 
-        for (int i = 0; i < resultSet.getFields().length; i++) {
-            Query.Field[] fields = resultSet.getFields();
+        toLogicTableFields(resultSet.getFields());
+
+        return new IExecute.ExecuteMultiShardResponse(resultSet);
+    }
+
+    /**
+     * replaces the actual table of every field with its logic table.
+     *
+     * @param fields
+     */
+    void toLogicTableFields(Query.Field[] fields) {
+        for (int i = 0; i < fields.length; i++) {
             if (fields[i] == null) {
                 continue;
             }
@@ -121,8 +131,6 @@ public class TableQueryEngine extends AbstractMultiQueryEngine {
                 fields[i] = fields[i].toBuilder().setTable(logicTable).build();
             }
         }
-
-        return new IExecute.ExecuteMultiShardResponse(resultSet);
     }
 
     private boolean isDmlEngine() {
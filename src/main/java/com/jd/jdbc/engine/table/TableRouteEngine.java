@@ -24,9 +24,15 @@ import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.engine.AbstractRouteEngine;
 import com.jd.jdbc.engine.Engine;
 import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.ResultSetStream;
+import com.jd.jdbc.engine.RouteEngine;
+import com.jd.jdbc.engine.RouteStream;
 import com.jd.jdbc.engine.TableShardQuery;
 import com.jd.jdbc.engine.Vcursor;
+import com.jd.jdbc.queryservice.StreamIterator;
+import com.jd.jdbc.sqlparser.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
 import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.sqltypes.VtValue;
 import com.jd.jdbc.srvtopo.BindVariable;
 import com.jd.jdbc.srvtopo.BoundQuery;
@@ -36,7 +42,9 @@ import com.jd.jdbc.tindexes.LogicTable;
 import com.jd.jdbc.tindexes.TableDestinationGroup;
 import com.jd.jdbc.tindexes.TableIndex;
 import com.jd.jdbc.vindexes.VKeyspace;
+import io.vitess.proto.Query;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -102,15 +110,75 @@ public class TableRouteEngine extends AbstractRouteEngine implements TableShardQ
         if (executeEngine.canResolveShardQuery()) {
             VtResultSet tableBatchExecuteResult = TableEngine.getTableBatchExecuteResult(ctx, executeEngine, vcursor, bindVariableMap, tableDestinationResponse);
             if (this.orderBy == null || this.orderBy.isEmpty()) {
-                return new IExecute.ExecuteMultiShardResponse(tableBatchExecuteResult);
+                return new IExecute.ExecuteMultiShardResponse(tableBatchExecuteResult.truncate(this.truncateColumnCount));
             }
             resultSet = this.sort(tableBatchExecuteResult);
-            return new IExecute.ExecuteMultiShardResponse(resultSet);
+            return new IExecute.ExecuteMultiShardResponse(resultSet.truncate(this.truncateColumnCount));
         } else {
             throw new SQLException("unsupported engine for partitioned table");
         }
     }
 
+    /**
+     * streamExecute streams the query of every actual table on its own, so an ordered route merges the
+     * streams of the tables in order instead of sorting all of their rows.
+     */
+    @Override
+    public IExecute.VtStream streamExecute(final IContext ctx, final Vcursor vcursor, final Map<String, BindVariable> bindVariableMap, final boolean wantFields) throws SQLException {
+        if (this.selectQuery instanceof MySqlSelectQueryBlock && ((MySqlSelectQueryBlock) this.selectQuery).isForUpdate()) {
+            throw new SQLFeatureNotSupportedException("Select with lock not allowed for streaming");
+        }
+        TableEngine.TableDestinationResponse tableDestinationResponse = this.getResolveDestinationResult(bindVariableMap);
+        // No route
+        if (tableDestinationResponse == null) {
+            return new ResultSetStream(wantFields ? this.getFields(vcursor, new HashMap<>(16, 1)) : new VtResultSet());
+        }
+        if (!executeEngine.canResolveShardQuery()) {
+            throw new SQLException("unsupported engine for partitioned table");
+        }
+        PrimitiveEngine primitiveEngine = TableEngine.buildTableQueryPlan(ctx, executeEngine, vcursor, bindVariableMap, tableDestinationResponse);
+        if (!(primitiveEngine instanceof TableQueryEngine)) {
+            throw new SQLException("error: primitiveEngine should be TableQueryEngine");
+        }
+        TableQueryEngine tableQueryEngine = (TableQueryEngine) primitiveEngine;
+
+        List<ResolvedShard> rss = new ArrayList<>();
+        List<BoundQuery> queries = new ArrayList<>();
+        for (Map.Entry<ResolvedShard, List<BoundQuery>> rssQueriesEntry : tableQueryEngine.getResolvedShardListMap().entrySet()) {
+            for (BoundQuery query : rssQueriesEntry.getValue()) {
+                rss.add(rssQueriesEntry.getKey());
+                queries.add(query);
+            }
+        }
+        if (rss.isEmpty()) {
+            return new ResultSetStream(wantFields ? this.getFields(vcursor, new HashMap<>(16, 1)) : new VtResultSet());
+        }
+        List<StreamIterator> iterators = vcursor.streamExecuteMultiShard(rss, queries);
+        RouteStream routeStream = new RouteStream(iterators, this.orderBy, this.truncateColumnCount, this, vcursor, bindVariableMap,
+            this.limitMerge ? RouteEngine.limitRowCount(this.selectQuery, bindVariableMap) : Integer.MAX_VALUE);
+        return new IExecute.VtStream() {
+            private Query.Field[] fields;
+
+            @Override
+            public VtRowList fetch(final boolean wantFields) throws SQLException {
+                VtResultSet resultSet = (VtResultSet) routeStream.fetch(wantFields);
+                if (resultSet.getFields() != null) {
+                    if (fields == null) {
+                        fields = resultSet.getFields().clone();
+                        tableQueryEngine.toLogicTableFields(fields);
+                    }
+                    resultSet.setFields(fields);
+                }
+                return resultSet;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                routeStream.close();
+            }
+        };
+    }
+
     @Override
     public Boolean needsTransaction() {
         return false;
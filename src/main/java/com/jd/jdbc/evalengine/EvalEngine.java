@@ -613,6 +613,65 @@ public class EvalEngine {
         }
     }
 
+    /**
+     * TupleBindVariable evaluates a TUPLE bind variable, such as the IN-list a batched join binds
+     * for its right side, into a tuple of its values.
+     */
+    public static class TupleBindVariable implements Expr {
+        private final String key;
+
+        public TupleBindVariable(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public EvalResult evaluate(ExpressionEnv env) throws SQLException {
+            return eval(env, new EvalResult());
+        }
+
+        @Override
+        public EvalResult eval(ExpressionEnv env, EvalResult result) throws SQLException {
+            com.jd.jdbc.srvtopo.BindVariable bindVariable = env.bindVariableMap.get(this.key);
+            if (bindVariable == null) {
+                throw new SQLException("Bind variable not found");
+            }
+            if (bindVariable.getType() != Query.Type.TUPLE) {
+                throw new SQLException("query argument '" + this.key + "' expected to be tuple but got " + bindVariable.getType());
+            }
+            List<EvalResult> tup = new ArrayList<>();
+            for (VtValue vtValue : VtValue.newVtValueList(bindVariable)) {
+                tup.add(evaluateByType(vtValue));
+            }
+            result.setTuple(tup);
+            return result;
+        }
+
+        @Override
+        public Query.Type type(ExpressionEnv env) throws SQLException {
+            return Query.Type.TUPLE;
+        }
+
+        @Override
+        public int getFlags() {
+            return 0;
+        }
+
+        @Override
+        public String string() {
+            return "::" + this.key;
+        }
+
+        @Override
+        public boolean constant() {
+            return false;
+        }
+
+        @Override
+        public void output(final StringBuilder builder, final boolean wrap, final Map<String, com.jd.jdbc.srvtopo.BindVariable> bindVariableMap) {
+            builder.append(string());
+        }
+    }
+
     public static class NullExpr implements Expr {
 
         @Override
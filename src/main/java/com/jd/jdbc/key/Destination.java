@@ -41,6 +41,18 @@ public interface Destination {
      */
     void resolve(List<ShardReference> allShards, DestinationResolve resolve) throws SQLException;
 
+    /**
+     * Resolve with a precomputed index of the shards list, destinations that look up
+     * keyspace ids override it to binary search the index.
+     *
+     * @param keyRangeIndex {@link KeyRangeIndex} of all shards
+     * @param resolve       {@link DestinationResolve}
+     * @throws SQLException when an error occurs
+     */
+    default void resolve(KeyRangeIndex keyRangeIndex, DestinationResolve resolve) throws SQLException {
+        resolve(keyRangeIndex.getShardReferences(), resolve);
+    }
+
     /**
      * IsUnique returns true if this is a single destination.
      * It returns false if this type can map to multiple destinations.
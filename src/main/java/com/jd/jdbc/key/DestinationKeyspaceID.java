@@ -57,6 +57,26 @@ public class DestinationKeyspaceID implements Destination {
         throw new SQLException("KeyspaceId didn't match any shards " + allShards);
     }
 
+    /**
+     * finds the right shard for a keyspace id by binary search.
+     *
+     * @param keyRangeIndex {@link KeyRangeIndex} of all shards
+     * @param keyspaceID    byte[]
+     * @return string
+     * @throws SQLException when no shard contains the keyspace id
+     */
+    public static String getShardForKeyspaceId(KeyRangeIndex keyRangeIndex, byte[] keyspaceID) throws SQLException {
+        List<Topodata.ShardReference> allShards = keyRangeIndex.getShardReferences();
+        if (allShards.isEmpty()) {
+            throw new SQLException("no shard in keyspace");
+        }
+        int index = keyRangeIndex.indexOf(keyspaceID);
+        if (index < 0) {
+            throw new SQLException("KeyspaceId didn't match any shards " + allShards);
+        }
+        return allShards.get(index).getName();
+    }
+
     public byte[] getValue() {
         return value;
     }
@@ -66,6 +86,11 @@ public class DestinationKeyspaceID implements Destination {
         resolve.resolve(getShardForKeyspaceId(allShards, value));
     }
 
+    @Override
+    public void resolve(KeyRangeIndex keyRangeIndex, DestinationResolve resolve) throws SQLException {
+        resolve.resolve(getShardForKeyspaceId(keyRangeIndex, value));
+    }
+
     @Override
     public Boolean isUnique() {
         return true;
@@ -0,0 +1,114 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.key;
+
+import io.vitess.proto.Topodata;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * KeyRangeIndex finds the shard of a keyspace id by binary search on the sorted key range
+ * starts of the shards, instead of testing every shard's key range.
+ * <p>
+ * It is immutable and built once per shard list. If the key ranges overlap, which a serving
+ * partition never does, it falls back to the linear scan so the first matching shard in list
+ * order still wins.
+ */
+public final class KeyRangeIndex {
+
+    private static final Comparator<byte[]> START_COMPARATOR = (a, b) -> a.length == 0 && b.length == 0 ? 0 : Bytes.compare(a, b);
+
+    @Getter
+    private final List<Topodata.ShardReference> shardReferences;
+
+    private final byte[][] starts;
+
+    private final byte[][] ends;
+
+    /**
+     * positions[i] is the index in shardReferences of the shard starting at starts[i].
+     */
+    private final int[] positions;
+
+    private final boolean overlapping;
+
+    public KeyRangeIndex(final List<Topodata.ShardReference> shardReferences) {
+        this.shardReferences = shardReferences;
+        int size = shardReferences.size();
+        byte[][] keyRangeStarts = new byte[size][];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keyRangeStarts[i] = shardReferences.get(i).getKeyRange().getStart().toByteArray();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> START_COMPARATOR.compare(keyRangeStarts[a], keyRangeStarts[b]));
+
+        this.starts = new byte[size][];
+        this.ends = new byte[size][];
+        this.positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            int position = order[i];
+            this.positions[i] = position;
+            this.starts[i] = keyRangeStarts[position];
+            this.ends[i] = shardReferences.get(position).getKeyRange().getEnd().toByteArray();
+        }
+        boolean overlap = false;
+        for (int i = 0; i + 1 < size; i++) {
+            if (ends[i].length == 0 || Bytes.compare(starts[i + 1], ends[i]) < 0) {
+                overlap = true;
+                break;
+            }
+        }
+        this.overlapping = overlap;
+    }
+
+    /**
+     * @param keyspaceId
+     * @return the index in {@link #getShardReferences()} of the shard containing keyspaceId, -1 if no shard contains it
+     */
+    public int indexOf(final byte[] keyspaceId) {
+        if (overlapping) {
+            for (int i = 0; i < shardReferences.size(); i++) {
+                if (Key.keyRangeContains(shardReferences.get(i).getKeyRange(), keyspaceId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int low = 0;
+        int high = starts.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Bytes.compare(starts[mid], keyspaceId) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) {
+            return -1;
+        }
+        if (ends[found].length != 0 && Bytes.compare(keyspaceId, ends[found]) >= 0) {
+            return -1;
+        }
+        return positions[found];
+    }
+}
@@ -66,6 +66,7 @@ public final class MonitorServer {
             ThreadPoolCollector.getInstance().register(COLLECTOR_REGISTRY);
             HealthCheckCollector.getInstance().register(COLLECTOR_REGISTRY);
             HealthyCollector.getInstance().register(COLLECTOR_REGISTRY);
+            TabletBalancerCollector.getInstance().register(COLLECTOR_REGISTRY);
             SqlErrorCollector.getInstance().register(COLLECTOR_REGISTRY);
             SrvKeyspaceCollector.getInstance().register(COLLECTOR_REGISTRY);
             PlanCollector.PlanCacheSizeCollector.getInstance().register(COLLECTOR_REGISTRY);
@@ -17,10 +17,14 @@ limitations under the License.
 package com.jd.jdbc.monitor;
 
 import com.jd.jdbc.engine.Plan;
-import com.jd.jdbc.util.cache.lrucache.LRUCache;
+import com.jd.jdbc.engine.SqlTemplate;
+import com.jd.jdbc.util.cache.lrucache.ConcurrentLRUCache;
 import io.prometheus.client.Collector;
 import io.prometheus.client.Counter;
+import io.prometheus.client.CounterMetricFamily;
 import io.prometheus.client.GaugeMetricFamily;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -50,20 +54,42 @@ public class PlanCollector {
 
         private static final PlanCacheSizeCollector planCacheSizeCollector = new PlanCacheSizeCollector();
 
-        private LRUCache<Plan> planCache;
+        private static final List<String> LABEL_NAMES = Collections.singletonList("cache");
+
+        private ConcurrentLRUCache<Plan> planCache;
+
+        private ConcurrentLRUCache<SqlTemplate> sqlTemplateCache;
 
         public static PlanCacheSizeCollector getInstance() {
             return planCacheSizeCollector;
         }
 
-        public void setPlanCache(final LRUCache<Plan> planCache) {
+        public void setPlanCache(final ConcurrentLRUCache<Plan> planCache, final ConcurrentLRUCache<SqlTemplate> sqlTemplateCache) {
             this.planCache = planCache;
+            this.sqlTemplateCache = sqlTemplateCache;
         }
 
         @Override
         public List<MetricFamilySamples> collect() {
             GaugeMetricFamily labeledGauge = new GaugeMetricFamily("plan_cache_size", "plan cache size info", planCache.size());
-            return Collections.singletonList(labeledGauge);
+            GaugeMetricFamily weightGauge = new GaugeMetricFamily("plan_cache_weight", "estimated bytes held by the plan caches", LABEL_NAMES);
+            CounterMetricFamily hitCounter = new CounterMetricFamily("plan_cache_hit", "lookup hit count of the plan caches", LABEL_NAMES);
+            CounterMetricFamily missCounter = new CounterMetricFamily("plan_cache_miss", "lookup miss count of the plan caches", LABEL_NAMES);
+            CounterMetricFamily evictionCounter = new CounterMetricFamily("plan_cache_eviction", "eviction count of the plan caches", LABEL_NAMES);
+            addSamples("plan", planCache, weightGauge, hitCounter, missCounter, evictionCounter);
+            if (sqlTemplateCache != null) {
+                addSamples("sql_template", sqlTemplateCache, weightGauge, hitCounter, missCounter, evictionCounter);
+            }
+            return new ArrayList<>(Arrays.asList(labeledGauge, weightGauge, hitCounter, missCounter, evictionCounter));
+        }
+
+        private void addSamples(final String cacheName, final ConcurrentLRUCache<?> cache, final GaugeMetricFamily weightGauge, final CounterMetricFamily hitCounter,
+                                final CounterMetricFamily missCounter, final CounterMetricFamily evictionCounter) {
+            List<String> labelValues = Collections.singletonList(cacheName);
+            weightGauge.addMetric(labelValues, cache.weightedSize());
+            hitCounter.addMetric(labelValues, cache.hitCount());
+            missCounter.addMetric(labelValues, cache.missCount());
+            evictionCounter.addMetric(labelValues, cache.evictionCount());
         }
     }
 }
@@ -0,0 +1,54 @@
+/*
+Copyright 2021 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.monitor;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
+public class SpillCollector {
+
+    private static final Counter SPILL_BYTES_COUNTER = Counter.build()
+        .name("spill_bytes_total")
+        .help("bytes of rows written to spill files")
+        .labelNames("operator")
+        .register(MonitorServer.getCollectorRegistry());
+
+    private static final Counter SPILL_RUNS_COUNTER = Counter.build()
+        .name("spill_runs_total")
+        .help("sorted runs written to spill files")
+        .labelNames("operator")
+        .register(MonitorServer.getCollectorRegistry());
+
+    private static final Histogram MERGE_HISTOGRAM = Histogram.build()
+        .name("spill_merge_histogram")
+        .labelNames("operator")
+        .help("time spent merging spilled runs in seconds.")
+        .buckets(DefaultConfig.BUCKETS)
+        .register(MonitorServer.getCollectorRegistry());
+
+    public static Counter getSpillBytesCounter() {
+        return SPILL_BYTES_COUNTER;
+    }
+
+    public static Counter getSpillRunsCounter() {
+        return SPILL_RUNS_COUNTER;
+    }
+
+    public static Histogram getMergeHistogram() {
+        return MERGE_HISTOGRAM;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.monitor;
+
+import com.google.common.collect.Lists;
+import com.jd.jdbc.discovery.HealthCheck;
+import com.jd.jdbc.discovery.TabletHealthCheck;
+import com.jd.jdbc.queryservice.EwmaTabletBalancer;
+import com.jd.jdbc.queryservice.RetryTabletQueryService;
+import com.jd.jdbc.queryservice.TabletBalancer;
+import com.jd.jdbc.topo.topoproto.TopoProto;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import io.vitess.proto.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public final class TabletBalancerCollector extends Collector implements Collector.Describable {
+    private static final String COLLECT_NAME_SCORE = "tablet_balancer_score";
+
+    private static final String COLLECT_HELP_SCORE = "score of the tablet in the tablet balancer, the lower the better";
+
+    private static final String COLLECT_NAME_LATENCY = "tablet_balancer_latency_seconds";
+
+    private static final String COLLECT_HELP_LATENCY = "moving average of the query latency of the tablet in seconds";
+
+    private static final String COLLECT_NAME_INFLIGHT = "tablet_balancer_inflight";
+
+    private static final String COLLECT_HELP_INFLIGHT = "queries in flight on the tablet";
+
+    private static final String COLLECT_NAME_FAILURE_RATE = "tablet_balancer_failure_rate";
+
+    private static final String COLLECT_HELP_FAILURE_RATE = "moving average of the share of queries that found the tablet unavailable";
+
+    private static final List<String> LABEL_NAMES = Lists.newArrayList("Keyspace", "Shard", "TabletType", "TabletAlias");
+
+    private static final TabletBalancerCollector TABLET_BALANCER_COLLECTOR = new TabletBalancerCollector();
+
+    private TabletBalancerCollector() {
+    }
+
+    public static TabletBalancerCollector getInstance() {
+        return TABLET_BALANCER_COLLECTOR;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        TabletBalancer tabletBalancer = RetryTabletQueryService.getTabletBalancer();
+        if (!(tabletBalancer instanceof EwmaTabletBalancer)) {
+            return null;
+        }
+        Map<String, EwmaTabletBalancer.TabletStats> statsByAlias = ((EwmaTabletBalancer) tabletBalancer).getStatsByAlias();
+        if (statsByAlias.isEmpty()) {
+            return null;
+        }
+
+        GaugeMetricFamily scoreGauge = new GaugeMetricFamily(COLLECT_NAME_SCORE, COLLECT_HELP_SCORE, LABEL_NAMES);
+        GaugeMetricFamily latencyGauge = new GaugeMetricFamily(COLLECT_NAME_LATENCY, COLLECT_HELP_LATENCY, LABEL_NAMES);
+        GaugeMetricFamily inflightGauge = new GaugeMetricFamily(COLLECT_NAME_INFLIGHT, COLLECT_HELP_INFLIGHT, LABEL_NAMES);
+        GaugeMetricFamily failureRateGauge = new GaugeMetricFamily(COLLECT_NAME_FAILURE_RATE, COLLECT_HELP_FAILURE_RATE, LABEL_NAMES);
+
+        long now = System.nanoTime();
+        // only tablets still known to HealthCheck, stats of removed tablets are not exported
+        for (Map.Entry<String, TabletHealthCheck> entry : HealthCheck.INSTANCE.getHealthByAliasCopy().entrySet()) {
+            EwmaTabletBalancer.TabletStats stats = statsByAlias.get(entry.getKey());
+            if (stats == null) {
+                continue;
+            }
+            Query.Target target = entry.getValue().getTarget();
+            List<String> labelValues = Lists.newArrayList(target.getKeyspace(), target.getShard(), TopoProto.tabletTypeLstring(target.getTabletType()), entry.getKey());
+            scoreGauge.addMetric(labelValues, stats.score(now));
+            latencyGauge.addMetric(labelValues, stats.getLatencyNanos(now) / Collector.NANOSECONDS_PER_SECOND);
+            inflightGauge.addMetric(labelValues, stats.getInflight());
+            failureRateGauge.addMetric(labelValues, stats.getFailureRate(now));
+        }
+
+        List<MetricFamilySamples> ret = new ArrayList<>();
+        ret.add(scoreGauge);
+        ret.add(latencyGauge);
+        ret.add(inflightGauge);
+        ret.add(failureRateGauge);
+        return ret;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        GaugeMetricFamily labeledGauge = new GaugeMetricFamily(COLLECT_NAME_SCORE, COLLECT_HELP_SCORE, LABEL_NAMES);
+        return Collections.singletonList(labeledGauge);
+    }
+}
@@ -32,6 +32,12 @@ public class TopologyCollector {
         .help("TopologyWatcher error counter info")
         .register(MonitorServer.getCollectorRegistry());
 
+    private static final Counter EVENT_COUNTER = Counter.build()
+        .name("Topology_event_counter_total")
+        .labelNames("Cell", "Type")
+        .help("TopologyWatcher tablet watch event counter info")
+        .register(MonitorServer.getCollectorRegistry());
+
     public static Counter getCounter() {
         return COUNTER;
     }
@@ -39,4 +45,8 @@ public class TopologyCollector {
     public static Counter getErrorCounter() {
         return ERROR_COUNTER;
     }
+
+    public static Counter getEventCounter() {
+        return EVENT_COUNTER;
+    }
 }
@@ -0,0 +1,65 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.monitor;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
+public class TxConnCollector {
+
+    private static final Histogram COMMIT_HISTOGRAM = Histogram.build()
+        .name("tx_commit_fanout_histogram")
+        .labelNames("Mode")
+        .help("time to commit the shard sessions of a transaction in seconds.")
+        .buckets(DefaultConfig.BUCKETS)
+        .register(MonitorServer.getCollectorRegistry());
+
+    private static final Histogram SHARDS_HISTOGRAM = Histogram.build()
+        .name("tx_commit_shards_histogram")
+        .labelNames("Mode")
+        .help("shard sessions committed by a transaction.")
+        .buckets(1, 2, 4, 8, 16, 32, 64, 128, 256)
+        .register(MonitorServer.getCollectorRegistry());
+
+    private static final Counter PARTIAL_COMMIT_COUNTER = Counter.build()
+        .name("tx_partial_commit_counter_total")
+        .labelNames("Mode")
+        .help("transactions committed on some shards and failed on others.")
+        .register(MonitorServer.getCollectorRegistry());
+
+    private static final Counter IDLE_TIMEOUT_COUNTER = Counter.build()
+        .name("tx_idle_timeout_counter_total")
+        .labelNames("Keyspace")
+        .help("transactions rolled back and released by the idle transaction reaper.")
+        .register(MonitorServer.getCollectorRegistry());
+
+    public static Histogram getCommitHistogram() {
+        return COMMIT_HISTOGRAM;
+    }
+
+    public static Histogram getShardsHistogram() {
+        return SHARDS_HISTOGRAM;
+    }
+
+    public static Counter getPartialCommitCounter() {
+        return PARTIAL_COMMIT_COUNTER;
+    }
+
+    public static Counter getIdleTimeoutCounter() {
+        return IDLE_TIMEOUT_COUNTER;
+    }
+}
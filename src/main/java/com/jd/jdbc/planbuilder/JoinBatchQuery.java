@@ -0,0 +1,203 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.planbuilder;
+
+import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.sqlparser.SQLUtils;
+import com.jd.jdbc.sqlparser.ast.SQLExpr;
+import com.jd.jdbc.sqlparser.ast.SQLName;
+import com.jd.jdbc.sqlparser.ast.expr.SQLBinaryOpExpr;
+import com.jd.jdbc.sqlparser.ast.expr.SQLBinaryOperator;
+import com.jd.jdbc.sqlparser.ast.expr.SQLInListExpr;
+import com.jd.jdbc.sqlparser.ast.expr.SQLLiteralExpr;
+import com.jd.jdbc.sqlparser.ast.expr.SQLVariantRefExpr;
+import com.jd.jdbc.sqlparser.ast.expr.SQLVariantRefListExpr;
+import com.jd.jdbc.sqlparser.ast.statement.SQLSelectItem;
+import com.jd.jdbc.sqlparser.ast.statement.SQLSelectQuery;
+import com.jd.jdbc.sqlparser.ast.statement.SQLSelectQueryBlock;
+import com.jd.jdbc.sqlparser.visitor.SQLASTVisitorAdapter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * JoinBatchQuery is the query of a join's RHS route rewritten so that one execution serves a batch
+ * of LHS rows: every `col = :var` predicate becomes `col in ::var` and col is appended to the
+ * select list, so the rows can be matched back to the LHS rows. It is shared by the v3 and Gen4
+ * join plans, {@link #unbind} is the same query without the join predicates for the Gen4 hash join.
+ */
+@Getter
+@AllArgsConstructor
+public class JoinBatchQuery {
+    private final SQLSelectQueryBlock query;
+
+    private final List<String> vars;
+
+    /**
+     * KeyOffset is the offset of the first appended column, the column compared with vars[i] is at keyOffset + i.
+     */
+    private final int keyOffset;
+
+    /**
+     * @param selectQuery the RHS query, it is not modified
+     * @param vars        the join vars
+     * @param routingVar  the join var the route is routed by, its IN list is bound to the route's list var, may be null
+     * @return null if the query can only be executed once per LHS row
+     */
+    public static JoinBatchQuery rewrite(SQLSelectQuery selectQuery, Collection<String> vars, String routingVar) {
+        SQLSelectQueryBlock query = cloneQuery(selectQuery, vars);
+        if (query == null) {
+            return null;
+        }
+        Map<String, SQLBinaryOpExpr> predicates = joinPredicates(query, vars);
+        if (predicates == null) {
+            return null;
+        }
+
+        int keyOffset = query.getSelectList().size();
+        List<String> batchVars = new ArrayList<>(vars);
+        for (String var : batchVars) {
+            SQLBinaryOpExpr predicate = predicates.get(var);
+            SQLExpr column = predicate.getLeft() instanceof SQLName ? predicate.getLeft() : predicate.getRight();
+            SQLInListExpr inListExpr = new SQLInListExpr(column.clone());
+            String listVar = var.equals(routingVar) ? Engine.LIST_VAR_NAME : var;
+            inListExpr.setTargetList(Collections.singletonList(new SQLVariantRefListExpr("::" + listVar)));
+            if (!SQLUtils.replaceInParent(predicate, inListExpr)) {
+                return null;
+            }
+            query.addSelectItem(new SQLSelectItem(column.clone()));
+        }
+        return new JoinBatchQuery(query, batchVars, keyOffset);
+    }
+
+    /**
+     * unbind rewrites the RHS query for a hash join: every `col = :var` predicate is removed and col
+     * is appended to the select list, so one execution returns the rows of all LHS rows.
+     *
+     * @param selectQuery the RHS query, it is not modified
+     * @param vars        the join vars
+     * @return null if the query can only be executed once per LHS row
+     */
+    public static JoinBatchQuery unbind(SQLSelectQuery selectQuery, Collection<String> vars) {
+        SQLSelectQueryBlock query = cloneQuery(selectQuery, vars);
+        if (query == null) {
+            return null;
+        }
+        Map<String, SQLBinaryOpExpr> predicates = joinPredicates(query, vars);
+        if (predicates == null) {
+            return null;
+        }
+
+        List<SQLExpr> conjuncts = new ArrayList<>();
+        SQLBinaryOpExpr.split(conjuncts, query.getWhere(), SQLBinaryOperator.BooleanAnd);
+        conjuncts.removeIf(conjunct -> predicates.containsValue(conjunct));
+        query.setWhere(SQLBinaryOpExpr.combine(conjuncts, SQLBinaryOperator.BooleanAnd));
+
+        int keyOffset = query.getSelectList().size();
+        List<String> hashVars = new ArrayList<>(vars);
+        for (String var : hashVars) {
+            SQLBinaryOpExpr predicate = predicates.get(var);
+            SQLExpr column = predicate.getLeft() instanceof SQLName ? predicate.getLeft() : predicate.getRight();
+            query.addSelectItem(new SQLSelectItem(column.clone()));
+        }
+        return new JoinBatchQuery(query, hashVars, keyOffset);
+    }
+
+    /**
+     * @param selectQuery
+     * @param vars
+     * @return a clone of selectQuery, null if its rows can not be matched back to the LHS rows
+     */
+    private static SQLSelectQueryBlock cloneQuery(SQLSelectQuery selectQuery, Collection<String> vars) {
+        if (!(selectQuery instanceof SQLSelectQueryBlock) || vars == null || vars.isEmpty()) {
+            return null;
+        }
+        SQLSelectQueryBlock query = ((SQLSelectQueryBlock) selectQuery).clone();
+        if (query.getGroupBy() != null || query.getDistionOption() != 0 || query.getLimit() != null || query.isForUpdate() || query.getInto() != null) {
+            return null;
+        }
+        for (SQLSelectItem selectItem : query.getSelectList()) {
+            SQLExpr expr = selectItem.getExpr();
+            boolean column = expr instanceof SQLName && !"*".equals(((SQLName) expr).getSimpleName());
+            if (!column && !(expr instanceof SQLLiteralExpr)) {
+                return null;
+            }
+        }
+        return query;
+    }
+
+    /**
+     * every join var must be compared with a column exactly once, by a top level conjunct of the where clause.
+     *
+     * @param query
+     * @param vars
+     * @return the predicate of every join var, null if a join var is used otherwise
+     */
+    private static Map<String, SQLBinaryOpExpr> joinPredicates(SQLSelectQueryBlock query, Collection<String> vars) {
+        Map<String, SQLBinaryOpExpr> predicates = new LinkedHashMap<>();
+        List<SQLExpr> conjuncts = new ArrayList<>();
+        SQLBinaryOpExpr.split(conjuncts, query.getWhere(), SQLBinaryOperator.BooleanAnd);
+        for (SQLExpr conjunct : conjuncts) {
+            String var = joinVarOf(conjunct);
+            if (var != null && vars.contains(var)) {
+                predicates.put(var, (SQLBinaryOpExpr) conjunct);
+            }
+        }
+        Map<String, Integer> occurrences = new HashMap<>();
+        query.accept(new SQLASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLVariantRefExpr x) {
+                occurrences.merge(x.getName(), 1, Integer::sum);
+                return false;
+            }
+        });
+        for (String var : vars) {
+            if (!predicates.containsKey(var) || occurrences.getOrDefault(":" + var, 0) != 1) {
+                return null;
+            }
+        }
+        return predicates;
+    }
+
+    /**
+     * @param expr
+     * @return the name of the join var in `col = :var` or `:var = col`, null if expr is not such a comparison
+     */
+    private static String joinVarOf(SQLExpr expr) {
+        if (!(expr instanceof SQLBinaryOpExpr) || ((SQLBinaryOpExpr) expr).getOperator() != SQLBinaryOperator.Equality) {
+            return null;
+        }
+        SQLExpr left = ((SQLBinaryOpExpr) expr).getLeft();
+        SQLExpr right = ((SQLBinaryOpExpr) expr).getRight();
+        SQLExpr arg = left instanceof SQLName ? right : left;
+        SQLExpr column = left instanceof SQLName ? left : right;
+        if (!(column instanceof SQLName) || !(arg instanceof SQLVariantRefExpr) || arg instanceof SQLVariantRefListExpr) {
+            return null;
+        }
+        String name = ((SQLVariantRefExpr) arg).getName();
+        if (!name.startsWith(":") || name.startsWith("::")) {
+            return null;
+        }
+        return name.substring(1);
+    }
+}
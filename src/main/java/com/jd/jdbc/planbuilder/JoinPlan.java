@@ -19,8 +19,10 @@ limitations under the License.
 package com.jd.jdbc.planbuilder;
 
 import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.engine.JoinBatch;
 import com.jd.jdbc.engine.JoinEngine;
 import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.RouteEngine;
 import com.jd.jdbc.sqlparser.ast.SQLExpr;
 import com.jd.jdbc.sqlparser.ast.SQLName;
 import com.jd.jdbc.sqlparser.ast.SQLOrderBy;
@@ -32,9 +34,11 @@ import com.jd.jdbc.sqlparser.ast.statement.SQLSelectItem;
 import com.jd.jdbc.sqlparser.ast.statement.SQLSelectOrderByItem;
 import com.jd.jdbc.sqlparser.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
 import com.jd.jdbc.sqlparser.dialect.mysql.visitor.VtJoinPushOrderByVisitor;
+import com.jd.jdbc.sqltypes.VtPlanValue;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import lombok.Getter;
@@ -324,9 +328,69 @@ public class JoinPlan implements Builder {
     public PrimitiveEngine getPrimitiveEngine() throws SQLException {
         this.joinEngine.setLeft(this.left.getPrimitiveEngine());
         this.joinEngine.setRight(this.right.getPrimitiveEngine());
+        this.joinEngine.setBatch(this.batch(this.joinEngine.getRight()));
         return this.joinEngine;
     }
 
+    /**
+     * batch rewrites a route on the RHS with {@link JoinBatchQuery}. A route that is routed by a
+     * join var becomes a SelectIN route on the same vindex.
+     *
+     * @param rightEngine
+     * @return null if the RHS can only be executed once per LHS row
+     */
+    private JoinBatch batch(PrimitiveEngine rightEngine) {
+        Map<String, Integer> vars = this.joinEngine.getVars();
+        if (vars == null || vars.isEmpty() || !(rightEngine instanceof RouteEngine)) {
+            return null;
+        }
+        RouteEngine route = (RouteEngine) rightEngine;
+        switch (route.getRouteOpcode()) {
+            case SelectDBA:
+            case SelectNext:
+            case SelectNone:
+                return null;
+            default:
+                break;
+        }
+
+        // a route with a join var among its values can only be batched if it is routed by that var alone
+        String routingVar = null;
+        List<VtPlanValue> values = route.getVtPlanValueList() == null ? new ArrayList<>() : route.getVtPlanValueList();
+        if (values.size() == 1 && vars.containsKey(values.get(0).getKey())
+            && (route.getRouteOpcode() == Engine.RouteOpcode.SelectEqual || route.getRouteOpcode() == Engine.RouteOpcode.SelectEqualUnique)) {
+            routingVar = values.get(0).getKey();
+        } else if (refersTo(values, vars)) {
+            return null;
+        }
+
+        JoinBatchQuery batchQuery = JoinBatchQuery.rewrite(route.getSelectQuery(), vars.keySet(), routingVar);
+        if (batchQuery == null) {
+            return null;
+        }
+        RouteEngine batchRoute;
+        if (routingVar == null) {
+            batchRoute = route.withSelectQuery(route.getRouteOpcode(), route.getVtPlanValueList(), batchQuery.getQuery());
+        } else {
+            VtPlanValue listValue = new VtPlanValue();
+            listValue.setListKey(routingVar);
+            batchRoute = route.withSelectQuery(Engine.RouteOpcode.SelectIN, Collections.singletonList(listValue), batchQuery.getQuery());
+        }
+        return new JoinBatch(batchRoute, batchQuery.getVars(), batchQuery.getKeyOffset());
+    }
+
+    private static boolean refersTo(List<VtPlanValue> values, Map<String, Integer> vars) {
+        for (VtPlanValue value : values) {
+            if ((value.getKey() != null && vars.containsKey(value.getKey())) || (value.getListKey() != null && vars.containsKey(value.getListKey()))) {
+                return true;
+            }
+            if (value.getVtPlanValueList() != null && refersTo(value.getVtPlanValueList(), vars)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean isSplitTablePlan() {
         return left.isSplitTablePlan() || right.isSplitTablePlan();
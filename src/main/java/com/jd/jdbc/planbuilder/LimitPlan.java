@@ -18,6 +18,7 @@ limitations under the License.
 
 package com.jd.jdbc.planbuilder;
 
+import com.jd.jdbc.engine.AbstractRouteEngine;
 import com.jd.jdbc.engine.LimitEngine;
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.sqlparser.SqlParser;
@@ -40,7 +41,11 @@ public class LimitPlan extends BuilderImpl {
 
     @Override
     public PrimitiveEngine getPrimitiveEngine() throws SQLException {
-        this.limitEngine.setInput(this.getBldr().getPrimitiveEngine());
+        PrimitiveEngine input = this.getBldr().getPrimitiveEngine();
+        if (input instanceof AbstractRouteEngine) {
+            ((AbstractRouteEngine) input).setLimitMerge(true);
+        }
+        this.limitEngine.setInput(input);
         return this.limitEngine;
     }
 
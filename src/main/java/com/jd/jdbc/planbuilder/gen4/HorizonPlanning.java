@@ -279,7 +279,9 @@ public class HorizonPlanning {
         OrderedAggregateGen4Plan oa = new OrderedAggregateGen4Plan(new ArrayList<>(grouping.size()));
         List<QueryProjection.OrderBy> order;
 
-        if (this.qp.isCanPushDownSorting()) {
+        // decided on the ORDER BY of the query, the alignment below adds the grouping to it
+        boolean orderRequired = this.orderIsRequired();
+        if (this.qp.isCanPushDownSorting() && orderRequired) {
             this.qp.alignGroupByAndOrderBy();
             // the grouping order might have changed, so we reload the grouping expressions
             grouping = this.qp.getGrouping();
@@ -316,6 +318,10 @@ public class HorizonPlanning {
             oa.setPreProcess(true);
         }
 
+        // without an ORDER BY or a distinct aggregate the groups are found in a hash table,
+        // so the input does not have to be sorted on the grouping keys
+        oa.setHashed(!orderRequired && distinctGroupBy.isEmpty());
+
         PushAggregationResult pushAggregationResult = this.pushAggregation(ctx, plan, grouping, aggrs, false);
         if (!pushAggregationResult.isPushed()) {
             oa.setPreProcess(true);
@@ -338,7 +344,9 @@ public class HorizonPlanning {
         // Next we add the aggregation expressions and grouping offsets to the OA
         addColumnsToOA(ctx, oa, distinctGroupBy, aggrParams, distinctOffsets, pushAggregationResult.getGroupingOffsets(), aggregationExprs);
 
-        aggPlan = planOrderBy(ctx, order, aggPlan);
+        if (!oa.isHashed()) {
+            aggPlan = planOrderBy(ctx, order, aggPlan);
+        }
         oa.setInput(aggPlan);
 
         return this.planHaving(ctx, oa);
@@ -1138,6 +1146,7 @@ public class HorizonPlanning {
     private LogicalPlan planDistinctOA(SemTable semTable, OrderedAggregateGen4Plan currPlan) throws SQLException {
         OrderedAggregateGen4Plan oa = new OrderedAggregateGen4Plan();
         oa.setInput(currPlan);
+        oa.setHashed(!this.orderIsRequired());
         for (QueryProjection.SelectExpr sExpr : this.qp.selectExprs) {
             SQLExpr expr = sExpr.getExpr();
             boolean found = false;
@@ -1292,14 +1301,28 @@ public class HorizonPlanning {
             orderExprs.add(orderByExpr);
 
         }
-        LogicalPlan innerPlan = planOrderBy(ctx, orderExprs, plan);
         OrderedAggregateGen4Plan orderedAggregateGen4Plan = new OrderedAggregateGen4Plan();
+        orderedAggregateGen4Plan.setHashed(!this.orderIsRequired());
+        LogicalPlan innerPlan = orderedAggregateGen4Plan.isHashed() ? plan : planOrderBy(ctx, orderExprs, plan);
         orderedAggregateGen4Plan.setInput(innerPlan);
         orderedAggregateGen4Plan.setGroupByKeys(groupByKeys);
 
         return orderedAggregateGen4Plan;
     }
 
+    /**
+     * @return false if the query has no ORDER BY, or only ORDER BY NULL, so the rows may be returned in any order
+     */
+    private boolean orderIsRequired() {
+        for (QueryProjection.OrderBy orderBy : this.qp.getOrderExprs()) {
+            SQLExpr expr = orderBy.inner.getExpr();
+            if (expr != null && !(expr instanceof SQLNullExpr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private LogicalPlan truncateColumnsIfNeeded(PlanningContext ctx, LogicalPlan plan) throws SQLException {
         if (plan.outputColumns().size() == this.qp.getColumnCount()) {
             return plan;
@@ -24,6 +24,7 @@ import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.planbuilder.gen4.logical.LimitGen4Plan;
 import com.jd.jdbc.planbuilder.gen4.logical.LogicalPlan;
 import com.jd.jdbc.planbuilder.gen4.logical.MemorySortGen4Plan;
+import com.jd.jdbc.planbuilder.gen4.logical.OrderedAggregateGen4Plan;
 import com.jd.jdbc.planbuilder.gen4.logical.RouteGen4Plan;
 import com.jd.jdbc.sqlparser.ast.SQLLimit;
 import com.jd.jdbc.sqlparser.ast.expr.SQLVariantRefExpr;
@@ -65,6 +66,10 @@ public class PostProcess {
                 ((MemorySortGen4Plan) plan).getEMemorySort().setUpperLimit(pv);
                 // we don't want to go down to the rest of the tree
                 return new ImmutablePair(false, plan);
+            } else if (plan instanceof OrderedAggregateGen4Plan && ((OrderedAggregateGen4Plan) plan).isHashed()) {
+                // the groups are not sorted, so the shards would cut them at different keys
+                // and a group could miss the rows of some shards
+                return new ImmutablePair(false, plan);
             }
             return new ImmutablePair(true, plan);
         }
@@ -18,44 +18,79 @@ limitations under the License.
 
 package com.jd.jdbc.planbuilder.gen4.logical;
 
-import com.jd.jdbc.context.PlanningContext;
+import com.jd.jdbc.engine.Engine;
 import com.jd.jdbc.engine.PrimitiveEngine;
-import com.jd.jdbc.planbuilder.semantics.TableSet;
-import com.jd.jdbc.sqlparser.ast.statement.SQLSelectItem;
+import com.jd.jdbc.engine.gen4.HashJoinGen4Engine;
+import com.jd.jdbc.engine.gen4.JoinGen4Engine;
+import com.jd.jdbc.engine.gen4.RouteGen4Engine;
+import com.jd.jdbc.engine.gen4.RoutingParameters;
+import com.jd.jdbc.evalengine.EvalEngine;
+import com.jd.jdbc.planbuilder.JoinBatchQuery;
+import com.jd.jdbc.sqlparser.ast.SQLName;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * hashJoin is used to build a HashJoin primitive.
+ * It is a joinGen4 whose RHS is an IN route that is not routed by the join vars, so the nested loop
+ * would send every LHS row to the same shards while the rows of the RHS are bounded by its IN list. The RHS is executed once without the join predicates instead and its
+ * rows are matched to the LHS rows in memory.
  */
-public class HashJoinPlan extends AbstractGen4Plan{
-    @Override
-    public void wireupGen4(PlanningContext ctx) throws SQLException {
+public class HashJoinPlan extends JoinGen4Plan {
 
+    public HashJoinPlan(LogicalPlan left, LogicalPlan right, Engine.JoinOpcode opcode, List<Integer> cols, Map<String, Integer> vars, List<SQLName> lHSColumns) {
+        super(left, right, opcode, cols, vars, lHSColumns);
     }
 
     @Override
     public PrimitiveEngine getPrimitiveEngine() throws SQLException {
-        return null;
-    }
-
-    @Override
-    public LogicalPlan[] inputs() throws SQLException {
-        return new LogicalPlan[0];
+        JoinGen4Engine join = (JoinGen4Engine) super.getPrimitiveEngine();
+        RouteGen4Engine hashRight = this.hashRight(join.getRight());
+        if (hashRight == null) {
+            return join;
+        }
+        JoinBatchQuery hashQuery = JoinBatchQuery.unbind(hashRight.getSelectQuery(), this.vars.keySet());
+        if (hashQuery == null) {
+            return join;
+        }
+        RoutingParameters routingParameters = hashRight.getRoutingParameters();
+        HashJoinGen4Engine engine = new HashJoinGen4Engine(this.opcode, this.vars,
+            hashRight.withSelectQuery(routingParameters.getRouteOpcode(), routingParameters.getValues(), hashQuery.getQuery()), hashQuery.getVars(), hashQuery.getKeyOffset());
+        engine.setLeft(join.getLeft());
+        engine.setRight(join.getRight());
+        engine.setCols(join.getCols());
+        engine.setBatch(join.getBatch());
+        return engine;
     }
 
-    @Override
-    public LogicalPlan[] rewrite(LogicalPlan... inputs) throws SQLException {
-        return new LogicalPlan[0];
-    }
-
-    @Override
-    public TableSet containsTables() {
-        return null;
-    }
-
-    @Override
-    public List<SQLSelectItem> outputColumns() throws SQLException {
-        return null;
+    /**
+     * @param rightEngine
+     * @return the RHS route if none of its routing values is a join var, null otherwise
+     */
+    private RouteGen4Engine hashRight(PrimitiveEngine rightEngine) {
+        if (this.vars == null || this.vars.isEmpty() || !(rightEngine instanceof RouteGen4Engine)) {
+            return null;
+        }
+        RouteGen4Engine route = (RouteGen4Engine) rightEngine;
+        switch (route.getRoutingParameters().getRouteOpcode()) {
+            case SelectDBA:
+            case SelectNext:
+            case SelectNone:
+                return null;
+            default:
+                break;
+        }
+        List<EvalEngine.Expr> values = route.getRoutingParameters().getValues();
+        if (values != null) {
+            for (EvalEngine.Expr value : values) {
+                for (String var : this.vars.keySet()) {
+                    if (value.string().contains(":" + var)) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return route;
     }
 }
@@ -20,13 +20,19 @@ package com.jd.jdbc.planbuilder.gen4.logical;
 
 import com.jd.jdbc.context.PlanningContext;
 import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.engine.JoinBatch;
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.gen4.JoinGen4Engine;
+import com.jd.jdbc.engine.gen4.RouteGen4Engine;
+import com.jd.jdbc.engine.gen4.RoutingParameters;
+import com.jd.jdbc.evalengine.EvalEngine;
+import com.jd.jdbc.planbuilder.JoinBatchQuery;
 import com.jd.jdbc.planbuilder.semantics.TableSet;
 import com.jd.jdbc.sqlparser.ast.SQLName;
 import com.jd.jdbc.sqlparser.ast.statement.SQLSelectItem;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import lombok.Getter;
@@ -103,9 +109,59 @@ public class JoinGen4Plan extends AbstractGen4Plan {
         engine.setLeft(this.left.getPrimitiveEngine());
         engine.setRight(this.right.getPrimitiveEngine());
         engine.setCols(this.cols);
+        engine.setBatch(this.batch(engine.getRight()));
         return engine;
     }
 
+    /**
+     * batch rewrites a route on the RHS with {@link JoinBatchQuery}. A route that is routed by a
+     * join var becomes a SelectIN route on the same vindex.
+     *
+     * @param rightEngine
+     * @return null if the RHS can only be executed once per LHS row
+     */
+    private JoinBatch batch(PrimitiveEngine rightEngine) {
+        if (this.vars == null || this.vars.isEmpty() || !(rightEngine instanceof RouteGen4Engine)) {
+            return null;
+        }
+        RouteGen4Engine route = (RouteGen4Engine) rightEngine;
+        RoutingParameters routingParameters = route.getRoutingParameters();
+        switch (routingParameters.getRouteOpcode()) {
+            case SelectDBA:
+            case SelectNext:
+            case SelectNone:
+                return null;
+            default:
+                break;
+        }
+
+        // a route with a join var among its values can only be batched if it is routed by that var alone
+        String routingVar = null;
+        List<EvalEngine.Expr> values = routingParameters.getValues() == null ? new ArrayList<>() : routingParameters.getValues();
+        for (EvalEngine.Expr value : values) {
+            for (String var : this.vars.keySet()) {
+                if (value instanceof EvalEngine.BindVariable && (value.string().equals(var) || value.string().equals(":" + var))) {
+                    routingVar = var;
+                } else if (value.string().contains(":" + var)) {
+                    return null;
+                }
+            }
+        }
+        if (routingVar != null && (values.size() != 1 || (routingParameters.getRouteOpcode() != Engine.RouteOpcode.SelectEqual
+            && routingParameters.getRouteOpcode() != Engine.RouteOpcode.SelectEqualUnique))) {
+            return null;
+        }
+
+        JoinBatchQuery batchQuery = JoinBatchQuery.rewrite(route.getSelectQuery(), this.vars.keySet(), routingVar);
+        if (batchQuery == null) {
+            return null;
+        }
+        RouteGen4Engine batchRoute = routingVar == null
+            ? route.withSelectQuery(routingParameters.getRouteOpcode(), routingParameters.getValues(), batchQuery.getQuery())
+            : route.withSelectQuery(Engine.RouteOpcode.SelectIN, Collections.singletonList(new EvalEngine.TupleBindVariable(routingVar)), batchQuery.getQuery());
+        return new JoinBatch(batchRoute, batchQuery.getVars(), batchQuery.getKeyOffset());
+    }
+
     @Override
     public LogicalPlan[] inputs() throws SQLException {
         return new LogicalPlan[] {this.left, this.right};
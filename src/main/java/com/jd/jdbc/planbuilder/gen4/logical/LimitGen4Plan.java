@@ -20,6 +20,7 @@ package com.jd.jdbc.planbuilder.gen4.logical;
 
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.gen4.LimitGen4Engine;
+import com.jd.jdbc.engine.gen4.RouteGen4Engine;
 import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.planbuilder.Builder;
 import com.jd.jdbc.planbuilder.Jointab;
@@ -79,7 +80,11 @@ public class LimitGen4Plan extends LogicalPlanCommon implements LogicalPlan {
 
     @Override
     public PrimitiveEngine getPrimitiveEngine() throws SQLException {
-        this.elimit.setInput(this.getInput().getPrimitiveEngine());
+        PrimitiveEngine input = this.getInput().getPrimitiveEngine();
+        if (input instanceof RouteGen4Engine) {
+            ((RouteGen4Engine) input).setLimitMerge(true);
+        }
+        this.elimit.setInput(input);
         return this.elimit;
     }
 
@@ -23,6 +23,7 @@ import com.jd.jdbc.context.PlanningContext;
 import com.jd.jdbc.engine.PrimitiveEngine;
 import com.jd.jdbc.engine.gen4.AbstractAggregateGen4;
 import com.jd.jdbc.engine.gen4.GroupByParams;
+import com.jd.jdbc.engine.gen4.HashAggregateGen4Engine;
 import com.jd.jdbc.engine.gen4.OrderedAggregateGen4Engine;
 import com.jd.jdbc.engine.gen4.ScalarAggregateGen4Engine;
 import com.jd.jdbc.planbuilder.Truncater;
@@ -62,6 +63,12 @@ public class OrderedAggregateGen4Plan extends ResultsBuilder implements LogicalP
 
     private int truncateColumnCount;
 
+    /**
+     * hashed is true if the input is not sorted on the grouping keys,
+     * the keys are then grouped in a hash table by the engine.
+     */
+    private boolean hashed;
+
     public OrderedAggregateGen4Plan() {
     }
 
@@ -76,6 +83,9 @@ public class OrderedAggregateGen4Plan extends ResultsBuilder implements LogicalP
             return new ScalarAggregateGen4Engine(this.preProcess, aggregates, this.aggrOnEngine, this.truncateColumnCount, null, primitiveEngine);
         }
 
+        if (this.hashed) {
+            return new HashAggregateGen4Engine(this.preProcess, this.aggregates, this.aggrOnEngine, this.truncateColumnCount, this.groupByKeys, null, primitiveEngine);
+        }
         return new OrderedAggregateGen4Engine(this.preProcess, this.aggregates, this.aggrOnEngine, this.truncateColumnCount, this.groupByKeys, null, primitiveEngine);
     }
 
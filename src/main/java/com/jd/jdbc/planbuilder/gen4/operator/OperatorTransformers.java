@@ -28,6 +28,7 @@ import com.jd.jdbc.planbuilder.gen4.HorizonPlanning;
 import com.jd.jdbc.planbuilder.gen4.logical.ConcatenateGen4Plan;
 import com.jd.jdbc.planbuilder.gen4.logical.DistinctGen4Plan;
 import com.jd.jdbc.planbuilder.gen4.logical.FilterGen4Plan;
+import com.jd.jdbc.planbuilder.gen4.logical.HashJoinPlan;
 import com.jd.jdbc.planbuilder.gen4.logical.JoinGen4Plan;
 import com.jd.jdbc.planbuilder.gen4.logical.LogicalPlan;
 import com.jd.jdbc.planbuilder.gen4.logical.RouteGen4Plan;
@@ -387,6 +388,9 @@ public class OperatorTransformers {
             opCode = Engine.JoinOpcode.LeftJoin;
         }
 
+        if (RoutePlanning.useHashJoin(n)) {
+            return new HashJoinPlan(lhs, rhs, opCode, n.getColumns(), n.getVars(), n.getLhsColumns());
+        }
         return new JoinGen4Plan(
             lhs,
             rhs,
@@ -440,6 +440,34 @@ public class RoutePlanning {
 
     }
 
+    /**
+     * useHashJoin compares the cost of a nested loop join, which sends the RHS once per LHS row, with a hash join,
+     * which sends the RHS once without the join predicates and in parallel with the LHS. The unbound RHS has to be
+     * held in memory, so it must be bounded by something other than the join: only a SelectIN route whose values
+     * do not come from the LHS qualifies. A scatter RHS would be read in full from every shard and is left to the
+     * nested loop, which sends it the join predicate.
+     *
+     * @param join
+     * @return true if join should be executed as a hash join
+     */
+    public static boolean useHashJoin(ApplyJoin join) {
+        if (join.getVars() == null || join.getVars().isEmpty() || !(join.getRHS() instanceof Route)) {
+            return false;
+        }
+        Route rhs = (Route) join.getRHS();
+        if (rhs.getRouterOpCode() != Engine.RouteOpcode.SelectIN || rhs.getSelected() == null || rhs.getSelected().getValues() == null) {
+            return false;
+        }
+        for (EvalEngine.Expr value : rhs.getSelected().getValues()) {
+            for (String var : join.getVars().keySet()) {
+                if (value.string().contains(":" + var)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     public static Route createRouteOperatorForJoin(Route aRoute, Route bRoute, List<SQLExpr> joinPredicates, boolean inner) {
 
         // append system table names from both the routes.
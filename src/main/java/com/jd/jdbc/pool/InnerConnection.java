@@ -18,11 +18,14 @@ limitations under the License.
 
 package com.jd.jdbc.pool;
 
+import com.jd.jdbc.queryservice.util.VtPreparedStatementUtils;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import com.mysql.cj.jdbc.ConnectionImpl;
+import com.jd.jdbc.srvtopo.PositionalBindVariables;
 import com.mysql.cj.jdbc.JdbcConnection;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -34,6 +37,11 @@ public class InnerConnection implements AutoCloseable {
 
     private final ConnectionImpl connectionImpl;
 
+    /**
+     * the statement sent last, a streaming statement stays here while its result set is read.
+     */
+    private volatile Statement executing;
+
     public InnerConnection(Connection conn) throws SQLException {
         this.connection = conn;
         this.connectionImpl = HikariUtil.getConnectionImpl(conn);
@@ -50,8 +58,36 @@ public class InnerConnection implements AutoCloseable {
     public ExecuteResult execute(String sql) throws SQLException {
         synchronized (this) {
             Statement statement = this.connection.createStatement();
-            boolean queryFlag = statement.execute(sql, Statement.RETURN_GENERATED_KEYS);
-            return new ExecuteResult(statement, queryFlag);
+            this.executing = statement;
+            try {
+                boolean queryFlag = statement.execute(sql, Statement.RETURN_GENERATED_KEYS);
+                return new ExecuteResult(statement, queryFlag);
+            } finally {
+                this.executing = null;
+            }
+        }
+    }
+
+    /**
+     * Executes sql as a server-side prepared statement when the data source sets useServerPrepStmts,
+     * with cachePrepStmts the statement handle is kept by the physical connection and reused.
+     *
+     * @param sql
+     * @param parameters
+     * @return
+     * @throws SQLException
+     */
+    public ExecuteResult execute(String sql, PositionalBindVariables parameters) throws SQLException {
+        synchronized (this) {
+            PreparedStatement statement = this.connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            VtPreparedStatementUtils.setParameters(statement, parameters);
+            this.executing = statement;
+            try {
+                boolean queryFlag = statement.execute();
+                return new ExecuteResult(statement, queryFlag);
+            } finally {
+                this.executing = null;
+            }
         }
     }
 
@@ -59,10 +95,38 @@ public class InnerConnection implements AutoCloseable {
         synchronized (this) {
             Statement statement = this.connection.createStatement();
             statement.setFetchSize(Integer.MIN_VALUE);
+            this.executing = statement;
             return statement.executeQuery(sql);
         }
     }
 
+    public ResultSet streamExecute(String sql, PositionalBindVariables parameters) throws SQLException {
+        synchronized (this) {
+            PreparedStatement statement = this.connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            VtPreparedStatementUtils.setParameters(statement, parameters);
+            this.executing = statement;
+            return statement.executeQuery();
+        }
+    }
+
+    /**
+     * Cancels the running statement on the server. It is called from another thread while the
+     * statement is executing, so it does not lock the connection; Connector/J sends KILL QUERY
+     * over a separate connection to the same mysqld.
+     */
+    public void cancel() {
+        Statement statement = this.executing;
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            logger.warn("cancel statement error: " + e.getMessage());
+        }
+    }
+
     public void commit() throws SQLException {
         synchronized (this) {
             connection.commit();
@@ -21,129 +21,154 @@ package com.jd.jdbc.pool;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import java.sql.SQLException;
-import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /*
  Numbered allows you to manage resources by tracking them with numbers.
  There are no interface restrictions on what you can track.
+ Resources live in a ConcurrentHashMap and are locked by a CAS on their in-use flag,
+ so callers working on different ids never wait for each other.
  */
 public class Numbered {
 
     private static final Log logger = LogFactory.getLog(Numbered.class);
 
-    ReentrantLock lock;
+    private static final String REAPER_PURPOSE = "idle timeout";
 
-    Condition cond;
-
-    Map<Long, NumberedWrapper> resources;
+    final Map<Long, NumberedWrapper> resources;
 
     public Numbered() {
-        lock = new ReentrantLock();
-        cond = lock.newCondition();
-        resources = new HashMap<>();
+        resources = new ConcurrentHashMap<>();
     }
 
     // Register starts tracking a resource by the supplied id.
     // It does not lock the object.
     // It returns false if the id already exists.
     public boolean register(long id, StatefulConnection conn, boolean enforceTimeout) {
-
-        NumberedWrapper resource = new NumberedWrapper(conn, false, "", Instant.now(), Instant.now(), enforceTimeout);
-        lock.lock();
-        try {
-            if (resources.containsKey(id)) {
-                return false;
-            }
-            if (logger.isDebugEnabled()) {
-                logger.debug("register conn: " + id + ", " + conn.getConn());
-            }
-            resources.put(id, resource);
-            return true;
-        } finally {
-            lock.unlock();
+        NumberedWrapper resource = new NumberedWrapper(conn, enforceTimeout);
+        if (resources.putIfAbsent(id, resource) != null) {
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("register conn: " + id + ", " + conn.getConn());
         }
+        return true;
     }
 
     public void unregister(long id) {
-        lock.lock();
-        try {
-            if (resources.containsKey(id)) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("unregister conn: " + id + ", " + resources.get(id).getConn().getConn());
-                }
-                resources.remove(id);
-            }
-
-            if (resources.isEmpty()) {
-                cond.signalAll();
-            }
-        } finally {
-            lock.unlock();
+        NumberedWrapper resource = resources.remove(id);
+        if (resource != null && logger.isDebugEnabled()) {
+            logger.debug("unregister conn: " + id + ", " + resource.conn.getConn());
         }
     }
 
     public StatefulConnection get(long id, String purpose) throws SQLException {
-        lock.lock();
-        try {
-            if (!resources.containsKey(id)) {
-                throw new SQLException("id " + id + " not found");
-            }
-
-            NumberedWrapper resource = resources.get(id);
-            if (resource.inUse) {
-                throw new SQLException("id " + id + " is in use " + resource.purpose);
-            }
-
-            resource.inUse = true;
-            resource.purpose = purpose;
-
-            if (logger.isDebugEnabled()) {
-                logger.debug("lock conn: " + id + ", for " + purpose);
-            }
-
-            return resource.conn;
-        } finally {
-            lock.unlock();
+        NumberedWrapper resource = resources.get(id);
+        if (resource == null) {
+            throw new SQLException("id " + id + " not found");
+        }
+        if (!resource.tryLock(purpose)) {
+            throw new SQLException("id " + id + " is in use " + resource.purpose);
         }
+        if (logger.isDebugEnabled()) {
+            logger.debug("lock conn: " + id + ", for " + purpose);
+        }
+        return resource.conn;
     }
 
     // Put unlocks a resource for someone else to use.
     void put(long id, boolean updateTime) {
-        lock.lock();
-        try {
-            NumberedWrapper resource = resources.getOrDefault(id, null);
-            if (resource != null) {
-                resource.inUse = false;
-                resource.purpose = "";
+        NumberedWrapper resource = resources.get(id);
+        if (resource != null) {
+            if (logger.isDebugEnabled()) {
                 logger.debug("unlock conn: " + id);
-                if (updateTime) {
-                    resource.timeUsed = Instant.now();
-                }
             }
-        } finally {
-            lock.unlock();
+            resource.unlock(updateTime);
         }
     }
 
-    @Data
-    @AllArgsConstructor
-    static class NumberedWrapper {
-        StatefulConnection conn;
+    public int size() {
+        return resources.size();
+    }
+
+    /**
+     * locks the resources that enforce the timeout and have been unlocked for idleNanos or more,
+     * the caller owns them and has to release them.
+     *
+     * @param idleNanos
+     * @return the locked resources
+     */
+    List<StatefulConnection> lockIdle(long idleNanos) {
+        List<StatefulConnection> idle = null;
+        long now = System.nanoTime();
+        for (NumberedWrapper resource : resources.values()) {
+            if (!resource.enforceTimeout || resource.inUse != 0 || now - resource.idleSince < idleNanos) {
+                continue;
+            }
+            if (!resource.tryLock(REAPER_PURPOSE)) {
+                continue;
+            }
+            // the resource may have been used between the check and the lock
+            if (now - resource.idleSince < idleNanos) {
+                resource.unlock(false);
+                continue;
+            }
+            if (idle == null) {
+                idle = new ArrayList<>();
+            }
+            idle.add(resource.conn);
+        }
+        return idle;
+    }
+
+    static final class NumberedWrapper {
+        private static final AtomicIntegerFieldUpdater<NumberedWrapper> IN_USE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(NumberedWrapper.class, "inUse");
+
+        final StatefulConnection conn;
+
+        final long timeCreated;
 
-        boolean inUse;
+        final boolean enforceTimeout;
 
-        String purpose;
+        volatile int inUse;
 
-        Instant timeCreated;
+        volatile String purpose = "";
 
-        Instant timeUsed;
+        volatile long timeUsed;
 
-        boolean enforceTimeout;
+        /**
+         * when the resource was last unlocked, whether or not the unlock updated timeUsed.
+         */
+        volatile long idleSince;
+
+        NumberedWrapper(StatefulConnection conn, boolean enforceTimeout) {
+            this.conn = conn;
+            this.enforceTimeout = enforceTimeout;
+            this.timeCreated = System.nanoTime();
+            this.timeUsed = this.timeCreated;
+            this.idleSince = this.timeCreated;
+        }
+
+        boolean tryLock(String purpose) {
+            if (!IN_USE_UPDATER.compareAndSet(this, 0, 1)) {
+                return false;
+            }
+            this.purpose = purpose;
+            return true;
+        }
+
+        void unlock(boolean updateTime) {
+            long now = System.nanoTime();
+            if (updateTime) {
+                this.timeUsed = now;
+            }
+            this.idleSince = now;
+            this.purpose = "";
+            this.inUse = 0;
+        }
     }
 }
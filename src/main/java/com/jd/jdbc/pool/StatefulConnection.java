@@ -20,6 +20,7 @@ package com.jd.jdbc.pool;
 
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
+import com.jd.jdbc.srvtopo.PositionalBindVariables;
 import java.sql.SQLException;
 import lombok.Getter;
 
@@ -65,6 +66,15 @@ public class StatefulConnection implements AutoCloseable {
         return conn.execute(sql);
     }
 
+    public ExecuteResult execute(String sql, PositionalBindVariables parameters) throws SQLException {
+        logger.debug("conn: " + connID + ", " + sql);
+        return conn.execute(sql, parameters);
+    }
+
+    public void cancel() {
+        conn.cancel();
+    }
+
     public void commit() throws SQLException {
         logger.debug("conn: " + connID + ", commit");
         conn.commit();
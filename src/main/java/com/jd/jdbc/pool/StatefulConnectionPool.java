@@ -21,20 +21,25 @@ package com.jd.jdbc.pool;
 import com.jd.jdbc.common.util.MapUtil;
 import com.jd.jdbc.discovery.HealthCheck;
 import com.jd.jdbc.discovery.SecurityCenter;
+import com.jd.jdbc.monitor.TxConnCollector;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import com.jd.jdbc.sqlparser.utils.StringUtils;
 import com.jd.jdbc.topo.topoproto.TopoProto;
+import com.jd.jdbc.util.ScheduledManager;
 import com.jd.jdbc.vitess.Config;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.pool.HikariPool;
+import io.prometheus.client.Counter;
 import io.vitess.proto.Topodata;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class StatefulConnectionPool {
@@ -43,6 +48,8 @@ public class StatefulConnectionPool {
 
     private static final Map<String, Map<String, StatefulConnectionPool>> STATEFUL_CONNECTION_POOL_MAP = new ConcurrentHashMap<>(128 + 1);
 
+    private static final Counter IDLE_TIMEOUT_COUNTER = TxConnCollector.getIdleTimeoutCounter();
+
     private final HikariPool hikariPool;
 
     private final Numbered active;
@@ -51,6 +58,32 @@ public class StatefulConnectionPool {
 
     private final Topodata.Tablet tablet;
 
+    /**
+     * transactions unlocked for longer than this are rolled back and released, 0 disables the reaper.
+     */
+    private static long transactionIdleTimeoutMillis = 0;
+
+    static {
+        String sysProp = System.getProperty("vtdriver.transactionIdleTimeout");
+        if (sysProp != null) {
+            try {
+                long parsedValue = Long.parseLong(sysProp);
+                if (parsedValue >= 0) {
+                    transactionIdleTimeoutMillis = parsedValue;
+                } else {
+                    logger.error("the value of the JVM option parameter vtdriver.transactionIdleTimeout should not be negative");
+                }
+            } catch (NumberFormatException e) {
+                logger.error("the value of the JVM option parameter vtdriver.transactionIdleTimeout is invalid");
+            }
+        }
+        if (transactionIdleTimeoutMillis > 0) {
+            long interval = Math.max(transactionIdleTimeoutMillis / 10, 100);
+            ScheduledManager scheduledManager = new ScheduledManager("transaction-reaper", 1, TimeUnit.MILLISECONDS);
+            scheduledManager.getScheduledExecutor().scheduleWithFixedDelay(StatefulConnectionPool::reapIdleTransactions, interval, interval, scheduledManager.getTimeUnit());
+        }
+    }
+
     private StatefulConnectionPool(final Topodata.Tablet tablet, final String user, final String password, final Properties dsProperties, final Properties properties) {
         this.tablet = tablet;
 
@@ -160,7 +193,7 @@ public class StatefulConnectionPool {
         InnerConnection connection = getNoStatefulConn();
         long connID = lastID.addAndGet(1);
         StatefulConnection conn = new StatefulConnection(this, connection, connID, false, enforceTimeout);
-        if (!active.register(connID, conn, false)) {
+        if (!active.register(connID, conn, enforceTimeout)) {
             conn.release();
             throw new SQLException(TopoProto.tabletToHumanString(tablet) + " stateful connection pool duplicated connection id: " + connID);
         }
@@ -168,6 +201,45 @@ public class StatefulConnectionPool {
         return getAndLock(connID, "new connection");
     }
 
+    private static void reapIdleTransactions() {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(transactionIdleTimeoutMillis);
+        for (Map<String, StatefulConnectionPool> map : STATEFUL_CONNECTION_POOL_MAP.values()) {
+            for (StatefulConnectionPool pool : map.values()) {
+                try {
+                    pool.reapIdle(idleNanos);
+                } catch (Exception e) {
+                    logger.error(TopoProto.tabletToHumanString(pool.tablet) + " reap idle transactions error " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rolls back and releases the transactions nobody used for idleNanos, so an abandoned transaction
+     * neither pins a pooled connection nor keeps its row locks.
+     *
+     * @param idleNanos
+     * @return the number of transactions released
+     */
+    int reapIdle(long idleNanos) {
+        List<StatefulConnection> idle = active.lockIdle(idleNanos);
+        if (idle == null) {
+            return 0;
+        }
+        for (StatefulConnection conn : idle) {
+            logger.warn(TopoProto.tabletToHumanString(tablet) + " stateful connection " + conn.getConnID() + " was idle for more than "
+                + TimeUnit.NANOSECONDS.toMillis(idleNanos) + "ms, rolling back and releasing it");
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                logger.warn("rollback idle connection " + conn.getConnID() + " error " + e.getMessage());
+            }
+            conn.release();
+        }
+        IDLE_TIMEOUT_COUNTER.labels(tablet.getKeyspace()).inc(idle.size());
+        return idle.size();
+    }
+
     private void close() {
         try {
             hikariPool.shutdown();
@@ -0,0 +1,223 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.queryservice;
+
+import com.jd.jdbc.discovery.TabletHealthCheck;
+import com.jd.jdbc.topo.topoproto.TopoProto;
+import io.vitess.proto.Topodata;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EwmaTabletBalancer scores every tablet by the moving average of its latency, its in-flight
+ * queries and its recent failure rate, and sends each query to the better of two tablets chosen at
+ * random (power of two choices).
+ * <p>
+ * Both averages are weighted by time: a sample replaces 1 - exp(-elapsed / decay) of the average, but
+ * at least a fixed share, and an average that is not updated decays towards zero, so a tablet that was
+ * slow once gets traffic again after a few decay periods. The latency of a query depends on the query
+ * as much as on the tablet, so a sample counts for at most MAX_SAMPLE_RATIO times the average: one slow
+ * report query does not take a tablet out of rotation, a tablet that stays slow is still avoided
+ * after a few queries.
+ * <p>
+ * The stats of a tablet are dropped when HealthCheck removes it. A query that was already routed to the
+ * tablet may add them back, so every removal also drops idle stats that are older than STALE_DECAYS
+ * decay periods.
+ */
+public class EwmaTabletBalancer implements TabletBalancer {
+
+    private static final long DEFAULT_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * lower bound of the latency in a score, so in-flight queries and failures still count for
+     * tablets without samples.
+     */
+    private static final double MIN_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * a tablet that always fails scores as (1 + FAILURE_PENALTY) times its latency.
+     */
+    private static final double FAILURE_PENALTY = 10;
+
+    /**
+     * every query moves the failure rate by at least this share, so a tablet that starts failing
+     * under heavy traffic is avoided after a few queries rather than after a decay period.
+     */
+    private static final double MIN_FAILURE_SAMPLE_WEIGHT = 0.1;
+
+    /**
+     * every query moves the latency average by at least this share.
+     */
+    private static final double MIN_LATENCY_SAMPLE_WEIGHT = 0.1;
+
+    /**
+     * a latency sample is capped at this multiple of the average before it is added, the first
+     * sample of a tablet is not capped.
+     */
+    private static final double MAX_SAMPLE_RATIO = 4;
+
+    /**
+     * stats without in-flight queries and without a sample for this many decay periods are dropped.
+     */
+    private static final long STALE_DECAYS = 10;
+
+    private final long decayNanos;
+
+    private final Map<String, TabletStats> statsByAlias = new ConcurrentHashMap<>(16);
+
+    public EwmaTabletBalancer() {
+        this(DEFAULT_DECAY_NANOS);
+    }
+
+    EwmaTabletBalancer(final long decayNanos) {
+        this.decayNanos = decayNanos;
+    }
+
+    @Override
+    public TabletHealthCheck pick(final List<TabletHealthCheck> tablets) {
+        int size = tablets.size();
+        if (size == 1) {
+            return tablets.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        long now = System.nanoTime();
+        TabletHealthCheck firstTablet = tablets.get(first);
+        TabletHealthCheck secondTablet = tablets.get(second);
+        return getStats(firstTablet).score(now) <= getStats(secondTablet).score(now) ? firstTablet : secondTablet;
+    }
+
+    @Override
+    public void onStart(final TabletHealthCheck tablet) {
+        getStats(tablet).inflight.incrementAndGet();
+    }
+
+    @Override
+    public void onFinish(final TabletHealthCheck tablet, final long latencyNanos, final boolean failed) {
+        // the tablet was removed while the query ran, do not add it back
+        TabletStats stats = statsByAlias.get(TopoProto.tabletAliasString(tablet.getTablet().getAlias()));
+        if (stats == null) {
+            return;
+        }
+        stats.inflight.decrementAndGet();
+        stats.update(System.nanoTime(), latencyNanos, failed);
+    }
+
+    @Override
+    public void onRemove(final Topodata.Tablet tablet) {
+        statsByAlias.remove(TopoProto.tabletAliasString(tablet.getAlias()));
+        long now = System.nanoTime();
+        statsByAlias.values().removeIf(stats -> stats.isStale(now));
+    }
+
+    /**
+     * @return stats by tablet alias, for monitoring
+     */
+    public Map<String, TabletStats> getStatsByAlias() {
+        return Collections.unmodifiableMap(statsByAlias);
+    }
+
+    private TabletStats getStats(final TabletHealthCheck tablet) {
+        String alias = TopoProto.tabletAliasString(tablet.getTablet().getAlias());
+        TabletStats stats = statsByAlias.get(alias);
+        if (stats == null) {
+            stats = statsByAlias.computeIfAbsent(alias, key -> new TabletStats(decayNanos));
+        }
+        return stats;
+    }
+
+    public static final class TabletStats {
+        private final long decayNanos;
+
+        private final AtomicInteger inflight = new AtomicInteger();
+
+        private long lastUpdateNanos;
+
+        private double latencyNanos;
+
+        private double failureRate;
+
+        private boolean sampled;
+
+        TabletStats(final long decayNanos) {
+            this.decayNanos = decayNanos;
+        }
+
+        public int getInflight() {
+            return inflight.get();
+        }
+
+        /**
+         * @param now System.nanoTime()
+         * @return average latency in nanoseconds, decayed to now
+         */
+        public synchronized double getLatencyNanos(final long now) {
+            return latencyNanos * weight(now);
+        }
+
+        /**
+         * @param now System.nanoTime()
+         * @return share of failed queries between 0 and 1, decayed to now
+         */
+        public synchronized double getFailureRate(final long now) {
+            return failureRate * weight(now);
+        }
+
+        /**
+         * @param now System.nanoTime()
+         * @return the lower the better
+         */
+        public synchronized double score(final long now) {
+            double w = weight(now);
+            return Math.max(latencyNanos * w, MIN_LATENCY_NANOS) * (inflight.get() + 1) * (1 + FAILURE_PENALTY * failureRate * w);
+        }
+
+        synchronized void update(final long now, final long latency, final boolean failed) {
+            double w = weight(now);
+            double decayedLatency = latencyNanos * w;
+            // the cap follows the last average, not the decayed one, so an idle tablet is not capped to nothing
+            double sample = sampled ? Math.min(latency, MAX_SAMPLE_RATIO * Math.max(latencyNanos, MIN_LATENCY_NANOS)) : latency;
+            double latencyWeight = Math.max(1 - w, MIN_LATENCY_SAMPLE_WEIGHT);
+            latencyNanos = decayedLatency * (1 - latencyWeight) + sample * latencyWeight;
+            double failureWeight = Math.min(w, 1 - MIN_FAILURE_SAMPLE_WEIGHT);
+            failureRate = failureRate * failureWeight + (failed ? 1 - failureWeight : 0);
+            lastUpdateNanos = now;
+            sampled = true;
+        }
+
+        synchronized boolean isStale(final long now) {
+            return inflight.get() == 0 && now - lastUpdateNanos > STALE_DECAYS * decayNanos;
+        }
+
+        private double weight(final long now) {
+            if (!sampled) {
+                return 0;
+            }
+            long elapsed = Math.max(0, now - lastUpdateNanos);
+            return Math.exp(-(double) elapsed / decayNanos);
+        }
+    }
+}
@@ -18,6 +18,7 @@ limitations under the License.
 
 package com.jd.jdbc.queryservice;
 
+import com.jd.jdbc.common.Constant;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.context.VtContextConstant;
 import com.jd.jdbc.exception.SQLExceptionTranslator;
@@ -26,26 +27,25 @@ import com.jd.jdbc.pool.ExecuteResult;
 import com.jd.jdbc.pool.InnerConnection;
 import com.jd.jdbc.pool.StatefulConnection;
 import com.jd.jdbc.pool.StatefulConnectionPool;
-import com.jd.jdbc.queryservice.util.VtResultSetUtils;
+import com.jd.jdbc.queryservice.util.ResultShape;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
+import com.jd.jdbc.sqlparser.utils.Utils;
 import com.jd.jdbc.sqltypes.BatchVtResultSet;
 import com.jd.jdbc.sqltypes.BeginBatchVtResultSet;
 import com.jd.jdbc.sqltypes.BeginVtResultSet;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
-import com.jd.jdbc.sqltypes.VtType;
 import com.jd.jdbc.srvtopo.BindVariable;
 import com.jd.jdbc.srvtopo.BoundQuery;
+import com.jd.jdbc.srvtopo.PositionalBindVariables;
 import com.jd.jdbc.topo.topoproto.TopoProto;
-import com.jd.jdbc.util.KeyspaceUtil;
 import com.jd.jdbc.vitess.mysql.VitessPropertyKey;
 import io.prometheus.client.Histogram;
 import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
 import java.math.BigInteger;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -73,11 +73,14 @@ public class NativeQueryService implements IQueryService {
 
     private Topodata.Tablet tablet;
 
+    private final boolean columnarResult;
+
     private Histogram.Timer histogramTimer = null;
 
     public NativeQueryService(final Topodata.Tablet tablet, final String user, final String password, final Properties dsProperties, final Properties properties) {
         this.tablet = tablet;
         this.statefulConnectionPool = StatefulConnectionPool.getStatefulConnectionPool(tablet, user, password, dsProperties, properties);
+        this.columnarResult = properties != null && Boolean.TRUE.equals(Utils.getBoolean(properties, Constant.DRIVER_PROPERTY_COLUMNAR_RESULT));
     }
 
     @Override
@@ -134,8 +137,11 @@ public class NativeQueryService implements IQueryService {
 
         if (transactionId == 0) {
             this.startSummary();
-            try (InnerConnection connection = statefulConnectionPool.getNoStatefulConn()) {
-                ExecuteResult res = connection.execute(sql);
+            try (InnerConnection connection = statefulConnectionPool.getNoStatefulConn();
+                 IContext.CancelRegistration ignored = context.onCancel(connection::cancel)) {
+                ExecuteResult res = bindVariables instanceof PositionalBindVariables
+                    ? connection.execute(sql, (PositionalBindVariables) bindVariables)
+                    : connection.execute(sql);
                 return toVtResultSet(res.getQueryFlag(), res.getStatement());
             } catch (SQLException e) {
                 this.errorCount();
@@ -147,15 +153,22 @@ public class NativeQueryService implements IQueryService {
         } else {
             this.startSummary();
             StatefulConnection conn = null;
+            IContext.CancelRegistration cancelRegistration = null;
             try {
                 conn = statefulConnectionPool.getAndLock(transactionId, "for query");
-                ExecuteResult res = conn.execute(sql);
+                cancelRegistration = context.onCancel(conn::cancel);
+                ExecuteResult res = bindVariables instanceof PositionalBindVariables
+                    ? conn.execute(sql, (PositionalBindVariables) bindVariables)
+                    : conn.execute(sql);
                 return toVtResultSet(res.getQueryFlag(), res.getStatement());
             } catch (SQLException e) {
                 this.errorCount();
                 context.cancel(e.getMessage());
                 throw SQLExceptionTranslator.translate(buildTransactionExceptionReason(e), e);
             } finally {
+                if (cancelRegistration != null) {
+                    cancelRegistration.close();
+                }
                 if (conn != null) {
                     conn.unlock(false);
                 }
@@ -178,15 +191,19 @@ public class NativeQueryService implements IQueryService {
         }
 
         InnerConnection connection = statefulConnectionPool.getNoStatefulConn();
+        IContext.CancelRegistration cancelRegistration = context.onCancel(connection::cancel);
         ResultSet resultSet;
         try {
-            resultSet = connection.streamExecute(sql);
+            resultSet = bindVariables instanceof PositionalBindVariables
+                ? connection.streamExecute(sql, (PositionalBindVariables) bindVariables)
+                : connection.streamExecute(sql);
         } catch (SQLException e) {
+            cancelRegistration.close();
             connection.close();
             context.cancel(e.getMessage());
             throw SQLExceptionTranslator.translate(buildExceptionReason(e), e);
         }
-        return new StreamIterator(connection, resultSet);
+        return new StreamIterator(connection, resultSet, cancelRegistration);
     }
 
     /**
@@ -216,7 +233,8 @@ public class NativeQueryService implements IQueryService {
 
         if (transactionId == 0) {
             this.startSummary();
-            try (InnerConnection connection = statefulConnectionPool.getNoStatefulConn()) {
+            try (InnerConnection connection = statefulConnectionPool.getNoStatefulConn();
+                 IContext.CancelRegistration ignored = context.onCancel(connection::cancel)) {
                 List<VtResultSet> allVtResultSets = new ArrayList<>();
                 List<String> sqlList = getMultiSql(context, queries);
 
@@ -237,8 +255,10 @@ public class NativeQueryService implements IQueryService {
         } else {
             this.startSummary();
             StatefulConnection conn = null;
+            IContext.CancelRegistration cancelRegistration = null;
             try {
                 conn = statefulConnectionPool.getAndLock(transactionId, "tx executeBatch");
+                cancelRegistration = context.onCancel(conn::cancel);
                 List<VtResultSet> allVtResultSets = new ArrayList<>();
                 List<String> sqlList = getMultiSql(context, queries);
                 for (String sql : sqlList) {
@@ -253,6 +273,9 @@ public class NativeQueryService implements IQueryService {
                 context.cancel(e.getMessage());
                 throw SQLExceptionTranslator.translate(buildTransactionExceptionReason(e), e);
             } finally {
+                if (cancelRegistration != null) {
+                    cancelRegistration.close();
+                }
                 if (conn != null) {
                     conn.unlock(false);
                 }
@@ -281,8 +304,10 @@ public class NativeQueryService implements IQueryService {
         }
         this.startSummary();
         StatefulConnection conn = null;
+        IContext.CancelRegistration cancelRegistration = null;
         try {
-            conn = statefulConnectionPool.newConn(false);
+            conn = statefulConnectionPool.newConn(true);
+            cancelRegistration = ctx.onCancel(conn::cancel);
             List<String> sqlList = getMultiSql(ctx, queries);
             conn.setAutoCommitFalse();
             ExecuteResult result = conn.execute(BEGIN + sqlList.get(0));
@@ -303,6 +328,9 @@ public class NativeQueryService implements IQueryService {
             ctx.cancel(e.getMessage());
             throw SQLExceptionTranslator.translate(buildTransactionExceptionReason(e), e);
         } finally {
+            if (cancelRegistration != null) {
+                cancelRegistration.close();
+            }
             if (conn != null) {
                 conn.unlock(false);
             }
@@ -332,22 +360,35 @@ public class NativeQueryService implements IQueryService {
         this.startSummary();
 
         StatefulConnection conn = null;
+        IContext.CancelRegistration cancelRegistration = null;
         try {
             if (reservedId != 0) {
                 conn = statefulConnectionPool.getAndLock(reservedId, "start transaction on reserve conn");
             } else {
-                conn = statefulConnectionPool.newConn(false);
+                conn = statefulConnectionPool.newConn(true);
             }
+            cancelRegistration = context.onCancel(conn::cancel);
             conn.setAutoCommitFalse();
-            ExecuteResult res = conn.execute(BEGIN + sql);
-            boolean isQuery = res.getStatement().getMoreResults();
-            VtResultSet vtResultSet = toVtResultSet(isQuery, res.getStatement());
+            VtResultSet vtResultSet;
+            if (bindVariables instanceof PositionalBindVariables) {
+                // a prepared statement can not hold several statements, begin is sent on its own
+                conn.execute(BEGIN);
+                ExecuteResult res = conn.execute(sql, (PositionalBindVariables) bindVariables);
+                vtResultSet = toVtResultSet(res.getQueryFlag(), res.getStatement());
+            } else {
+                ExecuteResult res = conn.execute(BEGIN + sql);
+                boolean isQuery = res.getStatement().getMoreResults();
+                vtResultSet = toVtResultSet(isQuery, res.getStatement());
+            }
             return new BeginVtResultSet(this.tablet.getAlias(), conn.getConnID(), vtResultSet);
         } catch (SQLException e) {
             context.cancel(e.getMessage());
             rollbackAndRelease(conn);
             throw SQLExceptionTranslator.translate(buildTransactionExceptionReason(e), e);
         } finally {
+            if (cancelRegistration != null) {
+                cancelRegistration.close();
+            }
             if (conn != null) {
                 conn.unlock(false);
             }
@@ -453,36 +494,17 @@ public class NativeQueryService implements IQueryService {
         VtResultSet ret = new VtResultSet();
         if (isQuery) {
             ResultSet resultSet = statement.getResultSet();
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            int cols = metaData.getColumnCount();
-            Query.Field[] fields = new Query.Field[cols];
-            List<String> columnClassNames = new ArrayList<>(cols);
-            for (int idx = 0, col = 1; idx < cols; idx++, col++) {
-                Query.Field.Builder fieldBuilder = Query.Field.newBuilder();
-                Query.Type queryType = VtType.getQueryType(metaData.getColumnTypeName(col));
-                columnClassNames.add(metaData.getColumnClassName(col));
-                fieldBuilder.setDatabase(KeyspaceUtil.getLogicSchema(metaData.getCatalogName(col)))
-                    .setTable(metaData.getTableName(col))
-                    .setName(metaData.getColumnLabel(col))
-                    .setOrgName(metaData.getColumnName(col))
-                    .setPrecision(metaData.getPrecision(col))
-                    .setJdbcClassName(metaData.getColumnClassName(col))
-                    .setColumnLength(metaData.getColumnDisplaySize(col))
-                    .setDecimals(metaData.getScale(col))
-                    .setIsSigned(metaData.isSigned(col))
-                    .setIsCaseSensitive(metaData.isCaseSensitive(col))
-                    .setType(queryType);
-                fields[idx] = fieldBuilder.build();
+            ResultShape shape = ResultShape.of(resultSet.getMetaData());
+            ret.setFields(shape.getFields());
+            if (columnarResult) {
+                ret.setColumnBatch(shape.readColumnBatch(resultSet));
+                ret.setRowsAffected(ret.getResultSetSize());
+                ret.setInsertID(-1);
+                return ret;
             }
-            ret.setFields(fields);
             List<List<VtResultValue>> rows = new ArrayList<>();
             while (resultSet.next()) {
-                List<VtResultValue> vtValueList = new ArrayList<>(cols);
-                for (int col = 1; col <= cols; col++) {
-                    VtResultValue vtResultValue = VtResultSetUtils.getValue(resultSet, col, columnClassNames.get(col - 1), (int) fields[col - 1].getPrecision(), fields[col - 1].getType());
-                    vtValueList.add(vtResultValue);
-                }
-                rows.add(vtValueList);
+                rows.add(shape.readRow(resultSet));
             }
             ret.setRows(rows);
             ret.setRowsAffected(rows.size());
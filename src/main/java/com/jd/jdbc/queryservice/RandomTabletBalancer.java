@@ -0,0 +1,43 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.queryservice;
+
+import com.jd.jdbc.discovery.TabletHealthCheck;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RandomTabletBalancer picks a tablet uniformly at random, ignoring load and latency.
+ */
+public class RandomTabletBalancer implements TabletBalancer {
+
+    @Override
+    public TabletHealthCheck pick(final List<TabletHealthCheck> tablets) {
+        if (tablets.size() == 1) {
+            return tablets.get(0);
+        }
+        return tablets.get(ThreadLocalRandom.current().nextInt(tablets.size()));
+    }
+
+    @Override
+    public void onStart(final TabletHealthCheck tablet) {
+    }
+
+    @Override
+    public void onFinish(final TabletHealthCheck tablet, final long latencyNanos, final boolean failed) {
+    }
+}
@@ -39,7 +39,6 @@ import io.vitess.proto.Topodata;
 import java.sql.SQLException;
 import java.sql.SQLRecoverableException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -50,12 +49,18 @@ public class RetryTabletQueryService implements IQueryService, IHealthCheckQuery
 
     private static final int RETRY_COUNT = 3;
 
+    private static final TabletBalancer TABLET_BALANCER = TabletBalancer.newInstance(System.getProperty("vtdriver.tabletBalancer"));
+
     private final Gateway gateway;
 
     public RetryTabletQueryService(Gateway gateway) {
         this.gateway = gateway;
     }
 
+    public static TabletBalancer getTabletBalancer() {
+        return TABLET_BALANCER;
+    }
+
     @Override
     public Query.BeginResponse begin(IContext context, Query.Target target, Query.ExecuteOptions options) throws Exception {
         //not used.
@@ -162,7 +167,21 @@ public class RetryTabletQueryService implements IQueryService, IHealthCheckQuery
             throw new SQLException("no valid tablet");
         }
 
-        return tablets.get(0).getQueryService().streamExecute(context, target, sql, bindVariables, transactionID, options);
+        // the balancer learns from the time to open the stream, reading the rows depends on the caller
+        TabletHealthCheck tablet = TABLET_BALANCER.pick(tablets);
+        TABLET_BALANCER.onStart(tablet);
+        long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            StreamIterator streamIterator = tablet.getQueryService().streamExecute(context, target, sql, bindVariables, transactionID, options);
+            failed = false;
+            return streamIterator;
+        } catch (SQLException e) {
+            failed = e instanceof SQLRecoverableException;
+            throw e;
+        } finally {
+            TABLET_BALANCER.onFinish(tablet, System.nanoTime() - startNanos, failed);
+        }
     }
 
     @Override
@@ -272,8 +291,7 @@ public class RetryTabletQueryService implements IQueryService, IHealthCheckQuery
                 }
             }
 
-            // not used for replica till now, so use a simple shuffle().
-            TabletHealthCheck tablet = getRandomTablet(tablets);
+            TabletHealthCheck tablet = TABLET_BALANCER.pick(tablets);
             if (tablet == null) {
                 throw new SQLException("no available connection");
             }
@@ -286,7 +304,7 @@ public class RetryTabletQueryService implements IQueryService, IHealthCheckQuery
             if (log.isDebugEnabled()) {
                 log.debug("choose tablet " + TopoProto.tabletToHumanString(tablet.getTablet()) + " for target: " + HealthCheck.keyFromTarget(target));
             }
-            IInner.InnerResult ret = inner.run(tablet.getQueryService());
+            IInner.InnerResult ret = runOnTablet(tablet, inner);
             if (ret.retry) {
                 log.info("retry for target: " + HealthCheck.keyFromTarget(target) + ", as " + TopoProto.tabletToHumanString(tablet.getTablet()) + " is unavailable");
                 invalidTablets.add(TopoProto.tabletAliasString(tablet.getTablet().getAlias()));
@@ -298,10 +316,19 @@ public class RetryTabletQueryService implements IQueryService, IHealthCheckQuery
         throw new SQLException("target: " + HealthCheck.keyFromTarget(target) + ". all tablets are tried, no available connection");
     }
 
-    private TabletHealthCheck getRandomTablet(List<TabletHealthCheck> tablets) {
-        if (tablets.size() > 1) {
-            Collections.shuffle(tablets);
+    private IInner.InnerResult runOnTablet(TabletHealthCheck tablet, IInner inner) throws SQLException {
+        TABLET_BALANCER.onStart(tablet);
+        long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            IInner.InnerResult ret = inner.run(tablet.getQueryService());
+            failed = ret.retry;
+            return ret;
+        } catch (SQLException e) {
+            failed = e instanceof SQLRecoverableException;
+            throw e;
+        } finally {
+            TABLET_BALANCER.onFinish(tablet, System.nanoTime() - startNanos, failed);
         }
-        return tablets.get(0);
     }
-}
\ No newline at end of file
+}
@@ -18,15 +18,13 @@ limitations under the License.
 
 package com.jd.jdbc.queryservice;
 
+import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.pool.InnerConnection;
-import com.jd.jdbc.queryservice.util.VtResultSetUtils;
+import com.jd.jdbc.queryservice.util.ResultShape;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
-import com.jd.jdbc.sqltypes.VtType;
-import com.jd.jdbc.util.KeyspaceUtil;
 import io.vitess.proto.Query;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,54 +34,68 @@ public class StreamIterator implements VtIterator<VtResultSet> {
 
     private final ResultSet resultSet;
 
+    private final IContext.CancelRegistration cancelRegistration;
+
+    private ResultShape shape = null;
+
     private Query.Field[] fields = null;
 
     private VtResultSet currentVtResultSet;
 
     public StreamIterator(InnerConnection connection, ResultSet resultSet) {
+        this(connection, resultSet, null);
+    }
+
+    /**
+     * @param connection
+     * @param resultSet
+     * @param cancelRegistration cancels the stream on the server when its context is done, closed with the stream
+     */
+    public StreamIterator(InnerConnection connection, ResultSet resultSet, IContext.CancelRegistration cancelRegistration) {
         this.connection = connection;
         this.resultSet = resultSet;
+        this.cancelRegistration = cancelRegistration;
     }
 
     @Override
     public boolean hasNext() throws SQLException {
-        boolean hasNext = resultSet.next();
-        if (hasNext) {
-            currentVtResultSet = new VtResultSet();
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            int cols = metaData.getColumnCount();
-            if (fields == null) {
-                fields = new Query.Field[cols];
-                for (int idx = 0, col = 1; idx < cols; idx++, col++) {
-                    Query.Field.Builder fieldBuilder = Query.Field.newBuilder();
-                    Query.Type queryType = VtType.getQueryType(metaData.getColumnTypeName(col));
-                    fieldBuilder.setDatabase(KeyspaceUtil.getLogicSchema(metaData.getCatalogName(col)))
-                        .setJdbcClassName(metaData.getColumnClassName(col))
-                        .setPrecision(metaData.getPrecision(col))
-                        .setIsSigned(metaData.isSigned(col))
-                        .setColumnLength(metaData.getColumnDisplaySize(col))
-                        .setDecimals(metaData.getScale(col))
-                        .setTable(metaData.getTableName(col))
-                        .setName(metaData.getColumnLabel(col))
-                        .setOrgName(metaData.getColumnName(col))
-                        .setType(queryType);
-                    fields[idx] = fieldBuilder.build();
-                }
-            }
-            currentVtResultSet.setFields(fields);
-            List<List<VtResultValue>> rows = new ArrayList<>();
-
-            List<VtResultValue> vtValueList = new ArrayList<>(cols);
-            for (int col = 1; col <= cols; col++) {
-                VtResultValue vtResultValue = VtResultSetUtils.getValue(resultSet, col, fields[col - 1].getJdbcClassName(), (int) fields[col - 1].getPrecision(), fields[col - 1].getType());
-                vtValueList.add(vtResultValue);
-            }
-            rows.add(vtValueList);
-            currentVtResultSet.setRows(rows);
-            currentVtResultSet.setRowsAffected(rows.size());
-            currentVtResultSet.setInsertID(-1);
+        List<VtResultValue> row = nextRow();
+        if (row == null) {
+            return false;
         }
-        return hasNext;
+        currentVtResultSet = new VtResultSet();
+        currentVtResultSet.setFields(fields);
+        List<List<VtResultValue>> rows = new ArrayList<>(1);
+        rows.add(row);
+        currentVtResultSet.setRows(rows);
+        currentVtResultSet.setRowsAffected(rows.size());
+        currentVtResultSet.setInsertID(-1);
+        return true;
+    }
+
+    /**
+     * nextRow is the row cursor of the stream, it reads the result set metadata once and
+     * allocates nothing but the row itself.
+     *
+     * @return the next row, null at the end of the stream
+     * @throws SQLException
+     */
+    public List<VtResultValue> nextRow() throws SQLException {
+        if (!resultSet.next()) {
+            return null;
+        }
+        if (shape == null) {
+            shape = ResultShape.of(resultSet.getMetaData());
+            fields = shape.getFields();
+        }
+        return shape.readRow(resultSet);
+    }
+
+    /**
+     * @return the fields of the stream, null until the first row is read
+     */
+    public Query.Field[] getFields() {
+        return fields;
     }
 
     @Override
@@ -93,6 +105,9 @@ public class StreamIterator implements VtIterator<VtResultSet> {
 
     @Override
     public void close() throws SQLException {
+        if (cancelRegistration != null) {
+            cancelRegistration.close();
+        }
         if (resultSet != null) {
             resultSet.close();
         }
@@ -0,0 +1,86 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.queryservice;
+
+import com.jd.jdbc.discovery.TabletHealthCheck;
+import io.vitess.proto.Topodata;
+import java.util.List;
+
+/**
+ * TabletBalancer chooses the tablet of a target that a query is sent to, and learns from every
+ * query it routed.
+ * <p>
+ * The candidates are the healthy tablets returned by HealthCheck, so tablets lagging more than
+ * vtdriver.secondsBehindMaster and the RoleType fallbacks are already applied before a balancer
+ * sees the list. The default is {@link EwmaTabletBalancer}, it is replaced with the JVM option
+ * vtdriver.tabletBalancer: "random", "ewma" or the name of a class implementing this interface
+ * with a public no-arg constructor.
+ */
+public interface TabletBalancer {
+
+    String RANDOM = "random";
+
+    String EWMA = "ewma";
+
+    /**
+     * @param tablets candidates, never empty, must not be modified
+     * @return
+     */
+    TabletHealthCheck pick(List<TabletHealthCheck> tablets);
+
+    /**
+     * called before a query is sent to tablet.
+     *
+     * @param tablet
+     */
+    void onStart(TabletHealthCheck tablet);
+
+    /**
+     * called once for every {@link #onStart}, when the query returned.
+     *
+     * @param tablet
+     * @param latencyNanos
+     * @param failed       true if the tablet was unavailable, errors of the query itself are not failures
+     */
+    void onFinish(TabletHealthCheck tablet, long latencyNanos, boolean failed);
+
+    /**
+     * called when HealthCheck removes a tablet, so the balancer can drop what it learnt about it.
+     *
+     * @param tablet
+     */
+    default void onRemove(Topodata.Tablet tablet) {
+    }
+
+    /**
+     * @param name value of vtdriver.tabletBalancer, null for the default
+     * @return
+     */
+    static TabletBalancer newInstance(final String name) {
+        if (name == null || name.isEmpty() || EWMA.equalsIgnoreCase(name)) {
+            return new EwmaTabletBalancer();
+        }
+        if (RANDOM.equalsIgnoreCase(name)) {
+            return new RandomTabletBalancer();
+        }
+        try {
+            return (TabletBalancer) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("the value of the JVM option parameter vtdriver.tabletBalancer is invalid: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.queryservice.util;
+
+import com.jd.jdbc.sqltypes.VtColumnBatch;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtType;
+import com.jd.jdbc.util.KeyspaceUtil;
+import com.jd.jdbc.util.cache.lrucache.ConcurrentLRUCache;
+import io.vitess.proto.Query;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ResultShape is the compiled form of a result set's columns: the fields and one decoder per
+ * column, chosen once from the column's java class instead of for every cell.
+ * <p>
+ * Shapes are cached by the metadata the fields are built from, so the executions of the same
+ * query share one shape and reading a result set only reads its metadata.
+ */
+public final class ResultShape {
+    private static final int CACHE_CAPACITY = 1024;
+
+    private static final long CACHE_MAX_WEIGHT = 8L * 1024 * 1024;
+
+    private static final ConcurrentLRUCache<ResultShape> CACHE = new ConcurrentLRUCache<>(CACHE_CAPACITY, CACHE_MAX_WEIGHT, (key, value) -> key.length() * 2);
+
+    private final Query.Field[] fields;
+
+    private final ColumnDecoder[] decoders;
+
+    private ResultShape(final Query.Field[] fields) {
+        this.fields = fields;
+        this.decoders = new ColumnDecoder[fields.length];
+        for (int idx = 0; idx < fields.length; idx++) {
+            this.decoders[idx] = ColumnDecoder.of(fields[idx]);
+        }
+    }
+
+    /**
+     * @param metaData
+     * @return the shape of the result set described by metaData
+     * @throws SQLException
+     */
+    public static ResultShape of(final ResultSetMetaData metaData) throws SQLException {
+        int cols = metaData.getColumnCount();
+        String key = shapeKey(metaData, cols);
+        ResultShape shape = CACHE.get(key);
+        if (shape == null) {
+            shape = new ResultShape(buildFields(metaData, cols));
+            CACHE.set(key, shape);
+        }
+        return shape;
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * @return a copy of the fields, the fields themselves are shared by all results of the shape
+     */
+    public Query.Field[] getFields() {
+        return fields.clone();
+    }
+
+    public int getColumnCount() {
+        return fields.length;
+    }
+
+    /**
+     * @param resultSet positioned on a row
+     * @return the values of the row
+     * @throws SQLException
+     */
+    public List<VtResultValue> readRow(final ResultSet resultSet) throws SQLException {
+        List<VtResultValue> row = new ArrayList<>(decoders.length);
+        for (int idx = 0; idx < decoders.length; idx++) {
+            row.add(decoders[idx].decode(resultSet, idx + 1));
+        }
+        return row;
+    }
+
+    /**
+     * @param resultSet positioned before the first row
+     * @return the remaining rows of resultSet, numeric columns are read without boxing
+     * @throws SQLException
+     */
+    public VtColumnBatch readColumnBatch(final ResultSet resultSet) throws SQLException {
+        VtColumnBatch batch = new VtColumnBatch(fields);
+        while (resultSet.next()) {
+            int row = batch.addRow();
+            for (int idx = 0; idx < decoders.length; idx++) {
+                decoders[idx].decodeInto(resultSet, idx + 1, batch, row, idx);
+            }
+        }
+        return batch;
+    }
+
+    private static String shapeKey(final ResultSetMetaData metaData, final int cols) throws SQLException {
+        StringBuilder key = new StringBuilder(cols * 48);
+        key.append(cols);
+        for (int col = 1; col <= cols; col++) {
+            key.append('\u0000').append(metaData.getCatalogName(col))
+                .append('\u0000').append(metaData.getTableName(col))
+                .append('\u0000').append(metaData.getColumnLabel(col))
+                .append('\u0000').append(metaData.getColumnName(col))
+                .append('\u0000').append(metaData.getColumnTypeName(col))
+                .append('\u0000').append(metaData.getColumnClassName(col))
+                .append('\u0000').append(metaData.getPrecision(col))
+                .append('\u0000').append(metaData.getScale(col))
+                .append('\u0000').append(metaData.getColumnDisplaySize(col))
+                .append('\u0000').append(metaData.isSigned(col))
+                .append('\u0000').append(metaData.isCaseSensitive(col));
+        }
+        return key.toString();
+    }
+
+    private static Query.Field[] buildFields(final ResultSetMetaData metaData, final int cols) throws SQLException {
+        Query.Field[] fields = new Query.Field[cols];
+        for (int idx = 0, col = 1; idx < cols; idx++, col++) {
+            Query.Field.Builder fieldBuilder = Query.Field.newBuilder();
+            Query.Type queryType = VtType.getQueryType(metaData.getColumnTypeName(col));
+            fieldBuilder.setDatabase(KeyspaceUtil.getLogicSchema(metaData.getCatalogName(col)))
+                .setTable(metaData.getTableName(col))
+                .setName(metaData.getColumnLabel(col))
+                .setOrgName(metaData.getColumnName(col))
+                .setPrecision(metaData.getPrecision(col))
+                .setJdbcClassName(metaData.getColumnClassName(col))
+                .setColumnLength(metaData.getColumnDisplaySize(col))
+                .setDecimals(metaData.getScale(col))
+                .setIsSigned(metaData.isSigned(col))
+                .setIsCaseSensitive(metaData.isCaseSensitive(col))
+                .setType(queryType);
+            fields[idx] = fieldBuilder.build();
+        }
+        return fields;
+    }
+
+    /**
+     * ColumnDecoder reads a column the same way as {@link VtResultSetUtils#getValue}.
+     */
+    private abstract static class ColumnDecoder {
+        final Query.Type vtType;
+
+        ColumnDecoder(final Query.Type vtType) {
+            this.vtType = vtType;
+        }
+
+        static ColumnDecoder of(final Query.Field field) {
+            Query.Type vtType = field.getType();
+            switch (field.getJdbcClassName()) {
+                case "java.lang.Boolean":
+                    // tinyint(1) is read as an int, bit(n) as a long
+                    return field.getPrecision() == 1 ? new IntDecoder(vtType) : new LongDecoder(vtType);
+                case "java.lang.Integer":
+                    return new IntDecoder(vtType);
+                case "java.lang.Long":
+                    return new LongDecoder(vtType);
+                case "java.lang.Float":
+                    return new FloatDecoder(vtType);
+                case "java.lang.Double":
+                    return new DoubleDecoder(vtType);
+                case "java.math.BigDecimal":
+                    return new ObjectDecoder(vtType, ResultSet::getBigDecimal);
+                case "java.sql.Time":
+                case "java.sql.Timestamp":
+                case "java.sql.Date":
+                    return new ObjectDecoder(vtType, ResultSet::getBytes);
+                case "java.lang.String":
+                    return new ObjectDecoder(vtType, ResultSet::getString);
+                default:
+                    return new ObjectDecoder(vtType, ResultSet::getObject);
+            }
+        }
+
+        abstract VtResultValue decode(ResultSet resultSet, int col) throws SQLException;
+
+        abstract void decodeInto(ResultSet resultSet, int col, VtColumnBatch batch, int row, int batchCol) throws SQLException;
+    }
+
+    private static final class IntDecoder extends ColumnDecoder {
+        IntDecoder(final Query.Type vtType) {
+            super(vtType);
+        }
+
+        @Override
+        VtResultValue decode(final ResultSet resultSet, final int col) throws SQLException {
+            int value = resultSet.getInt(col);
+            return value == 0 && resultSet.wasNull() ? VtResultValue.NULL : new VtResultValue(value, vtType);
+        }
+
+        @Override
+        void decodeInto(final ResultSet resultSet, final int col, final VtColumnBatch batch, final int row, final int batchCol) throws SQLException {
+            int value = resultSet.getInt(col);
+            if (value != 0 || !resultSet.wasNull()) {
+                batch.setLong(row, batchCol, value);
+            }
+        }
+    }
+
+    private static final class LongDecoder extends ColumnDecoder {
+        LongDecoder(final Query.Type vtType) {
+            super(vtType);
+        }
+
+        @Override
+        VtResultValue decode(final ResultSet resultSet, final int col) throws SQLException {
+            long value = resultSet.getLong(col);
+            return value == 0 && resultSet.wasNull() ? VtResultValue.NULL : new VtResultValue(value, vtType);
+        }
+
+        @Override
+        void decodeInto(final ResultSet resultSet, final int col, final VtColumnBatch batch, final int row, final int batchCol) throws SQLException {
+            long value = resultSet.getLong(col);
+            if (value != 0 || !resultSet.wasNull()) {
+                batch.setLong(row, batchCol, value);
+            }
+        }
+    }
+
+    private static final class FloatDecoder extends ColumnDecoder {
+        FloatDecoder(final Query.Type vtType) {
+            super(vtType);
+        }
+
+        @Override
+        VtResultValue decode(final ResultSet resultSet, final int col) throws SQLException {
+            float value = resultSet.getFloat(col);
+            return value == 0 && resultSet.wasNull() ? VtResultValue.NULL : new VtResultValue(value, vtType);
+        }
+
+        @Override
+        void decodeInto(final ResultSet resultSet, final int col, final VtColumnBatch batch, final int row, final int batchCol) throws SQLException {
+            float value = resultSet.getFloat(col);
+            if (value != 0 || !resultSet.wasNull()) {
+                batch.setDouble(row, batchCol, value);
+            }
+        }
+    }
+
+    private static final class DoubleDecoder extends ColumnDecoder {
+        DoubleDecoder(final Query.Type vtType) {
+            super(vtType);
+        }
+
+        @Override
+        VtResultValue decode(final ResultSet resultSet, final int col) throws SQLException {
+            double value = resultSet.getDouble(col);
+            return value == 0 && resultSet.wasNull() ? VtResultValue.NULL : new VtResultValue(value, vtType);
+        }
+
+        @Override
+        void decodeInto(final ResultSet resultSet, final int col, final VtColumnBatch batch, final int row, final int batchCol) throws SQLException {
+            double value = resultSet.getDouble(col);
+            if (value != 0 || !resultSet.wasNull()) {
+                batch.setDouble(row, batchCol, value);
+            }
+        }
+    }
+
+    private interface ObjectReader {
+        Object read(ResultSet resultSet, int col) throws SQLException;
+    }
+
+    private static final class ObjectDecoder extends ColumnDecoder {
+        private final ObjectReader reader;
+
+        ObjectDecoder(final Query.Type vtType, final ObjectReader reader) {
+            super(vtType);
+            this.reader = reader;
+        }
+
+        @Override
+        VtResultValue decode(final ResultSet resultSet, final int col) throws SQLException {
+            Object value = reader.read(resultSet, col);
+            return value == null ? VtResultValue.NULL : new VtResultValue(value, vtType);
+        }
+
+        @Override
+        void decodeInto(final ResultSet resultSet, final int col, final VtColumnBatch batch, final int row, final int batchCol) throws SQLException {
+            batch.setObject(row, batchCol, reader.read(resultSet, col));
+        }
+    }
+}
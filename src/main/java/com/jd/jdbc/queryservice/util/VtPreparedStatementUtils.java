@@ -0,0 +1,96 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.queryservice.util;
+
+import com.jd.jdbc.sqltypes.VtValue;
+import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.srvtopo.PositionalBindVariables;
+import io.vitess.proto.Query;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+public class VtPreparedStatementUtils {
+    /**
+     * Binds the parameters with the same typing as
+     * {@link com.jd.jdbc.sqlparser.dialect.mysql.visitor.VtRestoreVisitor} uses to inline them.
+     *
+     * @param statement
+     * @param parameters
+     * @throws SQLException
+     */
+    public static void setParameters(final PreparedStatement statement, final PositionalBindVariables parameters) throws SQLException {
+        int parameterIndex = 1;
+        for (BindVariable bindVariable : parameters.values()) {
+            VtValue vtValue = VtValue.newVtValue(bindVariable);
+            if (vtValue.getVtType() == Query.Type.VARBINARY) {
+                vtValue.setCharEncoding(parameters.getCharEncoding());
+            }
+            setParameter(statement, parameterIndex++, vtValue);
+        }
+    }
+
+    private static void setParameter(final PreparedStatement statement, final int parameterIndex, final VtValue vtValue) throws SQLException {
+        switch (vtValue.getVtType()) {
+            case CHAR:
+            case VARBINARY:
+            case VARCHAR:
+            case TEXT:
+            case TIME:
+            case DATE:
+            case YEAR:
+            case DATETIME:
+            case TIMESTAMP:
+                statement.setString(parameterIndex, vtValue.toString());
+                break;
+            case BIT:
+                statement.setBoolean(parameterIndex, vtValue.toBoolean());
+                break;
+            case INT8:
+            case UINT8:
+            case INT16:
+            case UINT16:
+            case INT24:
+            case UINT24:
+            case INT32:
+                statement.setInt(parameterIndex, vtValue.toInt());
+                break;
+            case UINT32:
+            case INT64:
+                statement.setLong(parameterIndex, vtValue.toLong());
+                break;
+            case UINT64:
+                statement.setObject(parameterIndex, new BigInteger(vtValue.toString()));
+                break;
+            case DECIMAL:
+            case FLOAT32:
+            case FLOAT64:
+                statement.setBigDecimal(parameterIndex, vtValue.toDecimal());
+                break;
+            case BLOB:
+            case BINARY:
+                statement.setBytes(parameterIndex, vtValue.getVtValue());
+                break;
+            case NULL_TYPE:
+                statement.setNull(parameterIndex, Types.NULL);
+                break;
+            default:
+                throw new SQLException("unknown data type:" + vtValue.getVtType());
+        }
+    }
+}
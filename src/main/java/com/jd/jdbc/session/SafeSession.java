@@ -286,6 +286,56 @@ public class SafeSession {
         return maxParallel > 0 ? maxParallel : 1;
     }
 
+    public boolean getServerPrepareStatement() {
+        if (this.vitessConnection == null) {
+            return false;
+        }
+
+        if (this.vitessConnection.getProperties() == null) {
+            return false;
+        }
+
+        return Boolean.TRUE.equals(Utils.getBoolean(this.vitessConnection.getProperties(), Constant.DRIVER_PROPERTY_SERVER_PREPARE_STATEMENT));
+    }
+
+    public int getJoinBatchSize() {
+        if (this.vitessConnection == null) {
+            return 0;
+        }
+
+        if (this.vitessConnection.getProperties() == null) {
+            return 0;
+        }
+
+        int joinBatchSize = Utils.getInteger(this.vitessConnection.getProperties(), Constant.DRIVER_PROPERTY_JOIN_BATCH_SIZE, 0);
+        return Math.max(joinBatchSize, 0);
+    }
+
+    public int getStreamPrefetchRows() {
+        if (this.vitessConnection == null) {
+            return 0;
+        }
+
+        if (this.vitessConnection.getProperties() == null) {
+            return 0;
+        }
+
+        int streamPrefetchRows = Utils.getInteger(this.vitessConnection.getProperties(), Constant.DRIVER_PROPERTY_STREAM_PREFETCH_ROWS, 0);
+        return Math.max(streamPrefetchRows, 0);
+    }
+
+    public ShardCommitMode getShardCommitMode() {
+        if (this.vitessConnection == null) {
+            return ShardCommitMode.SERIAL;
+        }
+
+        if (this.vitessConnection.getProperties() == null) {
+            return ShardCommitMode.SERIAL;
+        }
+
+        return ShardCommitMode.of(this.vitessConnection.getProperties().getProperty(Constant.DRIVER_PROPERTY_SHARD_COMMIT_MODE));
+    }
+
     /**
      * @return
      */
@@ -0,0 +1,50 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.session;
+
+/**
+ * ShardCommitMode is how the shard sessions of a multi-shard transaction are committed,
+ * chosen by the connection property vtShardCommitMode. Pre and post sessions are not affected.
+ */
+public enum ShardCommitMode {
+    /**
+     * SERIAL commits the shard sessions one by one in the order they joined the transaction and
+     * stops at the first failure, the shards after it are rolled back.
+     */
+    SERIAL,
+    /**
+     * PARALLEL commits all shard sessions at once, the commit takes one round trip instead of one
+     * per shard. A failed shard does not stop the others, the error names the shards that failed
+     * and the shards that committed.
+     */
+    PARALLEL;
+
+    /**
+     * @param name
+     * @return the mode named name ignoring case, SERIAL if name is null or unknown
+     */
+    public static ShardCommitMode of(String name) {
+        if (name != null) {
+            for (ShardCommitMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name.trim())) {
+                    return mode;
+                }
+            }
+        }
+        return SERIAL;
+    }
+}
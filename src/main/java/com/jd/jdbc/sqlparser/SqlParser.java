@@ -575,18 +575,30 @@ public class SqlParser {
             throw new SQLException("Rewrite SQL error!");
         }
         Map<String, BindVariable> bindVariableMap = normalizerResult.getBindVariableMap();
-        if (stmt instanceof SQLSelectStatement) {
-            SQLSelectQuery selectQuery = ((SQLSelectStatement) stmt).getSelect().getQuery();
-            CheckNodeTypesVisitor visitor = new CheckNodeTypesVisitor(Sets.newHashSet(CheckNodeTypesVisitor.CheckNodeType.SUBQUERY, CheckNodeTypesVisitor.CheckNodeType.UNION));
-            selectQuery.accept(visitor);
-            if (visitor.getCheckResult()) {
-                bindVariableMap = combineRepeatBindVars(replaceVariantRefExprVisitor.getVarRefList(), normalizerResult.getBindVariableMap(), charEncoding);
-            }
+        if (needCombineRepeatBindVars(stmt)) {
+            bindVariableMap = combineRepeatBindVars(replaceVariantRefExprVisitor.getVarRefList(), normalizerResult.getBindVariableMap(), charEncoding);
         }
         normalizerResult.setBindVariableMap(bindVariableMap);
         return new RewriteAstResult(stmt, new BindVarNeeds());
     }
 
+    /**
+     * Select statements with subqueries or unions have repeated bind variables combined by value,
+     * so their normalized form depends on the bind variable values and not only on the sql text.
+     *
+     * @param stmt
+     * @return
+     */
+    public static boolean needCombineRepeatBindVars(final SQLStatement stmt) {
+        if (!(stmt instanceof SQLSelectStatement)) {
+            return false;
+        }
+        SQLSelectQuery selectQuery = ((SQLSelectStatement) stmt).getSelect().getQuery();
+        CheckNodeTypesVisitor visitor = new CheckNodeTypesVisitor(Sets.newHashSet(CheckNodeTypesVisitor.CheckNodeType.SUBQUERY, CheckNodeTypesVisitor.CheckNodeType.UNION));
+        selectQuery.accept(visitor);
+        return visitor.getCheckResult();
+    }
+
     /**
      * @param varRefList
      * @param originBindVariableMap
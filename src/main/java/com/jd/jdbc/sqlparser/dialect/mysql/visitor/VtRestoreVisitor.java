@@ -84,14 +84,7 @@ public class VtRestoreVisitor extends MySqlOutputVisitor {
     public boolean visit(final SQLPropertyExpr x) {
         SQLExpr owner = x.getOwner();
         if (owner instanceof SQLIdentifierExpr) {
-            String ownerName = ((SQLIdentifierExpr) owner).getName();
-            String ownerNameLower = ownerName.toLowerCase();
-            if (switchTables != null && switchTables.containsKey(ownerNameLower)) {
-                String mapTableName = switchTables.get(ownerNameLower);
-                print0(mapTableName);
-            } else {
-                print0(ownerName);
-            }
+            printOwnerName(((SQLIdentifierExpr) owner).getName());
         } else if (owner instanceof SQLPropertyExpr) {
             owner.accept(this);
         }
@@ -107,6 +100,23 @@ public class VtRestoreVisitor extends MySqlOutputVisitor {
         return false;
     }
 
+    /**
+     * @param switchTables
+     * @param ownerName
+     * @return the physical table name if ownerName is a switched logic table, otherwise ownerName itself
+     */
+    public static String switchOwnerName(final Map<String, String> switchTables, final String ownerName) {
+        String ownerNameLower = ownerName.toLowerCase();
+        if (switchTables != null && switchTables.containsKey(ownerNameLower)) {
+            return switchTables.get(ownerNameLower);
+        }
+        return ownerName;
+    }
+
+    protected void printOwnerName(final String ownerName) {
+        print0(switchOwnerName(this.switchTables, ownerName));
+    }
+
     @Override
     public boolean visit(final SQLExprTableSource x) {
         SQLExprTableSource cloneTableExpr = x.clone();
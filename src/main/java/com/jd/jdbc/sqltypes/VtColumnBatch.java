@@ -0,0 +1,395 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.sqltypes;
+
+import io.vitess.proto.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * VtColumnBatch holds the rows of a result column by column: integer columns in a long[],
+ * floating point columns in a double[], every other column in an Object[], and a null bitmap
+ * per column.
+ * <p>
+ * The storage of a column follows the java class the MySQL driver reports for it, so
+ * {@link #getValue(int, int)} boxes exactly the value a row of {@link VtResultValue} would hold.
+ * Readers of numeric columns use {@link #getLong(int, int)} and {@link #getDouble(int, int)}
+ * and never box a cell.
+ */
+public class VtColumnBatch {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Query.Field[] fields;
+
+    private final Column[] columns;
+
+    private int rowCount = 0;
+
+    private int capacity;
+
+    public VtColumnBatch(final Query.Field[] fields) {
+        this(fields, DEFAULT_CAPACITY);
+    }
+
+    public VtColumnBatch(final Query.Field[] fields, final int capacity) {
+        this.fields = fields;
+        this.capacity = Math.max(capacity, 1);
+        this.columns = new Column[fields.length];
+        for (int col = 0; col < fields.length; col++) {
+            columns[col] = new Column(Storage.of(fields[col]), fields[col].getType(), this.capacity);
+        }
+    }
+
+    private VtColumnBatch(final Query.Field[] fields, final Column[] columns, final int rowCount) {
+        this.fields = fields;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.capacity = Math.max(rowCount, 1);
+    }
+
+    public Query.Field[] getFields() {
+        return fields;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * @param col based on 0
+     * @return true if the column holds integers, {@link #getLong(int, int)} returns their exact value
+     */
+    public boolean isLongColumn(final int col) {
+        return columns[col].integral;
+    }
+
+    /**
+     * @param col based on 0
+     * @return true if the column holds doubles, {@link #getDouble(int, int)} returns their exact value
+     */
+    public boolean isDoubleColumn(final int col) {
+        return columns[col].storage == Storage.DOUBLE && columns[col].vtType == Query.Type.FLOAT64;
+    }
+
+    /**
+     * addRow appends a row of nulls, its cells are filled by the setters.
+     *
+     * @return the index of the new row
+     */
+    public int addRow() {
+        if (rowCount == capacity) {
+            capacity = capacity + (capacity >> 1) + 1;
+            for (Column column : columns) {
+                column.grow(capacity);
+            }
+        }
+        for (Column column : columns) {
+            column.setNull(rowCount, true);
+        }
+        return rowCount++;
+    }
+
+    public void setLong(final int row, final int col, final long value) {
+        Column column = columns[col];
+        column.longs[row] = value;
+        column.setNull(row, false);
+    }
+
+    public void setDouble(final int row, final int col, final double value) {
+        Column column = columns[col];
+        column.doubles[row] = value;
+        column.setNull(row, false);
+    }
+
+    /**
+     * @param row
+     * @param col
+     * @param value boxed value of any column, null for SQL NULL
+     */
+    public void setObject(final int row, final int col, final Object value) {
+        Column column = columns[col];
+        if (value == null) {
+            column.setNull(row, true);
+            return;
+        }
+        switch (column.storage) {
+            case INT:
+            case LONG:
+                column.longs[row] = ((Number) value).longValue();
+                break;
+            case FLOAT:
+            case DOUBLE:
+                column.doubles[row] = ((Number) value).doubleValue();
+                break;
+            default:
+                column.objects[row] = value;
+        }
+        column.setNull(row, false);
+    }
+
+    public boolean isNull(final int row, final int col) {
+        return columns[col].isNull(row);
+    }
+
+    public long getLong(final int row, final int col) {
+        return columns[col].longs[row];
+    }
+
+    public double getDouble(final int row, final int col) {
+        return columns[col].doubles[row];
+    }
+
+    /**
+     * @param row
+     * @param col
+     * @return the boxed value of the cell, null for SQL NULL
+     */
+    public Object getObject(final int row, final int col) {
+        Column column = columns[col];
+        if (column.isNull(row)) {
+            return null;
+        }
+        switch (column.storage) {
+            case INT:
+                return (int) column.longs[row];
+            case LONG:
+                return column.longs[row];
+            case FLOAT:
+                return (float) column.doubles[row];
+            case DOUBLE:
+                return column.doubles[row];
+            default:
+                return column.objects[row];
+        }
+    }
+
+    public VtResultValue getValue(final int row, final int col) {
+        Object value = getObject(row, col);
+        if (value == null) {
+            return VtResultValue.NULL;
+        }
+        return new VtResultValue(value, columns[col].vtType);
+    }
+
+    public List<VtResultValue> getRow(final int row) {
+        List<VtResultValue> values = new ArrayList<>(columns.length);
+        for (int col = 0; col < columns.length; col++) {
+            values.add(getValue(row, col));
+        }
+        return values;
+    }
+
+    public List<List<VtResultValue>> toRows() {
+        List<List<VtResultValue>> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            rows.add(getRow(row));
+        }
+        return rows;
+    }
+
+    /**
+     * @param other
+     * @return true if the columns of other are stored the same way as the columns of this batch
+     */
+    public boolean canAppend(final VtColumnBatch other) {
+        if (other.columns.length != columns.length) {
+            return false;
+        }
+        for (int col = 0; col < columns.length; col++) {
+            if (other.columns[col].storage != columns[col].storage || other.columns[col].vtType != columns[col].vtType) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * append copies the rows of other to the end of this batch, the caller checks {@link #canAppend(VtColumnBatch)} first.
+     *
+     * @param other
+     */
+    public void append(final VtColumnBatch other) {
+        int newRowCount = rowCount + other.rowCount;
+        if (newRowCount > capacity) {
+            capacity = newRowCount;
+            for (Column column : columns) {
+                column.grow(capacity);
+            }
+        }
+        for (int col = 0; col < columns.length; col++) {
+            columns[col].copyFrom(other.columns[col], 0, rowCount, other.rowCount);
+        }
+        rowCount = newRowCount;
+    }
+
+    /**
+     * @param from inclusive
+     * @param to   exclusive
+     * @return a copy of the rows between from and to
+     */
+    public VtColumnBatch slice(final int from, final int to) {
+        int count = to - from;
+        Column[] sliced = new Column[columns.length];
+        for (int col = 0; col < columns.length; col++) {
+            Column column = columns[col];
+            sliced[col] = new Column(column.storage, column.vtType, Math.max(count, 1));
+            sliced[col].copyFrom(column, from, 0, count);
+        }
+        return new VtColumnBatch(fields, sliced, count);
+    }
+
+    /**
+     * @param columnCount
+     * @return a copy of the first columnCount columns
+     */
+    public VtColumnBatch truncate(final int columnCount) {
+        Column[] truncated = new Column[columnCount];
+        for (int col = 0; col < columnCount; col++) {
+            Column column = columns[col];
+            truncated[col] = new Column(column.storage, column.vtType, capacity);
+            truncated[col].copyFrom(column, 0, 0, rowCount);
+        }
+        return new VtColumnBatch(Arrays.copyOf(fields, columnCount), truncated, rowCount);
+    }
+
+    /**
+     * Storage is the java class VtResultSetUtils reads a column as.
+     */
+    private enum Storage {
+        INT, LONG, FLOAT, DOUBLE, OBJECT;
+
+        static Storage of(final Query.Field field) {
+            switch (field.getJdbcClassName()) {
+                case "java.lang.Boolean":
+                    // tinyint(1) is read as an int, bit(n) as a long
+                    return field.getPrecision() == 1 ? INT : LONG;
+                case "java.lang.Integer":
+                    return INT;
+                case "java.lang.Long":
+                    return LONG;
+                case "java.lang.Float":
+                    return FLOAT;
+                case "java.lang.Double":
+                    return DOUBLE;
+                default:
+                    return OBJECT;
+            }
+        }
+    }
+
+    private static final class Column {
+        private final Storage storage;
+
+        private final Query.Type vtType;
+
+        /**
+         * the long of an integral column is what the result set converters read for its type.
+         */
+        private final boolean integral;
+
+        private long[] longs;
+
+        private double[] doubles;
+
+        private Object[] objects;
+
+        private long[] nulls;
+
+        Column(final Storage storage, final Query.Type vtType, final int capacity) {
+            this.storage = storage;
+            this.vtType = vtType;
+            this.integral = isIntegral(storage, vtType);
+            switch (storage) {
+                case INT:
+                case LONG:
+                    longs = new long[capacity];
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                default:
+                    objects = new Object[capacity];
+            }
+            nulls = new long[(capacity + 63) >>> 6];
+        }
+
+        private static boolean isIntegral(final Storage storage, final Query.Type vtType) {
+            switch (vtType) {
+                case INT8:
+                case UINT8:
+                case INT16:
+                case UINT16:
+                case INT24:
+                case UINT24:
+                case INT32:
+                    return storage == Storage.INT;
+                case UINT32:
+                case INT64:
+                    return storage == Storage.LONG;
+                default:
+                    return false;
+            }
+        }
+
+        void grow(final int capacity) {
+            if (longs != null) {
+                longs = Arrays.copyOf(longs, capacity);
+            }
+            if (doubles != null) {
+                doubles = Arrays.copyOf(doubles, capacity);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, capacity);
+            }
+            nulls = Arrays.copyOf(nulls, (capacity + 63) >>> 6);
+        }
+
+        boolean isNull(final int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        void setNull(final int row, final boolean isNull) {
+            if (isNull) {
+                nulls[row >>> 6] |= 1L << row;
+            } else {
+                nulls[row >>> 6] &= ~(1L << row);
+            }
+        }
+
+        void copyFrom(final Column src, final int srcRow, final int destRow, final int count) {
+            if (longs != null) {
+                System.arraycopy(src.longs, srcRow, longs, destRow, count);
+            }
+            if (doubles != null) {
+                System.arraycopy(src.doubles, srcRow, doubles, destRow, count);
+            }
+            if (objects != null) {
+                System.arraycopy(src.objects, srcRow, objects, destRow, count);
+            }
+            for (int i = 0; i < count; i++) {
+                setNull(destRow + i, src.isNull(srcRow + i));
+            }
+        }
+    }
+}
@@ -40,6 +40,11 @@ public class VtResultSet implements VtRowList {
 
     private List<List<VtResultValue>> rows;
 
+    /**
+     * the rows of a columnar result, rows is null while it is set.
+     */
+    private VtColumnBatch columnBatch;
+
     private boolean isDML = false;
 
     private int curRow = -1;
@@ -68,6 +73,78 @@ public class VtResultSet implements VtRowList {
         this.insertID = BigInteger.valueOf(0);
     }
 
+    /**
+     * @return the rows, a columnar result is converted to rows on the first call
+     */
+    public List<List<VtResultValue>> getRows() {
+        if (columnBatch != null) {
+            rows = columnBatch.toRows();
+            columnBatch = null;
+        }
+        return rows;
+    }
+
+    public void setRows(List<List<VtResultValue>> rows) {
+        this.rows = rows;
+        this.columnBatch = null;
+    }
+
+    /**
+     * setColumnBatch keeps the rows columnar until {@link #getRows()} is called, the engines
+     * that only move rows around use {@link #appendRows(VtResultSet)} and {@link #sliceRows(int, int)}.
+     *
+     * @param columnBatch
+     */
+    public void setColumnBatch(VtColumnBatch columnBatch) {
+        this.columnBatch = columnBatch;
+        this.rows = null;
+    }
+
+    /**
+     * @return the number of columns of the rows, 0 if there is no row
+     */
+    public int getRowColumnCount() {
+        if (columnBatch != null) {
+            return columnBatch.getRowCount() == 0 ? 0 : columnBatch.getColumnCount();
+        }
+        return rows == null || rows.isEmpty() ? 0 : rows.get(0).size();
+    }
+
+    /**
+     * appendRows appends the rows of src, they stay columnar if both results are columnar.
+     *
+     * @param src
+     */
+    public void appendRows(VtResultSet src) {
+        if (src.getResultSetSize() == 0) {
+            return;
+        }
+        if (getResultSetSize() == 0) {
+            rows = src.rows;
+            columnBatch = src.columnBatch;
+        } else {
+            if (columnBatch != null && src.columnBatch != null && columnBatch.canAppend(src.columnBatch)) {
+                columnBatch.append(src.columnBatch);
+            } else {
+                getRows().addAll(src.getRows());
+            }
+        }
+    }
+
+    /**
+     * sliceRows keeps the rows between from and to.
+     *
+     * @param from inclusive
+     * @param to   exclusive
+     */
+    public void sliceRows(int from, int to) {
+        if (columnBatch != null) {
+            columnBatch = columnBatch.slice(from, to);
+        } else if (rows != null) {
+            rows = rows.subList(from, to);
+        }
+    }
+
     @Override
     public VtRowList setDML() {
         this.isDML = true;
@@ -113,11 +190,7 @@ public class VtResultSet implements VtRowList {
         if (!src.insertID.equals(BigInteger.valueOf(0))) {
             this.insertID = src.insertID;
         }
-        if (this.rows == null || this.rows.isEmpty()) {
-            rows = src.rows;
-        } else if (src.rows != null && !src.rows.isEmpty()) {
-            this.rows.addAll(src.rows);
-        }
+        appendRows(src);
     }
 
     private boolean equalsIgnoreTable(Query.Field field1, Query.Field field2) {
@@ -155,7 +228,9 @@ public class VtResultSet implements VtRowList {
         if (this.fields != null) {
             out.fields = Arrays.copyOf(this.fields, l);
         }
-        if (this.rows != null) {
+        if (this.columnBatch != null) {
+            out.columnBatch = this.columnBatch.truncate(l);
+        } else if (this.rows != null) {
             out.rows = new ArrayList<>(this.rows.size());
             for (List<VtResultValue> row : this.rows) {
                 out.rows.add(row.subList(0, l));
@@ -166,10 +241,10 @@ public class VtResultSet implements VtRowList {
 
     @Override
     public VtRowList reserve(int maxRows) {
-        if (maxRows == 0 || maxRows >= this.rows.size()) {
+        if (maxRows == 0 || maxRows >= getResultSetSize()) {
             return this;
         }
-        this.rows = this.rows.subList(0, maxRows);
+        sliceRows(0, maxRows);
         return this;
     }
 
@@ -178,7 +253,7 @@ public class VtResultSet implements VtRowList {
         if (closed) {
             throw new SQLException("result set has been closed");
         }
-        int total = (rows == null) ? 0 : rows.size();
+        int total = getResultSetSize();
         if (total == 0) {
             return false;
         }
@@ -191,7 +266,7 @@ public class VtResultSet implements VtRowList {
             throw new SQLException("result set has been closed");
         }
         ++curRow;
-        return rows.get(curRow);
+        return getRows().get(curRow);
     }
 
     @Override
@@ -215,6 +290,9 @@ public class VtResultSet implements VtRowList {
 
     @Override
     public int getResultSetSize() {
+        if (columnBatch != null) {
+            return columnBatch.getRowCount();
+        }
         if (rows != null) {
             return rows.size();
         }
@@ -223,7 +301,7 @@ public class VtResultSet implements VtRowList {
 
     @Override
     public VtRowList clone() {
-        VtRowList vtRowList = new VtResultSet(this.fields, this.rows);
+        VtRowList vtRowList = new VtResultSet(this.fields, getRows());
         return vtRowList;
     }
 
@@ -250,12 +328,12 @@ public class VtResultSet implements VtRowList {
         }
         VtResultSet that = (VtResultSet) o;
         return rowsAffected == that.rowsAffected && isDML == that.isDML && curRow == that.curRow && closed == that.closed && Arrays.equals(fields, that.fields) &&
-            Objects.equals(insertID, that.insertID) && Objects.equals(rows, that.rows);
+            Objects.equals(insertID, that.insertID) && Objects.equals(getRows(), that.getRows());
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(rowsAffected, insertID, rows, isDML, curRow, closed);
+        int result = Objects.hash(rowsAffected, insertID, getRows(), isDML, curRow, closed);
         result = 31 * result + Arrays.hashCode(fields);
         return result;
     }
@@ -266,7 +344,7 @@ public class VtResultSet implements VtRowList {
             .add("fields=" + Arrays.toString(fields))
             .add("rowsAffected=" + rowsAffected)
             .add("insertID=" + insertID)
-            .add("rows=" + rows)
+            .add("rows=" + getRows())
             .add("isDML=" + isDML)
             .add("curRow=" + curRow)
             .add("closed=" + closed)
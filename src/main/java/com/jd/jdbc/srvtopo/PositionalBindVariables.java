@@ -0,0 +1,49 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.srvtopo;
+
+import java.util.LinkedHashMap;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * PositionalBindVariables are the parameters of a query whose bind variables were rendered as '?'.
+ * <p>
+ * Keys are the 1-based parameter indexes, values are scalar bind variables in placeholder order.
+ * A query service that receives them executes the query as a server-side prepared statement
+ * instead of sending the sql as text.
+ */
+@EqualsAndHashCode(callSuper = true)
+public final class PositionalBindVariables extends LinkedHashMap<String, BindVariable> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final String charEncoding;
+
+    public PositionalBindVariables(final String charEncoding) {
+        super(16, 1);
+        this.charEncoding = charEncoding;
+    }
+
+    /**
+     * @param bindVariable a scalar bind variable, never a TUPLE
+     */
+    public void add(final BindVariable bindVariable) {
+        put(String.valueOf(size() + 1), bindVariable);
+    }
+}
@@ -23,15 +23,15 @@ import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import io.vitess.proto.Query;
-import io.vitess.proto.Query.Target;
 import io.vitess.proto.Query.Value;
 import io.vitess.proto.Topodata;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
@@ -56,6 +56,9 @@ public class Resolver {
 
     private final ScatterConn scatterConn;
 
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Map<Topodata.TabletType, ShardRoutingTable>> routingTables = new ConcurrentHashMap<>();
+
     public Resolver(SrvTopoServer srvTopoServer, Gateway gateway, String localCell, ScatterConn scatterConn) {
         this.srvTopoServer = srvTopoServer;
         this.gateway = gateway;
@@ -69,36 +72,8 @@ public class Resolver {
      * Do not use it to further resolve shards, instead use the Resolve* methods.
      */
     public KeyspaceShardsResult getKeyspaceShards(IContext ctx, String keyspace, Topodata.TabletType tabletType) throws SQLException {
-        Topodata.SrvKeyspace srvKeyspace;
-        try {
-            ResilientServer.GetSrvKeyspaceResponse response = srvTopoServer.getSrvKeyspace(ctx, localCell, keyspace);
-            if (null != response.getException()) {
-                LOGGER.error(response.getException().getMessage(), response.getException());
-                throw response.getException();
-            }
-            srvKeyspace = response.getSrvKeyspace();
-        } catch (Exception e) {
-            throw new SQLException("keyspace :" + keyspace + " fetch error: " + e.getMessage());
-        }
-
-        // check if the keyspace has been redirected for this tabletType.
-        if (null != srvKeyspace) {
-            for (Topodata.SrvKeyspace.ServedFrom sf : srvKeyspace.getServedFromList()) {
-                if (sf.getTabletType() == tabletType) {
-                    ResilientServer.GetSrvKeyspaceResponse response = srvTopoServer.getSrvKeyspace(ctx, localCell, sf.getKeyspace());
-                    srvKeyspace = response.getSrvKeyspace();
-                }
-            }
-        }
-        if (null != srvKeyspace) {
-            Topodata.SrvKeyspace.KeyspacePartition partition = srvKeyspaceGetPartition(srvKeyspace, tabletType);
-            if (partition == null) {
-                throw new SQLException(String.format("No partition found for tabletType %s in keyspace %s", tabletType.toString(), keyspace));
-            }
-            return new KeyspaceShardsResult(keyspace, srvKeyspace, partition.getShardReferencesList());
-        } else {
-            throw new SQLException("No SrvKeyspace " + keyspace);
-        }
+        ShardRoutingTable routingTable = getRoutingTable(ctx, keyspace, tabletType);
+        return new KeyspaceShardsResult(keyspace, routingTable.getSrvKeyspace(), routingTable.getShardReferences());
     }
 
     /**
@@ -112,19 +87,8 @@ public class Resolver {
      * @throws Exception
      */
     public AllShardResult getAllShards(IContext ctx, String keyspace, Topodata.TabletType tabletType) throws SQLException {
-        KeyspaceShardsResult keyspaceShardsResult = getKeyspaceShards(ctx, keyspace, tabletType);
-        List<ResolvedShard> res = new ArrayList<>(keyspaceShardsResult.getShardReferences().size());
-        Target.Builder targetBuilder;
-        ResolvedShard resolvedShard;
-        for (Topodata.ShardReference shard : keyspaceShardsResult.getShardReferences()) {
-            targetBuilder = Target.newBuilder().setKeyspace(keyspace).setShard(shard.getName()).setTabletType(tabletType)
-                .setCell("");
-            resolvedShard = new ResolvedShard();
-            resolvedShard.setTarget(targetBuilder.build());
-            resolvedShard.setGateway(gateway);
-            res.add(resolvedShard);
-        }
-        return new AllShardResult(res, keyspaceShardsResult.getSrvKeyspace());
+        ShardRoutingTable routingTable = getRoutingTable(ctx, keyspace, tabletType);
+        return new AllShardResult(new ArrayList<>(routingTable.getResolvedShards()), routingTable.getSrvKeyspace());
     }
 
     /**
@@ -150,28 +114,25 @@ public class Resolver {
      * @throws Exception
      */
     public ResolveDestinationResult resolveDestinations(IContext ctx, String keyspace, Topodata.TabletType tabletType, List<Query.Value> ids, List<Destination> destinations) throws SQLException {
-        KeyspaceShardsResult keyspaceShardsResult = getKeyspaceShards(ctx, keyspace, tabletType);
-        List<Topodata.ShardReference> shardReferenceList = keyspaceShardsResult.getShardReferences();
+        ShardRoutingTable routingTable = getRoutingTable(ctx, keyspace, tabletType);
+        List<Topodata.ShardReference> shardReferenceList = routingTable.getShardReferences();
 
         List<ResolvedShard> result = new ArrayList<>();
-        List<List<Value>> values = new LinkedList<>();
-        Map<String, Integer> resolved = new ConcurrentHashMap<>(16, 1);
+        List<List<Value>> values = new ArrayList<>();
+        Map<String, Integer> resolved = new HashMap<>();
 
         if (null != destinations && destinations.size() > 0) {
             for (int i = 0; i < destinations.size(); i++) {
                 Destination destination = destinations.get(i);
                 int finalI = i;
-                destination.resolve(shardReferenceList, shard -> {
+                destination.resolve(routingTable.getKeyRangeIndex(), shard -> {
                     Integer s = resolved.get(shard);
                     if (null == s) {
-                        Target.Builder targetBuilder = Target.newBuilder().setKeyspace(keyspace)
-                            .setShard(shard)
-                            .setTabletType(tabletType)
-                            .setCell("");
                         s = result.size();
-                        ResolvedShard resolvedShard = new ResolvedShard();
-                        resolvedShard.setGateway(gateway);
-                        resolvedShard.setTarget(targetBuilder.build());
+                        ResolvedShard resolvedShard = routingTable.getResolvedShardsByName().get(shard);
+                        if (resolvedShard == null) {
+                            resolvedShard = ShardRoutingTable.newResolvedShard(keyspace, shard, tabletType, gateway);
+                        }
                         result.add(resolvedShard);
                         if (ids != null) {
                             values.add(new ArrayList<>());
@@ -188,15 +149,7 @@ public class Resolver {
             // If there is only one shard and the name of the shard is "0", it is considered as SingleShard
             if (shardReferenceList.size() == 1
                 && SINGLE_SHARD_REFERENCE_NAME.equalsIgnoreCase(shardReferenceList.get(0).getName())) {
-                Target.Builder targetBuilder = Target.newBuilder()
-                    .setKeyspace(keyspace)
-                    .setShard(shardReferenceList.get(0).getName())
-                    .setTabletType(tabletType)
-                    .setCell("");
-                ResolvedShard resolvedShard = new ResolvedShard();
-                resolvedShard.setGateway(gateway);
-                resolvedShard.setTarget(targetBuilder.build());
-                result.add(resolvedShard);
+                result.add(routingTable.getResolvedShards().get(0));
             }
         }
         return new ResolveDestinationResult(result, values);
@@ -219,6 +172,61 @@ public class Resolver {
         return resolveDestinationResult.getResolvedShards();
     }
 
+    /**
+     * @param ctx
+     * @param keyspace
+     * @param tabletType
+     * @return the routing table of the keyspace partition, rebuilt only when the SrvKeyspace changes
+     * @throws SQLException
+     */
+    private ShardRoutingTable getRoutingTable(IContext ctx, String keyspace, Topodata.TabletType tabletType) throws SQLException {
+        Topodata.SrvKeyspace srvKeyspace = getSrvKeyspace(ctx, keyspace, tabletType);
+        Map<Topodata.TabletType, ShardRoutingTable> keyspaceRoutingTables = routingTables.get(keyspace);
+        if (keyspaceRoutingTables == null) {
+            routingTables.putIfAbsent(keyspace, new ConcurrentHashMap<>(4, 1));
+            keyspaceRoutingTables = routingTables.get(keyspace);
+        }
+        ShardRoutingTable routingTable = keyspaceRoutingTables.get(tabletType);
+        if (routingTable != null && routingTable.getSrvKeyspace() == srvKeyspace) {
+            return routingTable;
+        }
+        Topodata.SrvKeyspace.KeyspacePartition partition = srvKeyspaceGetPartition(srvKeyspace, tabletType);
+        if (partition == null) {
+            throw new SQLException(String.format("No partition found for tabletType %s in keyspace %s", tabletType.toString(), keyspace));
+        }
+        routingTable = new ShardRoutingTable(keyspace, tabletType, srvKeyspace, partition.getShardReferencesList(), gateway);
+        keyspaceRoutingTables.put(tabletType, routingTable);
+        return routingTable;
+    }
+
+    private Topodata.SrvKeyspace getSrvKeyspace(IContext ctx, String keyspace, Topodata.TabletType tabletType) throws SQLException {
+        Topodata.SrvKeyspace srvKeyspace;
+        try {
+            ResilientServer.GetSrvKeyspaceResponse response = srvTopoServer.getSrvKeyspace(ctx, localCell, keyspace);
+            if (null != response.getException()) {
+                LOGGER.error(response.getException().getMessage(), response.getException());
+                throw response.getException();
+            }
+            srvKeyspace = response.getSrvKeyspace();
+        } catch (Exception e) {
+            throw new SQLException("keyspace :" + keyspace + " fetch error: " + e.getMessage());
+        }
+
+        // check if the keyspace has been redirected for this tabletType.
+        if (null != srvKeyspace) {
+            for (Topodata.SrvKeyspace.ServedFrom sf : srvKeyspace.getServedFromList()) {
+                if (sf.getTabletType() == tabletType) {
+                    ResilientServer.GetSrvKeyspaceResponse response = srvTopoServer.getSrvKeyspace(ctx, localCell, sf.getKeyspace());
+                    srvKeyspace = response.getSrvKeyspace();
+                }
+            }
+        }
+        if (null == srvKeyspace) {
+            throw new SQLException("No SrvKeyspace " + keyspace);
+        }
+        return srvKeyspace;
+    }
+
     /**
      * @param sk
      * @param tabletType
@@ -23,6 +23,7 @@ import com.jd.jdbc.IExecute.ExecuteMultiShardResponse;
 import com.jd.jdbc.concurrency.AllErrorRecorder;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.context.VtContextConstant;
 import com.jd.jdbc.discovery.HealthCheck;
 import com.jd.jdbc.queryservice.IQueryService;
 import com.jd.jdbc.queryservice.StreamIterator;
@@ -41,9 +42,11 @@ import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -103,12 +106,52 @@ public class ScatterConn {
         if (rss.size() != queries.size()) {
             throw new SQLException("BUG: got mismatched number of queries and shards");
         }
-        // lock protects resultSet
-        ReentrantLock lock = new ReentrantLock(true);
-        VtResultSet resultSet = new VtResultSet();
+        VtResultSet[] shardResults = new VtResultSet[rss.size()];
+        IContext ctx = VtContext.withCancel(context);
+        AllErrorRecorder allErrors = join(this.multiGoTransactionAsync(ctx, "Execute", rss, safeSession, autocommit, this.executeAction(ctx, queries, autocommit, shardResults), true));
+        return this.mergeResults(shardResults, allErrors, ignoreMaxMemoryRows);
+    }
 
+    /**
+     * executeMultiShardAsync is executeMultiShard without blocking the caller, the returned future
+     * completes on the thread that finishes the last shard.
+     *
+     * @param context
+     * @param rss
+     * @param queries
+     * @param safeSession
+     * @param autocommit
+     * @param ignoreMaxMemoryRows
+     * @return
+     */
+    public CompletableFuture<ExecuteMultiShardResponse> executeMultiShardAsync(IContext context, List<ResolvedShard> rss, List<BoundQuery> queries, SafeSession safeSession,
+                                                                               Boolean autocommit, Boolean ignoreMaxMemoryRows) {
+        if (rss.size() != queries.size()) {
+            CompletableFuture<ExecuteMultiShardResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(new SQLException("BUG: got mismatched number of queries and shards"));
+            return future;
+        }
+        VtResultSet[] shardResults = new VtResultSet[rss.size()];
         IContext ctx = VtContext.withCancel(context);
-        AllErrorRecorder allErrors = this.multiGoTransaction(ctx, "Execute", rss, safeSession, autocommit, (rs, i, shardActionInfo) -> {
+        return this.multiGoTransactionAsync(ctx, "Execute", rss, safeSession, autocommit, this.executeAction(ctx, queries, autocommit, shardResults), false)
+            .thenApply(allErrors -> {
+                try {
+                    return this.mergeResults(shardResults, allErrors, ignoreMaxMemoryRows);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            });
+    }
+
+    /**
+     * @param ctx
+     * @param queries
+     * @param autocommit
+     * @param shardResults every shard stores its result at its own index, so shards never contend on a shared result
+     * @return
+     */
+    private ShardActionTransactionFunc executeAction(IContext ctx, List<BoundQuery> queries, Boolean autocommit, VtResultSet[] shardResults) {
+        return (rs, i, shardActionInfo) -> {
             VtResultSet innerResultSet;
             Query.ExecuteOptions opts = null;
             Topodata.TabletAlias alias = null;
@@ -154,39 +197,47 @@ public class ScatterConn {
                     return new ShardActionTransactionFuncResponse(null,
                         new SQLException(String.format("BUG: unexpected actionNeeded on ScatterConn#ExecuteMultiShard %s", shardActionInfo.actionNeeded)));
             }
-            lock.lock();
-            try {
-                Exception exception = null;
-                // Don't append more rows if row count is exceeded.
-                if (ignoreMaxMemoryRows || resultSet.getRows().size() <= VitessConnection.MAX_MEMORY_ROWS) {
-                    try {
-                        resultSet.appendResult(innerResultSet);
-                    } catch (SQLException e) {
-                        exception = e;
-                    }
-                }
-                return new ShardActionTransactionFuncResponse(shardActionInfo.updateTransactionAndReservedId(transactionId, reservedId, alias), exception);
-            } finally {
-                lock.unlock();
-            }
-        });
+            shardResults[i] = innerResultSet;
+            return new ShardActionTransactionFuncResponse(shardActionInfo.updateTransactionAndReservedId(transactionId, reservedId, alias), null);
+        };
+    }
 
-        if (!ignoreMaxMemoryRows && resultSet.getRows().size() > VitessConnection.MAX_MEMORY_ROWS) {
+    /**
+     * mergeResults appends the shard results in shard order once all shards are done,
+     * the shard results are kept in the response for routes that merge them by order.
+     *
+     * @param shardResults
+     * @param allErrors
+     * @param ignoreMaxMemoryRows
+     * @return
+     * @throws SQLException
+     */
+    private ExecuteMultiShardResponse mergeResults(VtResultSet[] shardResults, AllErrorRecorder allErrors, Boolean ignoreMaxMemoryRows) throws SQLException {
+        int size = 0;
+        for (VtResultSet shardResult : shardResults) {
+            if (shardResult != null && shardResult.getRows() != null) {
+                size += shardResult.getRows().size();
+            }
+        }
+        if (!ignoreMaxMemoryRows && size > VitessConnection.MAX_MEMORY_ROWS) {
             throw new SQLException(String.format("in-memory row count exceeded allowed limit of %d", VitessConnection.MAX_MEMORY_ROWS));
         }
         allErrors.throwException();
-        return new ExecuteMultiShardResponse(resultSet);
+
+        VtResultSet resultSet = new VtResultSet();
+        for (VtResultSet shardResult : shardResults) {
+            resultSet.appendResult(shardResult);
+        }
+        return new ExecuteMultiShardResponse(resultSet, shardResults);
     }
 
+    @SuppressWarnings("unchecked")
     public IExecute.ExecuteBatchMultiShardResponse executeBatchMultiShard(IContext context, List<ResolvedShard> rss, List<List<BoundQuery>> queries, SafeSession safeSession, Boolean autocommit,
                                                                           Boolean ignoreMaxMemoryRows, Boolean asTransaction) throws SQLException {
         if (rss.size() != queries.size()) {
             throw new SQLException("BUG: got mismatched number of queries and shards");
         }
-        // lock protects resultSet
-        ReentrantLock lock = new ReentrantLock(true);
-        List<List<VtResultSet>> vtResultSetList = new ArrayList<>();
-        List<ResolvedShard> rssr = new ArrayList<>();
+        List<VtResultSet>[] shardResults = new List[rss.size()];
         if (safeSession != null) {
             VitessConnection vitessConnection = safeSession.getVitessConnection();
             if (vitessConnection != null) {
@@ -194,7 +245,7 @@ public class ScatterConn {
             }
         }
         IContext ctx = VtContext.withCancel(context);
-        AllErrorRecorder allErrors = this.multiGoTransaction(ctx, "batchExecute", rss, safeSession, autocommit, (rs, i, shardActionInfo) -> {
+        AllErrorRecorder allErrors = join(this.multiGoTransactionAsync(ctx, "batchExecute", rss, safeSession, autocommit, (rs, i, shardActionInfo) -> {
             List<VtResultSet> innerResultSets = null;
             Query.ExecuteOptions opts = null;
             Topodata.TabletAlias alias = null;
@@ -238,21 +289,18 @@ public class ScatterConn {
                         new SQLException(String.format("BUG: unexpected actionNeeded on ScatterConn#ExecuteMultiShard %s", shardActionInfo.actionNeeded)));
             }
 
-            lock.lock();
-            try {
-                Exception exception = null;
-                // Don't append more rows if row count is exceeded.
-                int size = getTotalSize(vtResultSetList);
-                if (ignoreMaxMemoryRows || size <= VitessConnection.MAX_MEMORY_ROWS) {
-                    vtResultSetList.add(innerResultSets);
-                    rssr.add(rs);
-                }
-                return new ShardActionTransactionFuncResponse(shardActionInfo.updateTransactionAndReservedId(transactionId, reservedId, alias), exception);
-            } finally {
-                lock.unlock();
-            }
-        });
+            shardResults[i] = innerResultSets;
+            return new ShardActionTransactionFuncResponse(shardActionInfo.updateTransactionAndReservedId(transactionId, reservedId, alias), null);
+        }, true));
 
+        List<List<VtResultSet>> vtResultSetList = new ArrayList<>(rss.size());
+        List<ResolvedShard> rssr = new ArrayList<>(rss.size());
+        for (int i = 0; i < shardResults.length; i++) {
+            if (shardResults[i] != null) {
+                vtResultSetList.add(shardResults[i]);
+                rssr.add(rss.get(i));
+            }
+        }
         int size = getTotalSize(vtResultSetList);
         if (!ignoreMaxMemoryRows && size > VitessConnection.MAX_MEMORY_ROWS) {
             throw new SQLException(String.format("in-memory row count exceeded allowed limit of %d", VitessConnection.MAX_MEMORY_ROWS));
@@ -271,57 +319,50 @@ public class ScatterConn {
      * @return
      */
     public AllErrorRecorder multiGoTransaction(IContext ctx, String name, List<ResolvedShard> rss, SafeSession safeSession, Boolean autocommit, ShardActionTransactionFunc action) {
+        return join(this.multiGoTransactionAsync(ctx, name, rss, safeSession, autocommit, action, true));
+    }
+
+    /**
+     * multiGoTransactionAsync runs action on every shard and rolls the session back if a shard
+     * requires it once all shards are done.
+     *
+     * @param ctx
+     * @param name
+     * @param rss
+     * @param safeSession
+     * @param autocommit
+     * @param action
+     * @param callerRuns run the last shard on the calling thread, which would otherwise only wait
+     * @return
+     */
+    private CompletableFuture<AllErrorRecorder> multiGoTransactionAsync(IContext ctx, String name, List<ResolvedShard> rss, SafeSession safeSession, Boolean autocommit,
+                                                                       ShardActionTransactionFunc action, boolean callerRuns) {
         AllErrorRecorder allErrors = new AllErrorRecorder();
         if (rss.isEmpty()) {
-            return allErrors;
-        }
-
-        if (rss.size() == 1) {
-            allErrors.recordError(this.oneShard(rss.get(0), 0, safeSession, autocommit, action));
-        } else {
-            CountDownLatch countDownLatch = new CountDownLatch(rss.size());
-
-            for (int i = 0; i < rss.size(); i++) {
-                ResolvedShard rs = rss.get(i);
-                final int ii = i;
-                VtQueryExecutorService.execute(() -> {
-                    try {
-                        allErrors.recordError(this.oneShard(rs, ii, safeSession, autocommit, action));
-                    } finally {
-                        countDownLatch.countDown();
-                    }
-                });
-            }
-            try {
-                countDownLatch.await();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error(e.getLocalizedMessage());
-            }
+            return CompletableFuture.completedFuture(allErrors);
         }
-
-        if (safeSession.mustRollback()) {
-            try {
-                this.txConn.rollback(ctx, safeSession);
-            } catch (SQLException e) {
-                allErrors.recordError(e);
+        return this.goAll(ctx, rss, allErrors, (rs, i) -> this.oneShard(rs, i, safeSession, autocommit, action), callerRuns).thenApply(v -> {
+            if (safeSession.mustRollback()) {
+                try {
+                    this.txConn.rollback(ctx, safeSession);
+                } catch (SQLException e) {
+                    allErrors.recordError(e);
+                }
             }
-        }
-        return allErrors;
+            return allErrors;
+        });
     }
 
-
     public List<StreamIterator> streamExecuteMultiShard(IContext context, List<ResolvedShard> rss, List<BoundQuery> queries, SafeSession safeSession) throws SQLException {
         if (rss == null || rss.size() == 0) {
             throw new SQLException("ResolvedShard should not empty");
         }
 
-        ReentrantLock lock = new ReentrantLock();
-        List<StreamIterator> iteratorList = new ArrayList<>(rss.size());
+        StreamIterator[] iterators = new StreamIterator[rss.size()];
 
         IContext ctx = VtContext.withCancel(context);
 
-        AllErrorRecorder allErrors = this.multiGo("StreamExecute", rss, (rs, i) -> {
+        AllErrorRecorder allErrors = this.multiGo(ctx, "StreamExecute", rss, (rs, i) -> {
             StreamIterator iterator = null;
             Exception exception = null;
             ShardActionInfo shardActionInfo = actionInfo(rs.getTarget(), safeSession, false);
@@ -332,14 +373,11 @@ public class ScatterConn {
                 exception = e;
             }
 
-            lock.lock();
-            try {
-                iteratorList.add(iterator);
-            } finally {
-                lock.unlock();
-            }
+            iterators[i] = iterator;
             return exception;
         });
+        List<StreamIterator> iteratorList = new ArrayList<>(rss.size());
+        Collections.addAll(iteratorList, iterators);
         if (allErrors.hasErrors()) {
             for (StreamIterator streamIterator : iteratorList) {
                 if (streamIterator != null) {
@@ -351,35 +389,81 @@ public class ScatterConn {
         return iteratorList;
     }
 
-    private AllErrorRecorder multiGo(String name, List<ResolvedShard> rss, ShardActionFunc action) {
-        int numShards = rss.size();
+    private AllErrorRecorder multiGo(IContext ctx, String name, List<ResolvedShard> rss, ShardActionFunc action) {
         AllErrorRecorder allErrors = new AllErrorRecorder();
         if (rss.isEmpty()) {
             return allErrors;
         }
-        if (numShards == 1) {
+        join(this.goAll(ctx, rss, allErrors, action, true));
+        return allErrors;
+    }
+
+    /**
+     * goAll runs action on every shard on the query executor. The first shard that fails cancels
+     * ctx, so shards that have not started yet are skipped instead of executed for a query that
+     * has already failed, and the queries still running on the other shards are killed by the
+     * cancel listeners they registered on ctx. The same happens when the deadline of ctx passes.
+     *
+     * @param ctx
+     * @param rss
+     * @param allErrors
+     * @param action
+     * @param callerRuns run the last shard on the calling thread
+     * @return a future that completes when every shard is done or skipped
+     */
+    private CompletableFuture<Void> goAll(IContext ctx, List<ResolvedShard> rss, AllErrorRecorder allErrors, ShardActionFunc action, boolean callerRuns) {
+        int numShards = rss.size();
+        if (numShards == 1 && callerRuns) {
             allErrors.recordError(action.action(rss.get(0), 0));
-        } else {
-            CountDownLatch countDownLatch = new CountDownLatch(rss.size());
-            for (int i = 0; i < rss.size(); i++) {
-                ResolvedShard rs = rss.get(i);
-                final int ii = i;
-                VtQueryExecutorService.execute(() -> {
-                    try {
-                        allErrors.recordError(action.action(rs, ii));
-                    } finally {
-                        countDownLatch.countDown();
-                    }
-                });
-            }
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[numShards];
+        int asyncShards = callerRuns ? numShards - 1 : numShards;
+        for (int i = 0; i < asyncShards; i++) {
+            ResolvedShard rs = rss.get(i);
+            final int ii = i;
             try {
-                countDownLatch.await();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error(e.getLocalizedMessage());
+                futures[i] = CompletableFuture.runAsync(() -> this.goOne(ctx, rs, ii, allErrors, action), VtQueryExecutorService.getExecutor());
+            } catch (RejectedExecutionException e) {
+                allErrors.recordError(new SQLException(e));
+                ctx.cancel(e.getMessage());
+                futures[i] = CompletableFuture.completedFuture(null);
             }
         }
-        return allErrors;
+        if (callerRuns) {
+            this.goOne(ctx, rss.get(numShards - 1), numShards - 1, allErrors, action);
+            futures[numShards - 1] = CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    private void goOne(IContext ctx, ResolvedShard rs, int i, AllErrorRecorder allErrors, ShardActionFunc action) {
+        if (ctx.isDone()) {
+            allErrors.recordError(new SQLException(VtContextConstant.EXECUTION_CANCELLED + ctx.error()));
+            return;
+        }
+        Exception exception;
+        try {
+            exception = action.action(rs, i);
+        } catch (RuntimeException e) {
+            exception = e;
+        }
+        if (exception != null) {
+            allErrors.recordError(exception);
+            ctx.cancel(exception.getMessage());
+        }
+    }
+
+    /**
+     * join waits for a scatter started on this thread. Shards keep the session consistent only
+     * if they all finish, so the wait is not interruptible.
+     *
+     * @param future
+     * @param <T>
+     * @return
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        return future.join();
     }
 
     /**
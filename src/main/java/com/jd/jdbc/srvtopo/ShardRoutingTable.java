@@ -0,0 +1,73 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.srvtopo;
+
+import com.jd.jdbc.key.KeyRangeIndex;
+import io.vitess.proto.Query;
+import io.vitess.proto.Topodata;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * ShardRoutingTable is the immutable routing state of one keyspace partition: the shards
+ * indexed by key range and one {@link ResolvedShard} per shard.
+ * <p>
+ * It is built from a SrvKeyspace and reused for as long as the topo server returns the same
+ * SrvKeyspace instance, so resolving a destination does not rebuild targets every time.
+ */
+@Getter
+final class ShardRoutingTable {
+
+    private final Topodata.SrvKeyspace srvKeyspace;
+
+    private final KeyRangeIndex keyRangeIndex;
+
+    private final List<ResolvedShard> resolvedShards;
+
+    private final Map<String, ResolvedShard> resolvedShardsByName;
+
+    ShardRoutingTable(final String keyspace, final Topodata.TabletType tabletType, final Topodata.SrvKeyspace srvKeyspace,
+                      final List<Topodata.ShardReference> shardReferences, final Gateway gateway) {
+        this.srvKeyspace = srvKeyspace;
+        this.keyRangeIndex = new KeyRangeIndex(shardReferences);
+        List<ResolvedShard> shards = new ArrayList<>(shardReferences.size());
+        Map<String, ResolvedShard> shardsByName = new HashMap<>(shardReferences.size() * 2);
+        for (Topodata.ShardReference shardReference : shardReferences) {
+            ResolvedShard resolvedShard = newResolvedShard(keyspace, shardReference.getName(), tabletType, gateway);
+            shards.add(resolvedShard);
+            shardsByName.put(shardReference.getName(), resolvedShard);
+        }
+        this.resolvedShards = Collections.unmodifiableList(shards);
+        this.resolvedShardsByName = shardsByName;
+    }
+
+    List<Topodata.ShardReference> getShardReferences() {
+        return keyRangeIndex.getShardReferences();
+    }
+
+    static ResolvedShard newResolvedShard(final String keyspace, final String shard, final Topodata.TabletType tabletType, final Gateway gateway) {
+        Query.Target target = Query.Target.newBuilder().setKeyspace(keyspace).setShard(shard).setTabletType(tabletType).setCell("").build();
+        ResolvedShard resolvedShard = new ResolvedShard();
+        resolvedShard.setGateway(gateway);
+        resolvedShard.setTarget(target);
+        return resolvedShard;
+    }
+}
@@ -20,20 +20,25 @@ package com.jd.jdbc.srvtopo;
 
 import com.jd.jdbc.concurrency.AllErrorRecorder;
 import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.monitor.TxConnCollector;
 import com.jd.jdbc.queryservice.IQueryService;
 import com.jd.jdbc.session.SafeSession;
+import com.jd.jdbc.session.ShardCommitMode;
 import com.jd.jdbc.session.ShardSession;
 import com.jd.jdbc.session.TransactionMode;
 import com.jd.jdbc.session.VitessSession;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import io.prometheus.client.Histogram;
 import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
@@ -43,6 +48,8 @@ import lombok.Getter;
 public class TxConn {
     private static final Log logger = LogFactory.getLog(TxConn.class);
 
+    private static final Histogram COMMIT_HISTOGRAM = TxConnCollector.getCommitHistogram();
+
     private final Gateway gateway;
 
     @Getter
@@ -132,14 +139,31 @@ public class TxConn {
             throw exception;
         }
 
-        // Retain backward compatibility on commit order for the normal session.
-        for (ShardSession shardSession : safeSession.getVitessConnection().getSession().getShardSessionsList()) {
-            SQLException e = this.commitShard(ctx, shardSession);
-            if (e != null) {
-                this.release(ctx, safeSession);
-                throw e;
+        List<ShardSession> shardSessions = safeSession.getVitessConnection().getSession().getShardSessionsList();
+        ShardCommitMode shardCommitMode = safeSession.getShardCommitMode();
+        if (!shardSessions.isEmpty()) {
+            TxConnCollector.getShardsHistogram().labels(shardCommitMode.name()).observe(shardSessions.size());
+        }
+        Histogram.Timer timer = COMMIT_HISTOGRAM.labels(shardCommitMode.name()).startTimer();
+        try {
+            if (shardCommitMode == ShardCommitMode.PARALLEL && shardSessions.size() > 1) {
+                this.commitParallel(ctx, safeSession, shardSessions);
+            } else {
+                // Retain backward compatibility on commit order for the normal session.
+                for (int i = 0; i < shardSessions.size(); i++) {
+                    SQLException e = this.commitShard(ctx, shardSessions.get(i));
+                    if (e != null) {
+                        if (i > 0) {
+                            TxConnCollector.getPartialCommitCounter().labels(shardCommitMode.name()).inc();
+                        }
+                        this.release(ctx, safeSession);
+                        throw e;
 
+                    }
+                }
             }
+        } finally {
+            timer.observeDuration();
         }
 
         SQLException e = this.runSessions(ctx, safeSession.getVitessConnection().getSession().getPostSessionsList(), this::commitShard);
@@ -153,6 +177,72 @@ public class TxConn {
         }
     }
 
+    /**
+     * Commits all shard sessions at once. A shard that committed can not be rolled back, so a failure
+     * does not stop the other shards; the sessions that did not commit are released (rolled back) and
+     * the error names the failed and the committed shards. A shard rejected by the query thread pool is
+     * committed on the calling thread.
+     *
+     * @param ctx
+     * @param safeSession
+     * @param shardSessions
+     * @throws SQLException
+     */
+    private void commitParallel(IContext ctx, SafeSession safeSession, List<ShardSession> shardSessions) throws SQLException {
+        int size = shardSessions.size();
+        SQLException[] exceptions = new SQLException[size];
+        CountDownLatch countDownLatch = new CountDownLatch(size);
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            // the shards already submitted are committing, so a rejected one has to be committed as well
+            executeOrRun(() -> {
+                try {
+                    exceptions[index] = this.commitShard(ctx, shardSessions.get(index));
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                countDownLatch.await();
+                break;
+            } catch (InterruptedException e) {
+                // the outcome of every shard has to be known before the session is reset
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        SQLException first = null;
+        List<String> failedShards = new ArrayList<>();
+        List<String> committedShards = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Query.Target target = shardSessions.get(i).getTarget();
+            String shard = target.getKeyspace() + "/" + target.getShard();
+            if (exceptions[i] == null) {
+                committedShards.add(shard);
+                continue;
+            }
+            failedShards.add(shard);
+            if (first == null) {
+                first = exceptions[i];
+            }
+        }
+        if (first == null) {
+            return;
+        }
+        if (!committedShards.isEmpty()) {
+            TxConnCollector.getPartialCommitCounter().labels(ShardCommitMode.PARALLEL.name()).inc();
+        }
+        this.release(ctx, safeSession);
+        throw new SQLException(String.format("commit failed on shards %s, committed shards %s: %s", failedShards, committedShards, first.getMessage()),
+            first.getSQLState(), first.getErrorCode(), first);
+    }
+
     /**
      * @param ctx
      * @param safeSession
@@ -264,7 +354,7 @@ public class TxConn {
         CountDownLatch countDownLatch = new CountDownLatch(shardSessions.size());
 
         for (ShardSession shardSession : shardSessions) {
-            VtQueryExecutorService.execute(() -> {
+            executeOrRun(() -> {
                 try {
                     Exception exception = action.action(ctx, shardSession);
                     if (exception != null) {
@@ -284,6 +374,21 @@ public class TxConn {
         return allErrorRecorder.error();
     }
 
+    /**
+     * runs the task on the calling thread if the query thread pool rejects it, so every shard of a
+     * commit or release is run once the other shards are submitted.
+     *
+     * @param task
+     */
+    private static void executeOrRun(Runnable task) {
+        try {
+            VtQueryExecutorService.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.warn("task is rejected by the query thread pool, run it on the calling thread: " + e.getMessage());
+            task.run();
+        }
+    }
+
     /**
      *
      */
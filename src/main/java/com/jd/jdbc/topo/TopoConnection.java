@@ -20,6 +20,7 @@ package com.jd.jdbc.topo;
 
 import com.jd.jdbc.context.IContext;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public interface TopoConnection extends Resource {
@@ -62,6 +63,20 @@ public interface TopoConnection extends Resource {
 
     void watchSrvKeyspace(IContext ctx, String cell, String keyspace) throws TopoException;
 
+    /**
+     * Reads every file under dirPath and then watches them from the revision of that read, so no
+     * change between the read and the watch is lost. The listener gets the snapshot before any change.
+     *
+     * @param ctx
+     * @param dirPath
+     * @param listener
+     * @return the watch, close it to stop watching
+     * @throws TopoException NO_IMPLEMENTATION if this connection cannot watch
+     */
+    default Resource watchDir(IContext ctx, String dirPath, DirWatchListener listener) throws TopoException {
+        throw TopoException.wrap(TopoExceptionCode.NO_IMPLEMENTATION, "for watchDir");
+    }
+
     enum DirEntryType {
 
         /**
@@ -84,6 +99,24 @@ public interface TopoConnection extends Resource {
         }
     }
 
+    interface DirWatchListener {
+        /**
+         * @param files file path relative to the watched directory to its contents
+         */
+        void onSnapshot(Map<String, byte[]> files);
+
+        void onPut(String filePath, byte[] contents);
+
+        void onDelete(String filePath);
+
+        /**
+         * The watch is broken, changes after it are lost until the directory is watched again.
+         *
+         * @param throwable
+         */
+        void onError(Throwable throwable);
+    }
+
     interface Version {
         /**
          * @return
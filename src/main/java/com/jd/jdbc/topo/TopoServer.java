@@ -334,6 +334,19 @@ public class TopoServer implements Resource, TopoCellInfo, TopoSrvKeyspace, Topo
         return tablets;
     }
 
+    /**
+     * @param ctx
+     * @param cell
+     * @param listener
+     * @return
+     * @throws TopoException
+     */
+    @Override
+    public Resource watchTablets(IContext ctx, String cell, TabletWatchListener listener) throws TopoException {
+        TopoConnection topoConnection = this.connForCell(ctx, cell);
+        return topoConnection.watchDir(ctx, TABLETS_PATH, new TabletDirWatchListener(cell, listener));
+    }
+
     /**
      * @param ctx
      * @param tabletAlias
@@ -462,4 +475,65 @@ public class TopoServer implements Resource, TopoCellInfo, TopoSrvKeyspace, Topo
         }
         TopoServerCollector.getExecCounterCounter().labels(this.serverAddress).inc();
     }
+
+    /**
+     * TabletDirWatchListener turns the file events under the tablets directory into tablet events,
+     * the files are named '<tablet alias>/Tablet'.
+     */
+    private static class TabletDirWatchListener implements TopoConnection.DirWatchListener {
+        private static final String TABLET_FILE_SUFFIX = "/" + TABLET_FILE;
+
+        private final String cell;
+
+        private final TabletWatchListener listener;
+
+        TabletDirWatchListener(String cell, TabletWatchListener listener) {
+            this.cell = cell;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSnapshot(Map<String, byte[]> files) {
+            List<Topodata.Tablet> tablets = new ArrayList<>(files.size());
+            for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+                Topodata.Tablet tablet = parseTablet(entry.getKey(), entry.getValue());
+                if (tablet != null) {
+                    tablets.add(tablet);
+                }
+            }
+            listener.onSnapshot(tablets);
+        }
+
+        @Override
+        public void onPut(String filePath, byte[] contents) {
+            Topodata.Tablet tablet = parseTablet(filePath, contents);
+            if (tablet != null) {
+                listener.onPut(tablet);
+            }
+        }
+
+        @Override
+        public void onDelete(String filePath) {
+            if (filePath.endsWith(TABLET_FILE_SUFFIX)) {
+                listener.onDelete(filePath.substring(0, filePath.length() - TABLET_FILE_SUFFIX.length()));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            listener.onError(throwable);
+        }
+
+        private Topodata.Tablet parseTablet(String filePath, byte[] contents) {
+            if (!filePath.endsWith(TABLET_FILE_SUFFIX)) {
+                return null;
+            }
+            try {
+                return Topodata.Tablet.parseFrom(contents);
+            } catch (InvalidProtocolBufferException e) {
+                log.error("failed to parse tablet " + filePath + " in cell " + cell + ", cause: " + e.getMessage());
+                return null;
+            }
+        }
+    }
 }
@@ -67,6 +67,11 @@ public class TopoStatsConnection implements TopoConnection {
         this.topoConnection.watchSrvKeyspace(ctx, cell, keyspace);
     }
 
+    @Override
+    public Resource watchDir(IContext ctx, String dirPath, DirWatchListener listener) throws TopoException {
+        return this.topoConnection.watchDir(ctx, dirPath, listener);
+    }
+
     @Override
     public void close() {
 
@@ -46,4 +46,25 @@ public interface TopoTablet {
     List<Topodata.TabletAlias> getTabletAliasByCell(IContext ctx, String cell) throws TopoException;
 
     CompletableFuture<List<Topodata.TabletAlias>> getTabletsByCellFuture(IContext ctx, String cell) throws TopoException;
+
+    /**
+     * Reads every tablet of the cell and then watches them, see {@link TopoConnection#watchDir}.
+     *
+     * @param ctx
+     * @param cell
+     * @param listener
+     * @return the watch, close it to stop watching
+     * @throws TopoException NO_IMPLEMENTATION if the topo of the cell cannot watch
+     */
+    Resource watchTablets(IContext ctx, String cell, TabletWatchListener listener) throws TopoException;
+
+    interface TabletWatchListener {
+        void onSnapshot(List<Topodata.Tablet> tablets);
+
+        void onPut(Topodata.Tablet tablet);
+
+        void onDelete(String tabletAlias);
+
+        void onError(Throwable throwable);
+    }
 }
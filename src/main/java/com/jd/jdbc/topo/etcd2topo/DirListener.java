@@ -0,0 +1,76 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.topo.etcd2topo;
+
+import com.jd.jdbc.sqlparser.support.logging.Log;
+import com.jd.jdbc.sqlparser.support.logging.LogFactory;
+import com.jd.jdbc.topo.TopoConnection;
+import com.jd.jdbc.topo.TopoException;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DirListener passes the events of a prefix watch to a {@link TopoConnection.DirWatchListener},
+ * with the keys relative to the watched directory.
+ */
+public class DirListener implements Watch.Listener {
+    private static final Log LOGGER = LogFactory.getLog(DirListener.class);
+
+    private final String nodePath;
+
+    private final TopoConnection.DirWatchListener listener;
+
+    public DirListener(String nodePath, TopoConnection.DirWatchListener listener) {
+        this.nodePath = nodePath;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onNext(WatchResponse response) {
+        for (WatchEvent event : response.getEvents()) {
+            String key = event.getKeyValue().getKey().toString(StandardCharsets.UTF_8);
+            if (!key.startsWith(nodePath)) {
+                continue;
+            }
+            String filePath = key.substring(nodePath.length());
+            switch (event.getEventType()) {
+                case PUT:
+                    listener.onPut(filePath, event.getKeyValue().getValue().getBytes());
+                    break;
+                case DELETE:
+                    listener.onDelete(filePath);
+                    break;
+                default:
+                    LOGGER.error("unexpected event received, key: " + key);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        listener.onError(throwable);
+    }
+
+    @Override
+    public void onCompleted() {
+        listener.onError(TopoException.wrap("watch on " + nodePath + " completed"));
+    }
+}
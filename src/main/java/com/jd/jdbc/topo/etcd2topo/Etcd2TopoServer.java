@@ -22,6 +22,7 @@ import com.jd.jdbc.common.util.MapUtil;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
+import com.jd.jdbc.topo.Resource;
 import com.jd.jdbc.topo.Topo;
 import com.jd.jdbc.topo.TopoConnection;
 import com.jd.jdbc.topo.TopoException;
@@ -35,7 +36,9 @@ import io.etcd.jetcd.options.GetOption;
 import io.etcd.jetcd.options.WatchOption;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -282,6 +285,34 @@ public class Etcd2TopoServer implements TopoConnection {
         MapUtil.computeIfAbsent(WATCHER_MAP, nodePath, watch -> client.getWatchClient().watch(buildByteSequenceKey(nodePath), watchOption, listener));
     }
 
+    @Override
+    public Resource watchDir(IContext ctx, String dirPath, DirWatchListener listener) throws TopoException {
+        String nodePath = this.root + SEPARATOR + dirPath + SEPARATOR;
+        ByteSequence prefix = buildByteSequenceKey(nodePath);
+
+        // snapshot
+        GetOption option = GetOption.newBuilder().withPrefix(prefix).build();
+        CompletableFuture<GetResponse> future = this.client.getKVClient().get(prefix, option);
+        GetResponse initial;
+        try {
+            initial = future.get(DEFALUT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException | ExecutionException e) {
+            logger.error(e.getMessage(), e);
+            throw TopoException.wrap(e.getMessage());
+        }
+        int prefixLen = nodePath.length();
+        Map<String, byte[]> files = new HashMap<>(initial.getKvs().size());
+        for (KeyValue kv : initial.getKvs()) {
+            files.put(kv.getKey().toString(StandardCharsets.UTF_8).substring(prefixLen), kv.getValue().getBytes());
+        }
+        listener.onSnapshot(files);
+
+        // watch the changes after the snapshot
+        WatchOption watchOption = WatchOption.newBuilder().withPrefix(prefix).withRevision(initial.getHeader().getRevision() + 1).build();
+        Watch.Watcher watcher = client.getWatchClient().watch(prefix, watchOption, new DirListener(nodePath, listener));
+        return watcher::close;
+    }
+
     private ByteSequence buildByteSequenceKey(String key) {
         return ByteSequence.from(key, StandardCharsets.UTF_8);
     }
@@ -0,0 +1,12 @@
+package com.jd.jdbc.util.cache;
+
+@FunctionalInterface
+public interface CacheWeigher<T> {
+
+    /**
+     * @param key
+     * @param value
+     * @return the estimated memory weight of the entry, must not be negative
+     */
+    int weigh(String key, T value);
+}
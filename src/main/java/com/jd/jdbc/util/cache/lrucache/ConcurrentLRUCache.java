@@ -0,0 +1,226 @@
+package com.jd.jdbc.util.cache.lrucache;
+
+import com.jd.jdbc.util.cache.CacheBase;
+import com.jd.jdbc.util.cache.CacheWeigher;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentLRUCache is a striped cache with an approximate LRU (CLOCK) eviction policy.
+ * <p>
+ * Lookups never take a lock: an entry is read from the segment's ConcurrentHashMap and only
+ * its reference bit is set. Writes and evictions lock a single segment. When a segment is over
+ * its entry or weight budget, the clock hand gives referenced entries a second chance and evicts
+ * the first entry that has not been read since the hand last passed it.
+ * <p>
+ * The bounds are split evenly between the segments, so the cache as a whole never holds more
+ * than capacity entries or maxWeight weight, but may evict before reaching them.
+ */
+public class ConcurrentLRUCache<T> implements CacheBase<T> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<T>[] segments;
+
+    private final int segmentMask;
+
+    private final Integer capacity;
+
+    private final long maxWeight;
+
+    private final CacheWeigher<T> weigher;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    public ConcurrentLRUCache(Integer capacity) {
+        this(capacity, Long.MAX_VALUE, (key, value) -> 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache(Integer capacity, long maxWeight, CacheWeigher<T> weigher) {
+        this.capacity = capacity;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 <= capacity) {
+            segmentCount <<= 1;
+        }
+        this.segmentMask = segmentCount - 1;
+        this.segments = new Segment[segmentCount];
+        int segmentCapacity = Math.max(1, capacity / segmentCount);
+        long segmentMaxWeight = maxWeight == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1, maxWeight / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>(segmentCapacity, segmentMaxWeight, evictionCount);
+        }
+    }
+
+    @Override
+    public T get(String key) {
+        Node<T> node = segmentFor(key).map.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        hitCount.increment();
+        return node.value;
+    }
+
+    @Override
+    public void set(String key, T value) {
+        segmentFor(key).put(key, value, weigher.weigh(key, value));
+    }
+
+    @Override
+    public Integer size() {
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
+    }
+
+    @Override
+    public Integer capacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<T> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long maxWeight() {
+        return this.maxWeight;
+    }
+
+    public long weightedSize() {
+        long weight = 0;
+        for (Segment<T> segment : segments) {
+            weight += segment.weight;
+        }
+        return weight;
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    private Segment<T> segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & segmentMask];
+    }
+
+    private static class Segment<T> {
+        private final ConcurrentHashMap<String, Node<T>> map = new ConcurrentHashMap<>();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final ArrayDeque<Node<T>> clock = new ArrayDeque<>();
+
+        private final int capacity;
+
+        private final long maxWeight;
+
+        private final LongAdder evictionCount;
+
+        private volatile long weight;
+
+        Segment(int capacity, long maxWeight, LongAdder evictionCount) {
+            this.capacity = capacity;
+            this.maxWeight = maxWeight;
+            this.evictionCount = evictionCount;
+        }
+
+        void put(String key, T value, int entryWeight) {
+            if (entryWeight > maxWeight) {
+                return;
+            }
+            lock.lock();
+            try {
+                Node<T> existNode = map.get(key);
+                if (existNode != null) {
+                    weight += entryWeight - existNode.weight;
+                    existNode.weight = entryWeight;
+                    existNode.value = value;
+                    existNode.referenced = true;
+                } else {
+                    Node<T> newNode = new Node<>(key, value, entryWeight);
+                    map.put(key, newNode);
+                    clock.addLast(newNode);
+                    weight += entryWeight;
+                }
+                evictLocked();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                map.clear();
+                clock.clear();
+                weight = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Every entry gets at most one second chance per call, so the loop ends even if
+         * concurrent readers keep setting reference bits.
+         */
+        private void evictLocked() {
+            int secondChances = clock.size();
+            while ((map.size() > capacity || weight > maxWeight) && !clock.isEmpty()) {
+                Node<T> node = clock.pollFirst();
+                if (node.referenced && secondChances > 0) {
+                    secondChances--;
+                    node.referenced = false;
+                    clock.addLast(node);
+                    continue;
+                }
+                map.remove(node.key, node);
+                weight -= node.weight;
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private static class Node<T> {
+        private final String key;
+
+        private volatile T value;
+
+        private int weight;
+
+        private volatile boolean referenced;
+
+        Node(String key, T value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -36,6 +36,8 @@ public class InitThreadPoolService {
 
     private static Long queryRejectedExecutionTimeoutMillis;
 
+    private static Boolean queryVirtualThreads;
+
     private static Integer healthCheckCorePoolSize;
 
     private static Integer healthCheckMaximumPoolSize;
@@ -50,11 +52,12 @@ public class InitThreadPoolService {
         queryMaximumPoolSize = Utils.getInteger(prop, "queryMaximumSize");
         queryQueueSize = Utils.getInteger(prop, "queryQueueSize");
         queryRejectedExecutionTimeoutMillis = Utils.getLong(prop, "queryRejectedTimeout");
+        queryVirtualThreads = Utils.getBoolean(prop, "queryVirtualThreads");
         healthCheckCorePoolSize = Utils.getInteger(prop, "healthCheckCoreSize");
         healthCheckMaximumPoolSize = Utils.getInteger(prop, "healthCheckMaximumSize");
         healthCheckQueueSize = Utils.getInteger(prop, "healthCheckQueueSize");
         healthCheckRejectedExecutionTimeoutMillis = Utils.getLong(prop, "healthCheckRejectedTimeout");
-        VtQueryExecutorService.initialize(queryCorePoolSize, queryMaximumPoolSize, queryQueueSize, queryRejectedExecutionTimeoutMillis);
+        VtQueryExecutorService.initialize(queryCorePoolSize, queryMaximumPoolSize, queryQueueSize, queryRejectedExecutionTimeoutMillis, queryVirtualThreads);
         VtHealthCheckExecutorService.initialize(healthCheckCorePoolSize, healthCheckMaximumPoolSize, healthCheckQueueSize, healthCheckRejectedExecutionTimeoutMillis);
     }
 
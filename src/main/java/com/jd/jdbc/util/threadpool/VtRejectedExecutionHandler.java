@@ -65,7 +65,9 @@ public class VtRejectedExecutionHandler implements RejectedExecutionHandler {
     @Override
     public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
         try {
-            executor.getQueue().offer(r, this.timeout, TimeUnit.MILLISECONDS);
+            if (executor.getQueue().offer(r, this.timeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
         } catch (InterruptedException e) {
             LOGGER.warn("Interrupted", e);
             throw new RejectedExecutionException("Interrupted", e);
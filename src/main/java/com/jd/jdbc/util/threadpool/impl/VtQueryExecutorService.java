@@ -17,10 +17,14 @@ limitations under the License.
 package com.jd.jdbc.util.threadpool.impl;
 
 import com.jd.jdbc.monitor.ThreadPoolCollector;
+import com.jd.jdbc.sqlparser.support.logging.Log;
+import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import com.jd.jdbc.util.threadpool.AbstractVtExecutorService;
 import com.jd.jdbc.util.threadpool.VtRejectedExecutionHandler;
 import com.jd.jdbc.util.threadpool.VtThreadFactoryBuilder;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -29,14 +33,29 @@ import lombok.NoArgsConstructor;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class VtQueryExecutorService extends AbstractVtExecutorService {
+    private static final Log LOGGER = LogFactory.getLog(VtQueryExecutorService.class);
+
     private static final String QUERY_TASK_NAME_FORMAT = "QueryTask-";
 
     private volatile static ExecutorService executorService;
 
     public static void initialize(Integer corePoolSize, Integer maximumPoolSize, Integer queueSzie, Long rejectedExecutionTimeoutMillis) {
+        initialize(corePoolSize, maximumPoolSize, queueSzie, rejectedExecutionTimeoutMillis, null);
+    }
+
+    /**
+     * @param virtualThreads run every query task on its own virtual thread instead of the pool, only takes effect on a JDK that has virtual threads
+     */
+    public static void initialize(Integer corePoolSize, Integer maximumPoolSize, Integer queueSzie, Long rejectedExecutionTimeoutMillis, Boolean virtualThreads) {
         if (executorService == null) {
             synchronized (VtQueryExecutorService.class) {
                 if (executorService == null) {
+                    if (Boolean.TRUE.equals(virtualThreads)) {
+                        executorService = newVirtualThreadPerTaskExecutor();
+                        if (executorService != null) {
+                            return;
+                        }
+                    }
                     if (corePoolSize == null || corePoolSize <= 0) {
                         corePoolSize = DEFAULT_QUERY_CORE_POOL_SIZE;
                     }
@@ -70,4 +89,24 @@ public class VtQueryExecutorService extends AbstractVtExecutorService {
     public static void execute(Runnable command) {
         executorService.execute(command);
     }
+
+    public static Executor getExecutor() {
+        return executorService;
+    }
+
+    /**
+     * The blocking Connector/J calls of a query task park a virtual thread instead of a pool thread,
+     * so a scatter over many shards does not need as many platform threads. The driver is built for
+     * JDK 8, the executor is looked up reflectively.
+     *
+     * @return null if the running JDK has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warn("virtual threads are not supported by java " + System.getProperty("java.version") + ", query tasks run on the thread pool");
+            return null;
+        }
+    }
 }
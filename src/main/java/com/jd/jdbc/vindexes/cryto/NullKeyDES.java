@@ -0,0 +1,223 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.vindexes.cryto;
+
+/**
+ * NullKeyDES is DES with an all zero key, which is what the hash vindexes compute:
+ * 3DES with a null key is the same permutation as single DES with a null key.
+ * <p>
+ * The zero key is a weak key, every round key is zero, so encrypt and decrypt are the
+ * same permutation and there is no key schedule. The permutations and the S-boxes are
+ * precomputed into lookup tables, the block is a primitive long and nothing is shared
+ * between calls, so it is thread-safe without locks and does not allocate.
+ */
+public final class NullKeyDES {
+
+    private static final int[] IP = {
+        58, 50, 42, 34, 26, 18, 10, 2,
+        60, 52, 44, 36, 28, 20, 12, 4,
+        62, 54, 46, 38, 30, 22, 14, 6,
+        64, 56, 48, 40, 32, 24, 16, 8,
+        57, 49, 41, 33, 25, 17, 9, 1,
+        59, 51, 43, 35, 27, 19, 11, 3,
+        61, 53, 45, 37, 29, 21, 13, 5,
+        63, 55, 47, 39, 31, 23, 15, 7
+    };
+
+    private static final int[] P = {
+        16, 7, 20, 21, 29, 12, 28, 17,
+        1, 15, 23, 26, 5, 18, 31, 10,
+        2, 8, 24, 14, 32, 27, 3, 9,
+        19, 13, 30, 6, 22, 11, 4, 25
+    };
+
+    private static final int[][] S_BOXES = {
+        {
+            14, 4, 13, 1, 2, 15, 11, 8, 3, 10, 6, 12, 5, 9, 0, 7,
+            0, 15, 7, 4, 14, 2, 13, 1, 10, 6, 12, 11, 9, 5, 3, 8,
+            4, 1, 14, 8, 13, 6, 2, 11, 15, 12, 9, 7, 3, 10, 5, 0,
+            15, 12, 8, 2, 4, 9, 1, 7, 5, 11, 3, 14, 10, 0, 6, 13
+        },
+        {
+            15, 1, 8, 14, 6, 11, 3, 4, 9, 7, 2, 13, 12, 0, 5, 10,
+            3, 13, 4, 7, 15, 2, 8, 14, 12, 0, 1, 10, 6, 9, 11, 5,
+            0, 14, 7, 11, 10, 4, 13, 1, 5, 8, 12, 6, 9, 3, 2, 15,
+            13, 8, 10, 1, 3, 15, 4, 2, 11, 6, 7, 12, 0, 5, 14, 9
+        },
+        {
+            10, 0, 9, 14, 6, 3, 15, 5, 1, 13, 12, 7, 11, 4, 2, 8,
+            13, 7, 0, 9, 3, 4, 6, 10, 2, 8, 5, 14, 12, 11, 15, 1,
+            13, 6, 4, 9, 8, 15, 3, 0, 11, 1, 2, 12, 5, 10, 14, 7,
+            1, 10, 13, 0, 6, 9, 8, 7, 4, 15, 14, 3, 11, 5, 2, 12
+        },
+        {
+            7, 13, 14, 3, 0, 6, 9, 10, 1, 2, 8, 5, 11, 12, 4, 15,
+            13, 8, 11, 5, 6, 15, 0, 3, 4, 7, 2, 12, 1, 10, 14, 9,
+            10, 6, 9, 0, 12, 11, 7, 13, 15, 1, 3, 14, 5, 2, 8, 4,
+            3, 15, 0, 6, 10, 1, 13, 8, 9, 4, 5, 11, 12, 7, 2, 14
+        },
+        {
+            2, 12, 4, 1, 7, 10, 11, 6, 8, 5, 3, 15, 13, 0, 14, 9,
+            14, 11, 2, 12, 4, 7, 13, 1, 5, 0, 15, 10, 3, 9, 8, 6,
+            4, 2, 1, 11, 10, 13, 7, 8, 15, 9, 12, 5, 6, 3, 0, 14,
+            11, 8, 12, 7, 1, 14, 2, 13, 6, 15, 0, 9, 10, 4, 5, 3
+        },
+        {
+            12, 1, 10, 15, 9, 2, 6, 8, 0, 13, 3, 4, 14, 7, 5, 11,
+            10, 15, 4, 2, 7, 12, 9, 5, 6, 1, 13, 14, 0, 11, 3, 8,
+            9, 14, 15, 5, 2, 8, 12, 3, 7, 0, 4, 10, 1, 13, 11, 6,
+            4, 3, 2, 12, 9, 5, 15, 10, 11, 14, 1, 7, 6, 0, 8, 13
+        },
+        {
+            4, 11, 2, 14, 15, 0, 8, 13, 3, 12, 9, 7, 5, 10, 6, 1,
+            13, 0, 11, 7, 4, 9, 1, 10, 14, 3, 5, 12, 2, 15, 8, 6,
+            1, 4, 11, 13, 12, 3, 7, 14, 10, 15, 6, 8, 0, 5, 9, 2,
+            6, 11, 13, 8, 1, 4, 10, 7, 9, 5, 0, 15, 14, 2, 3, 12
+        },
+        {
+            13, 2, 8, 4, 6, 15, 11, 1, 10, 9, 3, 14, 5, 0, 12, 7,
+            1, 15, 13, 8, 10, 3, 7, 4, 12, 5, 6, 11, 0, 14, 9, 2,
+            7, 11, 4, 1, 9, 12, 14, 2, 0, 6, 10, 13, 15, 3, 5, 8,
+            2, 1, 14, 7, 4, 10, 8, 13, 15, 12, 9, 0, 3, 5, 6, 11
+        }
+    };
+
+    /**
+     * IP_TABLE[i][b] is the initial permutation of byte b at byte position i (0 is the most significant byte),
+     * the permutation of a block is the xor of the permutations of its bytes.
+     */
+    private static final long[][] IP_TABLE = new long[8][256];
+
+    private static final long[][] FP_TABLE = new long[8][256];
+
+    /**
+     * SP_TABLE[s][x] is the P permutation of the output of S-box s for the 6 bits input x.
+     */
+    private static final int[][] SP_TABLE = new int[8][64];
+
+    static {
+        int[] fp = new int[64];
+        for (int i = 0; i < 64; i++) {
+            fp[IP[i] - 1] = i + 1;
+        }
+        for (int i = 0; i < 8; i++) {
+            for (int b = 0; b < 256; b++) {
+                long block = (long) b << (56 - 8 * i);
+                IP_TABLE[i][b] = permute(block, 64, IP);
+                FP_TABLE[i][b] = permute(block, 64, fp);
+            }
+        }
+        for (int s = 0; s < 8; s++) {
+            for (int x = 0; x < 64; x++) {
+                int row = ((x >>> 4) & 0b10) | (x & 0b1);
+                int column = (x >>> 1) & 0xf;
+                long sOutput = (long) S_BOXES[s][row * 16 + column] << (28 - 4 * s);
+                SP_TABLE[s][x] = (int) permute(sOutput, 32, P);
+            }
+        }
+    }
+
+    private NullKeyDES() {
+    }
+
+    /**
+     * @param block 64 bits plain text, big endian
+     * @return 64 bits cipher text, big endian
+     */
+    public static long encrypt(final long block) {
+        long permuted = permuteBytes(block, IP_TABLE);
+        int left = (int) (permuted >>> 32);
+        int right = (int) permuted;
+        for (int round = 0; round < 16; round++) {
+            int next = left ^ feistel(right);
+            left = right;
+            right = next;
+        }
+        return permuteBytes(((long) right << 32) | (left & 0xffffffffL), FP_TABLE);
+    }
+
+    /**
+     * With a null key decryption is the same permutation as encryption.
+     *
+     * @param block 64 bits cipher text, big endian
+     * @return 64 bits plain text, big endian
+     */
+    public static long decrypt(final long block) {
+        return encrypt(block);
+    }
+
+    /**
+     * @param value
+     * @return the 8 bytes big endian representation of value
+     */
+    public static byte[] toBytes(final long value) {
+        return new byte[] {(byte) (value >>> 56), (byte) (value >>> 48), (byte) (value >>> 40), (byte) (value >>> 32),
+            (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    /**
+     * @param bytes 8 bytes, big endian
+     * @return
+     */
+    public static long toLong(final byte[] bytes) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * f(R, K) with K = 0: every 6 bits group of the expansion E(R) is R rotated so that the
+     * group is in the lowest 6 bits, groups overlap their neighbours by one bit at each end.
+     */
+    private static int feistel(final int right) {
+        return SP_TABLE[0][Integer.rotateRight(right, 27) & 0x3f]
+            ^ SP_TABLE[1][Integer.rotateRight(right, 23) & 0x3f]
+            ^ SP_TABLE[2][Integer.rotateRight(right, 19) & 0x3f]
+            ^ SP_TABLE[3][Integer.rotateRight(right, 15) & 0x3f]
+            ^ SP_TABLE[4][Integer.rotateRight(right, 11) & 0x3f]
+            ^ SP_TABLE[5][Integer.rotateRight(right, 7) & 0x3f]
+            ^ SP_TABLE[6][Integer.rotateRight(right, 3) & 0x3f]
+            ^ SP_TABLE[7][Integer.rotateLeft(right, 1) & 0x3f];
+    }
+
+    private static long permuteBytes(final long block, final long[][] table) {
+        return table[0][(int) (block >>> 56) & 0xff]
+            ^ table[1][(int) (block >>> 48) & 0xff]
+            ^ table[2][(int) (block >>> 40) & 0xff]
+            ^ table[3][(int) (block >>> 32) & 0xff]
+            ^ table[4][(int) (block >>> 24) & 0xff]
+            ^ table[5][(int) (block >>> 16) & 0xff]
+            ^ table[6][(int) (block >>> 8) & 0xff]
+            ^ table[7][(int) block & 0xff];
+    }
+
+    /**
+     * @param block input bits in the lowest width bits, bit 1 is the most significant one
+     * @param width
+     * @param table output bit i is input bit table[i - 1]
+     * @return
+     */
+    private static long permute(final long block, final int width, final int[] table) {
+        long output = 0;
+        for (int position : table) {
+            output = (output << 1) | ((block >>> (width - position)) & 1);
+        }
+        return output;
+    }
+}
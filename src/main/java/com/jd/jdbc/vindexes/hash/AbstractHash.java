@@ -23,23 +23,23 @@ import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.sqltypes.VtValue;
 import com.jd.jdbc.vindexes.Reversible;
 import com.jd.jdbc.vindexes.SingleColumn;
-import com.jd.jdbc.vindexes.cryto.TripleDES;
+import com.jd.jdbc.vindexes.cryto.NullKeyDES;
 import io.vitess.proto.Query;
 import java.math.BigInteger;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
 public abstract class AbstractHash implements SingleColumn, Reversible {
 
-    private static final TripleDES BLOCK3_DES = TripleDES.getInstance();
-
     protected static byte[] vhash(BigInteger shardKey) {
-        return BLOCK3_DES.encrypt(shardKey);
+        return vhash(shardKey.longValue());
+    }
+
+    protected static byte[] vhash(long shardKey) {
+        return NullKeyDES.toBytes(NullKeyDES.encrypt(shardKey));
     }
 
     protected static long vunhash(byte[] k) {
-        return k.length != 8 ? 0 : BLOCK3_DES.decrypt(k);
+        return k.length != 8 ? 0 : NullKeyDES.decrypt(NullKeyDES.toLong(k));
     }
 
     /**
@@ -102,21 +102,50 @@ public abstract class AbstractHash implements SingleColumn, Reversible {
 
     @Override
     public Boolean[] verify(VtValue[] ids, byte[][] ksids) throws SQLException {
+        long[] nums = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            nums[i] = EvalEngine.toUint64(ids[i]).longValue();
+        }
+        boolean[] verified = verify(nums, ksids);
         Boolean[] out = new Boolean[ids.length];
         for (int i = 0; i < ids.length; i++) {
-            BigInteger num = EvalEngine.toUint64(ids[i]);
-            out[i] = new String(vhash(num)).equals(new String(ksids[i]));
+            out[i] = verified[i];
+        }
+        return out;
+    }
+
+    /**
+     * @param ids   uint64 ids
+     * @param ksids keyspace ids
+     * @return whether ids[i] maps to ksids[i]
+     */
+    public boolean[] verify(long[] ids, byte[][] ksids) {
+        boolean[] out = new boolean[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            out[i] = ksids[i].length == 8 && NullKeyDES.encrypt(ids[i]) == NullKeyDES.toLong(ksids[i]);
         }
         return out;
     }
 
     @Override
     public VtValue[] reverseMap(byte[][] ksids) throws SQLException {
-        List<VtValue> reverseIdList = new ArrayList<>();
-        for (byte[] keyspaceId : ksids) {
-            long val = vunhash(keyspaceId);
-            reverseIdList.add(VtValue.newVtValue(Query.Type.UINT64, String.valueOf(val).getBytes()));
+        long[] ids = reverseMapToUint64(ksids);
+        VtValue[] out = new VtValue[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            out[i] = VtValue.newVtValue(Query.Type.UINT64, String.valueOf(ids[i]).getBytes());
+        }
+        return out;
+    }
+
+    /**
+     * @param ksids keyspace ids
+     * @return the uint64 ids of ksids, 0 for a keyspace id that is not 8 bytes
+     */
+    public long[] reverseMapToUint64(byte[][] ksids) {
+        long[] out = new long[ksids.length];
+        for (int i = 0; i < ksids.length; i++) {
+            out[i] = vunhash(ksids[i]);
         }
-        return reverseIdList.toArray(new VtValue[0]);
+        return out;
     }
 }
@@ -21,11 +21,7 @@ package com.jd.jdbc.vindexes.hash;
 import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.key.DestinationKeyspaceID;
 import com.jd.jdbc.sqltypes.VtValue;
-import java.math.BigInteger;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
 /**
  * BinaryHash defines vindex that hashes an int64 to a KeyspaceId
@@ -34,6 +30,8 @@ import java.util.List;
  */
 public class BinaryHash extends AbstractHash {
 
+    private static final VtValueIndex INDEX = new MurmurVtValueIndex();
+
     @Override
     public String toString() {
         return "binaryhash";
@@ -60,14 +58,11 @@ public class BinaryHash extends AbstractHash {
 
     @Override
     public Destination[] map(VtValue[] ids) {
-        List<Destination> out = new ArrayList<>(ids.length);
-        VtValueIndex index = new MurmurVtValueIndex();
-        Arrays.stream(ids).forEach(id -> {
-            BigInteger bi = index.getIndex(id);
-            out.add(new DestinationKeyspaceID(vhash(bi)));
-        });
-        Destination[] outDest = new Destination[ids.length];
-        return out.toArray(outDest);
+        Destination[] out = new Destination[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            out[i] = new DestinationKeyspaceID(vhash(INDEX.getIndex(ids[i]).longValue()));
+        }
+        return out;
     }
 
     @Override
@@ -18,12 +18,11 @@ limitations under the License.
 
 package com.jd.jdbc.vindexes.hash;
 
+import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.key.Destination;
 import com.jd.jdbc.key.DestinationKeyspaceID;
 import com.jd.jdbc.key.DestinationNone;
 import com.jd.jdbc.sqltypes.VtValue;
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
 import java.sql.SQLException;
 
 /**
@@ -61,18 +60,34 @@ public class Hash extends AbstractHash {
         for (int i = 0; i < ids.length; i++) {
             VtValue id = ids[i];
             if (id.isSigned() || id.isUnsigned()) {
-                ByteBuffer buffer = ByteBuffer.allocate(8);
-                buffer.put(id.raw(), 0, id.raw().length);
-                buffer.flip();
-                long num = buffer.getLong();
-                out[i] = new DestinationKeyspaceID(vhash(new BigInteger(String.valueOf(num))));
-                continue;
+                try {
+                    // hash the numeric value, the same way verify does
+                    out[i] = new DestinationKeyspaceID(vhash(EvalEngine.toUint64(id).longValue()));
+                    continue;
+                } catch (SQLException ignored) {
+                    // a negative id maps to no keyspace id
+                }
             }
             out[i] = new DestinationNone();
         }
         return out;
     }
 
+    /**
+     * Map uint64 ids to keyspace ids without boxing, ids are hashed the same way as by
+     * {@link #map(VtValue[])} and {@link #verify(VtValue[], byte[][])}.
+     *
+     * @param ids uint64 ids
+     * @return keyspace ids
+     */
+    public byte[][] map(long[] ids) {
+        byte[][] out = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            out[i] = vhash(ids[i]);
+        }
+        return out;
+    }
+
     @Override
     public Boolean[] verify(VtValue[] ids, byte[][] ksids) throws SQLException {
         return super.verify(ids, ksids);
@@ -78,11 +78,6 @@ public abstract class AbstractVitessPreparedStatement extends VitessStatement im
 
     }
 
-    @Override
-    public void cancel() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
-    }
-
     @Override
     public void setCursorName(String name) throws SQLException {
         throw new SQLFeatureNotSupportedException();
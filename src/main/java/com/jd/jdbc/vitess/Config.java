@@ -16,6 +16,7 @@ limitations under the License.
 
 package com.jd.jdbc.vitess;
 
+import com.jd.jdbc.common.Constant;
 import com.jd.jdbc.pool.InnerConnectionConstant;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
@@ -69,6 +70,7 @@ public final class Config {
     public static void setConfig(final Properties prop, final String keySpace, final String user, final Topodata.TabletType tabletType, int shardNumber) {
         ConfigKey key = buildConfigKey(keySpace, user, tabletType);
         if (!PROPERTIES_MAP.containsKey(key)) {
+            adjustServerPrepareStatementConfig(prop);
             PROPERTIES_MAP.put(key, prop);
         }
         if (!INNER_CP_CONFIG_MAP.containsKey(key)) {
@@ -95,6 +97,20 @@ public final class Config {
         return new ConfigKey(keySpace, user, tabletType);
     }
 
+    /**
+     * Server-side prepared statements rely on mysql connector's own statement cache,
+     * so every pooled connection keeps the handles of the queries it has prepared.
+     */
+    private static void adjustServerPrepareStatementConfig(Properties prop) {
+        if (!Boolean.TRUE.equals(Utils.getBoolean(prop, Constant.DRIVER_PROPERTY_SERVER_PREPARE_STATEMENT))) {
+            return;
+        }
+        prop.putIfAbsent("useServerPrepStmts", "true");
+        prop.putIfAbsent("cachePrepStmts", "true");
+        prop.putIfAbsent("prepStmtCacheSize", "256");
+        prop.putIfAbsent("prepStmtCacheSqlLimit", "4096");
+    }
+
     private static void adjustInnerConnectionPoolConfig(int shardNumber, Properties prop) {
         Integer vtMinimumIdle = Utils.getInteger(prop, InnerConnectionConstant.MINIMUM_IDLE);
         Integer vtMaximumPoolSize = Utils.getInteger(prop, InnerConnectionConstant.MAXIMUM_POOL_SIZE);
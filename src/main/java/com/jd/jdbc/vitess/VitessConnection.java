@@ -109,7 +109,7 @@ public class VitessConnection extends AbstractVitessConnection {
         this.url = url;
         this.properties = prop;
         this.resolver = resolver;
-        this.executor = com.jd.jdbc.Executor.getInstance(Utils.getInteger(prop, "vtPlanCacheCapacity"));
+        this.executor = com.jd.jdbc.Executor.getInstance(Utils.getInteger(prop, "vtPlanCacheCapacity"), Utils.getLong(prop, "vtPlanCacheMaxWeight"));
         this.vm = vSchemaManager;
         this.ctx = VtContext.withCancel(VtContext.background());
         this.ctx.setContextValue(Constant.DRIVER_PROPERTY_ROLE_KEY, getRoleType(prop));
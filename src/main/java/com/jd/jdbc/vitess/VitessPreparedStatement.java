@@ -27,11 +27,10 @@ import com.jd.jdbc.queryservice.util.RoleUtils;
 import com.jd.jdbc.sqlparser.support.logging.Log;
 import com.jd.jdbc.sqlparser.support.logging.LogFactory;
 import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.sqlparser.utils.StringUtils;
+import com.jd.jdbc.vitess.mysql.VitessParseInfo;
 import com.jd.jdbc.vitess.mysql.VitessPropertyKey;
 import com.jd.jdbc.vitess.mysql.VitessQueryBindVariable;
-import com.mysql.cj.ParseInfo;
-import com.mysql.cj.Session;
-import com.mysql.cj.jdbc.JdbcConnection;
 import io.vitess.proto.Topodata;
 import java.io.InputStream;
 import java.io.Reader;
@@ -53,6 +52,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
@@ -84,19 +84,23 @@ public class VitessPreparedStatement extends AbstractVitessPreparedStatement {
         super(connection, executor);
         LOGGER.debug("prepared statement: " + inputSQL);
         this.inputSQL = inputSQL;
-        this.sqls = split(inputSQL);
+        if (StringUtils.isEmpty(inputSQL)) {
+            throw new SQLException("trying to execute empty queries " + inputSQL);
+        }
+        VitessParseInfo parseInfo = VitessParseInfo.get(inputSQL);
+        if (parseInfo.getSqls().isEmpty()) {
+            throw new SQLException("trying to execute empty queries " + parseInfo.getSqls());
+        }
+        this.sqls = new ArrayList<>(parseInfo.getSqls());
 
+        Map<String, Object> serverSessionProperties = this.connection.getServerSessionPropertiesMap();
+        TimeZone serverTimeZone = (TimeZone) serverSessionProperties.get(VitessPropertyKey.SERVER_TIMEZONE.getKeyName());
+        TimeZone defaultTimeZone = (TimeZone) serverSessionProperties.get("DEFAULT_TIME_ZONE");
         for (int i = 0; i < sqls.size(); i++) {
-            try (InnerConnection innerConnection = StatefulConnectionPool.getJdbcConnection(this.connection.getDefaultKeyspace(), RoleUtils.getTabletType(context))) {
-                JdbcConnection connectionImpl = innerConnection.getConnectionImpl();
-                String encoding = this.connection.getProperties().getProperty(VitessPropertyKey.CHARACTER_ENCODING.getKeyName());
-                Session session = connectionImpl.getSession();
-                ParseInfo parseInfo = new ParseInfo(sqls.get(i), session, encoding);
-                int parameterCount = parseInfo.getStaticSql().length - 1;
-                this.clientPreparedQueryBindingsList.add(new VitessQueryBindVariable(parameterCount, session, encoding));
-                for (int p = 0; p < parameterCount; p++) {
-                    this.clientPreparedQueryBindingsIndexes.add(new VitessPreparedIndices(i, p));
-                }
+            int parameterCount = parseInfo.getParameterCount(i);
+            this.clientPreparedQueryBindingsList.add(new VitessQueryBindVariable(parameterCount, this.connection.getProperties(), serverTimeZone, defaultTimeZone));
+            for (int p = 0; p < parameterCount; p++) {
+                this.clientPreparedQueryBindingsIndexes.add(new VitessPreparedIndices(i, p));
             }
         }
     }
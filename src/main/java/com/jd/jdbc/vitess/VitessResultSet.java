@@ -19,6 +19,7 @@ limitations under the License.
 package com.jd.jdbc.vitess;
 
 import com.jd.jdbc.sqlparser.utils.StringUtils;
+import com.jd.jdbc.sqltypes.VtColumnBatch;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
 import com.jd.jdbc.sqltypes.VtRowList;
@@ -33,6 +34,7 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.sql.Blob;
 import java.sql.Clob;
+import java.sql.SQLDataException;
 import java.sql.Date;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -62,6 +64,13 @@ public class VitessResultSet extends AbstractVitessResultSet {
 
     private List<VtResultValue> row;
 
+    /**
+     * the rows of a columnar result, they are read in place and row stays null.
+     */
+    private VtColumnBatch columnBatch;
+
+    private int batchRow = -1;
+
     private boolean checkVtRowListType;
 
     private Map<String, Integer> columnLabelMap = null;
@@ -76,10 +85,21 @@ public class VitessResultSet extends AbstractVitessResultSet {
         buildColumnMap(result.getFields());
         if (result instanceof VtResultSet) {
             checkVtRowListType = true;
+            columnBatch = ((VtResultSet) result).getColumnBatch();
         }
     }
 
     void checkRowColumn(final int column) throws SQLException {
+        if (columnBatch != null) {
+            if (batchRow < 0 || batchRow >= columnBatch.getRowCount() || columnBatch.getColumnCount() == 0) {
+                throw new SQLException("empty result set");
+            }
+            int cols = columnBatch.getColumnCount();
+            if (column < 1 || column > cols) {
+                throw new SQLException("current column is out of range: " + column + ", total column: " + cols);
+            }
+            return;
+        }
         if (null == row || row.isEmpty()) {
             throw new SQLException("empty result set");
         }
@@ -92,7 +112,16 @@ public class VitessResultSet extends AbstractVitessResultSet {
 
     @Override
     public boolean next() throws SQLException {
-        if (this.vtRowList != null && this.vtRowList.hasNext()) {
+        if (columnBatch != null) {
+            if (vtRowList.isClosed()) {
+                throw new SQLException("result set has been closed");
+            }
+            if (batchRow + 1 < columnBatch.getRowCount()) {
+                ++batchRow;
+                ++currentPositionInEntireResult;
+                return true;
+            }
+        } else if (this.vtRowList != null && this.vtRowList.hasNext()) {
             this.row = this.vtRowList.next();
             ++currentPositionInEntireResult;
             return true;
@@ -118,14 +147,17 @@ public class VitessResultSet extends AbstractVitessResultSet {
 
         checkRowColumn(lastReadColumn);
 
-        return row.get(lastReadColumn - 1).isNull();
+        if (columnBatch != null) {
+            return columnBatch.isNull(batchRow, lastReadColumn - 1);
+        }
+        return value(lastReadColumn).isNull();
     }
 
     @Override
     public String getString(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        VtResultValue vtResultValue = row.get(lastReadColumn - 1);
+        VtResultValue vtResultValue = value(lastReadColumn);
         return (String) ResultSetUtil.convertValue(vtResultValue, String.class);
     }
 
@@ -139,7 +171,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public boolean getBoolean(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (boolean) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), boolean.class);
+        return (boolean) ResultSetUtil.convertValue(value(lastReadColumn), boolean.class);
     }
 
     @Override
@@ -152,7 +184,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public byte getByte(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (byte) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), byte.class);
+        return (byte) ResultSetUtil.convertValue(value(lastReadColumn), byte.class);
     }
 
     @Override
@@ -165,7 +197,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public short getShort(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (short) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), short.class);
+        return (short) ResultSetUtil.convertValue(value(lastReadColumn), short.class);
     }
 
     @Override
@@ -178,7 +210,14 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public int getInt(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (int) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), int.class);
+        if (isLongCell(columnIndex)) {
+            long value = columnBatch.isNull(batchRow, columnIndex - 1) ? 0 : columnBatch.getLong(batchRow, columnIndex - 1);
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new SQLDataException("Value '" + value + "' is outside of valid range for type java.lang.Integer");
+            }
+            return (int) value;
+        }
+        return (int) ResultSetUtil.convertValue(value(lastReadColumn), int.class);
     }
 
     @Override
@@ -191,7 +230,10 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public long getLong(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (long) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), long.class);
+        if (isLongCell(columnIndex)) {
+            return columnBatch.isNull(batchRow, columnIndex - 1) ? 0L : columnBatch.getLong(batchRow, columnIndex - 1);
+        }
+        return (long) ResultSetUtil.convertValue(value(lastReadColumn), long.class);
     }
 
     @Override
@@ -204,7 +246,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public float getFloat(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (float) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), float.class);
+        return (float) ResultSetUtil.convertValue(value(lastReadColumn), float.class);
     }
 
     @Override
@@ -217,7 +259,13 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public double getDouble(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (double) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), double.class);
+        if (isLongCell(columnIndex)) {
+            return columnBatch.isNull(batchRow, columnIndex - 1) ? 0D : (double) columnBatch.getLong(batchRow, columnIndex - 1);
+        }
+        if (columnBatch != null && columnBatch.isDoubleColumn(columnIndex - 1)) {
+            return columnBatch.isNull(batchRow, columnIndex - 1) ? 0D : columnBatch.getDouble(batchRow, columnIndex - 1);
+        }
+        return (double) ResultSetUtil.convertValue(value(lastReadColumn), double.class);
     }
 
     @Override
@@ -241,7 +289,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public BigDecimal getBigDecimal(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (BigDecimal) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), BigDecimal.class);
+        return (BigDecimal) ResultSetUtil.convertValue(value(lastReadColumn), BigDecimal.class);
     }
 
     @Override
@@ -254,7 +302,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public byte[] getBytes(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (byte[]) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), byte[].class);
+        return (byte[]) ResultSetUtil.convertValue(value(lastReadColumn), byte[].class);
     }
 
     @Override
@@ -269,7 +317,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
         lastReadColumn = columnIndex;
         TimeZone stz = getDefaultTimeZone();
         PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-        return (Date) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Date.class, stz, zeroDateTimeBehavior);
+        return (Date) ResultSetUtil.convertValue(value(lastReadColumn), Date.class, stz, zeroDateTimeBehavior);
     }
 
     @Override
@@ -287,7 +335,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
         lastReadColumn = columnIndex;
         TimeZone stz = cal.getTimeZone();
         PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-        return (Date) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Date.class, stz, zeroDateTimeBehavior);
+        return (Date) ResultSetUtil.convertValue(value(lastReadColumn), Date.class, stz, zeroDateTimeBehavior);
     }
 
     @Override
@@ -302,7 +350,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
         lastReadColumn = columnIndex;
         TimeZone stz = getServerTimeZone();
         PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-        return (Time) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Time.class, stz, zeroDateTimeBehavior);
+        return (Time) ResultSetUtil.convertValue(value(lastReadColumn), Time.class, stz, zeroDateTimeBehavior);
     }
 
     @Override
@@ -320,7 +368,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
         lastReadColumn = columnIndex;
         TimeZone stz = cal.getTimeZone();
         PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-        return (Time) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Time.class, stz, zeroDateTimeBehavior);
+        return (Time) ResultSetUtil.convertValue(value(lastReadColumn), Time.class, stz, zeroDateTimeBehavior);
     }
 
     @Override
@@ -335,7 +383,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
         lastReadColumn = columnIndex;
         TimeZone stz = getServerTimeZone();
         PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-        return (Timestamp) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Timestamp.class, stz, zeroDateTimeBehavior);
+        return (Timestamp) ResultSetUtil.convertValue(value(lastReadColumn), Timestamp.class, stz, zeroDateTimeBehavior);
     }
 
     @Override
@@ -353,7 +401,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
         lastReadColumn = columnIndex;
         TimeZone stz = cal.getTimeZone();
         PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-        return (Timestamp) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Timestamp.class, stz, zeroDateTimeBehavior);
+        return (Timestamp) ResultSetUtil.convertValue(value(lastReadColumn), Timestamp.class, stz, zeroDateTimeBehavior);
     }
 
     @Override
@@ -366,7 +414,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public InputStream getBinaryStream(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        byte[] bytes = row.get(lastReadColumn - 1).toBytes();
+        byte[] bytes = value(lastReadColumn).toBytes();
         return bytes == null ? null : new ByteArrayInputStream(bytes);
     }
 
@@ -390,7 +438,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public Object getObject(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        VtResultValue vtResultValue = row.get(lastReadColumn - 1);
+        VtResultValue vtResultValue = value(lastReadColumn);
         if (vtResultValue.getVtType() == Query.Type.BIT && vtResultValue.getValue() instanceof Integer) {
             return getBoolean(lastReadColumn);
         } else if (vtResultValue.getVtType() == Query.Type.BIT && vtResultValue.getValue() instanceof Long) {
@@ -428,7 +476,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
         if (type == Date.class) {
             TimeZone stz = getDefaultTimeZone();
             PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-            return (T) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), type, stz, zeroDateTimeBehavior);
+            return (T) ResultSetUtil.convertValue(value(lastReadColumn), type, stz, zeroDateTimeBehavior);
         } else if (type == Time.class
             || type == Timestamp.class
             || type == LocalDate.class
@@ -436,9 +484,9 @@ public class VitessResultSet extends AbstractVitessResultSet {
             || type == LocalDateTime.class) {
             TimeZone stz = getServerTimeZone();
             PropertyDefinitions.ZeroDatetimeBehavior zeroDateTimeBehavior = getZeroDatetimeBehavior();
-            return (T) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), type, stz, zeroDateTimeBehavior);
+            return (T) ResultSetUtil.convertValue(value(lastReadColumn), type, stz, zeroDateTimeBehavior);
         }
-        return (T) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), type);
+        return (T) ResultSetUtil.convertValue(value(lastReadColumn), type);
     }
 
     @Override
@@ -460,7 +508,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public Reader getCharacterStream(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (InputStreamReader) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), InputStreamReader.class);
+        return (InputStreamReader) ResultSetUtil.convertValue(value(lastReadColumn), InputStreamReader.class);
     }
 
     @Override
@@ -524,7 +572,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     @Override
     public Blob getBlob(final int columnIndex) throws SQLException {
         lastReadColumn = columnIndex;
-        return (Blob) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Blob.class);
+        return (Blob) ResultSetUtil.convertValue(value(lastReadColumn), Blob.class);
     }
 
     @Override
@@ -537,7 +585,7 @@ public class VitessResultSet extends AbstractVitessResultSet {
     public Clob getClob(final int columnIndex) throws SQLException {
         checkRowColumn(columnIndex);
         lastReadColumn = columnIndex;
-        return (Clob) ResultSetUtil.convertValue(row.get(lastReadColumn - 1), Clob.class);
+        return (Clob) ResultSetUtil.convertValue(value(lastReadColumn), Clob.class);
     }
 
     @Override
@@ -556,6 +604,17 @@ public class VitessResultSet extends AbstractVitessResultSet {
         return vtRowList != null && vtRowList.isClosed();
     }
 
+    private VtResultValue value(final int column) {
+        if (columnBatch != null) {
+            return columnBatch.getValue(batchRow, column - 1);
+        }
+        return row.get(column - 1);
+    }
+
+    private boolean isLongCell(final int column) {
+        return columnBatch != null && columnBatch.isLongColumn(column - 1);
+    }
+
     private PropertyDefinitions.ZeroDatetimeBehavior getZeroDatetimeBehavior() {
         String zeroDatetimeBehavior = vitessConnection.getProperties().getProperty(VitessPropertyKey.ZERO_DATE_TIME_BEHAVIOR.getKeyName());
         if (zeroDatetimeBehavior == null) {
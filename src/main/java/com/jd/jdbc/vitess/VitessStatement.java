@@ -21,6 +21,8 @@ package com.jd.jdbc.vitess;
 import com.jd.jdbc.Executor;
 import com.jd.jdbc.context.IContext;
 import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.context.VtContextConstant;
+import com.jd.jdbc.engine.SqlTemplate;
 import com.jd.jdbc.monitor.SqlErrorCollector;
 import com.jd.jdbc.monitor.StatementCollector;
 import com.jd.jdbc.planbuilder.RoutePlan;
@@ -188,6 +190,37 @@ public class VitessStatement extends AbstractVitessStatement {
         return changeSchema(stmt);
     }
 
+    /**
+     * parseTemplateStatement skips the parser when the raw sql has already been planned by the executor.
+     *
+     * @param sql
+     * @param bindVariableMap
+     * @return
+     * @throws SQLException
+     */
+    private ParseResult parseTemplateStatement(String sql, Map<String, BindVariable> bindVariableMap) throws SQLException {
+        String charEncoding = SafeSession.newSafeSession(this.connection).getCharEncoding();
+        SqlTemplate template = executor.getSqlTemplate(this.connection.getDefaultKeyspace(), sql, charEncoding, bindVariableMap);
+        if (template != null) {
+            return new ParseResult(template.getKeyspace(), template.getStatement(), template);
+        }
+        return parseStatements(sql);
+    }
+
+    private VtRowList executeParseResult(IContext ctx, String sql, ParseResult parseResult, Map<String, BindVariable> bindVariableMap, boolean stream) throws SQLException {
+        SafeSession safeSession = SafeSession.newSafeSession(this.connection);
+        SqlTemplate template = parseResult.getTemplate();
+        if (template == null) {
+            template = executor.buildSqlTemplate(ctx, safeSession, this.connection.getDefaultKeyspace(), sql, parseResult.getSchema(), parseResult.getStatement(), bindVariableMap,
+                safeSession.getCharEncoding());
+        }
+        if (template == null) {
+            return stream ? executor.streamExecute(ctx, "", safeSession, parseResult.schema, parseResult.statement, bindVariableMap)
+                : executor.execute(ctx, "", safeSession, parseResult.schema, parseResult.statement, bindVariableMap);
+        }
+        return stream ? executor.streamExecute(ctx, "", safeSession, template, bindVariableMap) : executor.execute(ctx, "", safeSession, template, bindVariableMap);
+    }
+
     private ParseResult changeSchema(SQLStatement stmt) throws SQLException {
         String defaultKeyspace = this.connection.getDefaultKeyspace();
         AddDualVisitor addDualVisitor = new AddDualVisitor();
@@ -204,11 +237,11 @@ public class VitessStatement extends AbstractVitessStatement {
                     throw new SQLException("not supported sql: " + SQLUtils.toMySqlString(stmt, SQLUtils.NOT_FORMAT_OPTION));
                 }
                 if (tableSource == null) {
-                    return new ParseResult(defaultKeyspace, stmt);
+                    return new ParseResult(defaultKeyspace, stmt, null);
                 } else if (tableSource instanceof SQLExprTableSource) {
                     String tableName = TableNameUtils.getTableSimpleName((SQLExprTableSource) tableSource);
                     if (TABLE_DUAL.equalsIgnoreCase(tableName) || RoutePlan.systemTable(tableName)) {
-                        return new ParseResult(defaultKeyspace, stmt);
+                        return new ParseResult(defaultKeyspace, stmt, null);
                     }
                 }
             } else if (!(selectQuery instanceof SQLUnionQuery)) {
@@ -218,7 +251,7 @@ public class VitessStatement extends AbstractVitessStatement {
 
         VtChangeSchemaVisitor visitor = new VtChangeSchemaVisitor(defaultKeyspace);
         stmt.accept(visitor);
-        return new ParseResult(visitor.getNewDefaultKeyspace(), stmt);
+        return new ParseResult(visitor.getNewDefaultKeyspace(), stmt, null);
     }
 
     private Map<String, String> parseComment(String sql) {
@@ -297,7 +330,7 @@ public class VitessStatement extends AbstractVitessStatement {
 
         ParseResult parseResult = null;
         try {
-            parseResult = parseStatements(sql);
+            parseResult = parseTemplateStatement(sql, bindVariableMap);
         } catch (ParserException e) {
             VtRowList result = executor.otherExecute(ctx, "", SafeSession.newSafeSession(this.connection), this.connection.getDefaultKeyspace(), sql, bindVariableMap);
             this.resultSets.add(result);
@@ -314,7 +347,7 @@ public class VitessStatement extends AbstractVitessStatement {
                 throw new SQLException("Can not issue data manipulation statements with executeQuery()");
             }
 
-            VtRowList result = executor.execute(ctx, "", SafeSession.newSafeSession(this.connection), parseResult.schema, parseResult.statement, bindVariableMap);
+            VtRowList result = executeParseResult(ctx, sql, parseResult, bindVariableMap, false);
             this.resultSets.add(result);
             if (result != null) {
                 this.lastInsertId = result.getInsertID();
@@ -388,7 +421,7 @@ public class VitessStatement extends AbstractVitessStatement {
         this.retrieveGeneratedKeys = returnGeneratedKeys;
         this.batchedGeneratedKeys = null;
 
-        ParseResult parseResult = parseStatements(sql);
+        ParseResult parseResult = parseTemplateStatement(sql, bindVariableMap);
         this.startSummary(parseResult.getStatement());
 
         try {
@@ -399,7 +432,7 @@ public class VitessStatement extends AbstractVitessStatement {
             if (specialFunctionProcessing(parseResult)) {
                 return new VitessResultSet(this.resultSets.get(0), this.connection);
             }
-            this.resultSets.add(executor.streamExecute(ctx, "", SafeSession.newSafeSession(this.connection), parseResult.schema, parseResult.statement, bindVariableMap));
+            this.resultSets.add(executeParseResult(ctx, sql, parseResult, bindVariableMap, true));
             this.lastInsertId = BigInteger.ZERO;
 
             return new VitessResultSet(this.resultSets.get(0), this.connection);
@@ -419,7 +452,7 @@ public class VitessStatement extends AbstractVitessStatement {
 
         ParseResult parseResult = null;
         try {
-            parseResult = parseStatements(sql);
+            parseResult = parseTemplateStatement(sql, bindVariableMap);
         } catch (ParserException e) {
             VtRowList result = executor.otherExecute(ctx, "", SafeSession.newSafeSession(this.connection), this.connection.getDefaultKeyspace(), sql, bindVariableMap);
             this.resultSets.add(result);
@@ -434,9 +467,9 @@ public class VitessStatement extends AbstractVitessStatement {
                 return;
             }
             if (streamResults() && parseResult.statement instanceof SQLSelectStatement) {
-                this.resultSets.add(executor.streamExecute(ctx, "", SafeSession.newSafeSession(this.connection), parseResult.schema, parseResult.statement, bindVariableMap));
+                this.resultSets.add(executeParseResult(ctx, sql, parseResult, bindVariableMap, true));
             } else {
-                this.resultSets.add(executor.execute(ctx, "", SafeSession.newSafeSession(this.connection), parseResult.schema, parseResult.statement, bindVariableMap));
+                this.resultSets.add(executeParseResult(ctx, sql, parseResult, bindVariableMap, false));
             }
 
             if (!this.resultSets.isEmpty()) {
@@ -468,7 +501,7 @@ public class VitessStatement extends AbstractVitessStatement {
             batchedGeneratedKeys = null;
         }
 
-        ParseResult parseResult = parseStatements(sql);
+        ParseResult parseResult = parseTemplateStatement(sql, bindVariableMap);
         setLastQueryIsOnDupKeyUpdate(parseResult.getStatement(), returnGeneratedKeys);
 
         this.startSummary(parseResult.getStatement());
@@ -477,7 +510,7 @@ public class VitessStatement extends AbstractVitessStatement {
             if (parseResult.statement instanceof SQLSelectStatement) {
                 throw new SQLException("Can not issue select statements with executeUpdate()");
             }
-            VtRowList result = executor.execute(ctx, "", SafeSession.newSafeSession(this.connection), parseResult.schema, parseResult.statement, bindVariableMap);
+            VtRowList result = executeParseResult(ctx, sql, parseResult, bindVariableMap, false);
             this.resultSets.add(result);
             if (result != null) {
                 this.lastInsertId = result.getInsertID();
@@ -670,6 +703,17 @@ public class VitessStatement extends AbstractVitessStatement {
         return rc;
     }
 
+    /**
+     * Cancels the running execution of this statement on every shard it was sent to. Each execution
+     * runs in a context derived from the statement context, canceling it makes the tablets send
+     * KILL QUERY for the queries still in flight, the statement itself stays usable.
+     */
+    @Override
+    public void cancel() throws SQLException {
+        checkClosed();
+        this.context.cancelDerived(VtContextConstant.STATEMENT_CANCELLED);
+    }
+
     @Override
     public void close() throws SQLException {
         VitessConnection locallyScopedConn = this.connection;
@@ -1173,6 +1217,8 @@ public class VitessStatement extends AbstractVitessStatement {
         private final String schema;
 
         private final SQLStatement statement;
+
+        private final SqlTemplate template;
     }
 
 }
@@ -0,0 +1,140 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.vitess.mysql;
+
+import com.jd.jdbc.sqlparser.utils.SplitMultiQueryUtils;
+import com.jd.jdbc.util.cache.lrucache.ConcurrentLRUCache;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * VitessParseInfo is the result of splitting a prepared sql into statements and counting the
+ * parameter markers of each statement.
+ * <p>
+ * The scan only needs the sql text, so it is done without a mysql session and cached by sql:
+ * applications prepare the same few sqls over and over.
+ */
+public final class VitessParseInfo {
+    private static final int CACHE_CAPACITY = 1024;
+
+    private static final long CACHE_MAX_WEIGHT = 8L * 1024 * 1024;
+
+    private static final ConcurrentLRUCache<VitessParseInfo> CACHE = new ConcurrentLRUCache<>(CACHE_CAPACITY, CACHE_MAX_WEIGHT, (key, value) -> key.length() * 2);
+
+    @Getter
+    private final List<String> sqls;
+
+    private final int[] parameterCounts;
+
+    private VitessParseInfo(final List<String> sqls) {
+        this.sqls = Collections.unmodifiableList(sqls);
+        this.parameterCounts = new int[sqls.size()];
+        for (int i = 0; i < sqls.size(); i++) {
+            this.parameterCounts[i] = countParameters(sqls.get(i));
+        }
+    }
+
+    /**
+     * @param sql
+     * @return the parse info of sql, statements are empty if sql has no statement
+     */
+    public static VitessParseInfo get(final String sql) {
+        VitessParseInfo parseInfo = CACHE.get(sql);
+        if (parseInfo == null) {
+            parseInfo = new VitessParseInfo(SplitMultiQueryUtils.splitMulti(sql));
+            CACHE.set(sql, parseInfo);
+        }
+        return parseInfo;
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * @param sqlIndex
+     * @return the number of parameter markers in the sqlIndex-th statement
+     */
+    public int getParameterCount(final int sqlIndex) {
+        return parameterCounts[sqlIndex];
+    }
+
+    /**
+     * Counts '?' outside of quoted strings, quoted identifiers and comments, the same way
+     * mysql connector's ParseInfo does.
+     *
+     * @param sql
+     * @return
+     */
+    static int countParameters(final String sql) {
+        int count = 0;
+        int length = sql.length();
+        char quoteChar = 0;
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (quoteChar != 0) {
+                if (c == '\\' && quoteChar != '`') {
+                    i++;
+                } else if (c == quoteChar) {
+                    if (i + 1 < length && sql.charAt(i + 1) == quoteChar) {
+                        i++;
+                    } else {
+                        quoteChar = 0;
+                    }
+                }
+                continue;
+            }
+            switch (c) {
+                case '\'':
+                case '"':
+                case '`':
+                    quoteChar = c;
+                    break;
+                case '?':
+                    count++;
+                    break;
+                case '/':
+                    if (i + 1 < length && sql.charAt(i + 1) == '*') {
+                        int end = sql.indexOf("*/", i + 2);
+                        i = end < 0 ? length : end + 1;
+                    }
+                    break;
+                case '-':
+                    if (i + 1 < length && sql.charAt(i + 1) == '-') {
+                        i = skipLine(sql, i + 2);
+                    }
+                    break;
+                case '#':
+                    i = skipLine(sql, i + 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return count;
+    }
+
+    private static int skipLine(final String sql, final int from) {
+        int length = sql.length();
+        int i = from;
+        while (i < length && sql.charAt(i) != '\n' && sql.charAt(i) != '\r') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -17,11 +17,12 @@ limitations under the License.
 package com.jd.jdbc.vitess.mysql;
 
 import com.jd.jdbc.sqlparser.utils.StringUtils;
+import com.jd.jdbc.sqlparser.utils.Utils;
 import com.jd.jdbc.srvtopo.BindVariable;
-import com.mysql.cj.ClientPreparedQueryBindValue;
-import com.mysql.cj.ClientPreparedQueryBindings;
-import com.mysql.cj.Session;
+import com.mysql.cj.util.TimeUtil;
 import io.vitess.proto.Query;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
@@ -32,188 +33,224 @@ import java.sql.NClob;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.Properties;
+import java.util.TimeZone;
+
+/**
+ * VitessQueryBindVariable encodes the parameters of one prepared sql into bind variables.
+ * <p>
+ * Values are encoded the same way mysql connector's client side prepared statement does,
+ * but without a mysql session: the server time zone and the encoding options come from the
+ * jdbc url, so preparing a statement never needs a tablet connection.
+ */
 public class VitessQueryBindVariable {
-    private final ClientPreparedQueryBindings inner;
+    private static final String ALLOW_NAN_AND_INF = "allowNanAndInf";
+
+    private static final int STREAM_BUFFER_SIZE = 4096;
+
+    private final BindVariable[] bindVariables;
 
     private final String charEncoding;
 
-    public VitessQueryBindVariable(int parameterCount, Session sess, String encoding) {
-        this.inner = new ClientPreparedQueryBindings(parameterCount, sess);
-        this.charEncoding = encoding;
+    private final TimeZone serverTimeZone;
+
+    private final TimeZone defaultTimeZone;
+
+    private final boolean sendFractionalSeconds;
+
+    private final boolean useStreamLengths;
+
+    private final boolean allowNanAndInf;
+
+    private SimpleDateFormat dateFormat;
+
+    private SimpleDateFormat timeFormat;
+
+    private SimpleDateFormat timestampFormat;
+
+    public VitessQueryBindVariable(int parameterCount, Properties properties, TimeZone serverTimeZone, TimeZone defaultTimeZone) {
+        this.bindVariables = new BindVariable[parameterCount];
+        this.charEncoding = properties.getProperty(VitessPropertyKey.CHARACTER_ENCODING.getKeyName());
+        this.serverTimeZone = serverTimeZone;
+        this.defaultTimeZone = defaultTimeZone;
+        this.sendFractionalSeconds = !Boolean.FALSE.equals(Utils.getBoolean(properties, VitessPropertyKey.SEND_FRACTIONAL_SECONDS.getKeyName()));
+        this.useStreamLengths = !Boolean.FALSE.equals(Utils.getBoolean(properties, VitessPropertyKey.USE_STREAM_LENGTHS_IN_PREP_STMTS.getKeyName()));
+        this.allowNanAndInf = Boolean.TRUE.equals(Utils.getBoolean(properties, ALLOW_NAN_AND_INF));
     }
 
     public Map<String, BindVariable> getBindVariableMap() {
-        ClientPreparedQueryBindValue[] bindValues = this.inner.getBindValues();
-
-        Map<String, BindVariable> bindVariableMap = new LinkedHashMap<>(bindValues.length);
-        for (int i = 0; i < bindValues.length; i++) {
-            bindVariableMap.put(String.valueOf(i), (BindVariable) bindValues[i].value);
+        Map<String, BindVariable> bindVariableMap = new LinkedHashMap<>(bindVariables.length);
+        for (int i = 0; i < bindVariables.length; i++) {
+            bindVariableMap.put(String.valueOf(i), bindVariables[i]);
         }
         return bindVariableMap;
     }
 
     public void clearBindValues() {
-        this.inner.clearBindValues();
+        Arrays.fill(this.bindVariables, null);
     }
 
     public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
-        this.inner.setAsciiStream(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.BLOB);
+        this.setStream(parameterIndex, x, -1, Query.Type.BLOB);
     }
 
     public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
-        this.inner.setAsciiStream(parameterIndex, x, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setStream(parameterIndex, x, length, Query.Type.TEXT);
     }
 
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
-        this.inner.setBigDecimal(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.DECIMAL);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        this.setValue(parameterIndex, com.mysql.cj.util.StringUtils.fixDecimalExponent(x.toPlainString()), Query.Type.DECIMAL);
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
-        this.inner.setBinaryStream(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.BLOB);
+        this.setStream(parameterIndex, x, -1, Query.Type.BLOB);
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
-        this.inner.setBinaryStream(parameterIndex, x, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.BLOB);
+        this.setStream(parameterIndex, x, length, Query.Type.BLOB);
     }
 
     public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
-        this.inner.setBlob(parameterIndex, inputStream);
-        this.convertToBindVariable(parameterIndex, Query.Type.BLOB);
+        this.setStream(parameterIndex, inputStream, -1, Query.Type.BLOB);
     }
 
     public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
-        this.inner.setBlob(parameterIndex, inputStream, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.BLOB);
+        this.setStream(parameterIndex, inputStream, length, Query.Type.BLOB);
     }
 
     public void setBlob(int parameterIndex, Blob x) throws SQLException {
-        this.inner.setBlob(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.BLOB);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        this.setStream(parameterIndex, x.getBinaryStream(), -1, Query.Type.BLOB);
     }
 
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-        this.inner.setBoolean(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.INT8);
+        this.setValue(parameterIndex, x ? "1" : "0", Query.Type.INT8);
     }
 
     public void setByte(int parameterIndex, byte x) throws SQLException {
-        this.inner.setByte(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.INT8);
+        this.setValue(parameterIndex, String.valueOf(x), Query.Type.INT8);
     }
 
     public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-        this.inner.setBytes(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.BINARY, x);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        this.setBindVariable(parameterIndex, new BindVariable(x, Query.Type.BINARY));
     }
 
     public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
-        this.inner.setCharacterStream(parameterIndex, reader);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, -1);
     }
 
     public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
-        this.inner.setCharacterStream(parameterIndex, reader, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, length);
     }
 
     public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
-        this.inner.setCharacterStream(parameterIndex, reader, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, length);
     }
 
     public void setClob(int parameterIndex, Reader reader) throws SQLException {
-        this.inner.setClob(parameterIndex, reader);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, -1);
     }
 
     public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
-        this.inner.setClob(parameterIndex, reader, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, length);
     }
 
     public void setClob(int parameterIndex, Clob x) throws SQLException {
-        this.inner.setClob(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        this.setText(parameterIndex, x.getSubString(1L, (int) x.length()));
     }
 
     public void setDate(int parameterIndex, Date x) throws SQLException {
-        this.inner.setDate(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.DATE);
+        this.setDate(parameterIndex, x, null);
     }
 
     public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
-        this.inner.setDate(parameterIndex, x, cal);
-        this.convertToBindVariable(parameterIndex, Query.Type.DATE);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        String value;
+        if (cal != null) {
+            value = TimeUtil.getSimpleDateFormat("yyyy-MM-dd", cal).format(x);
+        } else {
+            this.dateFormat = TimeUtil.getSimpleDateFormat(this.dateFormat, "yyyy-MM-dd", this.defaultTimeZone);
+            value = this.dateFormat.format(x);
+        }
+        this.setValue(parameterIndex, value, Query.Type.DATE);
     }
 
     public void setDouble(int parameterIndex, double x) throws SQLException {
-        this.inner.setDouble(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.FLOAT64);
+        if (!allowNanAndInf && (x == Double.POSITIVE_INFINITY || x == Double.NEGATIVE_INFINITY || Double.isNaN(x))) {
+            throw new SQLException("'" + x + "' is not a valid numeric or approximate numeric value");
+        }
+        this.setValue(parameterIndex, com.mysql.cj.util.StringUtils.fixDecimalExponent(String.valueOf(x)), Query.Type.FLOAT64);
     }
 
     public void setFloat(int parameterIndex, float x) throws SQLException {
-        this.inner.setFloat(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.FLOAT32);
+        this.setValue(parameterIndex, com.mysql.cj.util.StringUtils.fixDecimalExponent(String.valueOf(x)), Query.Type.FLOAT32);
     }
 
     public void setInt(int parameterIndex, int x) throws SQLException {
-        this.inner.setInt(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.INT32);
+        this.setValue(parameterIndex, String.valueOf(x), Query.Type.INT32);
     }
 
     public void setLong(int parameterIndex, long x) throws SQLException {
-        this.inner.setLong(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.INT64);
+        this.setValue(parameterIndex, String.valueOf(x), Query.Type.INT64);
     }
 
     public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
-        this.inner.setNCharacterStream(parameterIndex, value);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, value, -1);
     }
 
     public void setNCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
-        this.inner.setNCharacterStream(parameterIndex, reader, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, length);
     }
 
     public void setNClob(int parameterIndex, Reader reader) throws SQLException {
-        this.inner.setNClob(parameterIndex, reader);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, -1);
     }
 
     public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
-        this.inner.setNClob(parameterIndex, reader, length);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setReader(parameterIndex, reader, length);
     }
 
     public void setNClob(int parameterIndex, NClob value) throws SQLException {
-        this.inner.setNClob(parameterIndex, value);
-        this.convertToBindVariable(parameterIndex, Query.Type.TEXT);
+        this.setClob(parameterIndex, value);
     }
 
     public void setNString(int parameterIndex, String x) throws SQLException {
-        this.inner.setNString(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.VARCHAR);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        this.setBindVariable(parameterIndex, new BindVariable(StringUtils.getBytes(x, charEncoding), Query.Type.VARCHAR));
     }
 
     public synchronized void setNull(int parameterIndex) throws SQLException {
-        this.inner.setNull(parameterIndex);
-        this.convertToBindVariable(parameterIndex, Query.Type.NULL_TYPE);
+        this.setBindVariable(parameterIndex, BindVariable.NULL_BIND_VARIABLE);
     }
 
     public void setShort(int parameterIndex, short x) throws SQLException {
-        this.inner.setShort(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.INT16);
+        this.setValue(parameterIndex, String.valueOf(x), Query.Type.INT16);
     }
 
     public void setString(int parameterIndex, String x) throws SQLException {
@@ -221,70 +258,115 @@ public class VitessQueryBindVariable {
             this.setNull(parameterIndex);
         } else {
             byte[] bytes = StringUtils.getBytes(x, charEncoding);
-            this.convertToBindVariable(parameterIndex, Query.Type.VARBINARY, bytes);
+            this.setBindVariable(parameterIndex, new BindVariable(bytes, Query.Type.VARBINARY));
         }
     }
 
     public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
-        this.inner.setTime(parameterIndex, x, cal);
-        this.convertToBindVariable(parameterIndex, Query.Type.TIME);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        String value;
+        if (cal != null) {
+            value = TimeUtil.getSimpleDateFormat("HH:mm:ss", cal).format(x);
+        } else {
+            this.timeFormat = TimeUtil.getSimpleDateFormat(this.timeFormat, "HH:mm:ss", this.serverTimeZone);
+            value = this.timeFormat.format(x);
+        }
+        this.setValue(parameterIndex, value, Query.Type.TIME);
     }
 
     public void setTime(int parameterIndex, Time x) throws SQLException {
-        this.inner.setTime(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.TIME);
+        this.setTime(parameterIndex, x, null);
     }
 
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-        this.inner.setTimestamp(parameterIndex, x);
-        this.convertToBindVariable(parameterIndex, Query.Type.TIMESTAMP);
+        this.setTimestamp(parameterIndex, x, null);
     }
 
     public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
-        this.inner.setTimestamp(parameterIndex, x, cal);
-        this.convertToBindVariable(parameterIndex, Query.Type.TIMESTAMP);
+        this.setTimestamp(parameterIndex, x, cal, sendFractionalSeconds ? -1 : 0);
     }
 
     public void setTimestamp(int parameterIndex, Timestamp x, Calendar targetCalendar, int fractionalLength) throws SQLException {
-        this.inner.setTimestamp(parameterIndex, x, targetCalendar, fractionalLength);
-        this.convertToBindVariable(parameterIndex, Query.Type.TIMESTAMP);
+        if (x == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        if (!sendFractionalSeconds && fractionalLength == 0) {
+            x = TimeUtil.truncateFractionalSeconds(x);
+        }
+        if (fractionalLength < 0) {
+            fractionalLength = 6;
+        }
+        x = TimeUtil.adjustNanosPrecision(x, fractionalLength, true);
+
+        StringBuilder value = new StringBuilder(26);
+        if (targetCalendar != null) {
+            value.append(TimeUtil.getSimpleDateFormat("yyyy-MM-dd HH:mm:ss", targetCalendar).format(x));
+        } else {
+            this.timestampFormat = TimeUtil.getSimpleDateFormat(this.timestampFormat, "yyyy-MM-dd HH:mm:ss", this.serverTimeZone);
+            value.append(this.timestampFormat.format(x));
+        }
+        value.append('.').append(TimeUtil.formatNanos(x.getNanos(), 6));
+        this.setValue(parameterIndex, value.toString(), Query.Type.TIMESTAMP);
+    }
+
+    private void setValue(int parameterIndex, String value, Query.Type type) throws SQLException {
+        this.setBindVariable(parameterIndex, new BindVariable(StringUtils.getBytes(value, charEncoding), type));
+    }
+
+    private void setText(int parameterIndex, String value) throws SQLException {
+        this.setBindVariable(parameterIndex, new BindVariable(StringUtils.getBytes(value, charEncoding), Query.Type.TEXT));
     }
 
-    private void convertToBindVariable(int parameterIndex, Query.Type type) {
-        this.convertToBindVariable(parameterIndex, type, null);
+    private void setBindVariable(int parameterIndex, BindVariable bindVariable) throws SQLException {
+        if (parameterIndex < 0 || parameterIndex >= bindVariables.length) {
+            throw new SQLException("Parameter index out of range (" + (parameterIndex + 1) + " > number of parameters, which is " + bindVariables.length + ").");
+        }
+        bindVariables[parameterIndex] = bindVariable;
     }
 
-    private void convertToBindVariable(int parameterIndex, Query.Type type, byte[] bytes) {
-        ClientPreparedQueryBindValue bindValue = this.inner.getBindValues()[parameterIndex];
-        if (bindValue.isNull()) {
-            bindValue.value = BindVariable.NULL_BIND_VARIABLE;
+    private void setStream(int parameterIndex, InputStream x, long length, Query.Type type) throws SQLException {
+        if (x == null) {
+            this.setNull(parameterIndex);
             return;
         }
+        long limit = useStreamLengths && length >= 0 ? length : Long.MAX_VALUE;
+        ByteArrayOutputStream output = new ByteArrayOutputStream(limit < STREAM_BUFFER_SIZE ? (int) limit : STREAM_BUFFER_SIZE);
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        try {
+            long remaining = limit;
+            int n;
+            while (remaining > 0 && (n = x.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                output.write(buffer, 0, n);
+                remaining -= n;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error reading from InputStream " + e.getClass().getName(), e);
+        }
+        this.setBindVariable(parameterIndex, new BindVariable(output.toByteArray(), type));
+    }
 
-        BindVariable bindVariable;
-        switch (type) {
-            case NULL_TYPE:
-                bindVariable = BindVariable.NULL_BIND_VARIABLE;
-                break;
-            case BLOB:
-            case TEXT:
-                bindVariable = new BindVariable(this.inner.getBytesRepresentation(parameterIndex), type);
-                break;
-            case BINARY:
-            case VARBINARY:
-                bindVariable = new BindVariable(bytes, type);
-                break;
-            case DATE:
-            case TIME:
-            case TIMESTAMP:
-                // DATE、TIME、TIMESTAMP类型需去除mysql驱动添加的单引号'
-                byte[] bytes1 = Arrays.copyOfRange(bindValue.getByteValue(), 1, bindValue.getByteValue().length - 1);
-                bindVariable = new BindVariable(bytes1, type);
-                break;
-            default:
-                bindVariable = new BindVariable(bindValue.getByteValue(), type);
-                break;
+    private void setReader(int parameterIndex, Reader reader, long length) throws SQLException {
+        if (reader == null) {
+            this.setNull(parameterIndex);
+            return;
+        }
+        long limit = useStreamLengths && length >= 0 ? length : Long.MAX_VALUE;
+        StringBuilder output = new StringBuilder(limit < STREAM_BUFFER_SIZE ? (int) limit : STREAM_BUFFER_SIZE);
+        char[] buffer = new char[STREAM_BUFFER_SIZE];
+        try {
+            long remaining = limit;
+            int n;
+            while (remaining > 0 && (n = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                output.append(buffer, 0, n);
+                remaining -= n;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error reading from Reader " + e.getClass().getName(), e);
         }
-        bindValue.value = bindVariable;
+        this.setText(parameterIndex, output.toString());
     }
 }
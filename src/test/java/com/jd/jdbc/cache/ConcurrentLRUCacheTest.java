@@ -0,0 +1,127 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.cache;
+
+import com.jd.jdbc.util.cache.lrucache.ConcurrentLRUCache;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class ConcurrentLRUCacheTest {
+
+    @Test
+    public void testInitialState() {
+        ConcurrentLRUCache<String> cache = new ConcurrentLRUCache<>(5);
+
+        assertEquals(0L, cache.size().longValue());
+        assertEquals(5L, cache.capacity().longValue());
+        assertEquals(0L, cache.weightedSize());
+    }
+
+    @Test
+    public void testSetAndGet() {
+        ConcurrentLRUCache<String> cache = new ConcurrentLRUCache<>(100);
+        cache.set("key", "v1");
+        assertEquals("v1", cache.get(new String("key".getBytes())));
+
+        cache.set("key", "v2");
+        assertEquals("v2", cache.get("key"));
+        assertEquals(1L, cache.size().longValue());
+        assertNull(cache.get("nobody"));
+
+        assertEquals(2L, cache.hitCount());
+        assertEquals(1L, cache.missCount());
+    }
+
+    @Test
+    public void testClear() {
+        ConcurrentLRUCache<String> cache = new ConcurrentLRUCache<>(100, 1000, (key, value) -> value.length());
+        IntStream.range(0, 50).forEach(i -> cache.set("k" + i, "value"));
+        cache.clear();
+
+        assertEquals(0L, cache.size().longValue());
+        assertEquals(0L, cache.weightedSize());
+    }
+
+    @Test
+    public void testCapacityBound() {
+        ConcurrentLRUCache<String> cache = new ConcurrentLRUCache<>(64);
+        IntStream.range(0, 1000).forEach(i -> cache.set("k" + i, "v" + i));
+
+        Assert.assertTrue(cache.size() <= 64);
+        assertEquals(1000L - cache.size(), cache.evictionCount());
+    }
+
+    @Test
+    public void testWeightBound() {
+        ConcurrentLRUCache<String> cache = new ConcurrentLRUCache<>(1000, 1600, (key, value) -> value.length());
+        IntStream.range(0, 1000).forEach(i -> cache.set("k" + i, "0123456789"));
+
+        Assert.assertTrue(cache.weightedSize() <= 1600);
+        assertEquals(cache.size() * 10L, cache.weightedSize());
+
+        // an entry heavier than a whole segment is never cached
+        cache.set("huge", new String(new char[1600]));
+        assertNull(cache.get("huge"));
+    }
+
+    @Test
+    public void testReferencedEntrySurvives() {
+        ConcurrentLRUCache<String> cache = new ConcurrentLRUCache<>(16);
+        cache.set("hot", "v");
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertNotNull(cache.get("hot"));
+            cache.set("k" + i, "v" + i);
+        }
+        assertEquals("v", cache.get("hot"));
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+        ConcurrentLRUCache<String> cache = new ConcurrentLRUCache<>(128, 128 * 8, (key, value) -> value.length());
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    String key = "k" + (i % 512);
+                    String value = cache.get(key);
+                    if (value == null) {
+                        cache.set(key, key);
+                    } else {
+                        assertEquals(key, value);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        Assert.assertTrue(cache.size() <= 128);
+        Assert.assertTrue(cache.weightedSize() <= 128 * 8);
+        assertEquals(8 * 20000L, cache.hitCount() + cache.missCount());
+    }
+}
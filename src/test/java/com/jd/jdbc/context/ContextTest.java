@@ -16,9 +16,14 @@ limitations under the License.
 
 package com.jd.jdbc.context;
 
+import com.jd.jdbc.vitess.VitessConnection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -121,4 +126,105 @@ public class ContextTest {
         Assert.assertTrue(context33.isDone());
         Assert.assertEquals("closed", context33.error());
     }
+
+    @Test
+    public void testDeadlineEnforced() throws InterruptedException {
+        IContext context1 = VtContext.withCancel(VtContext.background());
+        IContext context2 = VtContext.withDeadline(context1, 100, TimeUnit.MILLISECONDS);
+        IContext context3 = VtContext.withCancel(context2);
+        CountDownLatch canceled = new CountDownLatch(1);
+        context3.onCancel(canceled::countDown);
+
+        // nobody polls isDone, the timer cancels the context and runs the listener
+        Assert.assertTrue(canceled.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(VtContextConstant.DEADLINE_EXCEEDED, context3.error());
+        Assert.assertTrue(context2.isDone());
+        Assert.assertEquals(VtContextConstant.DEADLINE_EXCEEDED, context2.error());
+        Assert.assertNull(context1.error());
+        Assert.assertFalse(context1.isDone());
+
+        // registered after the cancel, the listener runs at once
+        CountDownLatch late = new CountDownLatch(1);
+        context3.onCancel(late::countDown);
+        Assert.assertTrue(late.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancelListener() throws InterruptedException {
+        IContext context1 = VtContext.withCancel(VtContext.background());
+        IContext context2 = VtContext.withCancel(context1);
+        AtomicInteger closedCount = new AtomicInteger();
+        CountDownLatch canceled = new CountDownLatch(2);
+        context2.onCancel(closedCount::incrementAndGet).close();
+        context2.onCancel(canceled::countDown);
+        context2.onCancel(canceled::countDown);
+
+        // canceling the derived contexts keeps the context usable
+        context1.cancelDerived("cancel derived");
+        Assert.assertTrue(canceled.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("cancel derived", context2.error());
+        Assert.assertFalse(context1.isDone());
+        sleep(100);
+        Assert.assertEquals(0, closedCount.get());
+
+        IContext context3 = VtContext.withDeadline(context1, 50, TimeUnit.MILLISECONDS);
+        context3.onCancel(closedCount::incrementAndGet).close();
+        context3.close();
+        sleep(100);
+        Assert.assertEquals(0, closedCount.get());
+        Assert.assertEquals("closed", context3.error());
+    }
+
+    @Test
+    public void testContextKeySlots() {
+        Map<Object, Object> contextValues = new HashMap<>();
+        contextValues.put(VitessConnection.ContextKey.CTX_TX_CONN, "txConn");
+        IContext context1 = VtContext.withCancel(VtContext.background(), contextValues);
+        context1.setContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER, "vm");
+        IContext context2 = VtContext.withDeadline(context1, 1, TimeUnit.MINUTES);
+        IContext context3 = VtContext.withCancel(context2);
+        context2.setContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER, "vm+");
+
+        Assert.assertEquals("txConn", context3.getContextValue(VitessConnection.ContextKey.CTX_TX_CONN));
+        Assert.assertEquals("vm+", context3.getContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER));
+        Assert.assertEquals("vm", context1.getContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER));
+        Assert.assertNull(context3.getContextValue(VitessConnection.ContextKey.CTX_SCATTER_CONN));
+        Assert.assertNull(context1.getDeadline());
+        long remaining = context3.getDeadline().getTime() - System.currentTimeMillis();
+        Assert.assertTrue(remaining > 50000 && remaining <= 60000);
+
+        // a later deadline does not extend the parent deadline
+        IContext context4 = VtContext.withDeadline(context3, 1, TimeUnit.HOURS);
+        Assert.assertTrue(Math.abs(context4.getDeadline().getTime() - context3.getDeadline().getTime()) < 1000);
+        context1.close();
+        Assert.assertTrue(context4.isDone());
+        Assert.assertEquals("closed", context4.error());
+    }
+
+    @Test
+    public void testConcurrentCancel() throws InterruptedException {
+        for (int round = 0; round < 100; round++) {
+            IContext root = VtContext.withCancel(VtContext.background());
+            List<IContext> children = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread creator = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    children.add(VtContext.withCancel(root));
+                }
+            });
+            creator.start();
+            start.countDown();
+            root.cancel("canceled");
+            creator.join();
+            // a child created while its parent is canceled is never left running
+            for (IContext child : children) {
+                Assert.assertTrue(child.isDone());
+            }
+        }
+    }
 }
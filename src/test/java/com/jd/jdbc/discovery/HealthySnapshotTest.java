@@ -0,0 +1,141 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.discovery;
+
+import com.jd.BaseTest;
+import io.vitess.proto.Query;
+import io.vitess.proto.Topodata;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HealthySnapshotTest extends BaseTest {
+
+    private static final String KEYSPACE = "snapshot";
+
+    private static final int SHARDS = 64;
+
+    private static final int THREADS = 8;
+
+    private final HealthCheck hc = HealthCheck.INSTANCE;
+
+    @After
+    public void resetHealthCheck() {
+        HealthCheck.resetHealthCheck();
+    }
+
+    @Test
+    public void testSnapshot() throws ReflectiveOperationException {
+        TabletHealthCheck master = addTablet(1, "-80", Topodata.TabletType.MASTER);
+        TabletHealthCheck replica1 = addTablet(2, "-80", Topodata.TabletType.REPLICA);
+        TabletHealthCheck replica2 = addTablet(3, "-80", Topodata.TabletType.REPLICA);
+        Query.Target replicaTarget = replica1.getTarget();
+
+        Assert.assertEquals(1, hc.getHealthyTabletStats(master.getTarget()).size());
+        List<TabletHealthCheck> replicas = hc.getHealthyTabletStats(replicaTarget);
+        Assert.assertEquals(2, replicas.size());
+        // reads share the published list
+        Assert.assertSame(replicas, hc.getHealthyTabletStats(replicaTarget));
+        Assert.assertNull(hc.getHealthyTabletStats(replicaTarget.toBuilder().setShard("80-").build()));
+        Assert.assertNull(hc.getHealthyTabletStats(replicaTarget.toBuilder().setTabletType(Topodata.TabletType.RDONLY).build()));
+        Assert.assertEquals(master.getTablet(), hc.getHealthyTablets(KEYSPACE, Topodata.TabletType.MASTER));
+        try {
+            replicas.clear();
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            printOk("published list is immutable");
+        }
+
+        // serving state changed without a publication
+        replica2.getServing().set(false);
+        Assert.assertEquals(1, hc.getHealthyTabletStats(replicaTarget).size());
+        replica2.getServing().set(true);
+        Assert.assertEquals(2, hc.getHealthyTabletStats(replicaTarget).size());
+
+        hc.updateServingState(HealthCheck.keyFromTarget(replicaTarget), replica1.getTablet(), false);
+        List<TabletHealthCheck> serving = hc.getHealthyTabletStats(replicaTarget);
+        Assert.assertEquals(1, serving.size());
+        Assert.assertSame(replica2, serving.get(0));
+        Assert.assertSame(serving, hc.getHealthyTabletStats(replicaTarget));
+
+        hc.updateHealth(master, master.getTarget(), false, false);
+        Assert.assertNull(hc.getHealthyTabletStats(master.getTarget()));
+        Assert.assertNull(hc.getHealthyTablets(KEYSPACE, Topodata.TabletType.MASTER));
+        Assert.assertEquals(1, hc.getHealthyTabletStats(replicaTarget).size());
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        List<Query.Target> targets = new ArrayList<>();
+        int uid = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            String shard = String.valueOf(i);
+            targets.add(addTablet(++uid, shard, Topodata.TabletType.MASTER).getTarget());
+            targets.add(addTablet(++uid, shard, Topodata.TabletType.REPLICA).getTarget());
+            addTablet(++uid, shard, Topodata.TabletType.REPLICA);
+        }
+
+        int loop = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicLong routed = new AtomicLong();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    long count = 0;
+                    for (int i = 0; i < loop; i++) {
+                        count += hc.getHealthyTabletStats(targets.get((offset + i) % targets.size())).size();
+                    }
+                    routed.addAndGet(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        start.countDown();
+        done.await();
+        // every master target routes to 1 tablet and every replica target to 2
+        Assert.assertEquals((long) THREADS * loop * 3 / 2, routed.get());
+    }
+
+    private TabletHealthCheck addTablet(final int uid, final String shard, final Topodata.TabletType tabletType) throws ReflectiveOperationException {
+        Topodata.Tablet tablet = Topodata.Tablet.newBuilder()
+            .setAlias(Topodata.TabletAlias.newBuilder().setCell("cell").setUid(uid).build())
+            .setHostname("127.0.0." + uid).setKeyspace(KEYSPACE).setShard(shard).setType(tabletType).build();
+        Query.Target target = Query.Target.newBuilder().setKeyspace(KEYSPACE).setShard(shard).setTabletType(tabletType).build();
+        TabletHealthCheck thc = new TabletHealthCheck(hc, tablet, target);
+        Field stats = TabletHealthCheck.class.getDeclaredField("stats");
+        stats.setAccessible(true);
+        stats.set(thc, Query.RealtimeStats.newBuilder().setSecondsBehindMaster(0).build());
+        Field masterTermStartTime = TabletHealthCheck.class.getDeclaredField("masterTermStartTime");
+        masterTermStartTime.setAccessible(true);
+        masterTermStartTime.set(thc, 0L);
+        thc.getServing().set(true);
+        hc.updateHealth(thc, target, false, true);
+        return thc;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.discovery;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.monitor.TopologyCollector;
+import com.jd.jdbc.queryservice.TabletDialerAgent;
+import com.jd.jdbc.topo.MemoryTopoFactory;
+import com.jd.jdbc.topo.MemoryTopoServer;
+import com.jd.jdbc.topo.Resource;
+import com.jd.jdbc.topo.TopoConnection;
+import com.jd.jdbc.topo.TopoException;
+import com.jd.jdbc.topo.TopoExceptionCode;
+import com.jd.jdbc.topo.TopoServer;
+import com.jd.jdbc.topo.topoproto.TopoProto;
+import com.jd.jdbc.util.threadpool.impl.VtHealthCheckExecutorService;
+import io.vitess.proto.Topodata;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TopologyWatcherTest extends BaseTest {
+
+    private static final String CELL = "cell1";
+
+    private static final String KEYSPACE = "ks";
+
+    private static final String OTHER_KEYSPACE = "other";
+
+    private static final String TABLETS_PATH = "tablets";
+
+    private static final String TABLET_FILE = "Tablet";
+
+    private final HealthCheck hc = HealthCheck.INSTANCE;
+
+    private final long defaultConsistencyCheckIntervalMillis = TopologyWatcher.consistencyCheckIntervalMillis;
+
+    private TopoServer topoServer;
+
+    private MemoryTopoFactory factory;
+
+    private IContext ctx;
+
+    private TopologyWatcher watcher;
+
+    private double refreshes;
+
+    @BeforeClass
+    public static void initPool() {
+        VtHealthCheckExecutorService.initialize(null, null, null, null);
+    }
+
+    @Before
+    public void init() throws TopoException {
+        HealthCheck.resetHealthCheck();
+        MemoryTopoFactory.ServerWithFactory serverWithFactory = MemoryTopoFactory.newServerAndFactory(CELL);
+        topoServer = serverWithFactory.getTopoServer();
+        factory = (MemoryTopoFactory) serverWithFactory.getFactory();
+        ctx = VtContext.withCancel(VtContext.background());
+        watcher = new TopologyWatcher(topoServer, CELL, KEYSPACE);
+        refreshes = TopologyCollector.getCounter().labels(CELL).get();
+    }
+
+    @After
+    public void close() {
+        watcher.close();
+        TopologyWatcher.consistencyCheckIntervalMillis = defaultConsistencyCheckIntervalMillis;
+        HealthCheck.resetHealthCheck();
+        TabletDialerAgent.clearTabletCache();
+    }
+
+    @Test
+    public void testWatchEvents() {
+        Topodata.Tablet tablet1 = tablet(1, KEYSPACE, "127.0.0.1");
+        Topodata.Tablet tablet2 = tablet(2, KEYSPACE, "127.0.0.1");
+        Topodata.Tablet tablet3 = tablet(3, OTHER_KEYSPACE, "127.0.0.1");
+        WatchableTopo topo = watchableTopo(tablet1, tablet2, tablet3);
+
+        watcher.start(ctx);
+        awaitRefreshes(1);
+        Assert.assertEquals(1, topo.watches.size());
+        assertTablets(tablet1, tablet2);
+        printOk("snapshot adds the tablets of the watched keyspaces");
+
+        DirEvents listener = topo.listener(0);
+        Topodata.Tablet moved = tablet(1, KEYSPACE, "127.0.0.2");
+        listener.put(moved);
+        assertTablets(moved, tablet2);
+        Assert.assertEquals("127.0.0.2", hc.getHealthByAliasCopy().get(alias(moved)).getTablet().getHostname());
+        printOk("put of a moved tablet replaces it");
+
+        Topodata.Tablet tablet4 = tablet(4, KEYSPACE, "127.0.0.1");
+        listener.put(tablet4);
+        assertTablets(moved, tablet2, tablet4);
+        listener.put(tablet(2, OTHER_KEYSPACE, "127.0.0.1"));
+        assertTablets(moved, tablet4);
+        printOk("put adds a new tablet and removes a tablet moved out of the keyspaces");
+
+        listener.delete(tablet4);
+        assertTablets(moved);
+        printOk("delete removes the tablet");
+
+        Topodata.Tablet tablet5 = tablet(5, KEYSPACE, "127.0.0.1");
+        topo.setTablets(moved, tablet5);
+        listener.error();
+        Assert.assertTrue(topo.watches.get(0).get());
+        awaitRefreshes(2);
+        Assert.assertEquals(2, topo.watches.size());
+        assertTablets(moved, tablet5);
+        printOk("error closes the watch and resyncs from a new snapshot");
+    }
+
+    @Test
+    public void testStaleWatchIgnored() {
+        Topodata.Tablet tablet1 = tablet(1, KEYSPACE, "127.0.0.1");
+        WatchableTopo topo = watchableTopo(tablet1);
+        TopologyWatcher.consistencyCheckIntervalMillis = 0;
+
+        watcher.start(ctx);
+        awaitRefreshes(1);
+        Assert.assertEquals(1, topo.watches.size());
+        watcher.refresh(ctx);
+        Assert.assertEquals(2, topo.watches.size());
+        Assert.assertTrue(topo.watches.get(0).get());
+        Assert.assertFalse(topo.watches.get(1).get());
+
+        DirEvents stale = topo.listener(0);
+        Topodata.Tablet tablet2 = tablet(2, KEYSPACE, "127.0.0.1");
+        stale.put(tablet2);
+        stale.put(tablet(1, KEYSPACE, "127.0.0.2"));
+        stale.delete(tablet1);
+        stale.error();
+        assertTablets(tablet1);
+        Assert.assertEquals("127.0.0.1", hc.getHealthByAliasCopy().get(alias(tablet1)).getTablet().getHostname());
+        Assert.assertFalse(topo.watches.get(1).get());
+
+        topo.listener(1).put(tablet2);
+        assertTablets(tablet1, tablet2);
+        printOk("events of a replaced watch are dropped");
+    }
+
+    @Test
+    public void testConsistencyCheckInterval() {
+        Topodata.Tablet tablet1 = tablet(1, KEYSPACE, "127.0.0.1");
+        Topodata.Tablet tablet2 = tablet(2, KEYSPACE, "127.0.0.1");
+        WatchableTopo topo = watchableTopo(tablet1, tablet2);
+        TopologyWatcher.consistencyCheckIntervalMillis = TimeUnit.HOURS.toMillis(1);
+
+        watcher.start(ctx);
+        awaitRefreshes(1);
+        Assert.assertEquals(1, topo.watches.size());
+        topo.setTablets(tablet1);
+        watcher.refresh(ctx);
+        Assert.assertEquals(1, topo.watches.size());
+        assertTablets(tablet1, tablet2);
+        printOk("watch is kept within the consistency check interval");
+
+        TopologyWatcher.consistencyCheckIntervalMillis = 0;
+        watcher.refresh(ctx);
+        Assert.assertEquals(2, topo.watches.size());
+        Assert.assertTrue(topo.watches.get(0).get());
+        assertTablets(tablet1);
+        printOk("watch is restarted from a new snapshot after the consistency check interval");
+    }
+
+    @Test
+    public void testPollWhenWatchNotSupported() throws TopoException {
+        AtomicInteger watchCalls = new AtomicInteger();
+        MemoryTopoServer.setCellConnection(topoServer, CELL, new MemoryTopoServer(CELL, "", factory) {
+            @Override
+            public Resource watchDir(IContext ctx, String dirPath, DirWatchListener listener) throws TopoException {
+                watchCalls.incrementAndGet();
+                throw TopoException.wrap(TopoExceptionCode.NO_IMPLEMENTATION, "for watchDir");
+            }
+        });
+        Topodata.Tablet tablet1 = tablet(1, KEYSPACE, "127.0.0.1");
+        Topodata.Tablet tablet2 = tablet(2, OTHER_KEYSPACE, "127.0.0.1");
+        MemoryTopoServer.createTablet(ctx, topoServer, tablet1);
+        MemoryTopoServer.createTablet(ctx, topoServer, tablet2);
+
+        watcher.start(ctx);
+        awaitRefreshes(1);
+        assertTablets(tablet1);
+        Assert.assertEquals(1, watchCalls.get());
+
+        Topodata.Tablet tablet3 = tablet(3, KEYSPACE, "127.0.0.1");
+        MemoryTopoServer.createTablet(ctx, topoServer, tablet3);
+        watcher.refresh(ctx);
+        assertTablets(tablet1, tablet3);
+        Assert.assertEquals(1, watchCalls.get());
+        printOk("tablets are polled when the topo cannot watch");
+    }
+
+    private WatchableTopo watchableTopo(Topodata.Tablet... tablets) {
+        WatchableTopo topo = new WatchableTopo(factory);
+        topo.setTablets(tablets);
+        MemoryTopoServer.setCellConnection(topoServer, CELL, topo);
+        return topo;
+    }
+
+    private void assertTablets(Topodata.Tablet... tablets) {
+        Map<String, TabletHealthCheck> healthByAlias = hc.getHealthByAliasCopy();
+        Assert.assertEquals(tablets.length, healthByAlias.size());
+        for (Topodata.Tablet tablet : tablets) {
+            TabletHealthCheck thc = healthByAlias.get(alias(tablet));
+            Assert.assertNotNull(alias(tablet), thc);
+            Assert.assertEquals(tablet, thc.getTablet());
+        }
+    }
+
+    /**
+     * The counter of the cell is increased once a watch is started or the tablets are polled.
+     */
+    private void awaitRefreshes(int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (TopologyCollector.getCounter().labels(CELL).get() < refreshes + count) {
+            if (System.nanoTime() > deadline) {
+                Assert.fail("timed out");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static String alias(Topodata.Tablet tablet) {
+        return TopoProto.tabletAliasString(tablet.getAlias());
+    }
+
+    private static String tabletFile(Topodata.Tablet tablet) {
+        return alias(tablet) + "/" + TABLET_FILE;
+    }
+
+    private static Topodata.Tablet tablet(long uid, String keyspace, String hostname) {
+        return Topodata.Tablet.newBuilder()
+            .setAlias(Topodata.TabletAlias.newBuilder().setCell(CELL).setUid(uid).build())
+            .setHostname(hostname)
+            .setMysqlHostname(hostname)
+            .setMysqlPort(3306)
+            .putPortMap("grpc", 1)
+            .setKeyspace(keyspace)
+            .setShard("0")
+            .setType(Topodata.TabletType.REPLICA)
+            .build();
+    }
+
+    /**
+     * WatchableTopo is a memory topo whose tablets can be watched, the snapshot of a watch is
+     * sent before watchDir returns and the later events are sent by the test.
+     */
+    private static class WatchableTopo extends MemoryTopoServer {
+        private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+        private final List<DirWatchListener> listeners = new CopyOnWriteArrayList<>();
+
+        private final List<AtomicBoolean> watches = new CopyOnWriteArrayList<>();
+
+        WatchableTopo(MemoryTopoFactory factory) {
+            super(CELL, "", factory);
+        }
+
+        void setTablets(Topodata.Tablet... tablets) {
+            files.clear();
+            for (Topodata.Tablet tablet : tablets) {
+                files.put(tabletFile(tablet), tablet.toByteArray());
+            }
+        }
+
+        DirEvents listener(int index) {
+            return new DirEvents(listeners.get(index));
+        }
+
+        @Override
+        public Resource watchDir(IContext ctx, String dirPath, DirWatchListener listener) {
+            Assert.assertEquals(TABLETS_PATH, dirPath);
+            AtomicBoolean closed = new AtomicBoolean();
+            listeners.add(listener);
+            watches.add(closed);
+            listener.onSnapshot(new ConcurrentHashMap<>(files));
+            return () -> closed.set(true);
+        }
+    }
+
+    private static class DirEvents {
+        private final TopoConnection.DirWatchListener listener;
+
+        DirEvents(TopoConnection.DirWatchListener listener) {
+            this.listener = listener;
+        }
+
+        void put(Topodata.Tablet tablet) {
+            listener.onPut(tabletFile(tablet), tablet.toByteArray());
+        }
+
+        void delete(Topodata.Tablet tablet) {
+            listener.onDelete(tabletFile(tablet));
+        }
+
+        void error() {
+            listener.onError(new RuntimeException("watch is broken"));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.monitor.SpillCollector;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import io.vitess.proto.Query;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExternalSorterTest extends BaseTest {
+
+    private static final List<OrderByParams> ORDER_BY = Arrays.asList(new OrderByParams(0, false), new OrderByParams(1, true));
+
+    @Test
+    public void testSpillSameAsStableSort() throws SQLException {
+        Random random = new Random(13);
+        List<List<VtResultValue>> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            expected.add(row(random.nextInt(10) == 0 ? null : (long) random.nextInt(500), "s" + random.nextInt(5), i));
+        }
+        Set<String> spillFiles = spillFiles();
+        List<List<VtResultValue>> actual = new ArrayList<>();
+        int maxRuns = 0;
+        try (ExternalSorter sorter = new ExternalSorter(ORDER_BY, "test", 16 * 1024)) {
+            for (List<VtResultValue> row : expected) {
+                sorter.add(row);
+                maxRuns = Math.max(maxRuns, sorter.spilledRuns());
+            }
+            Assert.assertTrue(sorter.spilledRuns() > 1);
+            while (sorter.read(actual, 100) > 0) {
+                Assert.assertTrue(actual.size() % 100 == 0 || actual.size() == expected.size());
+            }
+        }
+        Assert.assertTrue("runs are merged per level", maxRuns < 2 * 64);
+        Assert.assertEquals(spillFiles, spillFiles());
+
+        expected.sort(new AbstractRouteEngine.VtResultComparator(ORDER_BY));
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals("row " + i, expected.get(i).get(2).getValue(), actual.get(i).get(2).getValue());
+        }
+        printOk("spilled " + expected.size() + " rows and merged them in the order of a stable sort");
+    }
+
+    @Test
+    public void testLeveledMerge() throws SQLException, IOException {
+        Random random = new Random(17);
+        List<List<VtResultValue>> expected = new ArrayList<>();
+        // 63 runs of the second level and 63 runs of the first level
+        for (int i = 0; i < 63 * 64 + 63; i++) {
+            expected.add(row((long) random.nextInt(50), "s" + random.nextInt(3), i));
+        }
+        long rowBytes = 0;
+        DataOutputStream out = new DataOutputStream(new ByteArrayOutputStream());
+        for (List<VtResultValue> row : expected) {
+            rowBytes += SpillRowCodec.writeRow(out, row);
+        }
+        double spillBytes = SpillCollector.getSpillBytesCounter().labels("leveled").get();
+        List<List<VtResultValue>> actual = new ArrayList<>();
+        try (ExternalSorter sorter = new ExternalSorter(ORDER_BY, "leveled", 1)) {
+            for (List<VtResultValue> row : expected) {
+                sorter.add(row);
+            }
+            Assert.assertEquals(126, sorter.spilledRuns());
+            while (sorter.read(actual, 1000) > 0) {
+                Assert.assertTrue(sorter.spilledRuns() < 64);
+            }
+        }
+        spillBytes = SpillCollector.getSpillBytesCounter().labels("leveled").get() - spillBytes;
+        Assert.assertTrue("every row is written once per level, wrote " + spillBytes + " bytes for " + rowBytes + " bytes of rows", spillBytes <= 3 * rowBytes);
+
+        expected.sort(new AbstractRouteEngine.VtResultComparator(ORDER_BY));
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals("row " + i, expected.get(i).get(2).getValue(), actual.get(i).get(2).getValue());
+        }
+        printOk("merged " + expected.size() + " single row runs by level");
+    }
+
+    @Test
+    public void testNoSpillWithinBudget() throws SQLException {
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        try (ExternalSorter sorter = new ExternalSorter(ORDER_BY, "test")) {
+            for (int i = 0; i < 1000; i++) {
+                List<VtResultValue> row = row((long) (i % 7), "s", i);
+                sorter.add(row);
+            }
+            Assert.assertEquals(0, sorter.spilledRuns());
+            Assert.assertEquals(1000, sorter.read(rows, 5000));
+            Assert.assertEquals(0, sorter.read(rows, 5000));
+        }
+        for (int i = 1; i < rows.size(); i++) {
+            Assert.assertTrue((Long) rows.get(i - 1).get(0).getValue() <= (Long) rows.get(i).get(0).getValue());
+        }
+        printOk("sorted in memory within the budget");
+    }
+
+    @Test
+    public void testRowCodecRoundTrip() throws IOException {
+        List<VtResultValue> row = Arrays.asList(
+            VtResultValue.NULL,
+            new VtResultValue(null, Query.Type.VARCHAR),
+            new VtResultValue(-7, Query.Type.INT32),
+            new VtResultValue(Long.MIN_VALUE, Query.Type.INT64),
+            new VtResultValue((short) 300, Query.Type.INT16),
+            new VtResultValue((byte) -1, Query.Type.INT8),
+            new VtResultValue(true, Query.Type.BIT),
+            new VtResultValue(1.5f, Query.Type.FLOAT32),
+            new VtResultValue(-2.25d, Query.Type.FLOAT64),
+            new VtResultValue(new BigDecimal("-12345678901234567890.0012"), Query.Type.DECIMAL),
+            new VtResultValue(new BigInteger("18446744073709551615"), Query.Type.UINT64),
+            new VtResultValue("中文 text", Query.Type.VARCHAR),
+            new VtResultValue("2023-01-01 00:00:00".getBytes(StandardCharsets.UTF_8), Query.Type.DATETIME),
+            new VtResultValue(new java.sql.Date(0), Query.Type.DATE));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int written = SpillRowCodec.writeRow(out, row);
+        SpillRowCodec.writeRow(out, row.subList(2, 4));
+        out.flush();
+        Assert.assertEquals(written + 1 + 2 + 1 + 1 + 2 + 1 + 10, bytes.size());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        List<VtResultValue> decoded = SpillRowCodec.readRow(in);
+        Assert.assertSame(VtResultValue.NULL, decoded.get(0));
+        Assert.assertEquals(row.size(), decoded.size());
+        for (int i = 1; i < row.size(); i++) {
+            Assert.assertEquals(row.get(i).getVtType(), decoded.get(i).getVtType());
+            if (row.get(i).getValue() instanceof byte[]) {
+                Assert.assertArrayEquals((byte[]) row.get(i).getValue(), (byte[]) decoded.get(i).getValue());
+            } else {
+                Assert.assertEquals(row.get(i).getValue(), decoded.get(i).getValue());
+            }
+        }
+        Assert.assertEquals(2, SpillRowCodec.readRow(in).size());
+        printOk("row codec round trips every value class");
+    }
+
+    private static Set<String> spillFiles() {
+        Set<String> files = new HashSet<>();
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("vtdriver-spill-"));
+        if (names != null) {
+            files.addAll(Arrays.asList(names));
+        }
+        return files;
+    }
+
+    private static List<VtResultValue> row(Long col0, String col1, int id) {
+        return Arrays.asList(col0 == null ? VtResultValue.NULL : new VtResultValue(col0, Query.Type.INT64), new VtResultValue(col1, Query.Type.VARCHAR),
+            new VtResultValue((long) id, Query.Type.INT64));
+    }
+}
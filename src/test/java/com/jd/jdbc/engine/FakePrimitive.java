@@ -22,6 +22,8 @@ import com.jd.jdbc.IExecute;
 import com.jd.jdbc.context.IContext;
 import static com.jd.jdbc.engine.vcursor.FakeVcursorUtil.printBindVars;
 import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
 import com.jd.jdbc.srvtopo.BindVariable;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -96,6 +98,45 @@ public class FakePrimitive implements PrimitiveEngine {
 
     }
 
+    @Override
+    public IExecute.VtStream streamExecute(IContext ctx, Vcursor vcursor, Map<String, BindVariable> bindVariableMap, boolean wantFields) throws SQLException {
+        log.add(String.format("StreamExecute %s %s", printBindVars(bindVariableMap), wantFields));
+        if (this.resultSet == null) {
+            if (this.sendErr != null) {
+                throw this.sendErr;
+            }
+            return null;
+        }
+        VtResultSet r = resultSet.get(curResult);
+        this.curResult++;
+        if (r == null) {
+            if (this.sendErr != null) {
+                throw this.sendErr;
+            }
+            return null;
+        }
+        return new IExecute.VtStream() {
+            private int position = 0;
+
+            @Override
+            public VtRowList fetch(boolean wantFields) throws SQLException {
+                List<List<VtResultValue>> rows = r.getRows() == null ? new ArrayList<>() : r.getRows();
+                int end = Math.min(position + 2, rows.size());
+                if (end == position && sendErr != null) {
+                    throw sendErr;
+                }
+                VtResultSet batch = new VtResultSet(wantFields ? r.getFields() : null, new ArrayList<>(rows.subList(position, end)));
+                batch.setRowsAffected(end - position);
+                position = end;
+                return batch;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
     @Override
     public VtResultSet getFields(Vcursor vcursor, Map<String, BindVariable> bindVariableMap) throws SQLException {
         log.add(String.format("GetFields %s", printBindVars(bindVariableMap)));
@@ -0,0 +1,189 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.engine;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.evalengine.EvalEngine;
+import com.jd.jdbc.sqlparser.SQLUtils;
+import com.jd.jdbc.sqlparser.ast.statement.SQLSelectStatement;
+import com.jd.jdbc.sqltypes.SqlTypes;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.srvtopo.BindVariable;
+import io.vitess.proto.Query;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoserTreeTest extends BaseTest {
+
+    private static final List<OrderByParams> ORDER_BY = Arrays.asList(new OrderByParams(0, false), new OrderByParams(1, true));
+
+    @Test
+    public void testMergeSameAsStableSort() throws SQLException {
+        Random random = new Random(7);
+        for (int k : new int[] {0, 1, 2, 3, 5, 8, 13, 17}) {
+            List<List<List<VtResultValue>>> runs = new ArrayList<>();
+            for (int run = 0; run < k; run++) {
+                List<List<VtResultValue>> rows = new ArrayList<>();
+                int size = random.nextInt(50);
+                for (int i = 0; i < size; i++) {
+                    rows.add(row(random.nextInt(10) == 0 ? null : (long) random.nextInt(20), "s" + random.nextInt(5), run * 1000 + i));
+                }
+                rows.sort(new AbstractRouteEngine.VtResultComparator(ORDER_BY));
+                runs.add(rows);
+            }
+            List<List<VtResultValue>> expected = new ArrayList<>();
+            runs.forEach(expected::addAll);
+            expected.sort(new AbstractRouteEngine.VtResultComparator(ORDER_BY));
+
+            List<List<VtResultValue>> actual = merge(runs);
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertSame("k = " + k + ", row " + i, expected.get(i), actual.get(i));
+            }
+        }
+        printOk("merged runs in the order of a stable sort");
+    }
+
+    @Test
+    public void testRowComparatorSameAsNullSafeCompare() throws SQLException {
+        List<VtResultValue> values = Arrays.asList(
+            VtResultValue.NULL,
+            new VtResultValue(1, Query.Type.INT32),
+            new VtResultValue(2L, Query.Type.INT64),
+            new VtResultValue(-3L, Query.Type.INT64),
+            new VtResultValue(2, Query.Type.INT32));
+        assertSameAsNullSafeCompare(values);
+        assertSameAsNullSafeCompare(Arrays.asList(
+            new VtResultValue("b", Query.Type.VARCHAR),
+            VtResultValue.NULL,
+            new VtResultValue("a", Query.Type.CHAR),
+            new VtResultValue("ab", Query.Type.VARCHAR)));
+        assertSameAsNullSafeCompare(Arrays.asList(
+            new VtResultValue(new BigDecimal("1.10"), Query.Type.DECIMAL),
+            new VtResultValue(new BigDecimal("1.1"), Query.Type.DECIMAL),
+            new VtResultValue(new BigDecimal("-2"), Query.Type.DECIMAL)));
+        assertSameAsNullSafeCompare(Arrays.asList(
+            new VtResultValue("2023-01-02".getBytes(StandardCharsets.UTF_8), Query.Type.DATE),
+            new VtResultValue("2023-01-01".getBytes(StandardCharsets.UTF_8), Query.Type.DATE),
+            new VtResultValue("2023-01-01 00:00:00".getBytes(StandardCharsets.UTF_8), Query.Type.DATETIME)));
+
+        RowComparator comparator = new RowComparator(Collections.singletonList(new OrderByParams(0, false)));
+        try {
+            comparator.compare(Collections.singletonList(new VtResultValue("a", Query.Type.VARCHAR)),
+                Collections.singletonList(new VtResultValue("a".getBytes(StandardCharsets.UTF_8), Query.Type.VARCHAR)));
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getMessage().startsWith("types are not comparable"));
+        }
+        printOk("row comparator agrees with nullSafeCompare");
+    }
+
+    @Test
+    public void testMergeManyRuns() throws SQLException {
+        Random random = new Random(11);
+        List<List<List<VtResultValue>>> runs = new ArrayList<>();
+        List<List<VtResultValue>> expected = new ArrayList<>();
+        for (int run = 0; run < 64; run++) {
+            List<List<VtResultValue>> rows = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                rows.add(row((long) random.nextInt(1000), "s" + random.nextInt(10), i));
+            }
+            rows.sort(new AbstractRouteEngine.VtResultComparator(ORDER_BY));
+            runs.add(rows);
+            expected.addAll(rows);
+        }
+        // 64 shards merge to the stable sort of their rows appended in shard order
+        expected.sort(new AbstractRouteEngine.VtResultComparator(ORDER_BY));
+        Assert.assertEquals(expected, merge(runs));
+    }
+
+    private void assertSameAsNullSafeCompare(List<VtResultValue> values) throws SQLException {
+        for (boolean desc : new boolean[] {false, true}) {
+            RowComparator comparator = new RowComparator(Collections.singletonList(new OrderByParams(0, desc)));
+            for (VtResultValue v1 : values) {
+                for (VtResultValue v2 : values) {
+                    int expected = Integer.signum(EvalEngine.nullSafeCompare(v1, v2));
+                    int actual = Integer.signum(comparator.compare(Collections.singletonList(v1), Collections.singletonList(v2)));
+                    Assert.assertEquals(v1 + " vs " + v2, desc ? -expected : expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLimitRowCount() throws SQLException {
+        Map<String, BindVariable> bindVariableMap = new HashMap<>();
+        Assert.assertEquals(10, limitRowCount("select id from t order by id limit 10", bindVariableMap));
+        Assert.assertEquals(Integer.MAX_VALUE, limitRowCount("select id from t order by id limit 5, 10", bindVariableMap));
+        Assert.assertEquals(Integer.MAX_VALUE, limitRowCount("select id from t order by id", bindVariableMap));
+        // row counts of 2^31 and more do not wrap around
+        Assert.assertEquals(Integer.MAX_VALUE, limitRowCount("select id from t order by id limit 2147483647", bindVariableMap));
+        Assert.assertEquals(Integer.MAX_VALUE, limitRowCount("select id from t order by id limit 2147483648", bindVariableMap));
+        Assert.assertEquals(Integer.MAX_VALUE, limitRowCount("select id from t order by id limit 4294967297", bindVariableMap));
+        Assert.assertEquals(Integer.MAX_VALUE, limitRowCount("select id from t order by id limit 18446744073709551615", bindVariableMap));
+
+        bindVariableMap.put("__upper_limit", SqlTypes.int64BindVariable(3L));
+        Assert.assertEquals(3, limitRowCount("select id from t order by id limit :__upper_limit", bindVariableMap));
+        bindVariableMap.put("__upper_limit", SqlTypes.int64BindVariable(1L << 32));
+        Assert.assertEquals(Integer.MAX_VALUE, limitRowCount("select id from t order by id limit :__upper_limit", bindVariableMap));
+        printOk("limit row count is capped to Integer.MAX_VALUE");
+    }
+
+    @Test
+    public void testRouteLimitRowCount() {
+        SQLSelectStatement selectStatement = (SQLSelectStatement) SQLUtils.parseSingleMysqlStatement("select col, count(*) from t group by col order by col limit 10");
+        RouteEngine routeEngine = new RouteEngine(Engine.RouteOpcode.SelectScatter, null);
+        routeEngine.setSelectQuery(selectStatement.getSelect().getQuery());
+        // read by an aggregate: every shard row is merged
+        Assert.assertEquals(Integer.MAX_VALUE, routeEngine.limitRowCount(new HashMap<>()));
+        routeEngine.setLimitMerge(true);
+        Assert.assertEquals(10, routeEngine.limitRowCount(new HashMap<>()));
+        printOk("the route merges up to its limit only when a limit reads it");
+    }
+
+    private static int limitRowCount(String sql, Map<String, BindVariable> bindVariableMap) {
+        SQLSelectStatement selectStatement = (SQLSelectStatement) SQLUtils.parseSingleMysqlStatement(sql);
+        return RouteEngine.limitRowCount(selectStatement.getSelect().getQuery(), bindVariableMap);
+    }
+
+    private static List<List<VtResultValue>> merge(List<List<List<VtResultValue>>> runs) throws SQLException {
+        int[] positions = new int[runs.size()];
+        LoserTree loserTree = new LoserTree(new RowComparator(ORDER_BY), runs.size(),
+            run -> positions[run] < runs.get(run).size() ? runs.get(run).get(positions[run]++) : null);
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        while (loserTree.hasNext()) {
+            rows.add(loserTree.next());
+        }
+        return rows;
+    }
+
+    private static List<VtResultValue> row(Long col0, String col1, int id) {
+        return Arrays.asList(col0 == null ? VtResultValue.NULL : new VtResultValue(col0, Query.Type.INT64), new VtResultValue(col1, Query.Type.VARCHAR),
+            new VtResultValue((long) id, Query.Type.INT64));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.google.protobuf.ByteString;
+import com.jd.BaseTest;
+import com.jd.jdbc.sqlparser.SQLUtils;
+import com.jd.jdbc.sqlparser.SqlParser;
+import com.jd.jdbc.sqlparser.ast.SQLStatement;
+import com.jd.jdbc.sqlparser.dialect.mysql.visitor.VtRemoveBacktickVisitor;
+import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.srvtopo.BoundQuery;
+import com.jd.jdbc.srvtopo.PositionalBindVariables;
+import io.vitess.proto.Query;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShardQueryTemplateTest extends BaseTest {
+
+    private static final String CHAR_ENCODING = "utf-8";
+
+    private static final String[] CASE_FILES = {"filter_cases.txt", "from_cases.txt", "select_cases.txt", "aggr_cases.txt", "postprocess_cases.txt",
+        "memory_sort_cases.txt", "union_cases.txt", "dml_insert_cases.txt", "dml_update_cases.txt", "dml_delete_cases.txt"};
+
+    @Test
+    public void testRenderSameAsRestore() throws IOException, SQLException {
+        Map<String, String> switchTables = new HashMap<>();
+        switchTables.put("user", "user_1");
+        switchTables.put("user_extra", "user_extra_2");
+        switchTables.put("music", "music_3");
+
+        int count = 0;
+        for (String sql : loadQueries()) {
+            SqlParser.PrepareAstResult prepareAstResult;
+            try {
+                SQLStatement stmt = SQLUtils.parseSingleMysqlStatement(sql);
+                stmt.accept(new VtRemoveBacktickVisitor());
+                prepareAstResult = SqlParser.prepareAst(stmt, new LinkedHashMap<>(), CHAR_ENCODING);
+            } catch (Exception e) {
+                continue;
+            }
+            SQLStatement ast = prepareAstResult.getAst();
+            List<Map<String, BindVariable>> bindVariableMapList = Collections.singletonList(prepareAstResult.getBindVariableMap());
+            ShardQueryTemplate template = ShardQueryTemplate.compile(ast);
+            for (Map<String, String> switchTable : new ArrayList<Map<String, String>>() {{
+                add(null);
+                add(switchTables);
+            }}) {
+                List<BoundQuery> expected;
+                try {
+                    expected = Engine.getQueries(ast, bindVariableMapList, switchTable, CHAR_ENCODING);
+                } catch (Exception e) {
+                    continue;
+                }
+                List<BoundQuery> actual = Engine.getQueries(template, bindVariableMapList, switchTable, CHAR_ENCODING);
+                Assert.assertEquals(sql, expected.get(0).getSql(), actual.get(0).getSql());
+                count++;
+            }
+        }
+        printOk("compared " + count + " rendered queries");
+        Assert.assertTrue(count > 0);
+    }
+
+    @Test
+    public void testRenderPrepared() throws SQLException {
+        SQLStatement ast = SQLUtils.parseSingleMysqlStatement("select u.id, u.name from user as u where u.id in (:vtg0) and u.name = :vtg1 and u.col is not null limit :vtg2");
+        Query.Value id1 = Query.Value.newBuilder().setType(Query.Type.INT64).setValue(ByteString.copyFromUtf8("1")).build();
+        Query.Value id2 = Query.Value.newBuilder().setType(Query.Type.INT64).setValue(ByteString.copyFromUtf8("2")).build();
+        Map<String, BindVariable> bindVariableMap = new LinkedHashMap<>();
+        bindVariableMap.put("vtg0", new BindVariable(Arrays.asList(id1, id2), Query.Type.TUPLE));
+        bindVariableMap.put("vtg1", new BindVariable("abc".getBytes(StandardCharsets.UTF_8), Query.Type.VARCHAR));
+        bindVariableMap.put("vtg2", new BindVariable("10".getBytes(StandardCharsets.UTF_8), Query.Type.INT64));
+
+        Map<String, String> switchTables = new HashMap<>();
+        switchTables.put("user", "user_1");
+        ShardQueryTemplate template = ShardQueryTemplate.compile(ast);
+        BoundQuery boundQuery = template.renderPrepared(bindVariableMap, switchTables, CHAR_ENCODING);
+        Assert.assertEquals("select u.id, u.name from user_1 as u where u.id in (?,?) and u.name = ? and u.col is not null limit ?", boundQuery.getSql());
+
+        Assert.assertTrue(boundQuery.getBindVariablesMap() instanceof PositionalBindVariables);
+        PositionalBindVariables parameters = (PositionalBindVariables) boundQuery.getBindVariablesMap();
+        Assert.assertEquals(CHAR_ENCODING, parameters.getCharEncoding());
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4"), new ArrayList<>(parameters.keySet()));
+        Assert.assertEquals(Query.Type.INT64, parameters.get("1").getType());
+        Assert.assertArrayEquals("2".getBytes(StandardCharsets.UTF_8), parameters.get("2").getValue());
+        Assert.assertEquals(bindVariableMap.get("vtg1"), parameters.get("3"));
+        Assert.assertEquals(bindVariableMap.get("vtg2"), parameters.get("4"));
+
+        // the sql text does not depend on the values, so tablets reuse one prepared statement
+        bindVariableMap.put("vtg1", new BindVariable("xyz".getBytes(StandardCharsets.UTF_8), Query.Type.VARCHAR));
+        Assert.assertEquals(boundQuery.getSql(), template.renderPrepared(bindVariableMap, switchTables, CHAR_ENCODING).getSql());
+
+        bindVariableMap.remove("vtg2");
+        try {
+            template.renderPrepared(bindVariableMap, null, CHAR_ENCODING);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("missing bind var vtg2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRenderShards() throws SQLException {
+        SQLStatement ast = SQLUtils.parseSingleMysqlStatement("select u.id, u.name, e.col from user as u join user_extra as e on u.id = e.user_id "
+            + "where u.id in (:vtg0) and u.name = :vtg1 and e.col > :vtg2 order by u.id desc limit 10");
+        List<Map<String, BindVariable>> bindVariableMapList = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Map<String, BindVariable> bindVariableMap = new LinkedHashMap<>();
+            Query.Value shardValue = Query.Value.newBuilder().setType(Query.Type.INT64).setValue(ByteString.copyFromUtf8(String.valueOf(i))).build();
+            bindVariableMap.put("vtg0", new BindVariable(Collections.singletonList(shardValue), Query.Type.TUPLE));
+            bindVariableMap.put("vtg1", new BindVariable("abc".getBytes(StandardCharsets.UTF_8), Query.Type.VARCHAR));
+            bindVariableMap.put("vtg2", new BindVariable(String.valueOf(i).getBytes(StandardCharsets.UTF_8), Query.Type.INT64));
+            bindVariableMapList.add(bindVariableMap);
+        }
+        ShardQueryTemplate template = ShardQueryTemplate.compile(ast);
+        // every shard gets its own values rendered into the same template
+        List<BoundQuery> expected = Engine.getQueries(ast, bindVariableMapList, null, CHAR_ENCODING);
+        List<BoundQuery> actual = Engine.getQueries(template, bindVariableMapList, null, CHAR_ENCODING);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getSql(), actual.get(i).getSql());
+        }
+    }
+
+    private List<String> loadQueries() throws IOException {
+        List<String> queries = new ArrayList<>();
+        for (String caseFile : CASE_FILES) {
+            for (String line : Files.readAllLines(Paths.get("src/test/resources/plan/" + caseFile), StandardCharsets.UTF_8)) {
+                if (line.startsWith("\"") && line.endsWith("\"") && line.length() > 2) {
+                    queries.add(line.substring(1, line.length() - 1).replace("\\\"", "\""));
+                }
+            }
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.queryservice.StreamIterator;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import io.vitess.proto.Query;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class StreamShardReaderTest extends BaseTest {
+
+    @BeforeClass
+    public static void initPool() {
+        VtQueryExecutorService.initialize(null, null, null, null);
+    }
+
+    @Test
+    public void testReadInTurn() throws SQLException {
+        List<StreamIterator> iterators = iterators(3, 1000);
+        StreamShardReader reader = new StreamShardReader(iterators, 0);
+        List<FakeStreamIterator> fakes = fakes(iterators);
+
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        int count = reader.read(rows, StreamShardReader.FETCH_ROWS);
+        Assert.assertEquals(StreamShardReader.FETCH_ROWS, count);
+        Assert.assertNotNull(reader.getFields());
+        while (reader.read(rows, StreamShardReader.FETCH_ROWS) > 0) {
+            Assert.assertTrue(rows.size() <= 3000);
+        }
+        Assert.assertEquals(3000, rows.size());
+        Assert.assertEquals(0, reader.read(rows, StreamShardReader.FETCH_ROWS));
+
+        reader.close();
+        for (FakeStreamIterator fake : fakes) {
+            Assert.assertTrue(fake.closed);
+        }
+        printOk("read 3 shards in turn");
+    }
+
+    @Test
+    public void testPrefetchSlowShard() throws SQLException, InterruptedException {
+        CountDownLatch slowShard = new CountDownLatch(1);
+        List<StreamIterator> iterators = iterators(4, 500);
+        iterators.set(0, new FakeStreamIterator(0, 10, slowShard, null));
+        StreamShardReader reader = new StreamShardReader(iterators, 64);
+
+        // the fast shards are read to the end while the first shard has not returned a row
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        while (rows.size() < 1500) {
+            Assert.assertTrue(reader.read(rows, StreamShardReader.FETCH_ROWS) > 0);
+        }
+        for (List<VtResultValue> row : rows) {
+            Assert.assertNotEquals(0L, row.get(0).getValue());
+        }
+
+        slowShard.countDown();
+        while (reader.read(rows, StreamShardReader.FETCH_ROWS) > 0) {
+            Assert.assertTrue(rows.size() <= 1510);
+        }
+        Assert.assertEquals(1510, rows.size());
+        reader.close();
+        printOk("fast shards are not stalled by a slow shard");
+    }
+
+    @Test
+    public void testPrefetchError() throws SQLException {
+        List<StreamIterator> iterators = iterators(2, 100);
+        iterators.set(1, new FakeStreamIterator(1, 10, null, new SQLException("shard 1 is broken")));
+        StreamShardReader reader = new StreamShardReader(iterators, 8);
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        try {
+            while (reader.read(rows, StreamShardReader.FETCH_ROWS) > 0) {
+                Assert.assertTrue(rows.size() <= 110);
+            }
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("shard 1 is broken", e.getMessage());
+        }
+        reader.close();
+        printOk("shard error is thrown to the consumer");
+    }
+
+    @Test
+    public void testNextRowOfShard() throws SQLException {
+        for (int prefetchRows : new int[] {0, 4}) {
+            StreamShardReader reader = new StreamShardReader(iterators(3, 20), prefetchRows);
+            for (int shard = 2; shard >= 0; shard--) {
+                for (long i = 0; i < 20; i++) {
+                    List<VtResultValue> row = reader.nextRow(shard);
+                    Assert.assertEquals((long) shard, row.get(0).getValue());
+                    Assert.assertEquals(i, row.get(1).getValue());
+                }
+                Assert.assertNull(reader.nextRow(shard));
+            }
+            reader.close();
+        }
+        printOk("rows of a shard are read in order");
+    }
+
+    @Test
+    public void testCloseStopsPrefetch() throws SQLException {
+        List<StreamIterator> iterators = iterators(4, 100000);
+        List<FakeStreamIterator> fakes = fakes(iterators);
+        StreamShardReader reader = new StreamShardReader(iterators, 16);
+        List<List<VtResultValue>> rows = new ArrayList<>();
+        Assert.assertTrue(reader.read(rows, 10) > 0);
+        reader.close();
+        for (FakeStreamIterator fake : fakes) {
+            Assert.assertTrue(fake.closed);
+            // a reader stops at its full queue instead of reading the whole shard
+            Assert.assertTrue(fake.next < 100);
+        }
+        printOk("close stops the prefetch readers");
+    }
+
+    private List<StreamIterator> iterators(int shardCount, int rowCount) {
+        List<StreamIterator> iterators = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            iterators.add(new FakeStreamIterator(shard, rowCount, null, null));
+        }
+        return iterators;
+    }
+
+    private List<FakeStreamIterator> fakes(List<StreamIterator> iterators) {
+        List<FakeStreamIterator> fakes = new ArrayList<>();
+        for (StreamIterator iterator : iterators) {
+            fakes.add((FakeStreamIterator) iterator);
+        }
+        return fakes;
+    }
+
+    private static class FakeStreamIterator extends StreamIterator {
+        private static final Query.Field[] FIELDS = {
+            Query.Field.newBuilder().setName("shard").setType(Query.Type.INT64).build(),
+            Query.Field.newBuilder().setName("id").setType(Query.Type.INT64).build()};
+
+        private final int shard;
+
+        private final int rowCount;
+
+        private final CountDownLatch latch;
+
+        private final SQLException exception;
+
+        private volatile int next = 0;
+
+        private volatile boolean closed = false;
+
+        FakeStreamIterator(int shard, int rowCount, CountDownLatch latch, SQLException exception) {
+            super(null, null);
+            this.shard = shard;
+            this.rowCount = rowCount;
+            this.latch = latch;
+            this.exception = exception;
+        }
+
+        @Override
+        public List<VtResultValue> nextRow() throws SQLException {
+            if (latch != null) {
+                try {
+                    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+            }
+            if (next >= rowCount) {
+                if (exception != null) {
+                    throw exception;
+                }
+                return null;
+            }
+            List<VtResultValue> row = new ArrayList<>(2);
+            row.add(new VtResultValue((long) shard, Query.Type.INT64));
+            row.add(new VtResultValue((long) next++, Query.Type.INT64));
+            return row;
+        }
+
+        @Override
+        public Query.Field[] getFields() {
+            return next == 0 ? null : FIELDS;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
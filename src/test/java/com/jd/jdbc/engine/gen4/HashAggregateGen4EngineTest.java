@@ -0,0 +1,150 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.engine.gen4;
+
+import com.google.common.collect.Lists;
+import com.jd.BaseTest;
+import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.engine.FakePrimitive;
+import com.jd.jdbc.engine.util.TestResult;
+import com.jd.jdbc.engine.vcursor.FakeVcursorUtil;
+import com.jd.jdbc.engine.vcursor.NoopVCursor;
+import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import io.vitess.proto.Query;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashAggregateGen4EngineTest extends BaseTest {
+
+    @Test
+    public void testHashAggregateExecute() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("col|count(*)", "varbinary|decimal");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "c|3", "a|1", "b|2", "a|1", "null|5", "c|4", "null|1");
+
+        VtResultSet result = execute(fields, resultSet, 0, 0);
+
+        // groups are returned in the order their first row was read
+        VtResultSet wantResult = TestResult.makeTestResult(fields, "c|7", "a|2", "b|2", "null|6");
+        Assert.assertEquals(wantResult, result);
+        printOk("unsorted rows are aggregated by their keys");
+    }
+
+    @Test
+    public void testHashAggregateSortedInput() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("col|count(*)", "int64|decimal");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "1|1", "1|1", "2|2", "3|3", "3|4");
+
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
+        OrderedAggregateGen4Engine oa = new OrderedAggregateGen4Engine(false, Lists.newArrayList(sum(1)), false, 0, Lists.newArrayList(groupBy(0)), null, fp);
+        VtResultSet ordered = (VtResultSet) oa.execute(VtContext.background(), new NoopVCursor(), null, false).getVtRowList();
+
+        Assert.assertEquals(ordered, execute(fields, TestResult.makeTestResult(fields, "1|1", "1|1", "2|2", "3|3", "3|4"), 0, 0));
+        printOk("sorted rows are aggregated as the ordered aggregation does");
+    }
+
+    @Test
+    public void testHashAggregateTruncate() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("col|count(*)|weight_string(col)", "varchar|decimal|varbinary");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "a|1|A", "b|2|B", "A|1|A", "C|3|C", "c|4|C");
+
+        VtResultSet result = execute(fields, resultSet, 2, 2);
+
+        Query.Field[] wantFields = TestResult.makeTestFields("col|count(*)", "varchar|decimal");
+        VtResultSet wantResult = TestResult.makeTestResult(wantFields, "a|2", "b|2", "C|7");
+        Assert.assertEquals(wantResult, result);
+        printOk("grouping keys that are not projected are truncated");
+    }
+
+    @Test
+    public void testHashAggregateManyGroups() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("a|b|count(*)", "int64|varchar|decimal");
+        int groups = FakeVcursorUtil.testMaxMemoryRows;
+        List<String> rows = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < groups; i++) {
+                rows.add(i + "|" + (i % 3) + "|1");
+            }
+        }
+        VtResultSet resultSet = TestResult.makeTestResult(fields, rows.toArray(new String[0]));
+
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
+        HashAggregateGen4Engine ha = new HashAggregateGen4Engine(false, Lists.newArrayList(sum(2)), false, 0, Lists.newArrayList(groupBy(0), groupBy(1)), null, fp);
+        VtResultSet result = (VtResultSet) ha.execute(VtContext.background(), new NoopVCursor(), null, false).getVtRowList();
+
+        Assert.assertEquals(groups, result.getRows().size());
+        for (int i = 0; i < groups; i++) {
+            List<VtResultValue> row = result.getRows().get(i);
+            Assert.assertEquals(String.valueOf(i), row.get(0).toString());
+            Assert.assertEquals("3", row.get(2).toString());
+        }
+        printOk(groups + " groups are aggregated");
+    }
+
+    @Test
+    public void testHashAggregateMaxMemoryRows() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("col|count(*)", "int64|decimal");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "1|1", "2|1", "1|1", "3|1");
+        int saveMax = FakeVcursorUtil.testMaxMemoryRows;
+        FakeVcursorUtil.testMaxMemoryRows = 2;
+        try {
+            execute(fields, resultSet, 0, 0);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("in-memory row count exceeded allowed limit of 2", e.getMessage());
+        } finally {
+            FakeVcursorUtil.testMaxMemoryRows = saveMax;
+        }
+        printOk("the groups are capped by max memory rows");
+    }
+
+    @Test
+    public void testHashAggregateDistinctFail() {
+        Query.Field[] fields = TestResult.makeTestFields("col|count(distinct c)", "int64|int64");
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(TestResult.makeTestResult(fields, "1|1")));
+        AbstractAggregateGen4.AggregateParams aggr = new AbstractAggregateGen4.AggregateParams(Engine.AggregateOpcodeG4.AggregateCountDistinct, 1);
+        HashAggregateGen4Engine ha = new HashAggregateGen4Engine(true, Lists.newArrayList(aggr), false, 0, Lists.newArrayList(groupBy(0)), null, fp);
+        try {
+            ha.execute(VtContext.background(), new NoopVCursor(), null, false);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("BUG: distinct aggregate cannot be hash aggregated: count_distinct", e.getMessage());
+        }
+        printOk("distinct aggregates are refused");
+    }
+
+    private VtResultSet execute(Query.Field[] fields, VtResultSet resultSet, int keyCol, int truncateColumnCount) throws SQLException {
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
+        HashAggregateGen4Engine ha = new HashAggregateGen4Engine(false, Lists.newArrayList(sum(1)), false, truncateColumnCount, Lists.newArrayList(groupBy(keyCol)), null, fp);
+        return (VtResultSet) ha.execute(VtContext.background(), new NoopVCursor(), null, false).getVtRowList();
+    }
+
+    private static AbstractAggregateGen4.AggregateParams sum(int col) {
+        return new AbstractAggregateGen4.AggregateParams(Engine.AggregateOpcodeG4.AggregateSum, col);
+    }
+
+    private static GroupByParams groupBy(int keyCol) {
+        GroupByParams groupByParams = new GroupByParams();
+        groupByParams.setKeyCol(keyCol);
+        return groupByParams;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.engine.gen4;
+
+import com.google.common.collect.Lists;
+import com.jd.BaseTest;
+import com.jd.jdbc.IExecute;
+import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.engine.FakePrimitive;
+import com.jd.jdbc.engine.util.TestResult;
+import com.jd.jdbc.engine.vcursor.FakeVcursorUtil;
+import com.jd.jdbc.engine.vcursor.NoopVCursor;
+import com.jd.jdbc.sqltypes.SqlTypes;
+import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import io.vitess.proto.Query;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HashJoinGen4EngineTest extends BaseTest {
+
+    private static final Query.Field[] LEFT_FIELDS = TestResult.makeTestFields("col1|col2", "int64|varchar");
+
+    // the right side returns the column compared with the join var last
+    private static final Query.Field[] RIGHT_FIELDS = TestResult.makeTestFields("col4|col5|col1", "int64|varchar|int64");
+
+    private static final Query.Field[] RESULT_FIELDS = TestResult.makeTestFields("col1|col2|col4|col5", "int64|varchar|int64|varchar");
+
+    @BeforeClass
+    public static void initPool() {
+        VtQueryExecutorService.initialize(null, null, null, null);
+    }
+
+    @Test
+    public void testBuildRight() throws SQLException {
+        VtResultSet left = TestResult.makeTestResult(LEFT_FIELDS, "1|a", "2|b", "1|c", "null|d", "3|e");
+        VtResultSet right = TestResult.makeTestResult(RIGHT_FIELDS, "6|f|3", "4|d|1", "5|e|1");
+
+        VtResultSet expected = TestResult.makeTestResult(RESULT_FIELDS, "1|a|4|d", "1|a|5|e", "1|c|4|d", "1|c|5|e", "3|e|6|f");
+        Assert.assertEquals(expected, execute(Engine.JoinOpcode.NormalJoin, left, right));
+
+        expected = TestResult.makeTestResult(RESULT_FIELDS, "1|a|4|d", "1|a|5|e", "2|b|null|null", "1|c|4|d", "1|c|5|e", "null|d|null|null", "3|e|6|f");
+        Assert.assertEquals(expected, execute(Engine.JoinOpcode.LeftJoin, left, right));
+        printOk("hash join on the right rows");
+    }
+
+    @Test
+    public void testBuildLeft() throws SQLException {
+        VtResultSet left = TestResult.makeTestResult(LEFT_FIELDS, "1|a", "2|b", "3|c");
+        VtResultSet right = TestResult.makeTestResult(RIGHT_FIELDS, "6|f|3", "4|d|1", "7|g|null", "8|h|9", "5|e|1", "9|i|3");
+
+        // the rows are in left row order as if every left row had executed the right side
+        VtResultSet expected = TestResult.makeTestResult(RESULT_FIELDS, "1|a|4|d", "1|a|5|e", "3|c|6|f", "3|c|9|i");
+        Assert.assertEquals(expected, execute(Engine.JoinOpcode.NormalJoin, left, right));
+
+        expected = TestResult.makeTestResult(RESULT_FIELDS, "1|a|4|d", "1|a|5|e", "2|b|null|null", "3|c|6|f", "3|c|9|i");
+        Assert.assertEquals(expected, execute(Engine.JoinOpcode.LeftJoin, left, right));
+        printOk("hash join on the left rows");
+    }
+
+    @Test
+    public void testNotIntegerFallsBackToNestedLoop() throws SQLException {
+        Query.Field[] leftFields = TestResult.makeTestFields("col1|col2", "varchar|varchar");
+        FakePrimitive leftPrim = new FakePrimitive(Lists.newArrayList(TestResult.makeTestResult(leftFields, "a|x", "b|y")));
+        FakePrimitive hashPrim = new FakePrimitive(Lists.newArrayList(TestResult.makeTestResult(RIGHT_FIELDS)));
+        List<VtResultSet> rightResults = new ArrayList<>();
+        rightResults.add(TestResult.makeTestResult(RIGHT_FIELDS, "4|d|1"));
+        rightResults.add(TestResult.makeTestResult(RIGHT_FIELDS));
+        FakePrimitive rightPrim = new FakePrimitive(rightResults);
+
+        HashJoinGen4Engine join = join(Engine.JoinOpcode.NormalJoin, leftPrim, hashPrim);
+        join.setRight(rightPrim);
+        IExecute.ExecuteMultiShardResponse result = join.execute(VtContext.background(), new NoopVCursor(), new HashMap<>(), true);
+        rightPrim.expectLog(Lists.newArrayList("Execute bv: type:VARCHAR value:\"a\" true", "Execute bv: type:VARCHAR value:\"b\" false"));
+        VtResultSet expected = TestResult.makeTestResult(TestResult.makeTestFields("col1|col2|col4|col5", "varchar|varchar|int64|varchar"), "a|x|4|d");
+        Assert.assertEquals(expected, result.getVtRowList());
+        printOk("string join values are joined by the nested loop");
+    }
+
+    @Test
+    public void testMaxMemoryRows() throws SQLException {
+        VtResultSet left = TestResult.makeTestResult(LEFT_FIELDS, "1|a", "1|b", "1|c");
+        VtResultSet right = TestResult.makeTestResult(RIGHT_FIELDS, "4|d|1", "5|e|1", "6|f|1");
+        int saveMax = FakeVcursorUtil.testMaxMemoryRows;
+        FakeVcursorUtil.testMaxMemoryRows = 5;
+        try {
+            execute(Engine.JoinOpcode.NormalJoin, left, right);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("in-memory row count exceeded allowed limit of 5", e.getMessage());
+        } finally {
+            FakeVcursorUtil.testMaxMemoryRows = saveMax;
+        }
+        printOk("the joined rows are capped by max memory rows");
+    }
+
+    @Test
+    public void testLongKeyIndex() {
+        int rows = 10000;
+        List<List<VtResultValue>> values = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            values.add(Lists.newArrayList(new VtResultValue((long) i * 1024, Query.Type.INT64),
+                new VtResultValue((long) i % 7, Query.Type.INT64)));
+        }
+        long[][] keys = HashJoinGen4Engine.keysOf(values, new int[] {0, 1});
+        Assert.assertNotNull(keys);
+        HashJoinGen4Engine.LongKeyIndex index = new HashJoinGen4Engine.LongKeyIndex(keys, rows);
+        for (int i = 0; i < rows; i++) {
+            Assert.assertEquals(i, index.first(keys, i));
+            Assert.assertEquals(-1, index.next(i, keys, i));
+        }
+        printOk("every multi column key finds its own row");
+    }
+
+    private static VtResultSet execute(Engine.JoinOpcode opcode, VtResultSet left, VtResultSet right) throws SQLException {
+        FakePrimitive leftPrim = new FakePrimitive(Lists.newArrayList(left));
+        FakePrimitive hashPrim = new FakePrimitive(Lists.newArrayList(right));
+        HashJoinGen4Engine join = join(opcode, leftPrim, hashPrim);
+        join.setRight(new FakePrimitive(new SQLException("the nested loop is not used")));
+        Map<String, BindVariable> bv = new HashMap<>();
+        bv.put("a", SqlTypes.int64BindVariable(10L));
+        IExecute.ExecuteMultiShardResponse result = join.execute(VtContext.background(), new NoopVCursor(), bv, true);
+        leftPrim.expectLog(Lists.newArrayList("Execute a: type:INT64 value:\"10\" true"));
+        hashPrim.expectLog(Lists.newArrayList("Execute a: type:INT64 value:\"10\" true"));
+        return (VtResultSet) result.getVtRowList();
+    }
+
+    private static HashJoinGen4Engine join(Engine.JoinOpcode opcode, FakePrimitive leftPrim, FakePrimitive hashPrim) {
+        Map<String, Integer> vars = new HashMap<>();
+        vars.put("bv", 0);
+        HashJoinGen4Engine join = new HashJoinGen4Engine(opcode, vars, hashPrim, Lists.newArrayList("bv"), 2);
+        join.setLeft(leftPrim);
+        join.setCols(Lists.newArrayList(-1, -2, 1, 2));
+        return join;
+    }
+}
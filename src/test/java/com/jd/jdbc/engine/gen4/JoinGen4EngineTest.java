@@ -24,6 +24,7 @@ import com.jd.jdbc.IExecute;
 import com.jd.jdbc.context.VtContext;
 import com.jd.jdbc.engine.Engine;
 import com.jd.jdbc.engine.FakePrimitive;
+import com.jd.jdbc.engine.JoinBatch;
 import com.jd.jdbc.engine.util.TestResult;
 import com.jd.jdbc.engine.vcursor.FakeVcursorUtil;
 import com.jd.jdbc.engine.vcursor.NoopVCursor;
@@ -95,6 +96,72 @@ public class JoinGen4EngineTest extends BaseTest {
     }
 
 
+    @Test
+    public void testJoinExecuteBatched() throws SQLException {
+        Query.Field[] leftField = TestResult.makeTestFields("col1|col2|col3", "int64|varchar|varchar");
+        VtResultSet leftResultSet = TestResult.makeTestResult(leftField, "1|a|aa", "2|b|bb", "1|c|cc", "null|d|dd", "3|e|ee");
+        FakePrimitive leftPrim = new FakePrimitive(Lists.newArrayList(leftResultSet));
+        // the batched right side returns the column compared with the join var last
+        Query.Field[] rightField = TestResult.makeTestFields("col4|col5|col1", "int64|varchar|int64");
+        List<VtResultSet> rightResultSet = new ArrayList<>();
+        rightResultSet.add(TestResult.makeTestResult(rightField, "4|d|1", "5|e|1"));
+        rightResultSet.add(TestResult.makeTestResult(rightField, "6|f|3"));
+        FakePrimitive batchPrim = new FakePrimitive(rightResultSet);
+        FakePrimitive rightPrim = new FakePrimitive(new ArrayList<>());
+        Map<String, BindVariable> bv = new HashMap<>();
+        bv.put("a", SqlTypes.int64BindVariable(10L));
+
+        Map<String, Integer> vars = new HashMap<>();
+        vars.put("bv", 0);
+        JoinGen4Engine jn = new JoinGen4Engine(Engine.JoinOpcode.LeftJoin, vars);
+        jn.setLeft(leftPrim);
+        jn.setRight(rightPrim);
+        jn.setBatch(new JoinBatch(batchPrim, Lists.newArrayList("bv"), 2));
+        jn.setCols(Lists.newArrayList(-1, -2, 1, 2));
+        NoopVCursor vcursor = new NoopVCursor() {
+            @Override
+            public int getJoinBatchSize() {
+                return 3;
+            }
+        };
+        IExecute.ExecuteMultiShardResponse result = jn.execute(VtContext.background(), vcursor, bv, true);
+        leftPrim.expectLog(Lists.newArrayList("Execute a: type:INT64 value:\"10\" true"));
+        batchPrim.expectLog(Lists.newArrayList("Execute a: type:INT64 value:\"10\" bv: type:TUPLE, values:[type:INT64 value:\"1\" type:INT64 value:\"2\"] true",
+            "Execute a: type:INT64 value:\"10\" bv: type:TUPLE, values:[type:INT64 value:\"3\"] false"));
+        rightPrim.expectLog(new ArrayList<>());
+
+        Query.Field[] expectResultField = TestResult.makeTestFields("col1|col2|col4|col5", "int64|varchar|int64|varchar");
+        VtResultSet expectResultSet = TestResult.makeTestResult(expectResultField, "1|a|4|d",
+            "1|a|5|e",
+            "2|b|null|null",
+            "1|c|4|d",
+            "1|c|5|e",
+            "null|d|null|null",
+            "3|e|6|f");
+        Assert.assertEquals(printFail(" testJoinExecuteBatched  leftjoin is FAIL"), expectResultSet, result.getVtRowList());
+
+        // join values that are not integers are bound one row at a time
+        leftPrim.rewind();
+        batchPrim.rewind();
+        rightResultSet = new ArrayList<>();
+        rightResultSet.add(TestResult.makeTestResult(rightField, "4|d|1"));
+        for (int i = 0; i < 4; i++) {
+            rightResultSet.add(TestResult.makeTestResult(rightField));
+        }
+        rightPrim = new FakePrimitive(rightResultSet);
+        vars.put("bv", 1);
+        jn.setRight(rightPrim);
+        jn.setOpcode(Engine.JoinOpcode.NormalJoin);
+        result = jn.execute(VtContext.background(), vcursor, bv, false);
+        batchPrim.expectLog(new ArrayList<>());
+        rightPrim.expectLog(Lists.newArrayList("Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"a\" false",
+            "Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"b\" false",
+            "Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"c\" false",
+            "Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"d\" false",
+            "Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"e\" false"));
+        Assert.assertEquals(1, ((VtResultSet) result.getVtRowList()).getRows().size());
+    }
+
     @Test
     public void testJoinExecuteMaxMemoryRows() throws SQLException {
         int saveMax = FakeVcursorUtil.testMaxMemoryRows;
@@ -223,8 +290,62 @@ public class JoinGen4EngineTest extends BaseTest {
         }
     }
 
-  /*  @Test
-    public void testJoinStreamExecute() {}*/
+    @Test
+    public void testJoinStreamExecute() throws SQLException {
+        Query.Field[] leftField = TestResult.makeTestFields("col1|col2|col3", "int64|varchar|varchar");
+        VtResultSet leftResultSet = TestResult.makeTestResult(leftField, "1|a|aa", "2|b|bb", "3|c|cc");
+        FakePrimitive leftPrim = new FakePrimitive(Lists.newArrayList(leftResultSet));
+        Query.Field[] rightField = TestResult.makeTestFields("col4|col5|col6", "int64|varchar|varchar");
+        List<VtResultSet> rightResultSet = new ArrayList<>();
+        rightResultSet.add(TestResult.makeTestResult(rightField, "4|d|dd"));
+        rightResultSet.add(TestResult.makeTestResult(rightField));
+        rightResultSet.add(TestResult.makeTestResult(rightField, "5|e|ee", "6|f|ff", "7|g|gg"));
+        FakePrimitive rightPrim = new FakePrimitive(rightResultSet);
+        Map<String, BindVariable> bv = new HashMap<>();
+        bv.put("a", SqlTypes.int64BindVariable(10L));
+        // Normal join
+        Map<String, Integer> vars = new HashMap<>();
+        vars.put("bv", 1);
+        JoinGen4Engine jn = new JoinGen4Engine(Engine.JoinOpcode.NormalJoin, vars);
+        jn.setLeft(leftPrim);
+        jn.setRight(rightPrim);
+        jn.setCols(Lists.newArrayList(-1, -2, 1, 2));
+        VtResultSet result = TestResult.readStream(jn.streamExecute(VtContext.background(), new NoopVCursor(), bv, true));
+        // the left side streams two rows at a time, the right side is executed for every left row
+        leftPrim.expectLog(Lists.newArrayList("StreamExecute a: type:INT64 value:\"10\" true"));
+        rightPrim.expectLog(Lists.newArrayList("Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"a\" true",
+            "Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"b\" false",
+            "Execute a: type:INT64 value:\"10\" bv: type:VARCHAR value:\"c\" false"));
+
+        Query.Field[] expectResultField = TestResult.makeTestFields("col1|col2|col4|col5", "int64|varchar|int64|varchar");
+        VtResultSet expectResultSet = TestResult.makeTestResult(expectResultField, "1|a|4|d",
+            "3|c|5|e",
+            "3|c|6|f",
+            "3|c|7|g");
+        Assert.assertEquals(printFail(" testJoinStreamExecute  Normaljoin is FAIL"), expectResultSet, result);
+
+        // Left Join
+        leftPrim.rewind();
+        rightPrim.rewind();
+        jn.setOpcode(Engine.JoinOpcode.LeftJoin);
+        result = TestResult.readStream(jn.streamExecute(VtContext.background(), new NoopVCursor(), bv, true));
+        expectResultSet = TestResult.makeTestResult(expectResultField, "1|a|4|d",
+            "2|b|null|null",
+            "3|c|5|e",
+            "3|c|6|f",
+            "3|c|7|g");
+        Assert.assertEquals(printFail(" testJoinStreamExecute  leftjoin is FAIL"), expectResultSet, result);
+
+        // No left rows
+        leftPrim = new FakePrimitive(Lists.newArrayList(TestResult.makeTestResult(leftField)));
+        rightPrim = new FakePrimitive(Lists.newArrayList(TestResult.makeTestResult(rightField)));
+        jn.setLeft(leftPrim);
+        jn.setRight(rightPrim);
+        result = TestResult.readStream(jn.streamExecute(VtContext.background(), new NoopVCursor(), null, true));
+        rightPrim.expectLog(Lists.newArrayList("GetFields bv: ",
+            "Execute bv:  true"));
+        Assert.assertEquals(printFail(" testJoinStreamExecute  noresult is FAIL"), TestResult.makeTestResult(expectResultField), result);
+    }
 
     @Test
     public void testGetFields() throws SQLException {
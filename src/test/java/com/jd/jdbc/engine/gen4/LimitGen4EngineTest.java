@@ -183,13 +183,49 @@ public class LimitGen4EngineTest {
     }
 
     @Test
-    public void testLimitStreamExecute(){
-        // todo
+    public void testLimitStreamExecute() throws SQLException {
+        Map<String, BindVariable> bindVariableMap = new LinkedHashMap<String, BindVariable>();
+        Query.Field[] fields = TestResult.makeTestFields("col1|col2", "varchar|int64");
+        VtResultSet inputResult = TestResult.makeTestResult(fields, "a|1", "b|2", "c|3");
+
+        // Test with limit smaller than input.
+        FakePrimitive fp = new FakePrimitive(Collections.singletonList(inputResult));
+        LimitGen4Engine l = new LimitGen4Engine(fp, new EvalEngine.Literal(new EvalResult(BigInteger.valueOf(2), Query.Type.UINT64)), null);
+        VtResultSet resultSet = TestResult.readStream(l.streamExecute(VtContext.background(), null, bindVariableMap, true));
+        Assert.assertEquals(TestResult.makeTestResult(fields, "a|1", "b|2"), resultSet);
+
+        // Test with limit equal to input.
+        fp.rewind();
+        l = new LimitGen4Engine(fp, new EvalEngine.Literal(new EvalResult(BigInteger.valueOf(3), Query.Type.UINT64)), null);
+        resultSet = TestResult.readStream(l.streamExecute(VtContext.background(), null, bindVariableMap, true));
+        Assert.assertEquals(TestResult.makeTestResult(fields, "a|1", "b|2", "c|3"), resultSet);
+
+        // Test with limit higher than input.
+        fp.rewind();
+        l = new LimitGen4Engine(fp, new EvalEngine.Literal(new EvalResult(BigInteger.valueOf(4), Query.Type.UINT64)), null);
+        resultSet = TestResult.readStream(l.streamExecute(VtContext.background(), null, bindVariableMap, true));
+        Assert.assertEquals(TestResult.makeTestResult(fields, "a|1", "b|2", "c|3"), resultSet);
     }
 
     @Test
-    public void testOffsetStreamExecute(){
-        // todo
+    public void testOffsetStreamExecute() throws SQLException {
+        Map<String, BindVariable> bindVariableMap = new LinkedHashMap<String, BindVariable>();
+        Query.Field[] fields = TestResult.makeTestFields("col1|col2", "varchar|int64");
+        VtResultSet inputResult = TestResult.makeTestResult(fields, "a|1", "b|2", "c|3", "d|4", "e|5");
+
+        // Test with offset inside the first batch.
+        FakePrimitive fp = new FakePrimitive(Collections.singletonList(inputResult));
+        LimitGen4Engine l = new LimitGen4Engine(fp, new EvalEngine.Literal(new EvalResult(BigInteger.valueOf(2), Query.Type.UINT64)),
+            new EvalEngine.Literal(new EvalResult(BigInteger.valueOf(1), Query.Type.UINT64)));
+        VtResultSet resultSet = TestResult.readStream(l.streamExecute(VtContext.background(), null, bindVariableMap, true));
+        Assert.assertEquals(TestResult.makeTestResult(fields, "b|2", "c|3"), resultSet);
+
+        // Test with offset across batches.
+        fp.rewind();
+        l = new LimitGen4Engine(fp, new EvalEngine.Literal(new EvalResult(BigInteger.valueOf(10), Query.Type.UINT64)),
+            new EvalEngine.Literal(new EvalResult(BigInteger.valueOf(3), Query.Type.UINT64)));
+        resultSet = TestResult.readStream(l.streamExecute(VtContext.background(), null, bindVariableMap, true));
+        Assert.assertEquals(TestResult.makeTestResult(fields, "d|4", "e|5"), resultSet);
     }
 
     @Test
@@ -68,8 +68,19 @@ public class MemorySortGen4EngineTest extends BaseTest {
         Assert.assertEquals(wantResult, result);
     }
 
+    @Test
     public void testMemorySortStreamExecuteWeightString() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("c1|c2", "varchar|varbinary");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "a|1", "g|2", "a|1", "c|4", "c|3");
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
+
+        OrderByParamsGen4 orderByParamsGen4 = new OrderByParamsGen4(0, false, 1, null);
+        MemorySortGen4Engine ms = new MemorySortGen4Engine(Lists.newArrayList(orderByParamsGen4), fp);
+
+        VtResultSet result = TestResult.readStream(ms.streamExecute(VtContext.background(), new NoopVCursor(), null, true));
 
+        VtResultSet wantResult = TestResult.makeTestResult(fields, "a|1", "a|1", "g|2", "c|3", "c|4");
+        Assert.assertEquals(wantResult, result);
     }
 
     @Test
@@ -105,8 +116,29 @@ public class MemorySortGen4EngineTest extends BaseTest {
 
     }
 
+    @Test
     public void testMemorySortStreamExecute() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("c1|c2", "varbinary|decimal");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "a|1", "g|2", "a|1", "c|4", "c|3");
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
+
+        OrderByParamsGen4 orderByParamsGen4 = new OrderByParamsGen4(1, false, -1, null);
+        MemorySortGen4Engine ms = new MemorySortGen4Engine(Lists.newArrayList(orderByParamsGen4), fp);
+
+        VtResultSet result = TestResult.readStream(ms.streamExecute(VtContext.background(), new NoopVCursor(), null, true));
 
+        VtResultSet wantResult = TestResult.makeTestResult(fields, "a|1", "a|1", "g|2", "c|3", "c|4");
+        Assert.assertEquals(wantResult, result);
+
+        fp.rewind();
+        EvalEngine.BindVariable pv = new EvalEngine.BindVariable("__upper_limit");
+        ms.setUpperLimit(pv);
+
+        Map<String, BindVariable> bindVariableMap = new HashMap<>();
+        bindVariableMap.put("__upper_limit", SqlTypes.int64BindVariable(3L));
+        result = TestResult.readStream(ms.streamExecute(VtContext.background(), new NoopVCursor(), bindVariableMap, true));
+        wantResult = TestResult.makeTestResult(fields, "a|1", "a|1", "g|2");
+        Assert.assertEquals(wantResult, result);
     }
 
     @Test
@@ -135,8 +167,19 @@ public class MemorySortGen4EngineTest extends BaseTest {
         Assert.assertEquals(wantResult, result);
     }
 
+    @Test
     public void testMemorySortStreamExecuteTruncate() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("c1|c2|c3", "varbinary|decimal|int64");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "a|1|1", "g|2|1", "a|1|1", "c|4|1", "c|3|1");
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
 
+        OrderByParamsGen4 orderByParamsGen4 = new OrderByParamsGen4(1, false, -1, null);
+        MemorySortGen4Engine ms = new MemorySortGen4Engine(Lists.newArrayList(orderByParamsGen4), fp);
+        ms.setTruncateColumnCount(2);
+
+        VtResultSet result = TestResult.readStream(ms.streamExecute(VtContext.background(), new NoopVCursor(), null, true));
+        VtResultSet wantResult = TestResult.makeTestResult(new Query.Field[] {fields[0], fields[1]}, "a|1", "a|1", "g|2", "c|3", "c|4");
+        Assert.assertEquals(wantResult, result);
     }
 
     @Test
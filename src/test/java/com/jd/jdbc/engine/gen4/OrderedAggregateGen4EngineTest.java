@@ -77,12 +77,39 @@ public class OrderedAggregateGen4EngineTest extends BaseTest {
         Assert.assertEquals(wantResult, result);
     }
 
-    public void testOrderedAggregateStreamExecute() {
-        // todo
+    @Test
+    public void testOrderedAggregateStreamExecute() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("col|count(*)", "varbinary|decimal");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "a|1", "a|1", "b|2", "c|3", "c|4");
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
+
+        AbstractAggregateGen4.AggregateParams aggr = new AbstractAggregateGen4.AggregateParams(Engine.AggregateOpcodeG4.AggregateSum, 1);
+        GroupByParams groupByParams = new GroupByParams();
+        groupByParams.setKeyCol(0);
+        OrderedAggregateGen4Engine oa = new OrderedAggregateGen4Engine(false, Lists.newArrayList(aggr), false, 0, Lists.newArrayList(groupByParams), null, fp);
+
+        VtResultSet result = TestResult.readStream(oa.streamExecute(VtContext.background(), null, null, true));
+
+        VtResultSet wantResult = TestResult.makeTestResult(fields, "a|2", "b|2", "c|7");
+        Assert.assertEquals(wantResult, result);
     }
 
-    public void testOrderedAggregateStreamExecuteTruncate() {
-        // todo
+    @Test
+    public void testOrderedAggregateStreamExecuteTruncate() throws SQLException {
+        Query.Field[] fields = TestResult.makeTestFields("col|count(*)|weight_string(col)", "varchar|decimal|varbinary");
+        VtResultSet resultSet = TestResult.makeTestResult(fields, "a|1|A", "A|1|A", "b|2|B", "C|3|C", "c|4|C");
+        FakePrimitive fp = new FakePrimitive(Lists.newArrayList(resultSet));
+
+        AbstractAggregateGen4.AggregateParams aggr = new AbstractAggregateGen4.AggregateParams(Engine.AggregateOpcodeG4.AggregateSum, 1);
+        GroupByParams groupByParams = new GroupByParams();
+        groupByParams.setKeyCol(2);
+        OrderedAggregateGen4Engine oa = new OrderedAggregateGen4Engine(false, Lists.newArrayList(aggr), false, 2, Lists.newArrayList(groupByParams), null, fp);
+
+        VtResultSet result = TestResult.readStream(oa.streamExecute(VtContext.background(), null, null, true));
+
+        Query.Field[] wantFields = TestResult.makeTestFields("col|count(*)", "varchar|decimal");
+        VtResultSet wantResult = TestResult.makeTestResult(wantFields, "a|2", "b|2", "C|7");
+        Assert.assertEquals(wantResult, result);
     }
 
     @Test
@@ -0,0 +1,195 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.engine.sequence;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.engine.vcursor.NoopVCursor;
+import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.sqltypes.VtRowList;
+import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.srvtopo.ResolvedShard;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import io.vitess.proto.Query;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SequenceCacheTest extends BaseTest {
+
+    private static final String KEYSPACE = "commerce";
+
+    private static final String SEQUENCE_TABLE = "user_seq";
+
+    private final SequenceCache sequenceCache = new SequenceCache();
+
+    @BeforeClass
+    public static void initPool() {
+        VtQueryExecutorService.initialize(null, null, null, null);
+    }
+
+    @After
+    public void clear() {
+        SequenceCache.clear();
+    }
+
+    @Test
+    public void testContiguousRange() throws SQLException {
+        SequenceTableVCursor vCursor = new SequenceTableVCursor(10);
+        List<Long> sequences = sequenceCache.getSequences(vCursor, null, KEYSPACE, SEQUENCE_TABLE, 4);
+        Assert.assertEquals(expected(1, 4), sequences);
+
+        // the first segment is 1..10, the range spans it and the next one
+        sequences = sequenceCache.getSequences(vCursor, null, KEYSPACE, SEQUENCE_TABLE, 1000);
+        Assert.assertEquals(expected(5, 1000), sequences);
+        Assert.assertTrue(vCursor.reserved.get() >= 1004);
+        printOk("reserved " + vCursor.reserved.get() + " ids in " + vCursor.updates.get() + " updates");
+    }
+
+    @Test
+    public void testCacheMultipleGrows() throws SQLException, InterruptedException {
+        SequenceTableVCursor vCursor = new SequenceTableVCursor(10);
+        for (int i = 0; i < 2000; i++) {
+            Assert.assertEquals(i + 1, sequenceCache.nextValue(vCursor, null, KEYSPACE, SEQUENCE_TABLE));
+        }
+        // segments are consumed in far less than a minute, so each one doubles up to 64 times the cache
+        Assert.assertTrue(vCursor.updates.get() < 2000 / 10);
+        Assert.assertTrue(vCursor.sizes.contains(640L));
+        printOk("segment sizes: " + vCursor.sizes);
+    }
+
+    @Test
+    public void testPrefetchFailure() throws SQLException, InterruptedException {
+        SequenceTableVCursor vCursor = new SequenceTableVCursor(10);
+        vCursor.failDetached = true;
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i + 1, sequenceCache.nextValue(vCursor, null, KEYSPACE, SEQUENCE_TABLE));
+        }
+        Assert.assertTrue(vCursor.detachedCalls.get() > 0);
+        printOk("every segment was reserved again after its prefetch failed");
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws InterruptedException {
+        SequenceTableVCursor vCursor = new SequenceTableVCursor(100);
+        int threads = 32;
+        int loop = 500;
+        Set<Long> allocated = ConcurrentHashMap.newKeySet();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int count = t % 4 + 1;
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < loop; i++) {
+                        List<Long> sequences = sequenceCache.getSequences(vCursor, null, KEYSPACE, SEQUENCE_TABLE, count);
+                        for (Long sequence : sequences) {
+                            if (!allocated.add(sequence)) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(threads / 4 * loop * (1 + 2 + 3 + 4), allocated.size());
+        printOk("allocated " + allocated.size() + " unique ids in " + vCursor.updates.get() + " updates");
+    }
+
+    private static List<Long> expected(long first, int count) {
+        List<Long> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(first + i);
+        }
+        return values;
+    }
+
+    /**
+     * a sequence table with a single row, next_id starts at 0 like a new table.
+     */
+    private static class SequenceTableVCursor extends NoopVCursor {
+        private static final Pattern UPDATE = Pattern.compile("set next_id = (\\d+) where next_id =(\\d+)");
+
+        private final long cache;
+
+        private final AtomicInteger updates = new AtomicInteger();
+
+        private final AtomicInteger reserved = new AtomicInteger();
+
+        private final AtomicInteger detachedCalls = new AtomicInteger();
+
+        private final Set<Long> sizes = Collections.synchronizedSet(new HashSet<>());
+
+        private volatile boolean failDetached;
+
+        private long nextId;
+
+        SequenceTableVCursor(final long cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public synchronized VtRowList executeStandalone(String sql, Map<String, BindVariable> bindVars, ResolvedShard resolvedShard, boolean canAutocommit) {
+            if (sql.startsWith("select")) {
+                List<VtResultValue> row = new ArrayList<>();
+                row.add(new VtResultValue(nextId, Query.Type.INT64));
+                row.add(new VtResultValue(cache, Query.Type.INT64));
+                return new VtResultSet(0, Collections.singletonList(row));
+            }
+            Matcher matcher = UPDATE.matcher(sql);
+            Assert.assertTrue(sql, matcher.find());
+            long newNextId = Long.parseLong(matcher.group(1));
+            if (Long.parseLong(matcher.group(2)) != nextId) {
+                return new VtResultSet(null, 0);
+            }
+            long start = nextId == 0 ? 1 : nextId;
+            sizes.add(newNextId - start);
+            reserved.addAndGet((int) (newNextId - start));
+            updates.incrementAndGet();
+            nextId = newNextId;
+            return new VtResultSet(null, 1);
+        }
+
+        @Override
+        public VtRowList executeStandaloneDetached(String sql, Map<String, BindVariable> bindVars, ResolvedShard resolvedShard) throws SQLException {
+            detachedCalls.incrementAndGet();
+            if (failDetached) {
+                throw new SQLException("connection closed");
+            }
+            return executeStandalone(sql, bindVars, resolvedShard, false);
+        }
+    }
+}
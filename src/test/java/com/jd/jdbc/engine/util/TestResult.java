@@ -18,11 +18,13 @@ limitations under the License.
 
 package com.jd.jdbc.engine.util;
 
+import com.jd.jdbc.IExecute;
 import com.jd.jdbc.sqltypes.VtResultSet;
 import com.jd.jdbc.sqltypes.VtResultValue;
 import com.jd.jdbc.sqltypes.VtType;
 import static com.jd.jdbc.vitess.resultset.ResultSetUtil.convertValue;
 import io.vitess.proto.Query;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -94,6 +96,26 @@ public class TestResult {
         return res;
     }
 
+    /**
+     * ReadStream fetches the stream till its end and gathers all
+     * batches into one result, the fields are taken from the first batch.
+     */
+    public static VtResultSet readStream(IExecute.VtStream stream) throws SQLException {
+        VtResultSet res = new VtResultSet();
+        List<List<VtResultValue>> resRows = new ArrayList<>();
+        VtResultSet batch = (VtResultSet) stream.fetch(true);
+        res.setFields(batch.getFields());
+        while (batch.getRows() != null && !batch.getRows().isEmpty()) {
+            resRows.addAll(batch.getRows());
+            batch = (VtResultSet) stream.fetch(false);
+        }
+        stream.close();
+        if (!resRows.isEmpty()) {
+            res.setRows(resRows);
+        }
+        return res;
+    }
+
     public static String[] splitStr(String str) {
         return str.split("\\|");
     }
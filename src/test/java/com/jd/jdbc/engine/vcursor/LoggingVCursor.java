@@ -230,6 +230,11 @@ public class LoggingVCursor implements Vcursor {
         return null;
     }
 
+    @Override
+    public VtRowList executeStandaloneDetached(String sql, Map<String, BindVariable> bindVars, ResolvedShard resolvedShard) throws SQLException {
+        return null;
+    }
+
     @Override
     public Boolean getRollbackOnPartialExec() {
         return null;
@@ -245,6 +250,21 @@ public class LoggingVCursor implements Vcursor {
         return 0;
     }
 
+    @Override
+    public boolean getServerPrepareStatement() {
+        return false;
+    }
+
+    @Override
+    public int getJoinBatchSize() {
+        return 0;
+    }
+
+    @Override
+    public int getStreamPrefetchRows() {
+        return 0;
+    }
+
     private VtResultSet nextResult() throws SQLException {
         if (results == null || curResult >= results.size()) {
             if (resultErr != null) {
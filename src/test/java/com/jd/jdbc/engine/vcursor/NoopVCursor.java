@@ -83,6 +83,11 @@ public class NoopVCursor implements Vcursor {
         return null;
     }
 
+    @Override
+    public VtRowList executeStandaloneDetached(String sql, Map<String, BindVariable> bindVars, ResolvedShard resolvedShard) throws SQLException {
+        return null;
+    }
+
     @Override
     public Boolean getRollbackOnPartialExec() {
         return null;
@@ -97,4 +102,19 @@ public class NoopVCursor implements Vcursor {
     public int getMaxParallelNum() {
         return 0;
     }
+
+    @Override
+    public boolean getServerPrepareStatement() {
+        return false;
+    }
+
+    @Override
+    public int getJoinBatchSize() {
+        return 0;
+    }
+
+    @Override
+    public int getStreamPrefetchRows() {
+        return 0;
+    }
 }
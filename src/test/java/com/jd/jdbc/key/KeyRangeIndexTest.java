@@ -0,0 +1,101 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.key;
+
+import com.google.protobuf.ByteString;
+import com.jd.BaseTest;
+import com.jd.jdbc.common.Hex;
+import io.vitess.proto.Topodata;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyRangeIndexTest extends BaseTest {
+
+    @Test
+    public void testSameAsLinearScan() throws SQLException {
+        Random random = new Random(7L);
+        for (int shardCount : new int[] {1, 2, 4, 16, 256}) {
+            List<Topodata.ShardReference> shardReferences = buildShards(shardCount);
+            Collections.shuffle(shardReferences, random);
+            KeyRangeIndex keyRangeIndex = new KeyRangeIndex(shardReferences);
+            for (int i = 0; i < 10000; i++) {
+                byte[] keyspaceId = randomKeyspaceId(random);
+                Assert.assertEquals(DestinationKeyspaceID.getShardForKeyspaceId(shardReferences, keyspaceId),
+                    DestinationKeyspaceID.getShardForKeyspaceId(keyRangeIndex, keyspaceId));
+            }
+        }
+    }
+
+    @Test
+    public void testGapAndOverlap() {
+        List<Topodata.ShardReference> gap = new ArrayList<>();
+        gap.add(shard(new byte[0], new byte[] {0x40}));
+        gap.add(shard(new byte[] {(byte) 0x80}, new byte[0]));
+        KeyRangeIndex gapIndex = new KeyRangeIndex(gap);
+        Assert.assertEquals(0, gapIndex.indexOf(new byte[] {0x10}));
+        Assert.assertEquals(-1, gapIndex.indexOf(new byte[] {0x50}));
+        Assert.assertEquals(1, gapIndex.indexOf(new byte[] {(byte) 0x90}));
+
+        List<Topodata.ShardReference> overlap = new ArrayList<>();
+        overlap.add(shard(new byte[] {0x40}, new byte[0]));
+        overlap.add(shard(new byte[0], new byte[0]));
+        KeyRangeIndex overlapIndex = new KeyRangeIndex(overlap);
+        Assert.assertEquals(1, overlapIndex.indexOf(new byte[] {0x10}));
+        Assert.assertEquals(0, overlapIndex.indexOf(new byte[] {0x50}));
+    }
+
+    @Test
+    public void testShardBoundaries() {
+        KeyRangeIndex keyRangeIndex = new KeyRangeIndex(buildShards(256));
+        for (int i = 0; i < 256; i++) {
+            // the first and the last keyspace id of every shard
+            Assert.assertEquals(i, keyRangeIndex.indexOf(new byte[] {(byte) i}));
+            Assert.assertEquals(i, keyRangeIndex.indexOf(new byte[] {(byte) i, -1, -1, -1, -1, -1, -1, -1}));
+        }
+    }
+
+    private static List<Topodata.ShardReference> buildShards(int shardCount) {
+        List<Topodata.ShardReference> shardReferences = new ArrayList<>(shardCount);
+        if (shardCount == 1) {
+            shardReferences.add(Topodata.ShardReference.newBuilder().setName("0").build());
+            return shardReferences;
+        }
+        int width = 256 / shardCount;
+        for (int i = 0; i < shardCount; i++) {
+            byte[] start = i == 0 ? new byte[0] : new byte[] {(byte) (i * width)};
+            byte[] end = i == shardCount - 1 ? new byte[0] : new byte[] {(byte) ((i + 1) * width)};
+            shardReferences.add(shard(start, end));
+        }
+        return shardReferences;
+    }
+
+    private static byte[] randomKeyspaceId(Random random) {
+        byte[] keyspaceId = new byte[8];
+        random.nextBytes(keyspaceId);
+        return keyspaceId;
+    }
+
+    private static Topodata.ShardReference shard(byte[] start, byte[] end) {
+        Topodata.KeyRange keyRange = Topodata.KeyRange.newBuilder().setStart(ByteString.copyFrom(start)).setEnd(ByteString.copyFrom(end)).build();
+        return Topodata.ShardReference.newBuilder().setName(Hex.encodeHexString(start) + "-" + Hex.encodeHexString(end)).setKeyRange(keyRange).build();
+    }
+}
@@ -18,7 +18,15 @@ limitations under the License.
 
 package com.jd.jdbc.planbuilder;
 
+import com.jd.jdbc.engine.LimitEngine;
+import com.jd.jdbc.engine.OrderedAggregateEngine;
+import com.jd.jdbc.engine.PrimitiveEngine;
+import com.jd.jdbc.engine.RouteEngine;
+import com.jd.jdbc.engine.gen4.AbstractAggregateGen4;
+import com.jd.jdbc.engine.gen4.LimitGen4Engine;
+import com.jd.jdbc.engine.gen4.RouteGen4Engine;
 import java.io.IOException;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class Gen4PlanTest extends PlanTest {
@@ -36,4 +44,44 @@ public class Gen4PlanTest extends PlanTest {
         g4AssertTestFile("src/test/resources/plan/from_cases.txt", vm, 0);
         g4AssertTestFile("src/test/resources/plan/memory_sort_cases.txt", vm, 0);
     }
+
+    @Test
+    public void testLimitMergeRoute() throws Exception {
+        for (boolean v3 : new boolean[] {true, false}) {
+            // the limit reads the route directly, the merge of the shard rows stops at the limit
+            PrimitiveEngine limit = build("select id from user order by id limit 10", vm, v3).getPrimitive();
+            Assert.assertTrue(isLimitMerge(input(limit)));
+
+            // the route is read by the aggregate under the limit, all shard rows of a group are needed
+            PrimitiveEngine grouped = build("select col, count(*) from user group by col limit 10", vm, v3).getPrimitive();
+            PrimitiveEngine aggregate = input(grouped);
+            Assert.assertTrue(aggregate instanceof OrderedAggregateEngine || aggregate instanceof AbstractAggregateGen4);
+            Assert.assertFalse(isLimitMerge(input(aggregate)));
+        }
+        printOk("only a route read directly by a limit merges up to the limit");
+    }
+
+    private static PrimitiveEngine input(PrimitiveEngine primitive) {
+        if (primitive instanceof LimitEngine) {
+            return ((LimitEngine) primitive).getInput();
+        }
+        if (primitive instanceof LimitGen4Engine) {
+            return ((LimitGen4Engine) primitive).getInput();
+        }
+        if (primitive instanceof OrderedAggregateEngine) {
+            return ((OrderedAggregateEngine) primitive).getInput();
+        }
+        if (primitive instanceof AbstractAggregateGen4) {
+            return ((AbstractAggregateGen4) primitive).getInput();
+        }
+        throw new AssertionError("unexpected primitive " + primitive.getClass().getSimpleName());
+    }
+
+    private static boolean isLimitMerge(PrimitiveEngine route) {
+        if (route instanceof RouteEngine) {
+            return ((RouteEngine) route).isLimitMerge();
+        }
+        Assert.assertTrue(route instanceof RouteGen4Engine);
+        return ((RouteGen4Engine) route).isLimitMerge();
+    }
 }
@@ -0,0 +1,74 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.planbuilder;
+
+import com.jd.jdbc.VSchemaManager;
+import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.engine.JoinBatch;
+import com.jd.jdbc.engine.JoinEngine;
+import com.jd.jdbc.engine.RouteEngine;
+import com.jd.jdbc.sqlparser.SQLUtils;
+import java.io.IOException;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JoinBatchQueryTest extends AbstractPlanTest {
+
+    private VSchemaManager vm = null;
+
+    @Before
+    public void init() throws IOException {
+        vm = loadSchema("src/test/resources/plan/plan_schema.json");
+    }
+
+    @Test
+    public void testRoutedByJoinVar() throws Exception {
+        JoinBatch batch = joinBatch("select 1 from user u join user_extra ue on ue.id = u.id join music m on m.user_id = ue.user_id");
+        RouteEngine route = (RouteEngine) batch.getRight();
+        Assert.assertEquals(Engine.RouteOpcode.SelectIN, route.getRouteOpcode());
+        Assert.assertEquals("ue_user_id", route.getVtPlanValueList().get(0).getListKey());
+        Assert.assertEquals("select 1, m.user_id from music as m where m.user_id in (::__vals)", toSql(route));
+        Assert.assertEquals(Collections.singletonList("ue_user_id"), batch.getVars());
+        Assert.assertEquals(1, batch.getKeyOffset());
+    }
+
+    @Test
+    public void testScatter() throws Exception {
+        JoinBatch batch = joinBatch("select user.col from user join user_extra on user.name = user_extra.col");
+        RouteEngine route = (RouteEngine) batch.getRight();
+        Assert.assertEquals(Engine.RouteOpcode.SelectScatter, route.getRouteOpcode());
+        Assert.assertEquals("select 1, user_extra.col from user_extra where user_extra.col in (::user_name)", toSql(route));
+        Assert.assertEquals(1, batch.getKeyOffset());
+    }
+
+    @Test
+    public void testNotBatched() throws Exception {
+        Assert.assertNull(joinBatch("select user.col from user join user_extra on user.name < user_extra.user_id"));
+    }
+
+    private JoinBatch joinBatch(String sql) throws Exception {
+        JoinEngine join = (JoinEngine) build(sql, vm, true).getPrimitive();
+        printNormal(sql);
+        return join.getBatch();
+    }
+
+    private String toSql(RouteEngine route) {
+        return SQLUtils.toMySqlString(route.getSelectQuery(), SQLUtils.NOT_FORMAT_OPTION);
+    }
+}
@@ -47,6 +47,7 @@ import com.jd.jdbc.engine.gen4.ConcatenateGen4Engine;
 import com.jd.jdbc.engine.gen4.DistinctGen4Engine;
 import com.jd.jdbc.engine.gen4.FilterGen4Engine;
 import com.jd.jdbc.engine.gen4.GroupByParams;
+import com.jd.jdbc.engine.gen4.HashAggregateGen4Engine;
 import com.jd.jdbc.engine.gen4.JoinGen4Engine;
 import com.jd.jdbc.engine.gen4.LimitGen4Engine;
 import com.jd.jdbc.engine.gen4.MemorySortGen4Engine;
@@ -721,7 +722,7 @@ public class PlanTest extends AbstractPlanTest {
     private Instructions formatOrderedAggregateGen4Engine(OrderedAggregateGen4Engine engine) {
         Instructions instructions = new Instructions();
         instructions.setOperatorType("Aggregate");
-        instructions.setVariant("Ordered");
+        instructions.setVariant(engine instanceof HashAggregateGen4Engine ? "Hash" : "Ordered");
 
         instructions.setGroupBy(buildGroupByParamsString(engine.getGroupByKeys()));
         instructions.setAggregates(buildAggregateParamsString(engine.getAggregates()));
@@ -0,0 +1,117 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.planbuilder;
+
+import com.jd.jdbc.Executor;
+import com.jd.jdbc.VSchemaManager;
+import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.engine.SqlTemplate;
+import com.jd.jdbc.sqlparser.SQLUtils;
+import com.jd.jdbc.sqlparser.ast.SQLStatement;
+import com.jd.jdbc.sqlparser.dialect.mysql.visitor.VtRemoveBacktickVisitor;
+import com.jd.jdbc.srvtopo.BindVariable;
+import com.jd.jdbc.vitess.VitessConnection;
+import io.vitess.proto.Query;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SqlTemplateTest extends AbstractPlanTest {
+
+    private static final String CHAR_ENCODING = "utf-8";
+
+    private static final String KEYSPACE = "user";
+
+    private VSchemaManager vm = null;
+
+    private IContext ctx;
+
+    private Executor executor;
+
+    @Before
+    public void init() throws IOException {
+        vm = loadSchema("src/test/resources/plan/plan_schema.json");
+        ctx = VtContext.withCancel(VtContext.background());
+        ctx.setContextValue(VitessConnection.ContextKey.CTX_VSCHEMA_MANAGER, vm);
+        executor = Executor.getInstance(300);
+        executor.getSqlTemplates().clear();
+    }
+
+    @Test
+    public void testBindVariables() throws SQLException {
+        String sql = "select id, name from user where id = ? and name = 'abc' and costly in (1, ?) limit 10";
+
+        SqlTemplate template = buildTemplate(sql, bindVariables(1L, 2L));
+        Assert.assertNotNull(template);
+        Assert.assertSame(template, executor.getSqlTemplate(KEYSPACE, sql, CHAR_ENCODING, bindVariables(3L, 4L)));
+        Assert.assertNull(executor.getSqlTemplate(KEYSPACE, sql, CHAR_ENCODING, bindVariables(3L)));
+        Assert.assertNull(executor.getSqlTemplate(KEYSPACE, sql, "gbk", bindVariables(3L, 4L)));
+
+        Map<String, BindVariable> userVars = bindVariables(3L, 4L);
+        Map<String, BindVariable> expected = planBindVariables(sql, userVars);
+        Map<String, BindVariable> actual = template.bindVariables(userVars);
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSubqueryNotTemplated() throws SQLException {
+        String sql = "select id from user where id in (select id from user_extra where user_id = ?) and name = ?";
+        Assert.assertNull(buildTemplate(sql, bindVariables(1L, 1L)));
+        Assert.assertNull(executor.getSqlTemplate(KEYSPACE, sql, CHAR_ENCODING, bindVariables(1L, 1L)));
+    }
+
+    @Test
+    public void testTemplateReused() throws SQLException {
+        String sql = "select id, name from user where id = ? and name = 'abc' limit 10";
+        SqlTemplate built = buildTemplate(sql, bindVariables(1L));
+
+        // every execution of the same text binds its own values into the one template
+        for (long i = 0; i < 10; i++) {
+            Map<String, BindVariable> userVars = bindVariables(i);
+            SqlTemplate template = executor.getSqlTemplate(KEYSPACE, sql, CHAR_ENCODING, userVars);
+            Assert.assertSame(built, template);
+            Assert.assertEquals(planBindVariables(sql, userVars), template.bindVariables(userVars));
+        }
+    }
+
+    private SqlTemplate buildTemplate(String sql, Map<String, BindVariable> userVars) throws SQLException {
+        return executor.buildSqlTemplate(ctx, null, KEYSPACE, sql, KEYSPACE, parse(sql), userVars, CHAR_ENCODING);
+    }
+
+    private Map<String, BindVariable> planBindVariables(String sql, Map<String, BindVariable> userVars) throws SQLException {
+        return executor.getPlan(ctx, KEYSPACE, parse(sql), userVars, false, CHAR_ENCODING).getBindVariableMap();
+    }
+
+    private SQLStatement parse(String sql) {
+        SQLStatement stmt = SQLUtils.parseSingleMysqlStatement(sql);
+        stmt.accept(new VtRemoveBacktickVisitor());
+        return stmt;
+    }
+
+    private Map<String, BindVariable> bindVariables(Long... values) {
+        Map<String, BindVariable> bindVariableMap = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            bindVariableMap.put(String.valueOf(i), new BindVariable(String.valueOf(values[i]).getBytes(), Query.Type.INT64));
+        }
+        return bindVariableMap;
+    }
+}
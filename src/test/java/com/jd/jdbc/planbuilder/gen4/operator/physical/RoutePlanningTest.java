@@ -20,10 +20,14 @@ package com.jd.jdbc.planbuilder.gen4.operator.physical;
 
 import com.google.common.collect.Lists;
 import com.jd.BaseTest;
+import com.jd.jdbc.engine.Engine;
+import com.jd.jdbc.evalengine.EvalEngine;
 import com.jd.jdbc.sqlparser.SQLUtils;
 import com.jd.jdbc.sqlparser.ast.SQLExpr;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.AllArgsConstructor;
 import org.junit.Assert;
 import org.junit.Test;
@@ -69,4 +73,43 @@ public class RoutePlanningTest extends BaseTest {
             printOk(testCase + "\n");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUseHashJoin() {
+        Map<String, Integer> vars = new HashMap<>();
+        vars.put("user_name", 1);
+
+        // the RHS is bounded by an IN list that does not come from the LHS
+        ApplyJoin join = new ApplyJoin(new Route(), rhsRoute(Engine.RouteOpcode.SelectIN, new EvalEngine.TupleExpr(Lists.newArrayList(
+            EvalEngine.newLiteralInt(1L), EvalEngine.newLiteralInt(2L)))), false);
+        join.setVars(vars);
+        Assert.assertTrue(RoutePlanning.useHashJoin(join));
+
+        // an unbounded scatter RHS keeps the join predicate
+        join.setRHS(rhsRoute(Engine.RouteOpcode.SelectScatter, null));
+        Assert.assertFalse(RoutePlanning.useHashJoin(join));
+
+        // the RHS is routed by the join var
+        join.setRHS(rhsRoute(Engine.RouteOpcode.SelectIN, new EvalEngine.BindVariable(":user_name")));
+        Assert.assertFalse(RoutePlanning.useHashJoin(join));
+        join.setRHS(rhsRoute(Engine.RouteOpcode.SelectEqualUnique, new EvalEngine.BindVariable(":user_name")));
+        Assert.assertFalse(RoutePlanning.useHashJoin(join));
+
+        // no join vars, nothing to hash on
+        join.setRHS(rhsRoute(Engine.RouteOpcode.SelectIN, EvalEngine.newLiteralInt(1L)));
+        join.setVars(new HashMap<>());
+        Assert.assertFalse(RoutePlanning.useHashJoin(join));
+        printOk("testUseHashJoin is [OK]");
+    }
+
+    private Route rhsRoute(Engine.RouteOpcode opcode, EvalEngine.Expr value) {
+        Route route = new Route();
+        route.setRouterOpCode(opcode);
+        if (value != null) {
+            VindexOption selected = new VindexOption();
+            selected.setValues(Lists.newArrayList(value));
+            route.setSelected(selected);
+        }
+        return route;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.pool;
+
+import com.jd.BaseTest;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NumberedTest extends BaseTest {
+
+    @Test
+    public void testLock() throws SQLException {
+        Numbered numbered = new Numbered();
+        StatefulConnection conn = new StatefulConnection(null, null, 1, false, true);
+        Assert.assertTrue(numbered.register(1, conn, true));
+        Assert.assertFalse(numbered.register(1, conn, true));
+
+        Assert.assertSame(conn, numbered.get(1, "for query"));
+        try {
+            numbered.get(1, "commit");
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("id 1 is in use for query", e.getMessage());
+        }
+        numbered.put(1, false);
+        Assert.assertSame(conn, numbered.get(1, "commit"));
+
+        numbered.unregister(1);
+        Assert.assertEquals(0, numbered.size());
+        try {
+            numbered.get(1, "commit");
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("id 1 not found", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLockIdle() throws SQLException, InterruptedException {
+        Numbered numbered = new Numbered();
+        StatefulConnection transaction = new StatefulConnection(null, null, 1, false, true);
+        StatefulConnection reserved = new StatefulConnection(null, null, 2, false, false);
+        StatefulConnection inUse = new StatefulConnection(null, null, 3, false, true);
+        numbered.register(1, transaction, true);
+        numbered.register(2, reserved, false);
+        numbered.register(3, inUse, true);
+        numbered.get(3, "for query");
+
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(50);
+        Assert.assertNull(numbered.lockIdle(idleNanos));
+        Thread.sleep(100);
+
+        // only the unlocked resource that enforces the timeout is idle, and it stays locked by the reaper
+        List<StatefulConnection> idle = numbered.lockIdle(idleNanos);
+        Assert.assertEquals(1, idle.size());
+        Assert.assertSame(transaction, idle.get(0));
+        try {
+            numbered.get(1, "commit");
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("id 1 is in use idle timeout", e.getMessage());
+        }
+
+        // every unlock restarts the idle time
+        numbered.put(3, false);
+        Assert.assertNull(numbered.lockIdle(idleNanos));
+    }
+
+    @Test
+    public void testConcurrentTransactions() throws InterruptedException {
+        Numbered numbered = new Numbered();
+        int threads = 16;
+        int loop = 2000;
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch countDownLatch = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long base = (long) t * loop;
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int i = 0; i < loop; i++) {
+                        long id = base + i;
+                        numbered.register(id, new StatefulConnection(null, null, id, false, true), true);
+                        numbered.get(id, "new connection");
+                        numbered.put(id, false);
+                        numbered.get(id, "commit");
+                        numbered.put(id, true);
+                        numbered.unregister(id);
+                    }
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        Assert.assertTrue(countDownLatch.await(60, TimeUnit.SECONDS));
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(0, numbered.size());
+    }
+}
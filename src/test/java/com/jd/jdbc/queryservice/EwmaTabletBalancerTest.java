@@ -0,0 +1,193 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.queryservice;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.discovery.TabletHealthCheck;
+import io.vitess.proto.Query;
+import io.vitess.proto.Topodata;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EwmaTabletBalancerTest extends BaseTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testPreferFastTablet() {
+        EwmaTabletBalancer balancer = new EwmaTabletBalancer();
+        List<TabletHealthCheck> tablets = tablets(3);
+        TabletHealthCheck slow = tablets.get(0);
+        for (TabletHealthCheck tablet : tablets) {
+            record(balancer, tablet, tablet == slow ? 200 * MILLIS : MILLIS, false);
+        }
+
+        Map<TabletHealthCheck, Integer> picks = pick(balancer, tablets, 3000);
+        // the two candidates are always distinct, so the slowest tablet never wins
+        Assert.assertNull(picks.get(slow));
+        Assert.assertTrue(picks.get(tablets.get(1)) > 500);
+        Assert.assertTrue(picks.get(tablets.get(2)) > 500);
+        printOk("picks: " + picks.values());
+    }
+
+    @Test
+    public void testInflightAndFailures() {
+        EwmaTabletBalancer balancer = new EwmaTabletBalancer();
+        List<TabletHealthCheck> tablets = tablets(2);
+        record(balancer, tablets.get(0), MILLIS, false);
+        record(balancer, tablets.get(1), MILLIS, false);
+
+        balancer.onStart(tablets.get(0));
+        Assert.assertSame(tablets.get(1), balancer.pick(tablets));
+        balancer.onFinish(tablets.get(0), MILLIS, false);
+
+        record(balancer, tablets.get(1), MILLIS, true);
+        Assert.assertSame(tablets.get(0), balancer.pick(tablets));
+
+        EwmaTabletBalancer.TabletStats stats = balancer.getStatsByAlias().get("cell-0000000001");
+        Assert.assertEquals(0, stats.getInflight());
+        Assert.assertTrue(stats.getFailureRate(System.nanoTime()) > 0);
+        printOk("failure rate: " + stats.getFailureRate(System.nanoTime()));
+    }
+
+    @Test
+    public void testDecay() throws InterruptedException {
+        EwmaTabletBalancer balancer = new EwmaTabletBalancer(TimeUnit.MILLISECONDS.toNanos(10));
+        List<TabletHealthCheck> tablets = tablets(2);
+        record(balancer, tablets.get(0), 200 * MILLIS, true);
+        record(balancer, tablets.get(1), MILLIS, false);
+        Assert.assertSame(tablets.get(1), balancer.pick(tablets));
+
+        // a tablet that stays slow is avoided after a few queries
+        int samples = 0;
+        while (balancer.pick(tablets) == tablets.get(1)) {
+            record(balancer, tablets.get(1), 5000 * MILLIS, false);
+            samples++;
+            Assert.assertTrue(samples < 50);
+        }
+
+        // both averages decay while idle, so the slow tablet is scored by its in-flight queries again
+        TimeUnit.MILLISECONDS.sleep(500);
+        EwmaTabletBalancer.TabletStats stats = balancer.getStatsByAlias().get("cell-0000000000");
+        long now = System.nanoTime();
+        Assert.assertTrue(stats.getLatencyNanos(now) < MILLIS);
+        Assert.assertTrue(stats.getFailureRate(now) < 0.01);
+        balancer.onStart(tablets.get(0));
+        Assert.assertSame(tablets.get(1), balancer.pick(tablets));
+        printOk("decayed latency: " + stats.getLatencyNanos(now));
+    }
+
+    @Test
+    public void testSlowQueryKeepsTabletInRotation() throws InterruptedException {
+        EwmaTabletBalancer balancer = new EwmaTabletBalancer(TimeUnit.MILLISECONDS.toNanos(50));
+        List<TabletHealthCheck> tablets = tablets(2);
+        for (int i = 0; i < 5; i++) {
+            record(balancer, tablets.get(0), MILLIS, false);
+            record(balancer, tablets.get(1), MILLIS, false);
+        }
+        // one 30 seconds report query
+        record(balancer, tablets.get(0), 30000 * MILLIS, false);
+        EwmaTabletBalancer.TabletStats stats = balancer.getStatsByAlias().get("cell-0000000000");
+        Assert.assertTrue(stats.getLatencyNanos(System.nanoTime()) < 2 * MILLIS);
+
+        // the other tablet keeps getting traffic, the slow query is forgotten within a decay period
+        Map<TabletHealthCheck, Integer> picks = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            TabletHealthCheck tablet = balancer.pick(tablets);
+            picks.merge(tablet, 1, Integer::sum);
+            record(balancer, tablet, MILLIS, false);
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        Assert.assertTrue(picks.getOrDefault(tablets.get(0), 0) > 20);
+        printOk("picks: " + picks.values());
+    }
+
+    @Test
+    public void testRemoveTablet() throws InterruptedException {
+        EwmaTabletBalancer balancer = new EwmaTabletBalancer(TimeUnit.MILLISECONDS.toNanos(1));
+        List<TabletHealthCheck> tablets = tablets(3);
+        for (TabletHealthCheck tablet : tablets) {
+            record(balancer, tablet, MILLIS, false);
+        }
+        balancer.onStart(tablets.get(0));
+        balancer.onStart(tablets.get(1));
+
+        balancer.onRemove(tablets.get(0).getTablet());
+        Assert.assertEquals(2, balancer.getStatsByAlias().size());
+        // a query that finishes on a removed tablet does not add it back
+        balancer.onFinish(tablets.get(0), MILLIS, false);
+        Assert.assertFalse(balancer.getStatsByAlias().containsKey("cell-0000000000"));
+
+        // idle stats older than a few decay periods are dropped with the next removal, in-flight ones are kept
+        TimeUnit.MILLISECONDS.sleep(20);
+        balancer.onRemove(tablets.get(0).getTablet());
+        Assert.assertEquals(Collections.singleton("cell-0000000001"), balancer.getStatsByAlias().keySet());
+        printOk("stats: " + balancer.getStatsByAlias().keySet());
+    }
+
+    @Test
+    public void testNewInstance() {
+        Assert.assertTrue(TabletBalancer.newInstance(null) instanceof EwmaTabletBalancer);
+        Assert.assertTrue(TabletBalancer.newInstance("random") instanceof RandomTabletBalancer);
+        Assert.assertTrue(TabletBalancer.newInstance(RandomTabletBalancer.class.getName()) instanceof RandomTabletBalancer);
+        try {
+            TabletBalancer.newInstance(String.class.getName());
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            printOk(e.getMessage());
+        }
+
+        List<TabletHealthCheck> tablets = tablets(4);
+        List<TabletHealthCheck> copy = new ArrayList<>(tablets);
+        pick(new RandomTabletBalancer(), tablets, 100);
+        pick(new EwmaTabletBalancer(), tablets, 100);
+        // the list is shared with HealthCheck, balancers must not reorder it
+        Assert.assertEquals(copy, tablets);
+    }
+
+    private static void record(TabletBalancer balancer, TabletHealthCheck tablet, long latencyNanos, boolean failed) {
+        balancer.onStart(tablet);
+        balancer.onFinish(tablet, latencyNanos, failed);
+    }
+
+    private static Map<TabletHealthCheck, Integer> pick(TabletBalancer balancer, List<TabletHealthCheck> tablets, int count) {
+        Map<TabletHealthCheck, Integer> picks = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            picks.merge(balancer.pick(tablets), 1, Integer::sum);
+        }
+        return picks;
+    }
+
+    private static List<TabletHealthCheck> tablets(int count) {
+        TabletHealthCheck[] tablets = new TabletHealthCheck[count];
+        for (int i = 0; i < count; i++) {
+            Topodata.Tablet tablet = Topodata.Tablet.newBuilder()
+                .setAlias(Topodata.TabletAlias.newBuilder().setCell("cell").setUid(i).build())
+                .setKeyspace("ks").setShard("-80").setType(Topodata.TabletType.REPLICA).build();
+            Query.Target target = Query.Target.newBuilder().setKeyspace("ks").setShard("-80").setTabletType(Topodata.TabletType.REPLICA).build();
+            tablets[i] = new TabletHealthCheck(null, tablet, target);
+        }
+        return Arrays.asList(tablets);
+    }
+}
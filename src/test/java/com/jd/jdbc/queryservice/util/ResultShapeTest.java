@@ -0,0 +1,161 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.queryservice.util;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import io.vitess.proto.Query;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultShapeTest extends BaseTest {
+
+    private static final String[] TYPE_NAMES = {"INT", "BIGINT", "FLOAT", "DOUBLE", "DECIMAL", "VARCHAR", "DATETIME", "TINYINT", "BIT"};
+
+    private static final String[] CLASS_NAMES = {"java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double", "java.math.BigDecimal", "java.lang.String",
+        "java.sql.Timestamp", "java.lang.Boolean", "java.lang.Boolean"};
+
+    private static final int[] PRECISIONS = {11, 20, 12, 22, 10, 255, 19, 1, 8};
+
+    @Before
+    public void clearCache() {
+        ResultShape.clearCache();
+    }
+
+    @Test
+    public void testShapeCached() throws SQLException {
+        ResultShape shape = ResultShape.of(metaData("c"));
+        Assert.assertSame(shape, ResultShape.of(metaData("c")));
+        Assert.assertNotSame(shape, ResultShape.of(metaData("d")));
+
+        Query.Field[] fields = shape.getFields();
+        Assert.assertEquals(TYPE_NAMES.length, fields.length);
+        Assert.assertEquals("user", fields[0].getDatabase());
+        Assert.assertEquals("c0", fields[0].getName());
+        Assert.assertEquals(Query.Type.INT32, fields[0].getType());
+        Assert.assertEquals(Query.Type.BIT, fields[8].getType());
+        Assert.assertEquals("d1", ResultShape.of(metaData("d")).getFields()[1].getName());
+        // every result gets its own array
+        Assert.assertNotSame(fields, shape.getFields());
+        printOk("shapes are cached by metadata");
+    }
+
+    @Test
+    public void testDecodeSameAsGetValue() throws SQLException {
+        List<Object[]> rows = rows(50);
+        ResultShape shape = ResultShape.of(metaData("c"));
+        Query.Field[] fields = shape.getFields();
+
+        ResultSet resultSet = resultSet(rows);
+        List<List<VtResultValue>> decoded = new ArrayList<>();
+        while (resultSet.next()) {
+            List<VtResultValue> row = shape.readRow(resultSet);
+            for (int col = 1; col <= fields.length; col++) {
+                Query.Field field = fields[col - 1];
+                VtResultValue expected = VtResultSetUtils.getValue(resultSet, col, field.getJdbcClassName(), (int) field.getPrecision(), field.getType());
+                Assert.assertEquals(expected, row.get(col - 1));
+            }
+            decoded.add(row);
+        }
+        Assert.assertEquals(50, decoded.size());
+        Assert.assertEquals(decoded, shape.readColumnBatch(resultSet(rows)).toRows());
+        printOk("decoders read the same values as VtResultSetUtils");
+    }
+
+    private static List<Object[]> rows(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] {i % 5 == 0 ? null : i, (long) i * 1000, i / 2F, i % 7 == 0 ? null : i / 3D, BigDecimal.valueOf(i, 2), "row" + i,
+                ("2023-01-01 00:00:" + (i % 60)).getBytes(StandardCharsets.UTF_8), i % 2, (long) i % 256});
+        }
+        return rows;
+    }
+
+    private static ResultSetMetaData metaData(String labelPrefix) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultShapeTest.class.getClassLoader(), new Class[] {ResultSetMetaData.class}, (proxy, method, args) -> {
+            int idx = args == null ? -1 : (Integer) args[0] - 1;
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return TYPE_NAMES.length;
+                case "getCatalogName":
+                    return "vt_user";
+                case "getTableName":
+                    return "user";
+                case "getColumnLabel":
+                    return labelPrefix + idx;
+                case "getColumnName":
+                    return "col" + idx;
+                case "getColumnTypeName":
+                    return TYPE_NAMES[idx];
+                case "getColumnClassName":
+                    return CLASS_NAMES[idx];
+                case "getPrecision":
+                    return PRECISIONS[idx];
+                case "getScale":
+                case "getColumnDisplaySize":
+                    return 0;
+                case "isSigned":
+                case "isCaseSensitive":
+                    return false;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static ResultSet resultSet(List<Object[]> rows) {
+        int[] cursor = {-1};
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultShapeTest.class.getClassLoader(), new Class[] {ResultSet.class}, (proxy, method, args) -> {
+            if ("next".equals(method.getName())) {
+                return ++cursor[0] < rows.size();
+            }
+            if ("wasNull".equals(method.getName())) {
+                return wasNull[0];
+            }
+            Object value = rows.get(cursor[0])[(Integer) args[0] - 1];
+            wasNull[0] = value == null;
+            switch (method.getName()) {
+                case "getInt":
+                    return value == null ? 0 : ((Number) value).intValue();
+                case "getLong":
+                    return value == null ? 0L : ((Number) value).longValue();
+                case "getFloat":
+                    return value == null ? 0F : ((Number) value).floatValue();
+                case "getDouble":
+                    return value == null ? 0D : ((Number) value).doubleValue();
+                case "getBigDecimal":
+                case "getBytes":
+                case "getObject":
+                    return value;
+                case "getString":
+                    return value == null ? null : value.toString();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,189 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.sqltypes;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.vitess.VitessResultSet;
+import io.vitess.proto.Query;
+import java.math.BigDecimal;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VtColumnBatchTest extends BaseTest {
+
+    private static final Query.Field[] FIELDS = {
+        field("i", Query.Type.INT32, "java.lang.Integer"),
+        field("l", Query.Type.INT64, "java.lang.Long"),
+        field("f", Query.Type.FLOAT32, "java.lang.Float"),
+        field("d", Query.Type.FLOAT64, "java.lang.Double"),
+        field("s", Query.Type.VARCHAR, "java.lang.String"),
+        field("m", Query.Type.DECIMAL, "java.math.BigDecimal")};
+
+    @Test
+    public void testBoxSameAsRows() {
+        List<List<VtResultValue>> rows = rows(100);
+        VtColumnBatch batch = batch(rows);
+        Assert.assertEquals(100, batch.getRowCount());
+        Assert.assertEquals(rows, batch.toRows());
+        Assert.assertTrue(batch.isLongColumn(0));
+        Assert.assertTrue(batch.isLongColumn(1));
+        Assert.assertFalse(batch.isDoubleColumn(2));
+        Assert.assertTrue(batch.isDoubleColumn(3));
+        Assert.assertFalse(batch.isLongColumn(4));
+        Assert.assertEquals(7L, batch.getLong(7, 1));
+        Assert.assertTrue(batch.isNull(10, 0));
+        Assert.assertSame(VtResultValue.NULL, batch.getValue(10, 0));
+        printOk("columnar rows box to the same values as rows");
+    }
+
+    @Test
+    public void testAppendSliceTruncate() {
+        List<List<VtResultValue>> rows = rows(150);
+        VtColumnBatch batch = batch(rows.subList(0, 100));
+        batch.append(batch(rows.subList(100, 150)));
+        Assert.assertEquals(rows, batch.toRows());
+        Assert.assertEquals(rows.subList(60, 130), batch.slice(60, 130).toRows());
+        Assert.assertEquals(0, batch.slice(5, 5).getRowCount());
+
+        VtColumnBatch truncated = batch.truncate(2);
+        Assert.assertEquals(2, truncated.getColumnCount());
+        Assert.assertEquals(rows.get(70).subList(0, 2), truncated.getRow(70));
+
+        Query.Field[] otherFields = Arrays.copyOf(FIELDS, FIELDS.length);
+        otherFields[0] = field("i", Query.Type.INT64, "java.lang.Long");
+        Assert.assertFalse(batch.canAppend(new VtColumnBatch(otherFields)));
+        printOk("append, slice and truncate keep the cells");
+    }
+
+    @Test
+    public void testResultSetStaysColumnar() throws SQLException {
+        List<List<VtResultValue>> rows = rows(30);
+        VtResultSet result = columnarResult(rows.subList(0, 20));
+        result.appendResult(columnarResult(rows.subList(20, 30)));
+        Assert.assertNotNull(result.getColumnBatch());
+        Assert.assertEquals(30, result.getResultSetSize());
+
+        result.sliceRows(5, 25);
+        Assert.assertNotNull(result.getColumnBatch());
+        Assert.assertEquals(6, result.getRowColumnCount());
+
+        VtResultSet rowResult = new VtResultSet(FIELDS, new ArrayList<>(rows.subList(0, 3)));
+        result.appendRows(rowResult);
+        Assert.assertNull(result.getColumnBatch());
+        List<List<VtResultValue>> expected = new ArrayList<>(rows.subList(5, 25));
+        expected.addAll(rows.subList(0, 3));
+        Assert.assertEquals(expected, result.getRows());
+        printOk("results stay columnar until their rows are read");
+    }
+
+    @Test
+    public void testUnboxedGetters() throws SQLException {
+        List<List<VtResultValue>> rows = rows(20);
+        VitessResultSet columnar = new VitessResultSet(columnarResult(rows), null);
+        VitessResultSet boxed = new VitessResultSet(new VtResultSet(FIELDS, rows), null);
+        while (boxed.next()) {
+            Assert.assertTrue(columnar.next());
+            Assert.assertEquals(boxed.getInt(1), columnar.getInt(1));
+            Assert.assertEquals(boxed.wasNull(), columnar.wasNull());
+            Assert.assertEquals(boxed.getLong(2), columnar.getLong(2));
+            Assert.assertEquals(boxed.getDouble(2), columnar.getDouble(2), 0);
+            Assert.assertEquals(boxed.getDouble(3), columnar.getDouble(3), 0);
+            Assert.assertEquals(boxed.getDouble(4), columnar.getDouble(4), 0);
+            Assert.assertEquals(boxed.wasNull(), columnar.wasNull());
+            Assert.assertEquals(boxed.getString(5), columnar.getString(5));
+            Assert.assertEquals(boxed.getBigDecimal(6), columnar.getBigDecimal(6));
+            Assert.assertEquals(boxed.getObject(1), columnar.getObject(1));
+        }
+        Assert.assertFalse(columnar.next());
+
+        VtColumnBatch batch = new VtColumnBatch(FIELDS);
+        batch.setLong(batch.addRow(), 1, Long.MAX_VALUE);
+        VtResultSet result = new VtResultSet();
+        result.setFields(FIELDS);
+        result.setColumnBatch(batch);
+        VitessResultSet outOfRange = new VitessResultSet(result, null);
+        Assert.assertTrue(outOfRange.next());
+        Assert.assertEquals(Long.MAX_VALUE, outOfRange.getLong(2));
+        try {
+            outOfRange.getInt(2);
+            Assert.fail();
+        } catch (SQLDataException e) {
+            Assert.assertEquals("Value '" + Long.MAX_VALUE + "' is outside of valid range for type java.lang.Integer", e.getMessage());
+        }
+        printOk("unboxed getters return the same values as the converters");
+    }
+
+    @Test
+    public void testGetterSum() throws SQLException {
+        // nulls read as 0 from both the rows and the columns
+        List<List<VtResultValue>> rows = rows(1000);
+        long rowSum = sum(new VitessResultSet(new VtResultSet(FIELDS, rows), null));
+        long columnarSum = sum(new VitessResultSet(columnarResult(rows), null));
+        Assert.assertEquals(rowSum, columnarSum);
+    }
+
+    private long sum(VitessResultSet resultSet) throws SQLException {
+        long sum = 0;
+        while (resultSet.next()) {
+            sum += resultSet.getInt(1) + resultSet.getLong(2) + (long) resultSet.getDouble(4);
+        }
+        return sum;
+    }
+
+    private static VtResultSet columnarResult(List<List<VtResultValue>> rows) {
+        VtResultSet result = new VtResultSet();
+        result.setFields(FIELDS);
+        result.setColumnBatch(batch(rows));
+        result.setRowsAffected(rows.size());
+        return result;
+    }
+
+    private static VtColumnBatch batch(List<List<VtResultValue>> rows) {
+        VtColumnBatch batch = new VtColumnBatch(FIELDS);
+        for (List<VtResultValue> row : rows) {
+            int idx = batch.addRow();
+            for (int col = 0; col < row.size(); col++) {
+                batch.setObject(idx, col, row.get(col).getValue());
+            }
+        }
+        return batch;
+    }
+
+    private static List<List<VtResultValue>> rows(int count) {
+        List<List<VtResultValue>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<VtResultValue> row = new ArrayList<>();
+            row.add(i % 10 == 0 ? VtResultValue.NULL : new VtResultValue(i * 3, Query.Type.INT32));
+            row.add(new VtResultValue((long) i, Query.Type.INT64));
+            row.add(new VtResultValue(i / 4F, Query.Type.FLOAT32));
+            row.add(i % 7 == 0 ? VtResultValue.NULL : new VtResultValue(i / 3D, Query.Type.FLOAT64));
+            row.add(new VtResultValue("row" + i, Query.Type.VARCHAR));
+            row.add(new VtResultValue(BigDecimal.valueOf(i, 2), Query.Type.DECIMAL));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static Query.Field field(String name, Query.Type type, String jdbcClassName) {
+        return Query.Field.newBuilder().setName(name).setType(type).setJdbcClassName(jdbcClassName).build();
+    }
+}
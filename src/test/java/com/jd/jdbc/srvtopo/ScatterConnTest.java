@@ -0,0 +1,203 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.srvtopo;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.IExecute;
+import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.queryservice.IQueryService;
+import com.jd.jdbc.session.SafeSession;
+import com.jd.jdbc.session.VitessSession;
+import com.jd.jdbc.sqltypes.VtResultSet;
+import com.jd.jdbc.sqltypes.VtResultValue;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import com.jd.jdbc.vitess.VitessConnection;
+import io.vitess.proto.Query;
+import io.vitess.proto.Topodata;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ScatterConnTest extends BaseTest {
+
+    private static final String FAIL_SQL = "fail";
+
+    private static final String BLOCK_SQL = "block";
+
+    private static final String FAIL_AFTER_BLOCK_SQL = "failAfterBlock";
+
+    private final AtomicInteger executeCount = new AtomicInteger();
+
+    private final AtomicInteger cancelledCount = new AtomicInteger();
+
+    private volatile CountDownLatch blockStarted = new CountDownLatch(0);
+
+    private final ScatterConn scatterConn = ScatterConn.newScatterConn("", new TxConn(null, null), null);
+
+    @BeforeClass
+    public static void initPool() {
+        VtQueryExecutorService.initialize(null, null, null, null);
+    }
+
+    @Test
+    public void testExecuteMultiShard() throws Exception {
+        int shardCount = 16;
+        List<ResolvedShard> rss = resolvedShards(shardCount);
+        List<BoundQuery> queries = queries(shardCount, -1);
+
+        IExecute.ExecuteMultiShardResponse response = scatterConn.executeMultiShard(VtContext.background(), rss, queries, safeSession(), true, false);
+        assertShardOrder(shardCount, (VtResultSet) response.getVtRowList());
+
+        response = scatterConn.executeMultiShardAsync(VtContext.background(), rss, queries, safeSession(), true, false).get();
+        assertShardOrder(shardCount, (VtResultSet) response.getVtRowList());
+        printOk("shard results are merged in shard order");
+    }
+
+    @Test
+    public void testFailureSkipsPendingShards() {
+        int shardCount = 200;
+        executeCount.set(0);
+        try {
+            scatterConn.executeMultiShard(VtContext.background(), resolvedShards(shardCount), queries(shardCount, 0), safeSession(), true, false);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("shard 0 failed", e.getMessage());
+        }
+        printNormal("executed " + executeCount.get() + " of " + shardCount + " shards");
+        Assert.assertTrue(executeCount.get() < shardCount);
+    }
+
+    @Test
+    public void testCancelledContext() {
+        IContext ctx = VtContext.withCancel(VtContext.background());
+        ctx.cancel("user cancel");
+        executeCount.set(0);
+        try {
+            scatterConn.executeMultiShard(ctx, resolvedShards(4), queries(4, -1), safeSession(), true, false);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("user cancel"));
+        }
+        Assert.assertEquals(0, executeCount.get());
+    }
+
+    @Test
+    public void testFailureCancelsRunningShards() {
+        int blockShards = 3;
+        List<BoundQuery> queries = new ArrayList<>();
+        for (int i = 0; i < blockShards; i++) {
+            queries.add(new BoundQuery(BLOCK_SQL));
+        }
+        // the last shard runs on the calling thread, it fails once the others are running
+        queries.add(new BoundQuery(FAIL_AFTER_BLOCK_SQL));
+        blockStarted = new CountDownLatch(blockShards);
+        cancelledCount.set(0);
+        try {
+            scatterConn.executeMultiShard(VtContext.background(), resolvedShards(queries.size()), queries, safeSession(), true, false);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("shard failed", e.getMessage());
+        }
+        Assert.assertEquals(blockShards, cancelledCount.get());
+        printOk("running shards were cancelled");
+    }
+
+    private void assertShardOrder(int shardCount, VtResultSet resultSet) {
+        Assert.assertEquals(shardCount, resultSet.getRows().size());
+        for (int i = 0; i < shardCount; i++) {
+            Assert.assertEquals(String.valueOf(i), resultSet.getRows().get(i).get(0).toString());
+        }
+    }
+
+    private SafeSession safeSession() {
+        VitessSession session = new VitessSession();
+        session.setAutocommit(true);
+        return SafeSession.newSafeSession(new VitessConnection(null, session));
+    }
+
+    private List<BoundQuery> queries(int shardCount, int failShard) {
+        List<BoundQuery> queries = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            queries.add(new BoundQuery(i == failShard ? FAIL_SQL : String.valueOf(i)));
+        }
+        return queries;
+    }
+
+    private List<ResolvedShard> resolvedShards(int shardCount) {
+        IQueryService queryService = (IQueryService) Proxy.newProxyInstance(IQueryService.class.getClassLoader(), new Class<?>[] {IQueryService.class}, (proxy, method, args) -> {
+            if (!"execute".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            String sql = (String) args[2];
+            executeCount.incrementAndGet();
+            if (FAIL_SQL.equals(sql)) {
+                throw new SQLException("shard 0 failed");
+            }
+            if (FAIL_AFTER_BLOCK_SQL.equals(sql)) {
+                blockStarted.await(10, TimeUnit.SECONDS);
+                throw new SQLException("shard failed");
+            }
+            if (BLOCK_SQL.equals(sql)) {
+                // stands in for a statement running on a tablet, which the cancel listener kills
+                CountDownLatch cancelled = new CountDownLatch(1);
+                try (IContext.CancelRegistration ignored = ((IContext) args[0]).onCancel(cancelled::countDown)) {
+                    blockStarted.countDown();
+                    if (cancelled.await(10, TimeUnit.SECONDS)) {
+                        cancelledCount.incrementAndGet();
+                    }
+                }
+                throw new SQLException("query cancelled");
+            }
+            Thread.sleep(ThreadLocalRandom.current().nextInt(5, 20));
+            VtResultSet resultSet = new VtResultSet();
+            resultSet.setFields(new Query.Field[] {Query.Field.newBuilder().setName("shard").setType(Query.Type.INT64).build()});
+            List<List<VtResultValue>> rows = new ArrayList<>();
+            rows.add(Collections.singletonList(new VtResultValue(Long.valueOf(sql), Query.Type.INT64)));
+            resultSet.setRows(rows);
+            return resultSet;
+        });
+        Gateway gateway = new Gateway() {
+            @Override
+            public IQueryService queryServiceByAlias(Topodata.TabletAlias alias) {
+                return queryService;
+            }
+
+            @Override
+            public void waitForTablets(IContext ctx, String cell, String keyspace, List<Topodata.TabletType> tabletTypeList) {
+            }
+        };
+        gateway.setQueryService(queryService);
+        List<ResolvedShard> rss = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            ResolvedShard rs = new ResolvedShard();
+            rs.setTarget(Query.Target.newBuilder().setKeyspace("ks").setShard(String.valueOf(i)).setTabletType(Topodata.TabletType.MASTER).build());
+            rs.setGateway(gateway);
+            rss.add(rs);
+        }
+        return rss;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.srvtopo;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.common.Constant;
+import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.context.VtContext;
+import com.jd.jdbc.queryservice.IQueryService;
+import com.jd.jdbc.session.SafeSession;
+import com.jd.jdbc.session.ShardCommitMode;
+import com.jd.jdbc.session.ShardSession;
+import com.jd.jdbc.session.VitessSession;
+import com.jd.jdbc.util.threadpool.impl.VtQueryExecutorService;
+import com.jd.jdbc.vitess.VitessConnection;
+import io.vitess.proto.Query;
+import io.vitess.proto.Topodata;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TxConnTest extends BaseTest {
+
+    private static final int SHARD_COUNT = 8;
+
+    private static final long COMMIT_MILLIS = 20;
+
+    private final Set<Long> committed = ConcurrentHashMap.newKeySet();
+
+    private final Set<Long> released = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger concurrentCommits = new AtomicInteger();
+
+    private final AtomicInteger maxConcurrentCommits = new AtomicInteger();
+
+    private volatile CountDownLatch commitsStarted;
+
+    private final TxConn txConn = new TxConn(gateway(), null);
+
+    @BeforeClass
+    public static void initPool() {
+        VtQueryExecutorService.initialize(null, null, null, null);
+    }
+
+    @Test
+    public void testShardCommitMode() {
+        Assert.assertEquals(ShardCommitMode.SERIAL, ShardCommitMode.of(null));
+        Assert.assertEquals(ShardCommitMode.SERIAL, ShardCommitMode.of("unknown"));
+        Assert.assertEquals(ShardCommitMode.PARALLEL, ShardCommitMode.of(" Parallel"));
+    }
+
+    @Test
+    public void testParallelCommit() throws Exception {
+        commit(ShardCommitMode.SERIAL, -1);
+        Assert.assertEquals(SHARD_COUNT, committed.size());
+        Assert.assertEquals(1, maxConcurrentCommits.get());
+
+        // every shard commit waits until all of them have started, so they only finish if they overlap
+        commitsStarted = new CountDownLatch(SHARD_COUNT);
+        try {
+            commit(ShardCommitMode.PARALLEL, -1);
+        } finally {
+            commitsStarted = null;
+        }
+        Assert.assertEquals(SHARD_COUNT, committed.size());
+        Assert.assertTrue(released.isEmpty());
+        Assert.assertEquals(SHARD_COUNT, maxConcurrentCommits.get());
+    }
+
+    @Test
+    public void testParallelCommitFailure() throws Exception {
+        try {
+            commit(ShardCommitMode.PARALLEL, 3);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("commit failed on shards [ks/3], committed shards [ks/0, ks/1, ks/2, ks/4, ks/5, ks/6, ks/7]"));
+            Assert.assertEquals("shard 3 failed", e.getCause().getMessage());
+        }
+        // the other shards do not wait for the failed one
+        Assert.assertEquals(SHARD_COUNT - 1, committed.size());
+        Assert.assertTrue(released.contains(4L));
+
+        try {
+            commit(ShardCommitMode.SERIAL, 3);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals("shard 3 failed", e.getMessage());
+        }
+        // serial commit stops at the failed shard and releases the rest
+        Assert.assertEquals(3, committed.size());
+        Assert.assertEquals(SHARD_COUNT - 3, released.size());
+    }
+
+    @Test
+    public void testParallelCommitRejected() throws Exception {
+        Field field = VtQueryExecutorService.class.getDeclaredField("executorService");
+        field.setAccessible(true);
+        ExecutorService executorService = (ExecutorService) field.get(null);
+        Set<String> commitThreads = ConcurrentHashMap.newKeySet();
+        ExecutorService rejecting = rejectEveryOtherTask(commitThreads);
+        field.set(null, rejecting);
+        try {
+            commit(ShardCommitMode.PARALLEL, -1);
+            // the rejected shards are committed on the calling thread
+            Assert.assertEquals(SHARD_COUNT, committed.size());
+            Assert.assertTrue(released.isEmpty());
+            Assert.assertEquals(SHARD_COUNT / 2, commitThreads.size());
+
+            try {
+                commit(ShardCommitMode.PARALLEL, 3);
+                Assert.fail();
+            } catch (SQLException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("commit failed on shards [ks/3], committed shards [ks/0, ks/1, ks/2, ks/4, ks/5, ks/6, ks/7]"));
+            }
+            Assert.assertEquals(SHARD_COUNT - 1, committed.size());
+        } finally {
+            field.set(null, executorService);
+            rejecting.shutdownNow();
+        }
+        printOk("shard commits rejected by the query thread pool run on the calling thread");
+    }
+
+    private void commit(ShardCommitMode mode, int failShard) throws Exception {
+        committed.clear();
+        released.clear();
+        concurrentCommits.set(0);
+        maxConcurrentCommits.set(0);
+        VitessSession session = new VitessSession();
+        session.setInTransaction(true);
+        List<ShardSession> shardSessions = new ArrayList<>();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Query.Target target = Query.Target.newBuilder().setKeyspace("ks").setShard(String.valueOf(i)).setTabletType(Topodata.TabletType.MASTER).build();
+            long transactionId = i == failShard ? -(i + 1) : i + 1;
+            shardSessions.add(new ShardSession(0, transactionId, target, Topodata.TabletAlias.newBuilder().setUid(i).build()));
+        }
+        session.setShardSessions(shardSessions);
+        VitessConnection connection = new VitessConnection(null, session);
+        Properties properties = new Properties();
+        properties.setProperty(Constant.DRIVER_PROPERTY_SHARD_COMMIT_MODE, mode.name().toLowerCase());
+        Field field = VitessConnection.class.getDeclaredField("properties");
+        field.setAccessible(true);
+        field.set(connection, properties);
+
+        txConn.commit(VtContext.background(), SafeSession.newSafeSession(connection));
+    }
+
+    private static ExecutorService rejectEveryOtherTask(Set<String> threads) {
+        AtomicInteger tasks = new AtomicInteger();
+        return new ThreadPoolExecutor(SHARD_COUNT, SHARD_COUNT, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                if (tasks.getAndIncrement() % 2 == 1) {
+                    throw new RejectedExecutionException("rejected");
+                }
+                super.execute(() -> {
+                    threads.add(Thread.currentThread().getName());
+                    command.run();
+                });
+            }
+        };
+    }
+
+    private Gateway gateway() {
+        IQueryService queryService = (IQueryService) Proxy.newProxyInstance(IQueryService.class.getClassLoader(), new Class<?>[] {IQueryService.class}, (proxy, method, args) -> {
+            long transactionId = (Long) args[2];
+            switch (method.getName()) {
+                case "commit":
+                    maxConcurrentCommits.accumulateAndGet(concurrentCommits.incrementAndGet(), Math::max);
+                    try {
+                        CountDownLatch started = commitsStarted;
+                        if (started != null) {
+                            started.countDown();
+                            if (!started.await(10, TimeUnit.SECONDS)) {
+                                throw new SQLException("shard commits did not overlap");
+                            }
+                        }
+                        Thread.sleep(COMMIT_MILLIS);
+                    } finally {
+                        concurrentCommits.decrementAndGet();
+                    }
+                    if (transactionId < 0) {
+                        throw new SQLException("shard " + (-transactionId - 1) + " failed");
+                    }
+                    committed.add(transactionId);
+                    return Query.CommitResponse.newBuilder().build();
+                case "release":
+                    released.add(Math.abs(transactionId));
+                    return Query.ReleaseResponse.newBuilder().build();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return new Gateway() {
+            @Override
+            public IQueryService queryServiceByAlias(Topodata.TabletAlias alias) {
+                return queryService;
+            }
+
+            @Override
+            public void waitForTablets(IContext ctx, String cell, String keyspace, List<Topodata.TabletType> tabletTypeList) {
+            }
+        };
+    }
+}
@@ -22,7 +22,6 @@ import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -74,8 +73,6 @@ public class StreamQueryTest extends TestSuite {
     @Test
     public void test_select()
         throws SQLException, NoSuchFieldException, IllegalAccessException {
-        expection.expect(SQLFeatureNotSupportedException.class);
-        expection.expectMessage("unsupported streamExecute");
         int count = 0;
         for (StreamQueryTest.TestCase testCase : testCaseList) {
             count++;
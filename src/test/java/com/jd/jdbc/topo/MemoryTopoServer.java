@@ -208,6 +208,12 @@ public class MemoryTopoServer implements TopoConnection {
         }
     }
 
+    // setCellConnection replaces the connection of a cell, so a test can fake
+    // what the topo of the cell supports.
+    public static void setCellConnection(TopoServer topoServer, String cell, TopoConnection conn) {
+        topoServer.cellsTopoConnMap.put(cell, conn);
+    }
+
     // createTablet creates a new tablet and all associated paths for the
     // replication graph.
     public static void createTablet(IContext ctx, TopoServer topoServer, Topodata.Tablet tablet) throws TopoException {
@@ -0,0 +1,149 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.jd.jdbc.topo;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.context.IContext;
+import com.jd.jdbc.context.VtContext;
+import io.vitess.proto.Topodata;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TopoTabletWatchTest extends BaseTest {
+
+    private static final String CELL = "cell1";
+
+    private TopoServer topoServer;
+
+    private MemoryTopoFactory factory;
+
+    private IContext ctx;
+
+    @Before
+    public void init() throws TopoException {
+        MemoryTopoFactory.ServerWithFactory serverWithFactory = MemoryTopoFactory.newServerAndFactory(CELL);
+        topoServer = serverWithFactory.getTopoServer();
+        factory = (MemoryTopoFactory) serverWithFactory.getFactory();
+        ctx = VtContext.withCancel(VtContext.background());
+    }
+
+    @Test
+    public void testWatchNotSupported() {
+        try {
+            topoServer.watchTablets(ctx, CELL, new RecordingListener());
+            Assert.fail();
+        } catch (TopoException e) {
+            Assert.assertTrue(TopoException.isErrType(e, TopoExceptionCode.NO_IMPLEMENTATION));
+        }
+        printOk("memory topo cannot watch tablets");
+    }
+
+    @Test
+    public void testWatchTablets() throws TopoException {
+        Topodata.Tablet tablet1 = tablet(1, "ks");
+        Topodata.Tablet tablet2 = tablet(2, "ks");
+        AtomicBoolean closed = new AtomicBoolean();
+        List<TopoConnection.DirWatchListener> dirListeners = new ArrayList<>();
+        topoServer.cellsTopoConnMap.put(CELL, new MemoryTopoServer(CELL, "", factory) {
+            @Override
+            public Resource watchDir(IContext ctx, String dirPath, DirWatchListener listener) {
+                Assert.assertEquals(TopoServer.TABLETS_PATH, dirPath);
+                Map<String, byte[]> files = new HashMap<>();
+                files.put("cell1-0000000001/Tablet", tablet1.toByteArray());
+                files.put("cell1-0000000001/Other", new byte[] {1, 2, 3});
+                files.put("cell1-0000000002/Tablet", tablet2.toByteArray());
+                listener.onSnapshot(files);
+                dirListeners.add(listener);
+                return () -> closed.set(true);
+            }
+        });
+
+        RecordingListener listener = new RecordingListener();
+        Resource watch = topoServer.watchTablets(ctx, CELL, listener);
+        Assert.assertEquals(2, listener.snapshot.size());
+        Assert.assertTrue(listener.snapshot.contains(tablet1));
+        Assert.assertTrue(listener.snapshot.contains(tablet2));
+
+        TopoConnection.DirWatchListener dirListener = dirListeners.get(0);
+        Topodata.Tablet moved = tablet1.toBuilder().setHostname("127.0.0.2").build();
+        dirListener.onPut("cell1-0000000001/Tablet", moved.toByteArray());
+        dirListener.onPut("cell1-0000000001/Other", new byte[] {1, 2, 3});
+        dirListener.onPut("cell1-0000000003/Tablet", new byte[] {-1, -1, -1});
+        Assert.assertEquals(1, listener.puts.size());
+        Assert.assertEquals(moved, listener.puts.get(0));
+
+        dirListener.onDelete("cell1-0000000002/Other");
+        dirListener.onDelete("cell1-0000000002/Tablet");
+        Assert.assertEquals(1, listener.deletes.size());
+        Assert.assertEquals("cell1-0000000002", listener.deletes.get(0));
+
+        dirListener.onError(new RuntimeException("compacted"));
+        Assert.assertEquals(1, listener.errors.size());
+
+        watch.close();
+        Assert.assertTrue(closed.get());
+        printOk("tablet watch events are parsed from the tablet files");
+    }
+
+    private static Topodata.Tablet tablet(long uid, String keyspace) {
+        return Topodata.Tablet.newBuilder()
+            .setAlias(Topodata.TabletAlias.newBuilder().setCell(CELL).setUid(uid).build())
+            .setHostname("127.0.0.1")
+            .setMysqlPort(3306)
+            .setKeyspace(keyspace)
+            .setShard("0")
+            .setType(Topodata.TabletType.REPLICA)
+            .build();
+    }
+
+    private static class RecordingListener implements TopoTablet.TabletWatchListener {
+        private final List<Topodata.Tablet> snapshot = new ArrayList<>();
+
+        private final List<Topodata.Tablet> puts = new ArrayList<>();
+
+        private final List<String> deletes = new ArrayList<>();
+
+        private final List<Throwable> errors = new ArrayList<>();
+
+        @Override
+        public void onSnapshot(List<Topodata.Tablet> tablets) {
+            snapshot.addAll(tablets);
+        }
+
+        @Override
+        public void onPut(Topodata.Tablet tablet) {
+            puts.add(tablet);
+        }
+
+        @Override
+        public void onDelete(String tabletAlias) {
+            deletes.add(tabletAlias);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            errors.add(throwable);
+        }
+    }
+}
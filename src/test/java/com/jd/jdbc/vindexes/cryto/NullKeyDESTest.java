@@ -0,0 +1,179 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.vindexes.cryto;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.key.Destination;
+import com.jd.jdbc.key.DestinationKeyspaceID;
+import com.jd.jdbc.key.DestinationNone;
+import com.jd.jdbc.key.Uint64key;
+import com.jd.jdbc.sqltypes.VtValue;
+import com.jd.jdbc.vindexes.hash.AbstractHash;
+import com.jd.jdbc.vindexes.hash.BinaryHash;
+import com.jd.jdbc.vindexes.hash.Hash;
+import io.vitess.proto.Query;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.DESedeKeySpec;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class NullKeyDESTest extends BaseTest {
+
+    private static Cipher encCipher;
+
+    private static Cipher decCipher;
+
+    @BeforeClass
+    public static void initCipher() throws Exception {
+        SecretKey key = SecretKeyFactory.getInstance(TripleDES.ALGO_NAME).generateSecret(new DESedeKeySpec(new byte[24]));
+        encCipher = Cipher.getInstance(TripleDES.DESEDE_ENCRYPTION_SCHEME);
+        encCipher.init(Cipher.ENCRYPT_MODE, key);
+        decCipher = Cipher.getInstance(TripleDES.DESEDE_ENCRYPTION_SCHEME);
+        decCipher.init(Cipher.DECRYPT_MODE, key);
+    }
+
+    @Test
+    public void testSameAsCipher() throws Exception {
+        Random random = new Random(20230101L);
+        List<Long> values = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            values.add(i);
+        }
+        values.add(Long.MAX_VALUE);
+        values.add(Long.MIN_VALUE);
+        values.add(-1L);
+        for (int i = 0; i < 100000; i++) {
+            values.add(random.nextLong());
+        }
+        for (long value : values) {
+            byte[] plainText = NullKeyDES.toBytes(value);
+            long expected = NullKeyDES.toLong(encCipher.doFinal(plainText));
+            Assert.assertEquals("encrypt " + value, expected, NullKeyDES.encrypt(value));
+            Assert.assertEquals("decrypt " + value, NullKeyDES.toLong(decCipher.doFinal(plainText)), NullKeyDES.decrypt(value));
+            Assert.assertEquals(value, NullKeyDES.decrypt(expected));
+        }
+        // the well known vitess hash vindex value: hash(1) = 166b40b44aba4bd6
+        Assert.assertEquals("166b40b44aba4bd6", String.format("%016x", NullKeyDES.encrypt(1L)));
+        Assert.assertArrayEquals(encCipher.doFinal(Uint64key.bytes(BigInteger.valueOf(1L))), TripleDES.getInstance().encrypt(BigInteger.ONE));
+    }
+
+    @Test
+    public void testHashMap() throws Exception {
+        // ids of other lengths than 8 digits are hashed by their numeric value, as verify does
+        long[] ids = {1L, 1234567890L, Long.MAX_VALUE};
+        VtValue[] values = new VtValue[ids.length + 1];
+        for (int i = 0; i < ids.length; i++) {
+            values[i] = VtValue.newVtValue(Query.Type.INT64, String.valueOf(ids[i]).getBytes());
+        }
+        values[ids.length] = VtValue.newVtValue(Query.Type.INT64, "-1".getBytes());
+
+        Hash hash = new Hash();
+        Destination[] destinations = hash.map(values);
+        byte[][] ksids = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            ksids[i] = ((DestinationKeyspaceID) destinations[i]).getValue();
+            Assert.assertArrayEquals(encCipher.doFinal(NullKeyDES.toBytes(ids[i])), ksids[i]);
+        }
+        Assert.assertEquals("166b40b44aba4bd6", String.format("%016x", NullKeyDES.toLong(ksids[0])));
+        Assert.assertTrue(destinations[ids.length] instanceof DestinationNone);
+
+        Boolean[] verified = hash.verify(new VtValue[] {values[0], values[1], values[2]}, ksids);
+        for (Boolean v : verified) {
+            Assert.assertTrue(v);
+        }
+        VtValue[] reversed = hash.reverseMap(ksids);
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertEquals(String.valueOf(ids[i]), reversed[i].toString());
+        }
+    }
+
+    @Test
+    public void testHashBatchMap() throws Exception {
+        // the batch map hashes uint64 ids to the keyspace ids the per-id map returns
+        long[] ids = {0L, 1L, 1234567890L, Long.MAX_VALUE, Long.MIN_VALUE, -1L};
+        VtValue[] values = new VtValue[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            values[i] = VtValue.newVtValue(Query.Type.UINT64, Long.toUnsignedString(ids[i]).getBytes());
+        }
+
+        Hash hash = new Hash();
+        byte[][] ksids = hash.map(ids);
+        Destination[] destinations = hash.map(values);
+        Assert.assertEquals(ids.length, ksids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertArrayEquals(((DestinationKeyspaceID) destinations[i]).getValue(), ksids[i]);
+        }
+        Assert.assertArrayEquals(ids, hash.reverseMapToUint64(ksids));
+    }
+
+    @Test
+    public void testHashVerifyUint64() throws Exception {
+        long[] ids = {1L, 2L, 3L, Long.MAX_VALUE, -1L};
+        byte[][] ksids = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            ksids[i] = encCipher.doFinal(NullKeyDES.toBytes(ids[i]));
+        }
+        for (AbstractHash vindex : new AbstractHash[] {new Hash(), new BinaryHash()}) {
+            boolean[] verified = vindex.verify(ids, ksids);
+            for (boolean v : verified) {
+                Assert.assertTrue(v);
+            }
+            Assert.assertFalse(vindex.verify(new long[] {4L}, new byte[][] {ksids[0]})[0]);
+            Assert.assertArrayEquals(ids, vindex.reverseMapToUint64(ksids));
+        }
+    }
+
+    @Test
+    public void testConcurrentEncrypt() throws Exception {
+        // NullKeyDES holds no state, threads sharing it get the same values as one thread
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                futures.add(executorService.submit(() -> {
+                    long[] out = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        out[i] = NullKeyDES.encrypt(seed * perThread + i);
+                    }
+                    return out;
+                }));
+            }
+            for (int t = 0; t < threads; t++) {
+                long[] out = futures.get(t).get();
+                for (int i = 0; i < perThread; i += 97) {
+                    long value = (long) t * perThread + i;
+                    Assert.assertEquals("encrypt " + value, NullKeyDES.toLong(encCipher.doFinal(NullKeyDES.toBytes(value))), out[i]);
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
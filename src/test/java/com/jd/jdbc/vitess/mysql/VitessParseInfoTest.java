@@ -0,0 +1,104 @@
+/*
+Copyright 2023 JD Project Authors.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.jd.jdbc.vitess.mysql;
+
+import com.jd.BaseTest;
+import com.jd.jdbc.srvtopo.BindVariable;
+import io.vitess.proto.Query;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VitessParseInfoTest extends BaseTest {
+
+    @Test
+    public void testCountParameters() {
+        Assert.assertEquals(0, VitessParseInfo.countParameters("select 1"));
+        Assert.assertEquals(2, VitessParseInfo.countParameters("select * from t where a = ? and b = ?"));
+        Assert.assertEquals(1, VitessParseInfo.countParameters("select '?', \"?\", `?` from t where a = ?"));
+        Assert.assertEquals(1, VitessParseInfo.countParameters("select 'it''s ?', 'a\\'?' from t where a = ?"));
+        Assert.assertEquals(1, VitessParseInfo.countParameters("select /* ? */ a from t -- ?\nwhere a = ? # ?"));
+        Assert.assertEquals(0, VitessParseInfo.countParameters("select a from t where a = '?"));
+    }
+
+    @Test
+    public void testCached() {
+        VitessParseInfo.clearCache();
+        String sql = "insert into t(a, b) values (?, ?);select * from t where a = ?";
+        VitessParseInfo parseInfo = VitessParseInfo.get(sql);
+        Assert.assertEquals(2, parseInfo.getSqls().size());
+        Assert.assertEquals(2, parseInfo.getParameterCount(0));
+        Assert.assertEquals(1, parseInfo.getParameterCount(1));
+        Assert.assertSame(parseInfo, VitessParseInfo.get(sql));
+        Assert.assertTrue(VitessParseInfo.get("  ").getSqls().isEmpty());
+    }
+
+    @Test
+    public void testBindVariables() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty(VitessPropertyKey.CHARACTER_ENCODING.getKeyName(), "utf-8");
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        VitessQueryBindVariable bindVariable = new VitessQueryBindVariable(7, properties, utc, utc);
+        bindVariable.setBoolean(0, true);
+        bindVariable.setLong(1, 42L);
+        bindVariable.setDouble(2, 1.5E20);
+        bindVariable.setBigDecimal(3, new BigDecimal("1E+3"));
+        bindVariable.setString(4, "it's");
+        Timestamp timestamp = new Timestamp(0);
+        timestamp.setNanos(123456000);
+        bindVariable.setTimestamp(5, timestamp);
+        bindVariable.setNull(6);
+
+        Map<String, BindVariable> bindVariableMap = bindVariable.getBindVariableMap();
+        Assert.assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5", "6"), Arrays.asList(bindVariableMap.keySet().toArray()));
+        assertValue("1", Query.Type.INT8, bindVariableMap.get("0"));
+        assertValue("42", Query.Type.INT64, bindVariableMap.get("1"));
+        assertValue("1.5E+20", Query.Type.FLOAT64, bindVariableMap.get("2"));
+        assertValue("1000", Query.Type.DECIMAL, bindVariableMap.get("3"));
+        assertValue("it's", Query.Type.VARBINARY, bindVariableMap.get("4"));
+        assertValue("1970-01-01 00:00:00.123456", Query.Type.TIMESTAMP, bindVariableMap.get("5"));
+        Assert.assertSame(BindVariable.NULL_BIND_VARIABLE, bindVariableMap.get("6"));
+
+        try {
+            bindVariable.setDouble(0, Double.NaN);
+            Assert.fail();
+        } catch (SQLException e) {
+            printOk(e.getMessage());
+        }
+        try {
+            bindVariable.setInt(7, 1);
+            Assert.fail();
+        } catch (SQLException e) {
+            printOk(e.getMessage());
+        }
+
+        bindVariable.clearBindValues();
+        Assert.assertNull(bindVariable.getBindVariableMap().get("0"));
+    }
+
+    private void assertValue(String expected, Query.Type type, BindVariable actual) {
+        Assert.assertEquals(type, actual.getType());
+        Assert.assertEquals(expected, new String(actual.getValue(), StandardCharsets.UTF_8));
+    }
+}